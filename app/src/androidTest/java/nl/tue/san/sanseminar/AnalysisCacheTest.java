@@ -0,0 +1,133 @@
+package nl.tue.san.sanseminar;
+
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import nl.tue.san.analysis.AnalysisCache;
+import nl.tue.san.analysis.ResponseTimeAnalysis;
+import nl.tue.san.analysis.ResponseTimes;
+import nl.tue.san.tasks.Task;
+import nl.tue.san.tasks.TaskSet;
+
+/**
+ * Tests that incremental analysis of a TaskSet gives the same results as analysing it from scratch.
+ */
+public class AnalysisCacheTest {
+
+    /**
+     * Tests that editing the lowest priority task leaves the results of all other tasks alone.
+     */
+    @Test
+    public void testLowestPriorityEdit() {
+        TaskSet taskSet = taskSet(new Random(1), 40);
+        AnalysisCache cache = taskSet.getAnalysis();
+        Assert.assertSame(cache, taskSet.getAnalysis());
+        cache.analyse();
+
+        Task lowest = taskSet.get(taskSet.size() - 1);
+        lowest.setComputation(lowest.getComputation() + 1);
+        assertSameResults(ResponseTimeAnalysis.analyse(taskSet), cache.analyse());
+
+        Assert.assertEquals(taskSet.size() - 1, cache.getReused());
+        Assert.assertEquals(1, cache.getWarmStarted());
+        Assert.assertTrue(cache.getIterationsSaved() > 0);
+    }
+
+    /**
+     * Tests that analysing an unchanged TaskSet again reuses everything.
+     */
+    @Test
+    public void testUnchanged() {
+        TaskSet taskSet = taskSet(new Random(2), 40);
+        AnalysisCache cache = taskSet.getAnalysis();
+        ResponseTimes first = cache.analyse();
+        ResponseTimes second = cache.analyse();
+
+        assertSameResults(first, second);
+        Assert.assertEquals(taskSet.size(), cache.getReused());
+        Assert.assertEquals(0, second.getIterations());
+    }
+
+    /**
+     * Applies random edits, additions and removals, and compares the incremental analysis with an
+     * analysis from scratch after each of them.
+     */
+    @Test
+    public void testRandomChanges() {
+        Random random = new Random(3);
+        TaskSet taskSet = taskSet(random, 30);
+        AnalysisCache cache = taskSet.getAnalysis();
+        cache.analyse();
+
+        long incremental = 0, scratch = 0;
+        for(int round = 0; round < 300; ++round) {
+            Task task = taskSet.get(random.nextInt(taskSet.size()));
+            switch (random.nextInt(7)) {
+                case 0:
+                    task.setComputation(Math.max(1, task.getComputation() + random.nextInt(21) - 10));
+                    break;
+                case 1:
+                    task.setPeriod(Math.max(task.getComputation(), task.getPeriod() + random.nextInt(201) - 100));
+                    break;
+                case 2:
+                    task.setPriority(random.nextInt(200));
+                    break;
+                case 3:
+                    task.setThreshold(random.nextBoolean() ? Task.NO_PREEMPTION_THRESHOLD : task.getPriority() + random.nextInt(20));
+                    break;
+                case 4:
+                    task.setDeadline(Math.max(1, task.getDeadline() + random.nextInt(201) - 100));
+                    break;
+                case 5:
+                    if(taskSet.size() > 1)
+                        taskSet.remove(task);
+                    break;
+                default:
+                    taskSet.put(task("A"+round, random));
+                    break;
+            }
+
+            ResponseTimes expected = ResponseTimeAnalysis.analyse(taskSet);
+            ResponseTimes actual = cache.analyse();
+            assertSameResults(expected, actual);
+            scratch += expected.getIterations();
+            incremental += actual.getIterations();
+        }
+
+        Assert.assertTrue(incremental < scratch);
+    }
+
+    private static void assertSameResults(ResponseTimes expected, ResponseTimes actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for(int i = 0; i < expected.size(); ++i) {
+            Assert.assertEquals(expected.getName(i), actual.getName(i));
+            Assert.assertEquals(expected.getName(i), expected.getResponseTime(i), actual.getResponseTime(i));
+            Assert.assertEquals(expected.getName(i), expected.getBlocking(i), actual.getBlocking(i));
+            Assert.assertEquals(expected.getName(i), expected.getJobs(i), actual.getJobs(i));
+            Assert.assertEquals(expected.getName(i), expected.isSchedulable(i), actual.isSchedulable(i));
+        }
+    }
+
+    private static TaskSet taskSet(Random random, int size) {
+        List<Task> tasks = new ArrayList<>();
+        for(int i = 0; i < size; ++i) {
+            Task task = task("T"+i, random);
+            task.setPriority(size - i);
+            tasks.add(task);
+        }
+        return new TaskSet("random", tasks);
+    }
+
+    private static Task task(String name, Random random) {
+        int period = 100 + random.nextInt(900);
+        int computation = 1 + random.nextInt(Math.max(1, period / 40));
+        int priority = random.nextInt(200);
+        int threshold = random.nextBoolean() ? Task.NO_PREEMPTION_THRESHOLD : priority + random.nextInt(20);
+        return Task.createImmediateTask(name, 0xFF000000, period, period, computation, priority, threshold);
+    }
+}
@@ -0,0 +1,303 @@
+package nl.tue.san.sanseminar;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.JsonReader;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import nl.tue.san.analysis.DemandAnalysis;
+import nl.tue.san.analysis.ThresholdAssignment;
+import nl.tue.san.tasks.Task;
+import nl.tue.san.tasks.TaskSet;
+import nl.tue.san.tasks.TaskSetBinaryIO;
+import nl.tue.san.tasks.TaskSetIO;
+import nl.tue.san.util.ReadWriteSafeObject;
+
+/**
+ * Measures the performance of the storage, concurrency and analysis code against the
+ * implementations they replace. The figures depend on the device, so they are logged rather than
+ * asserted, and as the measurements take a while they only run when asked for:
+ * <pre>adb shell am instrument -w -e benchmarks true -e class nl.tue.san.sanseminar.BenchmarkTest ...</pre>
+ */
+@RunWith(AndroidJUnit4.class)
+public class BenchmarkTest {
+
+    private static final String TAG = "BenchmarkTest";
+
+    private static final int TASKS = 20;
+    private static final int READERS = 4;
+    private static final long DURATION = 1000;
+
+    @Before
+    public void requireBenchmarks() {
+        Assume.assumeTrue("Benchmarks only run with -e benchmarks true", Boolean.parseBoolean(InstrumentationRegistry.getArguments().getString("benchmarks")));
+    }
+
+    /**
+     * Compares the size and the speed of writing and reading the binary representation with the
+     * JSON representation that is used for snapshots, using a library of 200 TaskSets of 20 tasks
+     * each.
+     */
+    @Test
+    public void testBinaryComparedWithJSON() throws JSONException, IOException {
+        List<TaskSet> taskSets = new ArrayList<>();
+        for(int i = 0; i < 200; ++i) {
+            List<Task> tasks = new ArrayList<>();
+            for(int j = 0; j < 20; ++j)
+                tasks.add(new Task("T"+j, 0xFF000000 | (i * 7919 + j * 104729), j, 100 + 10 * j, 90 + 10 * j, 1 + j % 5, j, j % 3 == 0 ? Task.NO_PREEMPTION_THRESHOLD : j + 1));
+            taskSets.add(new TaskSet("TaskSet "+i, tasks));
+        }
+
+        final int rounds = 10;
+
+        long start = System.nanoTime();
+        String json = null;
+        for(int round = 0; round < rounds; ++round) {
+            JSONArray array = new JSONArray();
+            for(TaskSet taskSet : taskSets)
+                array.put(TaskSetIO.toJSON(taskSet));
+            json = array.toString();
+        }
+        long jsonWrite = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for(int round = 0; round < rounds; ++round) {
+            JsonReader reader = new JsonReader(new StringReader(json));
+            List<TaskSet> read = new ArrayList<>();
+            reader.beginArray();
+            while(reader.hasNext())
+                read.add(TaskSetIO.fromJSON(reader));
+            reader.endArray();
+            Assert.assertEquals(taskSets, read);
+        }
+        long jsonRead = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        byte[] binary = null;
+        for(int round = 0; round < rounds; ++round) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            TaskSetBinaryIO.write(taskSets, out);
+            binary = out.toByteArray();
+        }
+        long binaryWrite = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for(int round = 0; round < rounds; ++round)
+            Assert.assertEquals(taskSets, TaskSetBinaryIO.readAll(new ByteArrayInputStream(binary)));
+        long binaryRead = System.nanoTime() - start;
+
+        Log.i(TAG, "JSON: "+json.getBytes("UTF-8").length+" bytes, write "+jsonWrite / rounds / 1000+" us, read "+jsonRead / rounds / 1000+" us");
+        Log.i(TAG, "Binary: "+binary.length+" bytes, write "+binaryWrite / rounds / 1000+" us, read "+binaryRead / rounds / 1000+" us");
+    }
+
+    /**
+     * Compares the throughput of reads by several threads, while another thread keeps modifying
+     * the TaskSet, with the lock based implementation that TaskSet used to have.
+     */
+    @Test
+    public void testTaskSetContention() throws InterruptedException {
+        List<Task> tasks = new ArrayList<>();
+        for(int i = 0; i < TASKS; ++i)
+            tasks.add(Task.createImmediateTaskWithoutThreshold("T"+i, 0xFF000000, 100, 100, 10, i));
+        final TaskSet snapshot = new TaskSet("snapshot", tasks);
+        final LockedTaskSet locked = new LockedTaskSet(tasks);
+
+        long snapshotReads = measure(new Reader() {
+            @Override
+            public boolean read(int i) {
+                return snapshot.get(i) != null && snapshot.contains("T"+i) && snapshot.size() > 0;
+            }
+        }, new Runnable() {
+            @Override
+            public void run() {
+                snapshot.put(snapshot.get(0));
+            }
+        });
+
+        long lockedReads = measure(new Reader() {
+            @Override
+            public boolean read(int i) {
+                return locked.get(i) != null && locked.contains("T"+i) && locked.size() > 0;
+            }
+        }, new Runnable() {
+            @Override
+            public void run() {
+                locked.put(locked.get(0));
+            }
+        });
+
+        Log.i(TAG, "Snapshot TaskSet: "+snapshotReads * 1000 / DURATION+" reads/s with "+READERS+" readers");
+        Log.i(TAG, "Locked TaskSet: "+lockedReads * 1000 / DURATION+" reads/s with "+READERS+" readers");
+    }
+
+    /**
+     * Logs how the assignment of preemption thresholds scales with the number of tasks, by the
+     * time it takes, the number of analyses it performs and the number of candidates it prunes.
+     */
+    @Test
+    public void testThresholdAssignmentScaling() {
+        Random random = new Random(3);
+        for(int size : new int[]{ 50, 100, 250, 500 }) {
+            List<Task> tasks = TestTasks.tasks(random, size, 1, 100 * size, 0.6, 0.5, 1);
+            ThresholdAssignment assignment = new ThresholdAssignment(tasks);
+            boolean assigned = assignment.assign();
+            Log.i(TAG, "Assigned thresholds to "+size+" tasks ("+(assigned ? "schedulable" : "not schedulable")+") in "+assignment.getElapsedNanos() / 1000+" us using "+assignment.getAnalyses()+" analyses, "+assignment.getPruned()+" pruned");
+        }
+    }
+
+    /**
+     * Logs how the processor-demand analysis compares with checking every deadline up to the
+     * bound, for growing numbers of tasks with a high utilization and short deadlines.
+     */
+    @Test
+    public void testDemandAnalysisScaling() {
+        Random random = new Random(2);
+        for(int size : new int[]{ 10, 50, 100, 500 }) {
+            List<Task> tasks = TestTasks.tasks(random, size, 1, 100000, 0.95, 1.0 / 3, 1);
+            DemandAnalysis analysis = new DemandAnalysis(tasks);
+            boolean analysed = analysis.analyse();
+
+            long start = System.nanoTime();
+            Assert.assertEquals(analysed, DemandAnalysisTest.enumerate(tasks, analysis.getBound()));
+            long enumerated = System.nanoTime() - start;
+
+            long deadlines = 0;
+            for(Task task : tasks)
+                if(task.getDeadline() <= analysis.getBound())
+                    deadlines += (analysis.getBound() - task.getDeadline()) / task.getPeriod() + 1;
+            Log.i(TAG, size+" tasks ("+(analysed ? "schedulable" : "not schedulable")+"): QPA checked "+analysis.getPoints()+" deadlines up to "+analysis.getBound()+" in "+analysis.getElapsedNanos() / 1000+" us, enumeration "+deadlines+" in "+enumerated / 1000+" us");
+        }
+    }
+
+    /**
+     * Run the given reader on several threads and the given writer on another thread for the
+     * duration of the benchmark.
+     * @return The total number of reads performed.
+     */
+    private static long measure(final Reader reader, final Runnable writer) throws InterruptedException {
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicLong reads = new AtomicLong();
+        final CountDownLatch start = new CountDownLatch(1);
+
+        List<Thread> threads = new ArrayList<>();
+        for(int t = 0; t < READERS; ++t) {
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    await(start);
+                    int i = 0;
+                    long count = 0;
+                    while(running.get()) {
+                        if(reader.read(i))
+                            ++count;
+                        i = (i + 1) % TASKS;
+                    }
+                    reads.addAndGet(count);
+                }
+            }));
+        }
+        threads.add(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                await(start);
+                while(running.get()) {
+                    writer.run();
+                    Thread.yield();
+                }
+            }
+        }));
+
+        for(Thread thread : threads)
+            thread.start();
+        start.countDown();
+        Thread.sleep(DURATION);
+        running.set(false);
+        for(Thread thread : threads)
+            thread.join();
+        return reads.get();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private interface Reader {
+        boolean read(int i);
+    }
+
+    /**
+     * The lock based implementation of the read and insert operations of a TaskSet, as it was
+     * before TaskSets switched to immutable states, kept as a baseline for the comparison.
+     */
+    private static class LockedTaskSet extends ReadWriteSafeObject {
+        private final ArrayList<String> order = new ArrayList<>();
+        private final HashMap<String, Task> tasks = new HashMap<>();
+
+        private LockedTaskSet(List<Task> tasks) {
+            for(Task task : tasks)
+                put(task);
+        }
+
+        private Task get(final int index) {
+            return readOp(new Operation<Task>() {
+                @Override
+                public Task perform() {
+                    return tasks.get(order.get(index));
+                }
+            });
+        }
+
+        private boolean contains(final String name) {
+            return readOp(new Operation<Boolean>() {
+                @Override
+                public Boolean perform() {
+                    return name != null && tasks.containsKey(name);
+                }
+            });
+        }
+
+        private int size() {
+            return readOp(new Operation<Integer>() {
+                @Override
+                public Integer perform() {
+                    return tasks.size();
+                }
+            });
+        }
+
+        private Task put(final Task task) {
+            return writeOp(new Operation<Task>() {
+                @Override
+                public Task perform() {
+                    order.remove(task.getName());
+                    order.add(task.getName());
+                    return tasks.put(task.getName(), task);
+                }
+            });
+        }
+    }
+}
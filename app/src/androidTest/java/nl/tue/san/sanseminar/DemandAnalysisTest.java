@@ -0,0 +1,116 @@
+package nl.tue.san.sanseminar;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import nl.tue.san.analysis.DemandAnalysis;
+import nl.tue.san.analysis.Hyperperiod;
+import nl.tue.san.analysis.Policy;
+import nl.tue.san.simulation.Simulator;
+import nl.tue.san.tasks.Task;
+
+/**
+ * Tests the EDF processor-demand analysis against simulation and against checking every deadline.
+ */
+public class DemandAnalysisTest {
+
+    /**
+     * Tests a set of which the utilization is below 1, but that misses a deadline at 6.
+     */
+    @Test
+    public void testConstrainedDeadlines() {
+        List<Task> tasks = new ArrayList<>();
+        tasks.add(Task.createImmediateTaskWithoutThreshold("T1", 0xFF000000, 10, 4, 3, 1));
+        tasks.add(Task.createImmediateTaskWithoutThreshold("T2", 0xFF000000, 20, 6, 4, 2));
+
+        DemandAnalysis analysis = new DemandAnalysis(tasks);
+        Assert.assertFalse(analysis.analyse());
+        Assert.assertEquals(6, analysis.getViolation());
+
+        tasks.get(1).setDeadline(7);
+        Assert.assertTrue(new DemandAnalysis(tasks).analyse());
+    }
+
+    /**
+     * Tests sets with a utilization of exactly 1, which are checked up to the hyperperiod, and a
+     * set of which the utilization exceeds 1 by less than the margin for rounding errors.
+     */
+    @Test
+    public void testFullUtilization() {
+        List<Task> tasks = new ArrayList<>();
+        tasks.add(Task.createImmediateTaskWithoutThreshold("T1", 0xFF000000, 3, 3, 1, 1));
+        tasks.add(Task.createImmediateTaskWithoutThreshold("T2", 0xFF000000, 5, 5, 2, 2));
+        tasks.add(Task.createImmediateTaskWithoutThreshold("T3", 0xFF000000, 15, 15, 4, 3));
+        DemandAnalysis analysis = new DemandAnalysis(tasks);
+        Assert.assertTrue(analysis.analyse());
+        Assert.assertEquals(15, analysis.getBound());
+
+        tasks.get(0).setDeadline(2);
+        tasks.get(1).setDeadline(2);
+        Assert.assertFalse(new DemandAnalysis(tasks).analyse());
+
+        tasks.clear();
+        tasks.add(Task.createImmediateTaskWithoutThreshold("T1", 0xFF000000, 2000000000, 2000000000, 1000000000, 1));
+        tasks.add(Task.createImmediateTaskWithoutThreshold("T2", 0xFF000000, 1999999999, 1999999999, 1000000000, 2));
+        Assert.assertFalse(new DemandAnalysis(tasks).analyse());
+    }
+
+    /**
+     * Tests on random small sets that the analysis agrees with a simulation over the hyperperiod,
+     * and with checking every deadline up to the bound.
+     */
+    @Test
+    public void testSimulation() {
+        Random random = new Random(1);
+        for(int round = 0; round < 300; ++round) {
+            List<Task> tasks = TestTasks.tasks(random, 2 + random.nextInt(5), 6, 8, 0.7 + random.nextDouble() * 0.4, 1.0 / 3, 1);
+            DemandAnalysis analysis = new DemandAnalysis(tasks);
+            boolean analysed = analysis.analyse();
+
+            long maxDeadline = 0;
+            for(Task task : tasks)
+                maxDeadline = Math.max(maxDeadline, task.getDeadline());
+            long horizon = Hyperperiod.of(tasks) + maxDeadline;
+            Assert.assertEquals(new Simulator(tasks, Policy.EDF).simulate(horizon).isSchedulable(), analysed);
+            if(analysis.getBound() > 0)
+                Assert.assertEquals(enumerate(tasks, analysis.getBound()), analysed);
+        }
+    }
+
+    /**
+     * Tests that the analysis agrees with checking every deadline up to the bound, for growing
+     * numbers of tasks with a high utilization and short deadlines.
+     */
+    @Test
+    public void testScaling() {
+        Random random = new Random(2);
+        for(int size : new int[]{ 10, 50, 100, 500 }) {
+            List<Task> tasks = TestTasks.tasks(random, size, 1, 100000, 0.95, 1.0 / 3, 1);
+            DemandAnalysis analysis = new DemandAnalysis(tasks);
+            Assert.assertEquals(enumerate(tasks, analysis.getBound()), analysis.analyse());
+        }
+    }
+
+    /**
+     * Determine schedulability by checking the demand at every deadline up to the bound.
+     */
+    static boolean enumerate(List<Task> tasks, long bound) {
+        for(Task task : tasks)
+            for(long deadline = task.getDeadline(); deadline <= bound; deadline += task.getPeriod())
+                if(demand(tasks, deadline) > deadline)
+                    return false;
+        return true;
+    }
+
+    private static long demand(List<Task> tasks, long t) {
+        long demand = 0;
+        for(Task task : tasks)
+            if(task.getDeadline() <= t)
+                demand += ((t - task.getDeadline()) / task.getPeriod() + 1) * task.getComputation();
+        return demand;
+    }
+}
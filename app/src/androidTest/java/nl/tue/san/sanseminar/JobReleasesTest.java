@@ -0,0 +1,109 @@
+package nl.tue.san.sanseminar;
+
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import nl.tue.san.analysis.Hyperperiod;
+import nl.tue.san.analysis.JobReleases;
+import nl.tue.san.tasks.Task;
+import nl.tue.san.tasks.TaskSet;
+
+/**
+ * Tests the enumeration of job releases and the determination of the hyperperiod.
+ */
+public class JobReleasesTest {
+
+    private final Task t1 = Task.createTaskWithoutThreshold("T1", 0xFF000000, 4, 4, 1, 3, 0);
+    private final Task t2 = Task.createTaskWithoutThreshold("T2", 0xFF000000, 6, 6, 1, 2, 1);
+    private final Task t3 = Task.createTaskWithoutThreshold("T3", 0xFF000000, 3, 3, 1, 1, 0);
+
+    /**
+     * Tests that all releases until the hyperperiod are enumerated in time order, with ties in the
+     * order of the tasks.
+     */
+    @Test
+    public void testUntilHyperperiod() {
+        JobReleases releases = JobReleases.untilHyperperiod(new TaskSet("releases", t1, t2, t3));
+        Assert.assertEquals(12, Hyperperiod.of(Arrays.asList(t1, t2, t3)));
+
+        String expected = "T1@0 T3@0 T2@1 T3@3 T1@4 T3@6 T2@7 T1@8 T3@9";
+        StringBuilder actual = new StringBuilder();
+        while(releases.next())
+            actual.append(actual.length() == 0 ? "" : " ").append(releases.getTask().getName()).append('@').append(releases.getTime());
+        Assert.assertEquals(expected, actual.toString());
+        Assert.assertFalse(releases.next());
+    }
+
+    /**
+     * Tests that a window starts at the first release at or after its start, and that job numbers
+     * count from the offset.
+     */
+    @Test
+    public void testWindow() {
+        JobReleases releases = new JobReleases(Arrays.asList(t1, t2), 5, 13);
+
+        Assert.assertEquals(7, releases.peekTime());
+        Assert.assertTrue(releases.next());
+        Assert.assertEquals("T2", releases.getTask().getName());
+        Assert.assertEquals(7, releases.getTime());
+        Assert.assertEquals(1, releases.getJob());
+
+        Assert.assertTrue(releases.next());
+        Assert.assertEquals(8, releases.getTime());
+        Assert.assertEquals(2, releases.getJob());
+        Assert.assertEquals(0, releases.getTaskIndex());
+
+        Assert.assertTrue(releases.next());
+        Assert.assertEquals(12, releases.getTime());
+        Assert.assertFalse(releases.next());
+    }
+
+    /**
+     * Tests that the hyperperiod of co-prime periods saturates rather than overflows, and that the
+     * exact value is still available.
+     */
+    @Test
+    public void testSaturation() {
+        List<Task> tasks = new ArrayList<>();
+        int[] primes = {999983, 999979, 999961, 999959};
+        BigInteger expected = BigInteger.ONE;
+        for(int prime : primes) {
+            tasks.add(Task.createImmediateTaskWithoutThreshold("P"+prime, 0xFF000000, prime, prime, 1, 1));
+            expected = expected.multiply(BigInteger.valueOf(prime));
+        }
+
+        Assert.assertEquals(Hyperperiod.SATURATED, Hyperperiod.of(tasks));
+        Assert.assertEquals(expected, Hyperperiod.exact(tasks));
+        Assert.assertEquals(999983L * 999979L, Hyperperiod.of(tasks.subList(0, 2)));
+    }
+
+    /**
+     * Tests that a window far beyond the start is enumerated without going through the earlier
+     * releases.
+     */
+    @Test
+    public void testDistantWindow() {
+        List<Task> tasks = new ArrayList<>();
+        for(int i = 0; i < 100; ++i)
+            tasks.add(Task.createTaskWithoutThreshold("T"+i, 0xFF000000, 1000 + 7 * i, 1000 + 7 * i, 1, i, i));
+
+        long from = 4000000000000L, until = from + 1000000;
+        JobReleases releases = new JobReleases(tasks, from, until);
+        long count = 0, previous = from;
+        while(releases.next()) {
+            Assert.assertTrue(releases.getTime() >= previous);
+            Assert.assertTrue(releases.getTime() < until);
+            Assert.assertEquals(0, (releases.getTime() - releases.getTask().getOffset()) % releases.getTask().getPeriod());
+            previous = releases.getTime();
+            ++count;
+        }
+
+        Assert.assertTrue(count > 100 * 1000000 / 1700);
+    }
+}
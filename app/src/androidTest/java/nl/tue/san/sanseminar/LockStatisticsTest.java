@@ -0,0 +1,146 @@
+package nl.tue.san.sanseminar;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import nl.tue.san.tasks.TaskSet;
+import nl.tue.san.util.LockStatistics;
+import nl.tue.san.util.ReadWriteSafeObject;
+
+/**
+ * Tests the recording of lock statistics by ReadWriteSafeObjects.
+ */
+public class LockStatisticsTest {
+
+    private static final ReadWriteSafeObject.Operation<Void> NOTHING = new ReadWriteSafeObject.Operation<Void>() {
+        @Override
+        public Void perform() {
+            return null;
+        }
+    };
+
+    /**
+     * Tests that nothing is recorded while the statistics are disabled.
+     */
+    @Test
+    public void testDisabled() {
+        LockStatistics statistics = new LockStatistics("disabled");
+        ReadWriteSafeObject object = new ReadWriteSafeObject();
+        object.setStatistics(statistics);
+
+        object.readOp(NOTHING);
+        object.writeOp(NOTHING);
+
+        Assert.assertEquals(0, statistics.getReadHold().getCount());
+        Assert.assertEquals(0, statistics.getWriteHold().getCount());
+        Assert.assertTrue(statistics.getLongestHeld().isEmpty());
+    }
+
+    /**
+     * Tests that reads and writes are recorded separately, and that the longest held operation is
+     * attributed to the place it was performed from.
+     */
+    @Test
+    public void testRecorded() {
+        LockStatistics statistics = new LockStatistics("recorded");
+        statistics.setEnabled(true);
+        ReadWriteSafeObject object = new ReadWriteSafeObject();
+        object.setStatistics(statistics);
+
+        for(int i = 0; i < 3; ++i)
+            object.readOp(NOTHING);
+        object.writeOp(new ReadWriteSafeObject.Operation<Void>() {
+            @Override
+            public Void perform() {
+                sleep(20);
+                return null;
+            }
+        });
+
+        Assert.assertEquals(3, statistics.getReadWait().getCount());
+        Assert.assertEquals(3, statistics.getReadHold().getCount());
+        Assert.assertEquals(1, statistics.getWriteHold().getCount());
+        Assert.assertTrue(statistics.getWriteHold().getMaxNanos() >= TimeUnit.MILLISECONDS.toNanos(20));
+
+        LockStatistics.HeldOperation longest = statistics.getLongestHeld().get(0);
+        Assert.assertTrue(longest.isWrite());
+        Assert.assertTrue(longest.getCallSite(), longest.getCallSite().contains("testRecorded"));
+
+        statistics.reset();
+        Assert.assertEquals(0, statistics.getWriteHold().getCount());
+        Assert.assertTrue(statistics.getLongestHeld().isEmpty());
+    }
+
+    /**
+     * Tests that a method is taken as the place an operation was performed from even if its name
+     * ends like the operations of a lock, while the operations of a TaskSet are skipped.
+     */
+    @Test
+    public void testCallSite() {
+        LockStatistics statistics = new LockStatistics("call site");
+        statistics.setEnabled(true);
+        ReadWriteSafeObject object = new ReadWriteSafeObject();
+        object.setStatistics(statistics);
+        this.performOp(object);
+        Assert.assertTrue(statistics.getLongestHeld().get(0).getCallSite(), statistics.getLongestHeld().get(0).getCallSite().contains("performOp"));
+
+        statistics.reset();
+        TaskSet taskSet = new TaskSet("call site");
+        taskSet.setStatistics(statistics);
+        taskSet.readOp(NOTHING);
+        Assert.assertTrue(statistics.getLongestHeld().get(0).getCallSite(), statistics.getLongestHeld().get(0).getCallSite().contains("testCallSite"));
+    }
+
+    private void performOp(ReadWriteSafeObject object) {
+        object.writeOp(NOTHING);
+    }
+
+    /**
+     * Tests that the time a reader waits for a writer, and the writer that keeps it waiting, are
+     * recorded in statistics that are shared by name.
+     */
+    @Test
+    public void testContention() throws InterruptedException {
+        LockStatistics statistics = LockStatistics.named("LockStatisticsTest");
+        statistics.reset();
+        statistics.setEnabled(true);
+        final ReadWriteSafeObject object = new ReadWriteSafeObject("LockStatisticsTest");
+        Assert.assertSame(statistics, object.getStatistics());
+
+        final CountDownLatch locked = new CountDownLatch(1);
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                object.writeOp(new ReadWriteSafeObject.Operation<Void>() {
+                    @Override
+                    public Void perform() {
+                        locked.countDown();
+                        sleep(50);
+                        return null;
+                    }
+                });
+            }
+        });
+        writer.start();
+        locked.await();
+        object.readOp(NOTHING);
+        writer.join();
+
+        Assert.assertTrue(statistics.getReadWait().getMaxNanos() >= TimeUnit.MILLISECONDS.toNanos(20));
+        Assert.assertTrue(statistics.getWriteHold().getMaxNanos() >= TimeUnit.MILLISECONDS.toNanos(50));
+        Assert.assertTrue(LockStatistics.dumpAll().contains("LockStatisticsTest"));
+
+        statistics.setEnabled(false);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package nl.tue.san.sanseminar;
+
+import android.os.Debug;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import nl.tue.san.tasks.Task;
+import nl.tue.san.tasks.TaskSet;
+import nl.tue.san.util.ReadWriteSafeObject;
+
+/**
+ * Tests that the hot read paths of TaskSets, which don't lock, and the boolean operations of
+ * ReadWriteSafeObject don't allocate, by counting the bytes the current thread allocates while
+ * calling them.
+ */
+public class OperationAllocationTest {
+
+    private static final int CALLS = 10000;
+
+    private static final ReadWriteSafeObject.BooleanOperation<String> EMPTY = new ReadWriteSafeObject.BooleanOperation<String>() {
+        @Override
+        public boolean perform(String context) {
+            return context.isEmpty();
+        }
+    };
+
+    /**
+     * Sink for results, so that the calls can't be optimised away.
+     */
+    private static volatile long sink;
+
+    /**
+     * Tests that the lookups of a TaskSet don't allocate.
+     */
+    @Test
+    public void testTaskSetReads() {
+        final TaskSet taskSet = new TaskSet("allocation",
+                Task.createImmediateTaskWithoutThreshold("T1", 0xFFFF0000, 10, 10, 2, 1),
+                Task.createImmediateTaskWithoutThreshold("T2", 0xFF00FF00, 20, 20, 2, 2));
+        final Task t2 = taskSet.get(1);
+
+        long bytes = allocated(new Runnable() {
+            @Override
+            public void run() {
+                for(int i = 0; i < CALLS; ++i) {
+                    long result = taskSet.size();
+                    result += taskSet.contains("T1") ? 1 : 0;
+                    result += taskSet.contains(t2) ? 1 : 0;
+                    result += taskSet.get(i & 1).getPeriod();
+                    result += taskSet.get("T2").getPeriod();
+                    sink = result;
+                }
+            }
+        });
+        Assert.assertEquals("Bytes allocated by "+CALLS+" TaskSet reads", 0, bytes);
+    }
+
+    /**
+     * Tests that boolean operations with a context don't allocate, neither on a ReadWriteSafeObject
+     * nor on a TaskSet.
+     */
+    @Test
+    public void testBooleanOperations() {
+        final ReadWriteSafeObject object = new ReadWriteSafeObject();
+        final TaskSet taskSet = new TaskSet("allocation");
+
+        long bytes = allocated(new Runnable() {
+            @Override
+            public void run() {
+                for(int i = 0; i < CALLS; ++i) {
+                    long result = object.readBooleanOp(EMPTY, "") ? 1 : 0;
+                    result += taskSet.readBooleanOp(EMPTY, "") ? 1 : 0;
+                    sink = result;
+                }
+            }
+        });
+        Assert.assertEquals("Bytes allocated by "+CALLS+" rounds of boolean operations", 0, bytes);
+    }
+
+    /**
+     * Run the given runnable once to warm up, and then count the bytes the current thread
+     * allocates while running it again.
+     *
+     * This uses the deprecated allocation counting of {@link Debug} on purpose: it is the only
+     * counter of the allocations of a single thread. {@link Debug#getRuntimeStat(String)} only
+     * counts the allocations of the whole process, which would include those of other threads,
+     * and isn't available before API level 23.
+     */
+    @SuppressWarnings("deprecation")
+    private static long allocated(Runnable runnable) {
+        runnable.run();
+        Debug.startAllocCounting();
+        try {
+            Debug.resetThreadAllocSize();
+            runnable.run();
+            return Debug.getThreadAllocSize();
+        } finally {
+            Debug.stopAllocCounting();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package nl.tue.san.sanseminar;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import nl.tue.san.analysis.PriorityAssignment;
+import nl.tue.san.tasks.Task;
+import nl.tue.san.tasks.TaskSet;
+
+/**
+ * Tests the priority assignment against an exhaustive search on small sets.
+ */
+public class PriorityAssignmentTest {
+
+    /**
+     * Tests on a set that rate-monotonic priorities don't make schedulable that others are found.
+     */
+    @Test
+    public void testDeadlines() {
+        // T2 has the longer period, but the shorter deadline.
+        List<Task> tasks = new ArrayList<>();
+        tasks.add(Task.createImmediateTaskWithoutThreshold("T1", 0xFF000000, 10, 10, 4, 2));
+        tasks.add(Task.createImmediateTaskWithoutThreshold("T2", 0xFF000000, 20, 5, 3, 1));
+        Assert.assertFalse(TestTasks.schedulable(tasks));
+
+        PriorityAssignment assignment = new PriorityAssignment(tasks, false);
+        Assert.assertTrue(assignment.assign());
+        Assert.assertEquals(1, assignment.getPriority(0));
+        Assert.assertEquals(2, assignment.getPriority(1));
+        Assert.assertTrue(TestTasks.schedulable(with(tasks, assignment)));
+    }
+
+    /**
+     * Tests on random small sets that priorities are found whenever any permutation of them is
+     * schedulable, and that thresholds only help.
+     */
+    @Test
+    public void testExhaustive() {
+        Random random = new Random(1);
+        for(int round = 0; round < 300; ++round) {
+            List<Task> tasks = TestTasks.tasks(random, 2 + random.nextInt(4), 0.7 + random.nextDouble() / 3);
+
+            PriorityAssignment assignment = new PriorityAssignment(tasks, false);
+            boolean assigned = assignment.assign();
+            Assert.assertEquals(exists(tasks), assigned);
+            if(assigned) {
+                Assert.assertTrue(TestTasks.schedulable(with(tasks, assignment)));
+                for(int i = 0; i < tasks.size(); ++i)
+                    Assert.assertEquals(Task.NO_PREEMPTION_THRESHOLD, assignment.getThreshold(i));
+            }
+
+            PriorityAssignment withThresholds = new PriorityAssignment(tasks, true);
+            if(withThresholds.assign()) {
+                Assert.assertTrue(TestTasks.schedulable(with(tasks, withThresholds)));
+            } else {
+                Assert.assertFalse(assigned);
+            }
+        }
+    }
+
+    /**
+     * Tests that the priorities are written back to the TaskSet without changing its order.
+     */
+    @Test
+    public void testApply() {
+        List<Task> tasks = TestTasks.tasks(new Random(2), 10, 0.6);
+        TaskSet taskSet = new TaskSet("priorities", tasks);
+        Assert.assertTrue(PriorityAssignment.assign(taskSet, true));
+
+        List<Task> ordered = taskSet.getOrderedTasks();
+        boolean[] used = new boolean[tasks.size() + 1];
+        for(int i = 0; i < tasks.size(); ++i) {
+            Assert.assertEquals(tasks.get(i).getName(), ordered.get(i).getName());
+            Assert.assertFalse(used[ordered.get(i).getPriority()]);
+            used[ordered.get(i).getPriority()] = true;
+        }
+        Assert.assertTrue(TestTasks.schedulable(ordered));
+    }
+
+    /**
+     * Tests on large sets that the priorities that are found are schedulable.
+     */
+    @Test
+    public void testScaling() {
+        Random random = new Random(3);
+        for(int size : new int[]{ 50, 100, 250, 500 }) {
+            List<Task> tasks = TestTasks.tasks(random, size, 0.7);
+            for(boolean thresholds : new boolean[]{ false, true }) {
+                PriorityAssignment assignment = new PriorityAssignment(tasks, thresholds);
+                if(assignment.assign())
+                    Assert.assertTrue(TestTasks.schedulable(with(tasks, assignment)));
+            }
+        }
+    }
+
+    /**
+     * Determine by trying all permutations of the priorities whether any makes the tasks
+     * schedulable preemptively.
+     */
+    private static boolean exists(List<Task> tasks) {
+        int[][] priorities = new int[tasks.size()][tasks.size()];
+        for(int i = 0; i < tasks.size(); ++i)
+            for(int priority = 1; priority <= tasks.size(); ++priority)
+                priorities[i][priority - 1] = priority;
+        return TestTasks.exists(tasks, priorities, null);
+    }
+
+    private static List<Task> with(List<Task> tasks, PriorityAssignment assignment) {
+        List<Task> result = new ArrayList<>();
+        for(int i = 0; i < tasks.size(); ++i)
+            result.add(TestTasks.copy(tasks.get(i), assignment.getPriority(i), assignment.getThreshold(i)));
+        return result;
+    }
+}
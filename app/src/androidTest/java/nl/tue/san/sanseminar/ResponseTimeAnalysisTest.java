@@ -0,0 +1,148 @@
+package nl.tue.san.sanseminar;
+
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import nl.tue.san.analysis.ResponseTimeAnalysis;
+import nl.tue.san.analysis.ResponseTimes;
+import nl.tue.san.tasks.Task;
+import nl.tue.san.tasks.TaskSet;
+
+/**
+ * Tests the response-time analysis against response times that were worked out by hand.
+ */
+public class ResponseTimeAnalysisTest {
+
+    private static Task task(String name, int period, int computation, int priority, int threshold) {
+        return Task.createImmediateTask(name, 0xFF000000, period, period, computation, priority, threshold);
+    }
+
+    /**
+     * Tests fully preemptive scheduling, which the analysis must reduce to.
+     */
+    @Test
+    public void testPreemptive() {
+        ResponseTimes times = ResponseTimeAnalysis.analyse(new TaskSet("preemptive",
+                task("T1", 4, 1, 3, Task.NO_PREEMPTION_THRESHOLD),
+                task("T2", 5, 2, 2, Task.NO_PREEMPTION_THRESHOLD),
+                task("T3", 20, 5, 1, Task.NO_PREEMPTION_THRESHOLD)));
+
+        Assert.assertEquals(1, times.getResponseTime("T1"));
+        Assert.assertEquals(3, times.getResponseTime("T2"));
+        Assert.assertEquals(15, times.getResponseTime("T3"));
+        Assert.assertEquals(0, times.getBlocking(1));
+        Assert.assertTrue(times.isSchedulable());
+    }
+
+    /**
+     * Tests a threshold that keeps a middle priority task from preempting the lowest priority task,
+     * which blocks the middle priority task and shortens the response time of the lowest one.
+     */
+    @Test
+    public void testThreshold() {
+        ResponseTimes times = ResponseTimeAnalysis.analyse(new TaskSet("threshold",
+                task("T1", 4, 1, 3, Task.NO_PREEMPTION_THRESHOLD),
+                task("T2", 5, 2, 2, Task.NO_PREEMPTION_THRESHOLD),
+                task("T3", 20, 5, 1, 3)));
+
+        Assert.assertEquals(1, times.getResponseTime("T1"));
+        Assert.assertEquals(0, times.getBlocking(0));
+        Assert.assertEquals(5, times.getBlocking(1));
+        // The active period of T2 contains three of its jobs, of which the first is the worst.
+        Assert.assertEquals(3, times.getJobs(1));
+        Assert.assertEquals(10, times.getResponseTime("T2"));
+        Assert.assertEquals(10, times.getResponseTime("T3"));
+        Assert.assertFalse(times.isSchedulable(1));
+        Assert.assertTrue(times.isSchedulable(2));
+    }
+
+    /**
+     * Tests non-preemptive scheduling, in which the second job of the highest priority task is
+     * still affected by the blocking of the first.
+     */
+    @Test
+    public void testNonPreemptive() {
+        ResponseTimes times = ResponseTimeAnalysis.analyse(new TaskSet("non-preemptive",
+                task("T1", 4, 1, 3, 4),
+                task("T2", 5, 2, 2, 4),
+                task("T3", 20, 5, 1, 4)));
+
+        Assert.assertEquals(5, times.getBlocking(0));
+        Assert.assertEquals(2, times.getJobs(0));
+        Assert.assertEquals(6, times.getResponseTime("T1"));
+    }
+
+    /**
+     * Tests a deadline beyond the period, for which a later job in the active period has the
+     * longest response time.
+     */
+    @Test
+    public void testArbitraryDeadline() {
+        ResponseTimes times = ResponseTimeAnalysis.analyse(new TaskSet("arbitrary",
+                Task.createImmediateTaskWithoutThreshold("T1", 0xFF000000, 70, 70, 26, 2),
+                Task.createImmediateTaskWithoutThreshold("T2", 0xFF000000, 100, 200, 62, 1)));
+
+        Assert.assertEquals(26, times.getResponseTime("T1"));
+        Assert.assertEquals(118, times.getResponseTime("T2"));
+        Assert.assertEquals(7, times.getJobs(1));
+        Assert.assertTrue(times.isSchedulable());
+    }
+
+    /**
+     * Tests that tasks that can't complete all their work have an unbounded response time, while
+     * tasks that have a higher priority are still analysed.
+     */
+    @Test
+    public void testOverload() {
+        ResponseTimes times = ResponseTimeAnalysis.analyse(new TaskSet("overload",
+                task("T1", 2, 2, 2, Task.NO_PREEMPTION_THRESHOLD),
+                task("T2", 10, 1, 1, Task.NO_PREEMPTION_THRESHOLD)));
+
+        Assert.assertEquals(2, times.getResponseTime("T1"));
+        Assert.assertFalse(times.isBounded(1));
+        Assert.assertEquals(ResponseTimes.UNBOUNDED, times.getResponseTime("T2"));
+        Assert.assertFalse(times.isSchedulable());
+    }
+
+    /**
+     * Tests that periods and computation times close to the largest int are analysed without
+     * wrapping around, as intermediate values exceed the range of an int.
+     */
+    @Test
+    public void testLargeValues() {
+        ResponseTimes times = ResponseTimeAnalysis.analyse(new TaskSet("overflow",
+                task("T1", Integer.MAX_VALUE - 1, Integer.MAX_VALUE - 2, 2, Task.NO_PREEMPTION_THRESHOLD),
+                task("T2", Integer.MAX_VALUE, 1, 1, Task.NO_PREEMPTION_THRESHOLD)));
+
+        Assert.assertEquals(Integer.MAX_VALUE - 2, times.getResponseTime("T1"));
+        Assert.assertTrue(times.isBounded(1));
+        Assert.assertEquals(Integer.MAX_VALUE - 1, times.getResponseTime("T2"));
+    }
+
+    /**
+     * Tests that every task of a set of 150 tasks with random thresholds gets a bounded response
+     * time.
+     */
+    @Test
+    public void testLargeTaskSet() {
+        Random random = new Random(150);
+        List<Task> tasks = new ArrayList<>();
+        for(int i = 0; i < 150; ++i) {
+            int period = 1000 + random.nextInt(99000);
+            int computation = Math.max(1, (int) (period * 0.9 / 150 * random.nextDouble()));
+            int priority = 150 - i;
+            tasks.add(task("T"+i, period, computation, priority, priority + random.nextInt(10)));
+        }
+        TaskSet taskSet = new TaskSet("large", tasks);
+
+        ResponseTimes times = ResponseTimeAnalysis.analyse(taskSet);
+
+        for(int i = 0; i < times.size(); ++i)
+            Assert.assertTrue(times.isBounded(i));
+    }
+}
@@ -0,0 +1,129 @@
+package nl.tue.san.sanseminar;
+
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import nl.tue.san.analysis.Policy;
+import nl.tue.san.analysis.ResponseTimes;
+import nl.tue.san.simulation.Fingerprint;
+import nl.tue.san.simulation.ResultCache;
+import nl.tue.san.simulation.Schedule;
+import nl.tue.san.tasks.Task;
+import nl.tue.san.tasks.TaskSet;
+
+/**
+ * Tests the cache of simulation and analysis results.
+ */
+public class ResultCacheTest {
+
+    private static final long HORIZON = 100000000L;
+
+    /**
+     * Tests that fingerprints depend on everything but the color and the TaskSet.
+     */
+    @Test
+    public void testFingerprint() {
+        TaskSet taskSet = taskSet("A", 10);
+        Fingerprint fingerprint = Fingerprint.ofSchedule(taskSet.getOrderedTasks(), Policy.FPPS, HORIZON);
+
+        Assert.assertEquals(fingerprint, Fingerprint.ofSchedule(taskSet("B", 10).getOrderedTasks(), Policy.forScheduler("fp"), HORIZON));
+        taskSet.get(3).setColor(0xFF00FF00);
+        Assert.assertEquals(fingerprint, Fingerprint.ofSchedule(taskSet.getOrderedTasks(), Policy.FPPS, HORIZON));
+
+        Assert.assertNotEquals(fingerprint, Fingerprint.ofSchedule(taskSet.getOrderedTasks(), Policy.EDF, HORIZON));
+        Assert.assertNotEquals(fingerprint, Fingerprint.ofSchedule(taskSet.getOrderedTasks(), Policy.FPPS, HORIZON + 1));
+        Assert.assertNotEquals(fingerprint, Fingerprint.ofAnalysis(taskSet.getOrderedTasks()));
+        taskSet.get(3).setComputation(taskSet.get(3).getComputation() + 1);
+        Assert.assertNotEquals(fingerprint, Fingerprint.ofSchedule(taskSet.getOrderedTasks(), Policy.FPPS, HORIZON));
+    }
+
+    /**
+     * Tests that a repeated request is answered from memory with the same result.
+     */
+    @Test
+    public void testHits() {
+        ResultCache cache = new ResultCache(1024 * 1024, null, 0);
+        TaskSet taskSet = taskSet("A", 20);
+
+        Schedule schedule = cache.getSchedule(taskSet, "FPTS", HORIZON);
+        Assert.assertSame(schedule, cache.getSchedule(taskSet, "fpts", HORIZON));
+
+        ResponseTimes responseTimes = cache.getResponseTimes(taskSet);
+        Assert.assertSame(responseTimes, cache.getResponseTimes(taskSet("B", 20)));
+
+        Assert.assertEquals(2, cache.getHits());
+        Assert.assertEquals(2, cache.getMisses());
+        Assert.assertEquals(2, cache.size());
+    }
+
+    /**
+     * Tests that the least recently used results are dropped once they don't fit anymore.
+     */
+    @Test
+    public void testEviction() {
+        ResultCache cache = new ResultCache(64 * 1024, null, 0);
+        List<Schedule> schedules = new ArrayList<>();
+        for(int i = 1; i <= 20; ++i)
+            schedules.add(cache.getSchedule(taskSet("A", i), "EDF", HORIZON / 100));
+
+        Assert.assertTrue(cache.getEvictions() > 0);
+        Assert.assertTrue(cache.getBytes() <= 64 * 1024);
+        Assert.assertSame(schedules.get(19), cache.getSchedule(taskSet("A", 20), "EDF", HORIZON / 100));
+        Assert.assertNotSame(schedules.get(0), cache.getSchedule(taskSet("A", 1), "EDF", HORIZON / 100));
+    }
+
+    /**
+     * Tests that results that dropped out of memory are read back from their files.
+     */
+    @Test
+    public void testDisk() throws IOException {
+        File directory = File.createTempFile("results", "");
+        Assert.assertTrue(directory.delete());
+
+        ResultCache cache = new ResultCache(1024 * 1024, directory, 1024 * 1024);
+        TaskSet taskSet = taskSet("A", 15);
+        Schedule schedule = cache.getSchedule(taskSet, "FPNS", HORIZON);
+        ResponseTimes responseTimes = cache.getResponseTimes(taskSet);
+
+        ResultCache reopened = new ResultCache(1024 * 1024, directory, 1024 * 1024);
+        Schedule read = reopened.getSchedule(taskSet, "FPNS", HORIZON);
+        ResponseTimes readTimes = reopened.getResponseTimes(taskSet);
+        Assert.assertEquals(2, reopened.getDiskHits());
+        Assert.assertEquals(0, reopened.getMisses());
+
+        Assert.assertEquals(schedule.toString(), read.toString());
+        Assert.assertEquals(schedule.getIntervalCount(), read.getIntervalCount());
+        for(int i = 0; i < schedule.getIntervalCount(); ++i) {
+            Assert.assertEquals(schedule.getIntervalTask(i), read.getIntervalTask(i));
+            Assert.assertEquals(schedule.getIntervalStart(i), read.getIntervalStart(i));
+            Assert.assertEquals(schedule.getIntervalEnd(i), read.getIntervalEnd(i));
+        }
+        for(int i = 0; i < schedule.size(); ++i)
+            Assert.assertEquals(schedule.getWorstResponseTime(i), read.getWorstResponseTime(i));
+        Assert.assertEquals(responseTimes.toString(), readTimes.toString());
+
+        // A directory that is too small only keeps the most recent results.
+        ResultCache small = new ResultCache(1024 * 1024, directory, 1);
+        small.getSchedule(taskSet("A", 3), "EDF", HORIZON);
+        Assert.assertTrue(small.getDiskEvictions() > 0);
+
+        File[] files = directory.listFiles();
+        if(files != null)
+            for(File file : files)
+                file.delete();
+        directory.delete();
+    }
+
+    private static TaskSet taskSet(String name, int size) {
+        List<Task> tasks = new ArrayList<>();
+        for(int i = 0; i < size; ++i)
+            tasks.add(new Task("T"+i, 0xFF000000, i * 7, 100000 + 1000 * i, 100000 + 1000 * i, 1000 + 50 * i, size - i, i % 3 == 0 ? size - i + 2 : Task.NO_PREEMPTION_THRESHOLD));
+        return new TaskSet(name, tasks);
+    }
+}
@@ -0,0 +1,143 @@
+package nl.tue.san.sanseminar;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+
+import nl.tue.san.analysis.Sensitivity;
+import nl.tue.san.analysis.SensitivityAnalysis;
+import nl.tue.san.tasks.Task;
+import nl.tue.san.tasks.TaskSet;
+
+/**
+ * Tests the sensitivity analysis against the response-time analysis of changed tasks.
+ */
+public class SensitivityAnalysisTest {
+
+    /**
+     * Tests the margins of two preemptive tasks, which can be determined by hand.
+     */
+    @Test
+    public void testPreemptive() throws InterruptedException {
+        TaskSet taskSet = new TaskSet("sensitivity",
+                Task.createImmediateTaskWithoutThreshold("T1", 0xFF000000, 4, 4, 1, 2),
+                Task.createImmediateTaskWithoutThreshold("T2", 0xFF000000, 6, 6, 2, 1));
+
+        Sensitivity sensitivity = new SensitivityAnalysis(taskSet).analyse();
+        Assert.assertTrue(sensitivity.isSchedulable());
+        Assert.assertEquals(2, sensitivity.getMaxComputation(0));
+        Assert.assertEquals(4, sensitivity.getMaxComputation(1));
+        Assert.assertEquals(2.0, sensitivity.getComputationFactor(1), 0);
+        Assert.assertEquals(2, sensitivity.getMinPeriod(0));
+        Assert.assertEquals(3, sensitivity.getMinPeriod(1));
+
+        // Scaling by any factor beyond 1 rounds T1 up to 2 and T2 up to 3, which misses a deadline.
+        Assert.assertEquals(1, sensitivity.getCriticalScalingFactor(), 1e-6);
+    }
+
+    /**
+     * Tests on random tasks with thresholds that every margin is schedulable, and that going just
+     * beyond it isn't.
+     */
+    @Test
+    public void testMargins() throws InterruptedException {
+        Random random = new Random(1);
+        for(int round = 0; round < 20; ++round) {
+            List<Task> tasks = tasks(random, 6);
+            Sensitivity sensitivity = new SensitivityAnalysis(tasks).analyse();
+            Assert.assertEquals(TestTasks.schedulable(tasks), sensitivity.isSchedulable());
+
+            for(int i = 0; i < tasks.size(); ++i) {
+                Task task = tasks.get(i);
+                int computation = task.getComputation(), period = task.getPeriod();
+
+                long max = sensitivity.getMaxComputation(i);
+                if(max > 0) {
+                    task.setComputation((int) max);
+                    Assert.assertTrue(TestTasks.schedulable(tasks));
+                }
+                if(max < Math.min(task.getDeadline(), period)) {
+                    task.setComputation((int) max + 1);
+                    Assert.assertFalse(TestTasks.schedulable(tasks));
+                }
+                task.setComputation(computation);
+
+                long min = sensitivity.getMinPeriod(i);
+                if(min != Sensitivity.NONE) {
+                    task.setPeriod((int) min);
+                    Assert.assertTrue(TestTasks.schedulable(tasks));
+                    if(min > computation) {
+                        task.setPeriod((int) min - 1);
+                        Assert.assertFalse(TestTasks.schedulable(tasks));
+                    }
+                }
+                task.setPeriod(period);
+            }
+
+            double factor = sensitivity.getCriticalScalingFactor();
+            if(factor > 0)
+                Assert.assertTrue(scaled(tasks, factor));
+            Assert.assertFalse(scaled(tasks, factor * 1.0001 + 1e-6));
+        }
+    }
+
+    /**
+     * Tests that a large analysis can be cancelled, before and while it runs.
+     */
+    @Test
+    public void testCancel() throws InterruptedException {
+        List<Task> tasks = tasks(new Random(2), 150);
+
+        final SensitivityAnalysis analysis = new SensitivityAnalysis(tasks);
+        analysis.cancel();
+        try {
+            analysis.analyse();
+            Assert.fail("Cancelled analysis completed");
+        } catch (CancellationException e) {
+            Assert.assertTrue(analysis.isCancelled());
+        }
+
+        final SensitivityAnalysis running = new SensitivityAnalysis(tasks);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                running.cancel();
+            }
+        }).start();
+        try {
+            running.analyse();
+        } catch (CancellationException e) {
+            // The analysis may have completed before it was cancelled.
+        }
+        Assert.assertTrue(running.isCancelled());
+    }
+
+    private static boolean scaled(List<Task> tasks, double factor) {
+        List<Task> scaled = new ArrayList<>();
+        for(Task task : tasks) {
+            double computation = Math.ceil(task.getComputation() * factor);
+            if(computation > Integer.MAX_VALUE)
+                return false;
+            scaled.add(new Task(task.getName(), task.getColor(), 0, task.getPeriod(), task.getDeadline(), (int) computation, task.getPriority(), task.getThreshold()));
+        }
+        return TestTasks.schedulable(scaled);
+    }
+
+    /**
+     * Create tasks with deadlines around their period, random priorities and, for about half of
+     * them, a threshold.
+     */
+    private static List<Task> tasks(Random random, int size) {
+        List<Task> tasks = new ArrayList<>();
+        for(Task task : TestTasks.tasks(random, size, 20, 11, 0.9, 0.9, 1.1)) {
+            int priority = random.nextInt(size);
+            int threshold = random.nextBoolean() ? Task.NO_PREEMPTION_THRESHOLD : priority + random.nextInt(3);
+            tasks.add(TestTasks.copy(task, priority, threshold));
+        }
+        return tasks;
+    }
+}
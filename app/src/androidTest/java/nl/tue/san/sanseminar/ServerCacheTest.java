@@ -0,0 +1,115 @@
+package nl.tue.san.sanseminar;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import nl.tue.san.net.Callback;
+import nl.tue.san.net.ResponseCache;
+import nl.tue.san.net.Server;
+
+/**
+ * Tests how the bodies that are stored by the {@link ResponseCache} are delivered by the
+ * {@link Server}, against a local server that fails every request.
+ */
+public class ServerCacheTest {
+
+    private static final long TIMEOUT = 5000;
+
+    private ServerSocket socket;
+    private Thread responder;
+    private String apiBase;
+    private ResponseCache cache;
+
+    @Before
+    public void startServer() throws IOException {
+        this.socket = new ServerSocket(0, 8, InetAddress.getByName("127.0.0.1"));
+        this.responder = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while(!socket.isClosed()) {
+                    try (Socket connection = socket.accept()) {
+                        OutputStream out = connection.getOutputStream();
+                        out.write("HTTP/1.1 503 Service Unavailable\r\nContent-Length: 0\r\nConnection: close\r\n\r\n".getBytes("US-ASCII"));
+                        out.flush();
+                    } catch (IOException e) {
+                        // The socket was closed at the end of the test.
+                    }
+                }
+            }
+        });
+        this.responder.start();
+
+        File directory = File.createTempFile("responses", "");
+        Assert.assertTrue(directory.delete());
+        this.cache = new ResponseCache(directory);
+        this.apiBase = Server.getApiBase();
+        Server.setApiBase("http://127.0.0.1:"+this.socket.getLocalPort()+"/");
+        Server.setCache(this.cache);
+    }
+
+    @After
+    public void stopServer() throws IOException, InterruptedException {
+        Server.setCache(null);
+        Server.setApiBase(this.apiBase);
+        this.cache.clear();
+        this.socket.close();
+        this.responder.join();
+    }
+
+    /**
+     * Tests that a request of which the stored body was delivered doesn't report its failure, so
+     * the stored body stays in place.
+     */
+    @Test
+    public void testFailureAfterCachedBody() throws InterruptedException {
+        this.cache.put("schedulers", "\"1\"", null, "[\"fp\"]");
+
+        RecordingCallback callback = new RecordingCallback();
+        Server.GET("schedulers", callback);
+
+        Assert.assertTrue(callback.succeeded.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        Assert.assertEquals("[\"fp\"]", callback.body.get());
+        Assert.assertFalse(callback.failed.await(TIMEOUT / 5, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Tests that a request without a stored body does report its failure.
+     */
+    @Test
+    public void testFailureWithoutCachedBody() throws InterruptedException {
+        RecordingCallback callback = new RecordingCallback();
+        Server.GET("schedulers", callback);
+
+        Assert.assertTrue(callback.failed.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(1, callback.succeeded.getCount());
+    }
+
+    private static class RecordingCallback implements Callback {
+        private final CountDownLatch succeeded = new CountDownLatch(1);
+        private final CountDownLatch failed = new CountDownLatch(1);
+        private final AtomicReference<String> body = new AtomicReference<>();
+
+        @Override
+        public void onSuccess(String data) {
+            this.body.set(data);
+            this.succeeded.countDown();
+        }
+
+        @Override
+        public void onFailure() {
+            this.failed.countDown();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package nl.tue.san.sanseminar;
+
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import nl.tue.san.analysis.Hyperperiod;
+import nl.tue.san.analysis.Policy;
+import nl.tue.san.analysis.ResponseTimeAnalysis;
+import nl.tue.san.analysis.ResponseTimes;
+import nl.tue.san.simulation.Schedule;
+import nl.tue.san.simulation.Simulator;
+import nl.tue.san.tasks.Task;
+import nl.tue.san.tasks.TaskSet;
+
+/**
+ * Tests the local simulation of schedules.
+ */
+public class SimulatorTest {
+
+    /**
+     * Tests that a lower priority job is preempted under FPPS, but not under FPNS.
+     */
+    @Test
+    public void testPreemptiveAndNonPreemptive() {
+        TaskSet taskSet = new TaskSet("simulation",
+                Task.createTaskWithoutThreshold("T1", 0xFF000000, 5, 5, 2, 2, 1),
+                Task.createTaskWithoutThreshold("T2", 0xFF000000, 10, 10, 4, 1, 0));
+
+        Schedule preemptive = Simulator.simulate(taskSet, "fpps", 10);
+        assertIntervals(preemptive, "T2[0,1) T1[1,3) T2[3,6) T1[6,8)");
+        Assert.assertEquals(1, preemptive.getPreemptionCount());
+        Assert.assertEquals(1, preemptive.getPreemptionTime(0));
+        Assert.assertEquals("T2", preemptive.getName(preemptive.getPreemptedTask(0)));
+        Assert.assertEquals("T1", preemptive.getName(preemptive.getPreemptingTask(0)));
+        Assert.assertTrue(preemptive.isSchedulable());
+
+        Schedule nonPreemptive = Simulator.simulate(taskSet, "FPNS", 10);
+        assertIntervals(nonPreemptive, "T2[0,4) T1[4,6) T1[6,8)");
+        Assert.assertEquals(0, nonPreemptive.getPreemptionCount());
+        Assert.assertEquals(5, nonPreemptive.getWorstResponseTime(0));
+    }
+
+    /**
+     * Tests that a job with a preemption threshold is only preempted by jobs with at least its
+     * threshold, and keeps its threshold while it is preempted.
+     */
+    @Test
+    public void testPreemptionThreshold() {
+        TaskSet taskSet = new TaskSet("simulation",
+                new Task("A", 0xFF000000, 0, 100, 100, 4, 1, 3),
+                new Task("B", 0xFF000000, 1, 100, 100, 1, 2, Task.NO_PREEMPTION_THRESHOLD),
+                new Task("C", 0xFF000000, 2, 100, 100, 1, 3, Task.NO_PREEMPTION_THRESHOLD));
+
+        Schedule schedule = Simulator.simulate(taskSet, "FPTS", 100);
+        assertIntervals(schedule, "A[0,2) C[2,3) A[3,5) B[5,6)");
+        Assert.assertEquals(1, schedule.getPreemptionCount());
+    }
+
+    /**
+     * Tests that EDF schedules a set with a utilization of 1 that misses deadlines under FPPS.
+     */
+    @Test
+    public void testEarliestDeadlineFirst() {
+        TaskSet taskSet = new TaskSet("simulation",
+                Task.createImmediateTaskWithoutThreshold("T1", 0xFF000000, 4, 4, 2, 2),
+                Task.createImmediateTaskWithoutThreshold("T2", 0xFF000000, 6, 6, 3, 1));
+
+        Schedule edf = Simulator.simulate(taskSet, "EDF", 12);
+        Assert.assertTrue(edf.isSchedulable());
+        Assert.assertEquals(3, edf.getCompletedJobs(0));
+        Assert.assertEquals(2, edf.getCompletedJobs(1));
+
+        Schedule fixed = Simulator.simulate(taskSet, "FPPS", 12);
+        Assert.assertFalse(fixed.isSchedulable());
+        Assert.assertEquals("T2", fixed.getName(fixed.getMissTask(0)));
+        Assert.assertEquals(6, fixed.getMissDeadline(0));
+        Assert.assertEquals(7, fixed.getMissFinish(0));
+    }
+
+    /**
+     * Tests that a job that didn't finish by the horizon is reported when its deadline has passed.
+     */
+    @Test
+    public void testUnfinished() {
+        TaskSet taskSet = new TaskSet("simulation",
+                Task.createImmediateTaskWithoutThreshold("T1", 0xFF000000, 10, 5, 8, 1));
+
+        Schedule schedule = Simulator.simulate(taskSet, "FPPS", 6);
+        Assert.assertEquals(1, schedule.getDeadlineMissCount());
+        Assert.assertEquals(Schedule.UNFINISHED, schedule.getMissFinish(0));
+        Assert.assertEquals(0, schedule.getCompletedJobs(0));
+    }
+
+    /**
+     * Tests that the longest simulated response times of synchronously released tasks with
+     * distinct priorities under FPPS equal the response times determined by the analysis.
+     */
+    @Test
+    public void testAgreesWithAnalysis() {
+        Random random = new Random(1);
+        for(int round = 0; round < 50; ++round) {
+            List<Task> tasks = new ArrayList<>();
+            int[] periods = {10, 12, 15, 20, 24, 30, 40, 60};
+            List<Integer> priorities = Arrays.asList(0, 1, 2, 3, 4);
+            Collections.shuffle(priorities, random);
+            double utilization = 0;
+            for(int i = 0; i < 5; ++i) {
+                int period = periods[random.nextInt(periods.length)];
+                int computation = 1 + random.nextInt(period / 4);
+                tasks.add(Task.createImmediateTaskWithoutThreshold("T"+i, 0xFF000000, period, period, computation, priorities.get(i)));
+                utilization += (double) computation / period;
+            }
+            if(utilization > 1)
+                continue;
+
+            ResponseTimes analysis = new ResponseTimeAnalysis(tasks).analyse();
+            if(!analysis.isSchedulable())
+                continue;
+            Schedule schedule = new Simulator(tasks, Policy.FPPS).simulate(Hyperperiod.of(tasks));
+            for(int i = 0; i < tasks.size(); ++i)
+                Assert.assertEquals(tasks.get(i).getName(), analysis.getResponseTime(i), schedule.getWorstResponseTime(i));
+        }
+    }
+
+    /**
+     * Tests that simulating sparse tasks across a very long horizon only costs time per job.
+     */
+    @Test
+    public void testLongHorizon() {
+        Random random = new Random(2);
+        List<Task> tasks = new ArrayList<>();
+        long horizon = 1000000000L;
+        for(int i = 0; i < 20; ++i) {
+            int period = 10000000 + random.nextInt(90000000);
+            tasks.add(Task.createTaskWithoutThreshold("T"+i, 0xFF000000, period, period, 1 + random.nextInt(period / 40), i, random.nextInt(period)));
+        }
+
+        for(Policy policy : Policy.values()) {
+            long start = System.nanoTime();
+            Schedule schedule = new Simulator(tasks, policy).simulate(horizon);
+            long elapsed = System.nanoTime() - start;
+
+            long completed = 0;
+            for(int i = 0; i < tasks.size(); ++i)
+                completed += schedule.getCompletedJobs(i);
+            Assert.assertTrue(schedule.getEvents() <= 2 * completed + tasks.size());
+            Assert.assertTrue(elapsed < 1000000000L);
+        }
+    }
+
+    private static void assertIntervals(Schedule schedule, String expected) {
+        StringBuilder actual = new StringBuilder();
+        for(int i = 0; i < schedule.getIntervalCount(); ++i)
+            actual.append(i == 0 ? "" : " ").append(schedule.getName(schedule.getIntervalTask(i)))
+                    .append('[').append(schedule.getIntervalStart(i)).append(',').append(schedule.getIntervalEnd(i)).append(')');
+        Assert.assertEquals(expected, actual.toString());
+    }
+}
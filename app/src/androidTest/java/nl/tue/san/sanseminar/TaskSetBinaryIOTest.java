@@ -0,0 +1,148 @@
+package nl.tue.san.sanseminar;
+
+import android.util.JsonReader;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import nl.tue.san.tasks.Task;
+import nl.tue.san.tasks.TaskSet;
+import nl.tue.san.tasks.TaskSetBinaryIO;
+import nl.tue.san.tasks.TaskSetIO;
+
+/**
+ * Tests for the binary representation of TaskSets, and a comparison with the JSON representation.
+ */
+public class TaskSetBinaryIOTest {
+
+    private final Task t1 = Task.createImmediateTask("T1", 0xFFFF0000,10,5,2,5,5);
+    private final Task t2 = Task.createImmediateTaskWithoutThreshold("T2", 0xFFFF00FF,10,5,2,5);
+    private final Task t3 = new Task("T\u00e2che \u2603", 0xFF123456, 300, 1 << 30, 70000, 1, 0, 0);
+
+    private final TaskSet ts12 = new TaskSet("t1t2",t1,t2);
+    private final TaskSet ts21 = new TaskSet("t2t1",t2,t1);
+    private final TaskSet ts1 = new TaskSet("t1",t1);
+    private final TaskSet ts3 = new TaskSet("t3",t3);
+    private final TaskSet empty = new TaskSet("");
+
+    /**
+     * Tests that we can translate a TaskSet to the binary representation and back without losing
+     * information, just like {@link TaskSetIOTest#testTranslationLoses()} does for JSON.
+     * @throws IOException If something goes wrong when translating.
+     */
+    @Test
+    public void testTranslationLoses() throws IOException {
+        Assert.assertEquals(ts12, roundTrip(ts12));
+        Assert.assertEquals(ts1, roundTrip(ts1));
+        Assert.assertEquals(ts21, roundTrip(ts21));
+        Assert.assertEquals(ts3, roundTrip(ts3));
+        Assert.assertEquals(empty, roundTrip(empty));
+
+        Assert.assertNotEquals(ts1, roundTrip(ts12));
+    }
+
+    /**
+     * Tests that multiple TaskSets that share task names are read back in order.
+     * @throws IOException If something goes wrong when translating.
+     */
+    @Test
+    public void testMultipleTranslation() throws IOException {
+        List<TaskSet> taskSets = Arrays.asList(ts12, ts21, ts1, ts3, empty);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TaskSetBinaryIO.write(taskSets, out);
+        Assert.assertEquals(taskSets, TaskSetBinaryIO.readAll(new ByteArrayInputStream(out.toByteArray())));
+    }
+
+    /**
+     * Tests that the binary representation is recognized, and JSON is not mistaken for it.
+     * @throws Exception If something goes wrong when translating.
+     */
+    @Test
+    public void testDetection() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TaskSetBinaryIO.write(ts12, out);
+        BufferedInputStream binary = new BufferedInputStream(new ByteArrayInputStream(out.toByteArray()));
+        Assert.assertTrue(TaskSetBinaryIO.isBinary(binary));
+        // Detection must not consume anything.
+        Assert.assertEquals(ts12, TaskSetBinaryIO.read(binary));
+
+        byte[] json = TaskSetIO.toJSON(ts12).toString().getBytes("UTF-8");
+        Assert.assertFalse(TaskSetBinaryIO.isBinary(new BufferedInputStream(new ByteArrayInputStream(json))));
+        Assert.assertFalse(TaskSetBinaryIO.isBinary(new BufferedInputStream(new ByteArrayInputStream(new byte[0]))));
+    }
+
+    /**
+     * Tests that a truncated representation is rejected rather than read partially.
+     */
+    @Test
+    public void testTruncated() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TaskSetBinaryIO.write(ts12, out);
+        byte[] bytes = out.toByteArray();
+        for(int length = 0; length < bytes.length; ++length) {
+            try {
+                TaskSetBinaryIO.read(new ByteArrayInputStream(Arrays.copyOf(bytes, length)));
+                Assert.fail("Read a TaskSet from "+length+" of "+bytes.length+" bytes");
+            } catch (IOException e) {
+                // Expected
+            }
+        }
+    }
+
+    /**
+     * Compares the size of the binary representation with the JSON representation that is used
+     * for snapshots, using a library of 200 TaskSets of 20 tasks each, and checks that both are
+     * read back to the same TaskSets. Their speed is compared by
+     * {@link BenchmarkTest#testBinaryComparedWithJSON()}.
+     */
+    @Test
+    public void testComparisonWithJSON() throws JSONException, IOException {
+        List<TaskSet> taskSets = new ArrayList<>();
+        for(int i = 0; i < 200; ++i) {
+            List<Task> tasks = new ArrayList<>();
+            for(int j = 0; j < 20; ++j)
+                tasks.add(new Task("T"+j, 0xFF000000 | (i * 7919 + j * 104729), j, 100 + 10 * j, 90 + 10 * j, 1 + j % 5, j, j % 3 == 0 ? Task.NO_PREEMPTION_THRESHOLD : j + 1));
+            taskSets.add(new TaskSet("TaskSet "+i, tasks));
+        }
+
+        JSONArray array = new JSONArray();
+        for(TaskSet taskSet : taskSets)
+            array.put(TaskSetIO.toJSON(taskSet));
+        String json = array.toString();
+
+        JsonReader reader = new JsonReader(new StringReader(json));
+        List<TaskSet> read = new ArrayList<>();
+        reader.beginArray();
+        while(reader.hasNext())
+            read.add(TaskSetIO.fromJSON(reader));
+        reader.endArray();
+        Assert.assertEquals(taskSets, read);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TaskSetBinaryIO.write(taskSets, out);
+        byte[] binary = out.toByteArray();
+        Assert.assertEquals(taskSets, TaskSetBinaryIO.readAll(new ByteArrayInputStream(binary)));
+
+        Assert.assertTrue("Binary representation should be smaller than JSON", binary.length * 3 < json.getBytes("UTF-8").length);
+    }
+
+    /**
+     * Write the given TaskSet in the binary representation, and read it back.
+     */
+    private static TaskSet roundTrip(TaskSet taskSet) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TaskSetBinaryIO.write(taskSet, out);
+        return TaskSetBinaryIO.read(new ByteArrayInputStream(out.toByteArray()));
+    }
+}
@@ -0,0 +1,162 @@
+package nl.tue.san.sanseminar;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import nl.tue.san.tasks.Task;
+import nl.tue.san.tasks.TaskSet;
+import nl.tue.san.util.ReadWriteSafeObject;
+
+/**
+ * Tests the behaviour of TaskSets under concurrent use.
+ */
+public class TaskSetConcurrencyTest {
+
+    private static final int TASKS = 20;
+    private static final long DURATION = 1000;
+
+    /**
+     * Tests that concurrent insertions of distinct tasks are all retained.
+     */
+    @Test
+    public void testConcurrentPuts() throws InterruptedException {
+        final TaskSet taskSet = new TaskSet("concurrent");
+        final int threads = 4, perThread = 250;
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for(int t = 0; t < threads; ++t) {
+            final int thread = t;
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    await(start);
+                    for(int i = 0; i < perThread; ++i)
+                        taskSet.put(task("T"+thread+"-"+i, i));
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for(Thread worker : workers)
+            worker.join();
+
+        Assert.assertEquals(threads * perThread, taskSet.size());
+        for(int t = 0; t < threads; ++t)
+            for(int i = 0; i < perThread; ++i)
+                Assert.assertTrue(taskSet.contains("T"+t+"-"+i));
+    }
+
+    /**
+     * Tests that readers never observe a TaskSet halfway through a modification, while a writer
+     * keeps removing and reinserting tasks: at most one task is missing and no task occurs twice.
+     */
+    @Test
+    public void testConsistentReads() throws InterruptedException {
+        final TaskSet taskSet = new TaskSet("consistent", tasks());
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicReference<String> failure = new AtomicReference<>();
+
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                int i = 0;
+                while(running.get()) {
+                    Task task = task("T"+(i % TASKS), i);
+                    taskSet.remove(task);
+                    taskSet.put(task);
+                    ++i;
+                }
+            }
+        });
+        writer.start();
+
+        long end = System.currentTimeMillis() + DURATION / 2;
+        while(System.currentTimeMillis() < end && failure.get() == null) {
+            List<Task> ordered = taskSet.getOrderedTasks();
+            Set<String> names = new HashSet<>();
+            for(Task task : ordered)
+                if(!names.add(task.getName()))
+                    failure.set("Task "+task.getName()+" occurs twice");
+            if(ordered.size() < TASKS - 1 || ordered.size() > TASKS)
+                failure.set("Observed "+ordered.size()+" tasks");
+        }
+
+        running.set(false);
+        writer.join();
+        Assert.assertNull(failure.get(), failure.get());
+        Assert.assertEquals(TASKS, taskSet.size());
+    }
+
+    /**
+     * Tests that the modifications within a writeOp are never observed halfway by a readOp, while
+     * a writer keeps removing and reinserting tasks within a writeOp.
+     */
+    @Test
+    public void testLockedOperations() throws InterruptedException {
+        final TaskSet taskSet = new TaskSet("locked", tasks());
+        final AtomicBoolean running = new AtomicBoolean(true);
+
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                int i = 0;
+                while(running.get()) {
+                    final Task task = task("T"+(i % TASKS), i);
+                    taskSet.writeOp(new ReadWriteSafeObject.Operation<Void>() {
+                        @Override
+                        public Void perform() {
+                            taskSet.remove(task);
+                            taskSet.put(task);
+                            return null;
+                        }
+                    });
+                    ++i;
+                }
+            }
+        });
+        writer.start();
+
+        long end = System.currentTimeMillis() + DURATION / 2;
+        int observed = TASKS;
+        while(System.currentTimeMillis() < end && observed == TASKS) {
+            observed = taskSet.readOp(new ReadWriteSafeObject.Operation<Integer>() {
+                @Override
+                public Integer perform() {
+                    return taskSet.size();
+                }
+            });
+        }
+
+        running.set(false);
+        writer.join();
+        Assert.assertEquals(TASKS, observed);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Task task(String name, int priority) {
+        return Task.createImmediateTaskWithoutThreshold(name, 0xFF000000, 100, 100, 10, priority);
+    }
+
+    private static List<Task> tasks() {
+        List<Task> tasks = new ArrayList<>();
+        for(int i = 0; i < TASKS; ++i)
+            tasks.add(task("T"+i, i));
+        return tasks;
+    }
+}
@@ -0,0 +1,113 @@
+package nl.tue.san.sanseminar;
+
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+
+import nl.tue.san.analysis.Policy;
+import nl.tue.san.generation.AcceptanceRatio;
+import nl.tue.san.generation.AcceptanceRatioEvaluation;
+import nl.tue.san.generation.AcceptanceRatioIO;
+import nl.tue.san.generation.TaskSetGenerator;
+import nl.tue.san.tasks.Task;
+
+/**
+ * Tests the generation of random sets and the evaluation of acceptance ratios.
+ */
+public class TaskSetGeneratorTest {
+
+    /**
+     * Tests that sets are reproducible from their index, and have the configured properties.
+     */
+    @Test
+    public void testGenerate() {
+        TaskSetGenerator generator = new TaskSetGenerator(42);
+        generator.setSize(20);
+        generator.setPeriods(TaskSetGenerator.Periods.LOG_UNIFORM, 1000, 100000);
+        generator.setDeadlines(TaskSetGenerator.Deadlines.CONSTRAINED);
+        generator.setThresholds(TaskSetGenerator.Thresholds.RANDOM);
+
+        for(long index = 0; index < 100; ++index) {
+            List<Task> tasks = generator.generateTasks(0.8, index);
+            Assert.assertEquals(tasks.toString(), generator.generateTasks(0.8, index).toString());
+            Assert.assertEquals(20, tasks.size());
+
+            double utilization = 0;
+            boolean[] priorities = new boolean[21];
+            for(Task task : tasks) {
+                utilization += (double) task.getComputation() / task.getPeriod();
+                Assert.assertTrue(task.getPeriod() >= 1000 && task.getPeriod() <= 100000);
+                Assert.assertTrue(task.getDeadline() >= task.getComputation() && task.getDeadline() <= task.getPeriod());
+                Assert.assertTrue(task.getThreshold() > task.getPriority() && task.getThreshold() <= 21);
+                Assert.assertFalse(priorities[task.getPriority()]);
+                priorities[task.getPriority()] = true;
+                for(Task other : tasks)
+                    if(other.getDeadline() < task.getDeadline())
+                        Assert.assertTrue(other.getPriority() > task.getPriority());
+            }
+            // Rounding the computation times changes the utilization of a task by at most 0.5 / 1000.
+            Assert.assertEquals(0.8, utilization, 20 * 0.5 / 1000);
+        }
+        Assert.assertNotEquals(generator.generateTasks(0.8, 0).toString(), generator.generateTasks(0.8, 1).toString());
+    }
+
+    /**
+     * Tests that harmonic periods divide each other, and that UUniFast-Discard respects the
+     * maximal utilization of a task.
+     */
+    @Test
+    public void testHarmonicDiscard() {
+        TaskSetGenerator generator = new TaskSetGenerator(7);
+        generator.setSize(5);
+        generator.setPeriods(TaskSetGenerator.Periods.HARMONIC, 100, 10000);
+        generator.setUtilizations(TaskSetGenerator.Utilizations.UUNIFAST_DISCARD, 0.4);
+
+        for(long index = 0; index < 100; ++index) {
+            List<Task> tasks = generator.generateTasks(1.0, index);
+            for(Task task : tasks) {
+                Assert.assertTrue((double) task.getComputation() / task.getPeriod() <= 0.4 + 0.01);
+                for(Task other : tasks)
+                    Assert.assertTrue(task.getPeriod() % other.getPeriod() == 0 || other.getPeriod() % task.getPeriod() == 0);
+            }
+        }
+    }
+
+    /**
+     * Tests that acceptance ratios drop with the utilization, that EDF dominates the fixed
+     * priority policies, and that the results survive both output formats.
+     */
+    @Test
+    public void testEvaluation() throws InterruptedException, IOException {
+        TaskSetGenerator generator = new TaskSetGenerator(1);
+        generator.setDeadlines(TaskSetGenerator.Deadlines.CONSTRAINED);
+        double[] utilizations = { 0.5, 0.7, 0.9, 1.0 };
+        AcceptanceRatio ratio = new AcceptanceRatioEvaluation(generator, utilizations, 2000, Policy.FPPS, Policy.FPNS, Policy.EDF).evaluate();
+
+        for(int u = 0; u < utilizations.length; ++u) {
+            Assert.assertTrue(ratio.getAccepted(u, 2) >= ratio.getAccepted(u, 0));
+            if(u > 0)
+                for(int p = 0; p < ratio.getPolicyCount(); ++p)
+                    Assert.assertTrue(ratio.getRatio(u, p) <= ratio.getRatio(u - 1, p));
+        }
+        Assert.assertTrue(ratio.getRatio(0, 2) > 0.5);
+
+        StringWriter csv = new StringWriter();
+        AcceptanceRatioIO.writeCsv(ratio, csv);
+        String[] lines = csv.toString().split("\n");
+        Assert.assertEquals("utilization,samples,FPPS,FPNS,EDF", lines[0]);
+        Assert.assertEquals(utilizations.length + 1, lines.length);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        AcceptanceRatioIO.write(ratio, new DataOutputStream(bytes));
+        AcceptanceRatio read = AcceptanceRatioIO.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        Assert.assertEquals(ratio.toString(), read.toString());
+    }
+}
@@ -1,9 +1,14 @@
 package nl.tue.san.sanseminar;
 
+import android.util.JsonReader;
+
 import org.json.JSONException;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.io.StringReader;
+
 import nl.tue.san.tasks.Task;
 import nl.tue.san.tasks.TaskSet;
 import nl.tue.san.tasks.TaskSetIO;
@@ -34,4 +39,16 @@ public class TaskSetIOTest {
 
         Assert.assertNotEquals(ts1, TaskSetIO.fromJSON(TaskSetIO.toJSON(ts12)));
     }
+
+    /**
+     * Tests that reading a TaskSet with the streaming reader gives the same result as reading it
+     * through a JSONObject.
+     * @throws IOException If something goes wrong when reading.
+     */
+    @Test
+    public void testStreamingTranslation() throws JSONException, IOException {
+        Assert.assertEquals(ts12, TaskSetIO.fromJSON(new JsonReader(new StringReader(TaskSetIO.toJSON(ts12).toString()))));
+        Assert.assertEquals(ts21, TaskSetIO.fromJSON(new JsonReader(new StringReader(TaskSetIO.toJSON(ts21).toString()))));
+        Assert.assertEquals(ts1, TaskSetIO.fromJSON(new JsonReader(new StringReader(TaskSetIO.toJSON(ts1).toString()))));
+    }
 }
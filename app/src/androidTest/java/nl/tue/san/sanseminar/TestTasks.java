@@ -0,0 +1,119 @@
+package nl.tue.san.sanseminar;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import nl.tue.san.analysis.ResponseTimeAnalysis;
+import nl.tue.san.tasks.Task;
+
+/**
+ * Creates and checks the tasks that the tests of the analyses use.
+ */
+final class TestTasks {
+
+    private TestTasks() {
+    }
+
+    /**
+     * Create tasks with distinct deadline-monotonic priorities, periods between 10 and 110 times the
+     * number of tasks, deadlines between a third of their period and their period, and about the
+     * given utilization.
+     */
+    static List<Task> tasks(Random random, int size, double utilization) {
+        return tasks(random, size, 1, 100 * size, utilization, 1.0 / 3, 1);
+    }
+
+    /**
+     * Create tasks with distinct deadline-monotonic priorities and about the given utilization.
+     * @param unit The unit of which every period is a multiple.
+     * @param units About the number of units the longest period has.
+     * @param minDeadline The shortest deadline of a task relative to its period.
+     * @param maxDeadline The longest deadline of a task relative to its period.
+     */
+    static List<Task> tasks(Random random, int size, int unit, int units, double utilization, double minDeadline, double maxDeadline) {
+        int[] periods = new int[size], deadlines = new int[size];
+        double[] shares = new double[size];
+        double total = 0;
+        for(int i = 0; i < size; ++i) {
+            periods[i] = unit * (1 + units / 10 + random.nextInt(units));
+            int shortest = (int) Math.ceil(periods[i] * minDeadline), longest = (int) (periods[i] * maxDeadline);
+            deadlines[i] = Math.max(1, shortest + random.nextInt(longest - shortest + 1));
+            total += shares[i] = random.nextDouble();
+        }
+
+        int[] priorities = deadlineMonotonic(deadlines);
+        List<Task> tasks = new ArrayList<>();
+        for(int i = 0; i < size; ++i) {
+            int computation = (int) Math.max(1, Math.min(deadlines[i], Math.round(periods[i] * utilization * shares[i] / total)));
+            tasks.add(Task.createImmediateTaskWithoutThreshold("T"+i, 0xFF000000, periods[i], deadlines[i], computation, priorities[i]));
+        }
+        return tasks;
+    }
+
+    /**
+     * Determine distinct deadline-monotonic priorities, with 1 the lowest. Of tasks with the same
+     * deadline, the one given first has the higher priority.
+     * @param deadlines The deadline of every task.
+     * @return The priority of every task.
+     */
+    static int[] deadlineMonotonic(int[] deadlines) {
+        int[] priorities = new int[deadlines.length];
+        for(int i = 0; i < deadlines.length; ++i) {
+            priorities[i] = 1;
+            for(int j = 0; j < deadlines.length; ++j)
+                if(deadlines[j] > deadlines[i] || (deadlines[j] == deadlines[i] && j > i))
+                    ++priorities[i];
+        }
+        return priorities;
+    }
+
+    /**
+     * Copy the given task with another priority and threshold.
+     */
+    static Task copy(Task task, int priority, int threshold) {
+        return new Task(task.getName(), task.getColor(), task.getOffset(), task.getPeriod(), task.getDeadline(), task.getComputation(), priority, threshold);
+    }
+
+    /**
+     * Indicates whether the response-time analysis finds that every task meets its deadline.
+     */
+    static boolean schedulable(List<Task> tasks) {
+        return new ResponseTimeAnalysis(tasks).analyse().isSchedulable();
+    }
+
+    /**
+     * Determine by trying every combination of the given priorities and thresholds whether any
+     * makes the tasks schedulable. Priorities that are already used by an earlier task are
+     * skipped, so every combination has distinct priorities.
+     * @param tasks The tasks.
+     * @param priorities For every task the priorities to try.
+     * @param thresholds For every task the thresholds to try, or null to try only
+     *                   {@link Task#NO_PREEMPTION_THRESHOLD}.
+     * @return Whether any combination makes the tasks schedulable.
+     */
+    static boolean exists(List<Task> tasks, int[][] priorities, int[][] thresholds) {
+        return exists(tasks, priorities, thresholds, new ArrayList<Task>(), 0);
+    }
+
+    private static boolean exists(List<Task> tasks, int[][] priorities, int[][] thresholds, List<Task> chosen, int i) {
+        if(i == tasks.size())
+            return schedulable(chosen);
+
+        outer:
+        for(int p = 0; p < priorities[i].length; ++p) {
+            for(Task task : chosen)
+                if(task.getPriority() == priorities[i][p])
+                    continue outer;
+            int[] options = thresholds == null ? new int[]{ Task.NO_PREEMPTION_THRESHOLD } : thresholds[i];
+            for(int threshold : options) {
+                chosen.add(copy(tasks.get(i), priorities[i][p], threshold));
+                boolean found = exists(tasks, priorities, thresholds, chosen, i + 1);
+                chosen.remove(i);
+                if(found)
+                    return true;
+            }
+        }
+        return false;
+    }
+}
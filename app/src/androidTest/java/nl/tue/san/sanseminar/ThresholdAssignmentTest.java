@@ -0,0 +1,143 @@
+package nl.tue.san.sanseminar;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import nl.tue.san.analysis.ThresholdAssignment;
+import nl.tue.san.tasks.Task;
+import nl.tue.san.tasks.TaskSet;
+
+/**
+ * Tests the assignment of preemption thresholds against an exhaustive search on small sets.
+ */
+public class ThresholdAssignmentTest {
+
+    /**
+     * Tests on a set that is only schedulable with thresholds that they are found.
+     */
+    @Test
+    public void testThresholds() {
+        // Preemptively, T3 misses its deadline, and non-preemptively T1 does. If T2 can't preempt
+        // T3, and T1 can't preempt T2 either, all of them meet their deadlines.
+        List<Task> tasks = new ArrayList<>();
+        tasks.add(Task.createImmediateTaskWithoutThreshold("T1", 0xFF000000, 5, 3, 1, 3));
+        tasks.add(Task.createImmediateTaskWithoutThreshold("T2", 0xFF000000, 6, 6, 2, 2));
+        tasks.add(Task.createImmediateTaskWithoutThreshold("T3", 0xFF000000, 7, 7, 3, 1));
+        Assert.assertFalse(TestTasks.schedulable(tasks));
+
+        ThresholdAssignment assignment = new ThresholdAssignment(tasks);
+        Assert.assertTrue(assignment.assign());
+        Assert.assertEquals(4, assignment.getThreshold(0));
+        Assert.assertEquals(4, assignment.getThreshold(1));
+        Assert.assertEquals(3, assignment.getThreshold(2));
+        Assert.assertTrue(TestTasks.schedulable(with(tasks, assignment)));
+    }
+
+    /**
+     * Tests on random small sets that thresholds are found whenever any exist, that they make the
+     * set schedulable, and that none of them can be raised any further.
+     */
+    @Test
+    public void testExhaustive() {
+        Random random = new Random(1);
+        for(int round = 0; round < 200; ++round) {
+            List<Task> tasks = tasks(random, 2 + random.nextInt(4), 0.75 + random.nextDouble() / 3);
+            ThresholdAssignment assignment = new ThresholdAssignment(tasks);
+            boolean assigned = assignment.assign();
+            Assert.assertEquals(exists(tasks), assigned);
+            if(!assigned)
+                continue;
+
+            List<Task> result = with(tasks, assignment);
+            Assert.assertTrue(TestTasks.schedulable(result));
+            for(int i = 0; i < result.size(); ++i) {
+                Task task = result.get(i);
+                int threshold = task.getThreshold();
+                int raised = above(tasks, threshold - 1);
+                if(raised == Integer.MAX_VALUE)
+                    continue;
+                task.setThreshold(raised + 1);
+                Assert.assertFalse(TestTasks.schedulable(result));
+                task.setThreshold(threshold);
+            }
+        }
+    }
+
+    /**
+     * Tests that the thresholds are written back to the TaskSet without changing its order.
+     */
+    @Test
+    public void testApply() {
+        List<Task> tasks = tasks(new Random(2), 10, 0.7);
+        TaskSet taskSet = new TaskSet("thresholds", tasks);
+        Assert.assertTrue(ThresholdAssignment.assign(taskSet));
+
+        List<Task> ordered = taskSet.getOrderedTasks();
+        Assert.assertEquals(tasks.size(), ordered.size());
+        for(int i = 0; i < tasks.size(); ++i) {
+            Assert.assertEquals(tasks.get(i).getName(), ordered.get(i).getName());
+            Assert.assertEquals(tasks.get(i).getComputation(), ordered.get(i).getComputation());
+            Assert.assertTrue(ordered.get(i).getThreshold() > ordered.get(i).getPriority());
+        }
+        Assert.assertTrue(TestTasks.schedulable(ordered));
+    }
+
+    /**
+     * Tests on large sets that the thresholds that are found are schedulable.
+     */
+    @Test
+    public void testScaling() {
+        Random random = new Random(3);
+        for(int size : new int[]{ 50, 100, 250, 500 }) {
+            List<Task> tasks = tasks(random, size, 0.6);
+            ThresholdAssignment assignment = new ThresholdAssignment(tasks);
+            if(assignment.assign())
+                Assert.assertTrue(TestTasks.schedulable(with(tasks, assignment)));
+        }
+    }
+
+    /**
+     * Determine by trying all thresholds whether any make the tasks schedulable.
+     */
+    private static boolean exists(List<Task> tasks) {
+        int[][] priorities = new int[tasks.size()][], thresholds = new int[tasks.size()][];
+        for(int i = 0; i < tasks.size(); ++i) {
+            int priority = tasks.get(i).getPriority();
+            priorities[i] = new int[]{ priority };
+            thresholds[i] = new int[tasks.size() + 1 - priority];
+            for(int threshold = priority + 1; threshold <= tasks.size() + 1; ++threshold)
+                thresholds[i][threshold - priority - 1] = threshold;
+        }
+        return TestTasks.exists(tasks, priorities, thresholds);
+    }
+
+    /**
+     * Get the lowest priority of the tasks that exceeds the given priority, or
+     * {@link Integer#MAX_VALUE} if there is none.
+     */
+    private static int above(List<Task> tasks, int priority) {
+        int above = Integer.MAX_VALUE;
+        for(Task task : tasks)
+            if(task.getPriority() > priority)
+                above = Math.min(above, task.getPriority());
+        return above;
+    }
+
+    private static List<Task> with(List<Task> tasks, ThresholdAssignment assignment) {
+        List<Task> result = new ArrayList<>();
+        for(int i = 0; i < tasks.size(); ++i)
+            result.add(TestTasks.copy(tasks.get(i), tasks.get(i).getPriority(), assignment.getThreshold(i)));
+        return result;
+    }
+
+    /**
+     * Create tasks with deadlines between half their period and their period.
+     */
+    private static List<Task> tasks(Random random, int size, double utilization) {
+        return TestTasks.tasks(random, size, 1, 100 * size, utilization, 0.5, 1);
+    }
+}
@@ -0,0 +1,100 @@
+package nl.tue.san.sanseminar;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import nl.tue.san.analysis.DemandAnalysis;
+import nl.tue.san.analysis.Policy;
+import nl.tue.san.analysis.TieredAnalysis;
+import nl.tue.san.analysis.Verdict;
+import nl.tue.san.analysis.Verdict.Tier;
+import nl.tue.san.tasks.Task;
+import nl.tue.san.tasks.TaskSet;
+
+/**
+ * Tests that the tiered analysis agrees with the exact analyses, and that the cheap tests decide
+ * where they can.
+ */
+public class TieredAnalysisTest {
+
+    /**
+     * Tests which tier decides some sets that can be checked by hand.
+     */
+    @Test
+    public void testTiers() {
+        TaskSet light = new TaskSet("light",
+                Task.createImmediateTaskWithoutThreshold("T1", 0xFF000000, 10, 10, 2, 2),
+                Task.createImmediateTaskWithoutThreshold("T2", 0xFF000000, 20, 20, 4, 1));
+        Assert.assertEquals(Tier.LIU_LAYLAND, TieredAnalysis.analyse(light, "FPPS").getTier());
+        Assert.assertEquals(Tier.DENSITY, TieredAnalysis.analyse(light, "EDF").getTier());
+        Assert.assertEquals(Tier.RESPONSE_TIME, TieredAnalysis.analyse(light, "FPNS").getTier());
+
+        // A utilization of 0.85 exceeds the bound of Liu and Layland, but 1.7 * 1.15 doesn't exceed 2.
+        TaskSet hyperbolic = new TaskSet("hyperbolic",
+                Task.createImmediateTaskWithoutThreshold("T1", 0xFF000000, 10, 10, 7, 2),
+                Task.createImmediateTaskWithoutThreshold("T2", 0xFF000000, 20, 20, 3, 1));
+        Verdict verdict = TieredAnalysis.analyse(hyperbolic, "RM");
+        Assert.assertTrue(verdict.isSchedulable());
+        Assert.assertEquals(Tier.HYPERBOLIC, verdict.getTier());
+        Assert.assertTrue(verdict.getTierNanos(Tier.LIU_LAYLAND) > 0);
+        Assert.assertEquals(0, verdict.getTierNanos(Tier.RESPONSE_TIME));
+
+        TaskSet overloaded = new TaskSet("overloaded",
+                Task.createImmediateTaskWithoutThreshold("T1", 0xFF000000, 10, 10, 6, 2),
+                Task.createImmediateTaskWithoutThreshold("T2", 0xFF000000, 10, 10, 5, 1));
+        verdict = TieredAnalysis.analyse(overloaded, "EDF");
+        Assert.assertFalse(verdict.isSchedulable());
+        Assert.assertEquals(Tier.UTILIZATION, verdict.getTier());
+    }
+
+    /**
+     * Tests on random sets that every policy gets the verdict of the exact analysis.
+     */
+    @Test
+    public void testExact() {
+        Random random = new Random(1);
+        for(Policy policy : Policy.values()) {
+            for(int round = 0; round < 300; ++round) {
+                List<Task> tasks = tasks(random, 1 + random.nextInt(20), 0.3 + random.nextDouble() * 0.8);
+                Verdict verdict = new TieredAnalysis(tasks, policy).analyse();
+                Assert.assertEquals(exact(tasks, policy), verdict.isSchedulable());
+            }
+        }
+    }
+
+    private static boolean exact(List<Task> tasks, Policy policy) {
+        if(policy == Policy.EDF)
+            return new DemandAnalysis(tasks).analyse();
+
+        List<Task> copy = new ArrayList<>();
+        for(Task task : tasks) {
+            int threshold = task.getThreshold();
+            if(policy == Policy.FPPS)
+                threshold = Task.NO_PREEMPTION_THRESHOLD;
+            else if(policy == Policy.FPNS)
+                threshold = Integer.MAX_VALUE;
+            copy.add(TestTasks.copy(task, task.getPriority(), threshold));
+        }
+        return TestTasks.schedulable(copy);
+    }
+
+    /**
+     * Create tasks with mostly deadline-monotonic priorities, deadlines between half their period
+     * and one and a half times their period, some thresholds and about the given utilization.
+     */
+    private static List<Task> tasks(Random random, int size, double utilization) {
+        List<Task> tasks = TestTasks.tasks(random, size, 1, 1000, utilization, 0.5, 1.5);
+        boolean shuffled = random.nextInt(4) == 0, thresholds = random.nextBoolean();
+        for(int i = 0; i < size; ++i) {
+            Task task = tasks.get(i);
+            int priority = shuffled ? 1 + random.nextInt(size) : task.getPriority();
+            int threshold = thresholds && random.nextBoolean() ? priority + 1 + random.nextInt(3) : Task.NO_PREEMPTION_THRESHOLD;
+            tasks.set(i, TestTasks.copy(task, priority, threshold));
+        }
+        return tasks;
+    }
+}
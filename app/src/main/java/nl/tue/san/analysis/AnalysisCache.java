@@ -0,0 +1,253 @@
+package nl.tue.san.analysis;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import nl.tue.san.tasks.Task;
+import nl.tue.san.tasks.TaskSet;
+
+/**
+ * Keeps the response-time analysis of a TaskSet up to date incrementally. Tasks are usually edited
+ * in place, so rather than relying on notifications the cache remembers the parameters each task
+ * had when it was last analysed, and compares them with the current ones on every
+ * {@link #analyse()}.
+ *
+ * A change of task j only affects task i if j has at least the priority of i, or j has a lower
+ * priority but i can't preempt it, either before or after the change, or if j is i itself. The
+ * response times of all other tasks are reused. An affected task is analysed again, starting its
+ * fixed point iterations from its previous active period and start times if every change that
+ * affects it can only increase them: more or longer work by tasks with at least its priority,
+ * more blocking, or a shorter period of the task itself. Otherwise it is analysed from scratch.
+ *
+ * Obtain the cache of a TaskSet with {@link TaskSet#getAnalysis()}.
+ */
+public class AnalysisCache {
+
+    /**
+     * How a change affects the analysis of a task.
+     */
+    private static final int UNAFFECTED = 0, WARM = 1, COLD = 2;
+
+    private final TaskSet taskSet;
+
+    /**
+     * The parameters and results of every task at its most recent analysis, by name.
+     */
+    private HashMap<String, Entry> entries = new HashMap<>();
+
+    private ResponseTimes responseTimes;
+    private long iterationsSaved;
+    private long totalIterationsSaved;
+    private int reused;
+    private int warmStarted;
+
+    /**
+     * Create a cache for the given TaskSet. Use {@link TaskSet#getAnalysis()} instead, so that all
+     * users of a TaskSet share its cache.
+     */
+    public AnalysisCache(TaskSet taskSet) {
+        this.taskSet = taskSet;
+    }
+
+    /**
+     * Get the response times of the tasks that are currently contained in the TaskSet, analysing
+     * only the tasks that are affected by changes since the previous call.
+     * @return The response times, in the current order of the TaskSet.
+     */
+    public synchronized ResponseTimes analyse() {
+        long start = System.nanoTime();
+
+        List<Task> tasks = this.taskSet.getOrderedTasks();
+        ResponseTimeAnalysis analysis = new ResponseTimeAnalysis(tasks);
+        int size = analysis.size();
+
+        HashMap<String, Entry> current = new HashMap<>(size * 4 / 3 + 1);
+        for(int p = 0; p < size; ++p) {
+            Entry entry = new Entry(analysis, p);
+            current.put(entry.name, entry);
+        }
+
+        // Collect the changes: tasks that were added, removed or whose parameters changed.
+        List<Entry> before = new ArrayList<>(), after = new ArrayList<>();
+        for(Entry entry : current.values()) {
+            Entry previous = this.entries.get(entry.name);
+            if(previous == null || !previous.sameParameters(entry)) {
+                before.add(previous);
+                after.add(entry);
+            }
+        }
+        for(Entry previous : this.entries.values()) {
+            if(!current.containsKey(previous.name)) {
+                before.add(previous);
+                after.add(null);
+            }
+        }
+
+        ResponseTimeAnalysis.TaskResult[] results = new ResponseTimeAnalysis.TaskResult[size];
+        long iterations = 0, saved = 0;
+        int reused = 0, warmStarted = 0;
+        for(int p = 0; p < size; ++p) {
+            Entry entry = current.get(analysis.getName(analysis.indexAt(p)));
+            Entry previous = this.entries.get(entry.name);
+
+            int effect = previous == null ? COLD : UNAFFECTED;
+            for(int c = 0; c < before.size() && effect != COLD; ++c)
+                effect = Math.max(effect, effect(entry, before.get(c), after.get(c)));
+
+            if(effect == UNAFFECTED) {
+                entry.result = previous.result;
+                ++reused;
+                saved += previous.result.iterations;
+            } else {
+                entry.result = analysis.analyseTask(p, effect == WARM ? previous.result : null, true);
+                iterations += entry.result.iterations;
+                if(effect == WARM) {
+                    ++warmStarted;
+                    saved += Math.max(0, previous.result.iterations - entry.result.iterations);
+                    // Remember what analysing from scratch took, to keep estimating the savings.
+                    entry.result.iterations = Math.max(entry.result.iterations, previous.result.iterations);
+                }
+            }
+            results[analysis.indexAt(p)] = entry.result;
+        }
+
+        this.entries = current;
+        this.iterationsSaved = saved;
+        this.totalIterationsSaved += saved;
+        this.reused = reused;
+        this.warmStarted = warmStarted;
+        this.responseTimes = analysis.collect(results, iterations, System.nanoTime() - start);
+        return this.responseTimes;
+    }
+
+    /**
+     * Forget all previous results, such that the next analysis starts from scratch.
+     */
+    public synchronized void invalidate() {
+        this.entries = new HashMap<>();
+        this.responseTimes = null;
+    }
+
+    /**
+     * Get the result of the most recent analysis, without checking for changes.
+     * @return The response times, or null if the TaskSet wasn't analysed yet.
+     */
+    public synchronized ResponseTimes getLatest() {
+        return this.responseTimes;
+    }
+
+    /**
+     * Get an estimate of the number of fixed point iterations the most recent analysis saved
+     * compared to analysing every task from scratch: the iterations of the tasks whose results
+     * were reused, and the difference for the tasks that were warm started.
+     */
+    public synchronized long getIterationsSaved() {
+        return this.iterationsSaved;
+    }
+
+    /**
+     * Get the number of iterations saved by all analyses, as {@link #getIterationsSaved()}.
+     */
+    public synchronized long getTotalIterationsSaved() {
+        return this.totalIterationsSaved;
+    }
+
+    /**
+     * Get the number of tasks whose results were reused by the most recent analysis.
+     */
+    public synchronized int getReused() {
+        return this.reused;
+    }
+
+    /**
+     * Get the number of tasks that the most recent analysis warm started.
+     */
+    public synchronized int getWarmStarted() {
+        return this.warmStarted;
+    }
+
+    /**
+     * Determine how a task changing from {@code before} to {@code after} affects the analysis of
+     * the given task. Either may be null if the task was added or removed.
+     */
+    private static int effect(Entry task, Entry before, Entry after) {
+        if(task.name.equals(after == null ? before.name : after.name))
+            return selfEffect(before, after);
+
+        int roleBefore = before == null ? Entry.NONE : before.roleFor(task);
+        int roleAfter = after == null ? Entry.NONE : after.roleFor(task);
+        if(roleBefore == Entry.NONE && roleAfter == Entry.NONE)
+            return UNAFFECTED;
+        if(roleBefore == Entry.NONE)
+            return WARM;
+        if(roleBefore != roleAfter)
+            return COLD;
+
+        if(roleAfter == Entry.INTERFERING) {
+            if(after.computation < before.computation || after.period > before.period)
+                return COLD;
+            boolean changed = after.computation != before.computation || after.period != before.period
+                    || after.priority >= task.preemption != before.priority >= task.preemption;
+            return changed ? WARM : UNAFFECTED;
+        } else {
+            if(after.computation < before.computation)
+                return COLD;
+            return after.computation != before.computation ? WARM : UNAFFECTED;
+        }
+    }
+
+    /**
+     * Determine how a change of a task affects its own analysis.
+     */
+    private static int selfEffect(Entry before, Entry after) {
+        if(before == null || after == null || before.priority != after.priority)
+            return COLD;
+        if(after.computation < before.computation || after.period > before.period)
+            return COLD;
+        // The threshold of a task only affects when its jobs finish, which is never warm started.
+        return WARM;
+    }
+
+    /**
+     * The parameters of a task that matter for the analysis, and its result.
+     */
+    private static final class Entry {
+
+        /**
+         * The roles a task can have in the analysis of another task.
+         */
+        private static final int NONE = 0, INTERFERING = 1, BLOCKING = 2;
+
+        private final String name;
+        private final long period;
+        private final long computation;
+        private final int priority;
+        private final long preemption;
+        private ResponseTimeAnalysis.TaskResult result;
+
+        private Entry(ResponseTimeAnalysis analysis, int p) {
+            this.name = analysis.getName(analysis.indexAt(p));
+            this.period = analysis.getPeriod(p);
+            this.computation = analysis.getComputation(p);
+            this.priority = analysis.getPriority(p);
+            this.preemption = analysis.getPreemption(p);
+        }
+
+        private boolean sameParameters(Entry other) {
+            return period == other.period && computation == other.computation
+                    && priority == other.priority && preemption == other.preemption;
+        }
+
+        /**
+         * Get the role of this task in the analysis of the given task.
+         */
+        private int roleFor(Entry task) {
+            if(priority >= task.priority)
+                return INTERFERING;
+            if(preemption > task.priority)
+                return BLOCKING;
+            return NONE;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package nl.tue.san.analysis;
+
+import java.util.List;
+
+import nl.tue.san.tasks.Task;
+import nl.tue.san.tasks.TaskSet;
+
+/**
+ * Exact schedulability test for preemptive earliest deadline first scheduling (EDF), by Quick
+ * Processor-demand Analysis (QPA) as described by Zhang and Burns. Tasks are schedulable if and
+ * only if the utilization is at most 1 and, for every absolute deadline t up to a bound L, the
+ * demand bound function
+ * <pre>h(t) = sum over all tasks i with D_i &lt;= t of (floor((t - D_i) / T_i) + 1) * C_i</pre>
+ * doesn't exceed t. The bound is the smaller of the length of the synchronous busy period and the
+ * bound of George et al., max(D_max, sum of (T_i - D_i) * U_i / (1 - U)). When the utilization is
+ * too close to 1 to rely on the latter, the hyperperiod bounds the busy period instead, and whether
+ * the utilization exceeds 1 is decided exactly by comparing the demand of a hyperperiod with its
+ * length.
+ *
+ * Rather than checking every deadline up to L, QPA walks backwards from the last one. If h(t) is
+ * smaller than t, no deadline between h(t) and t can be violated, so the walk continues at h(t);
+ * only if h(t) equals t it continues at the previous deadline. The walk ends when the demand no
+ * longer exceeds the smallest relative deadline. In practice this takes a number of steps that is
+ * close to the number of tasks, whereas the number of deadlines up to L grows with the periods.
+ *
+ * Offsets are ignored, so every task is assumed to be released simultaneously. This is the worst
+ * case, so tasks that are found schedulable are also schedulable with their offsets, but tasks
+ * with offsets may be schedulable when they are not found to be.
+ *
+ * All arithmetic is done on primitive longs with overflow detection. If the bound or the demand
+ * can't be represented, the tasks are considered not schedulable.
+ */
+public class DemandAnalysis {
+
+    /**
+     * Margin for rounding errors when comparing the utilization with 1.
+     */
+    private static final double UTILIZATION_MARGIN = 1e-9;
+
+    /**
+     * Value of the violated deadline if no deadline is violated.
+     */
+    public static final long NONE = -1;
+
+    private final long[] period;
+    private final long[] deadline;
+    private final long[] computation;
+    private final long hyperperiod;
+
+    private boolean analysed;
+    private boolean schedulable;
+    private long bound;
+    private long violation = NONE;
+    private long points;
+    private long elapsedNanos;
+
+    /**
+     * Create an analysis of the tasks that are currently contained in the given TaskSet. Later
+     * changes of the TaskSet or its tasks are not reflected in the analysis.
+     * @param taskSet The TaskSet to analyse.
+     */
+    public DemandAnalysis(TaskSet taskSet) {
+        this(taskSet.getOrderedTasks());
+    }
+
+    /**
+     * Create an analysis of the given tasks. Later changes of the tasks are not reflected in the
+     * analysis.
+     * @param tasks The tasks to analyse.
+     */
+    public DemandAnalysis(List<Task> tasks) {
+        int size = tasks.size();
+        this.period = new long[size];
+        this.deadline = new long[size];
+        this.computation = new long[size];
+        for(int i = 0; i < size; ++i) {
+            Task task = tasks.get(i);
+            this.period[i] = task.getPeriod();
+            this.deadline[i] = task.getDeadline();
+            this.computation[i] = task.getComputation();
+        }
+        this.hyperperiod = Hyperperiod.of(tasks);
+    }
+
+    /**
+     * Determine whether the tasks that are currently contained in the given TaskSet are
+     * schedulable with EDF.
+     * @param taskSet The TaskSet to analyse.
+     */
+    public static boolean isSchedulable(TaskSet taskSet) {
+        return new DemandAnalysis(taskSet).analyse();
+    }
+
+    /**
+     * Determine whether the tasks are schedulable with EDF. This is only done once; later calls
+     * return the same result.
+     * @return Whether no deadline is ever missed.
+     */
+    public synchronized boolean analyse() {
+        if(!this.analysed) {
+            long start = System.nanoTime();
+            try {
+                this.schedulable = this.walk();
+            } catch (ArithmeticException e) {
+                this.schedulable = false;
+            }
+            this.elapsedNanos = System.nanoTime() - start;
+            this.analysed = true;
+        }
+        return this.schedulable;
+    }
+
+    /**
+     * Walk backwards over the deadlines up to the bound, as long as none of them is violated.
+     * @throws ArithmeticException If the bound or the demand can't be represented.
+     */
+    private boolean walk() {
+        int size = this.period.length;
+        if(size == 0)
+            return true;
+
+        double utilization = 0;
+        long minDeadline = Long.MAX_VALUE;
+        for(int i = 0; i < size; ++i) {
+            utilization += (double) this.computation[i] / this.period[i];
+            minDeadline = Math.min(minDeadline, this.deadline[i]);
+        }
+        if(utilization > 1 + UTILIZATION_MARGIN)
+            return false;
+        if(utilization >= 1 - UTILIZATION_MARGIN && this.hyperperiodDemand() > this.hyperperiod)
+            return false;
+
+        this.bound = this.bound(utilization);
+        long t = this.deadlineBefore(LongMath.add(this.bound, 1));
+        while(t != NONE) {
+            ++this.points;
+            long demand = this.demand(t);
+            if(demand > t) {
+                this.violation = t;
+                return false;
+            }
+            if(demand <= minDeadline)
+                return true;
+            t = demand < t ? demand : this.deadlineBefore(t);
+        }
+        return true;
+    }
+
+    /**
+     * Determine the total computation time of all jobs that are released in the first hyperperiod.
+     * @throws ArithmeticException If the hyperperiod or the demand can't be represented.
+     */
+    private long hyperperiodDemand() {
+        if(this.hyperperiod == Hyperperiod.SATURATED)
+            throw new ArithmeticException("long overflow");
+        long demand = 0;
+        for(int i = 0; i < this.period.length; ++i)
+            demand = LongMath.add(demand, LongMath.multiply(this.hyperperiod / this.period[i], this.computation[i]));
+        return demand;
+    }
+
+    /**
+     * Determine the bound up to which the deadlines need to be checked: the length of the
+     * synchronous busy period, or the bound of George et al. or the hyperperiod if that is
+     * smaller. When the utilization is close to 1, the busy period takes about as many iterations
+     * to determine as there are jobs in it, so the hyperperiod is used right away: the busy period
+     * ends at the latest there, as the demand of a hyperperiod doesn't exceed its length.
+     * @throws ArithmeticException If the bound can't be represented.
+     */
+    private long bound(double utilization) {
+        if(utilization >= 1 - UTILIZATION_MARGIN)
+            return this.hyperperiod;
+
+        double bound = 0;
+        long maxDeadline = 0;
+        for(int i = 0; i < this.period.length; ++i) {
+            bound += (double) (this.period[i] - this.deadline[i]) * this.computation[i] / this.period[i];
+            maxDeadline = Math.max(maxDeadline, this.deadline[i]);
+        }
+        bound /= 1 - utilization;
+        long limit = this.hyperperiod;
+        if(bound < Long.MAX_VALUE)
+            limit = Math.min(limit, Math.max(maxDeadline, (long) Math.ceil(bound)));
+
+        // The busy period only needs to be determined as far as it is smaller than the limit.
+        long t = 0;
+        for(int i = 0; i < this.period.length; ++i)
+            t = LongMath.add(t, this.computation[i]);
+        while(t < limit) {
+            long next = 0;
+            for(int i = 0; i < this.period.length; ++i)
+                next = LongMath.add(next, LongMath.multiply(LongMath.ceilDiv(t, this.period[i]), this.computation[i]));
+            if(next == t)
+                return t;
+            t = next;
+        }
+        if(limit == Long.MAX_VALUE)
+            throw new ArithmeticException("long overflow");
+        return limit;
+    }
+
+    /**
+     * Determine the total computation time of all jobs that are released at or after 0 and have
+     * their deadline at or before t.
+     */
+    private long demand(long t) {
+        long demand = 0;
+        for(int i = 0; i < this.period.length; ++i)
+            if(this.deadline[i] <= t)
+                demand = LongMath.add(demand, LongMath.multiply((t - this.deadline[i]) / this.period[i] + 1, this.computation[i]));
+        return demand;
+    }
+
+    /**
+     * Determine the latest absolute deadline before t, or {@link #NONE} if there is none.
+     */
+    private long deadlineBefore(long t) {
+        long latest = NONE;
+        for(int i = 0; i < this.period.length; ++i)
+            if(this.deadline[i] < t)
+                latest = Math.max(latest, (t - 1 - this.deadline[i]) / this.period[i] * this.period[i] + this.deadline[i]);
+        return latest;
+    }
+
+    /**
+     * Get the bound up to which the deadlines were checked.
+     */
+    public long getBound() {
+        return this.bound;
+    }
+
+    /**
+     * Get the absolute deadline at which the demand was found to exceed the available time, or
+     * {@link #NONE} if there is none. There is none as well if the utilization exceeds 1.
+     */
+    public long getViolation() {
+        return this.violation;
+    }
+
+    /**
+     * Get the number of deadlines at which the demand was determined.
+     */
+    public long getPoints() {
+        return this.points;
+    }
+
+    /**
+     * Get the time the analysis took.
+     */
+    public long getElapsedNanos() {
+        return this.elapsedNanos;
+    }
+}
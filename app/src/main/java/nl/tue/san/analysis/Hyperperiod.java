@@ -0,0 +1,75 @@
+package nl.tue.san.analysis;
+
+import java.math.BigInteger;
+import java.util.List;
+
+import nl.tue.san.tasks.Task;
+import nl.tue.san.tasks.TaskSet;
+
+/**
+ * Determines the hyperperiod of tasks: the least common multiple of their periods, after which
+ * the pattern of job releases repeats. With co-prime periods the hyperperiod grows very quickly,
+ * so {@link #of(List)} saturates at {@link #SATURATED} instead of overflowing, and stops as soon
+ * as it does. {@link #exact(List)} determines the exact value when that is really needed.
+ */
+public final class Hyperperiod {
+
+    /**
+     * The hyperperiod of tasks whose least common multiple doesn't fit in a long.
+     */
+    public static final long SATURATED = Long.MAX_VALUE;
+
+    private Hyperperiod() {
+    }
+
+    /**
+     * Determine the hyperperiod of the tasks that are currently contained in the given TaskSet.
+     * @return The hyperperiod, or {@link #SATURATED} if it doesn't fit in a long.
+     */
+    public static long of(TaskSet taskSet) {
+        return of(taskSet.getOrderedTasks());
+    }
+
+    /**
+     * Determine the hyperperiod of the given tasks.
+     * @return The hyperperiod, or {@link #SATURATED} if it doesn't fit in a long. The hyperperiod
+     * of no tasks is 1.
+     */
+    public static long of(List<Task> tasks) {
+        long hyperperiod = 1;
+        for(Task task : tasks) {
+            hyperperiod = lcm(hyperperiod, task.getPeriod());
+            if(hyperperiod == SATURATED)
+                return SATURATED;
+        }
+        return hyperperiod;
+    }
+
+    /**
+     * Determine the exact hyperperiod of the given tasks, however large it is.
+     * @return The hyperperiod. The hyperperiod of no tasks is 1.
+     */
+    public static BigInteger exact(List<Task> tasks) {
+        BigInteger hyperperiod = BigInteger.ONE;
+        for(Task task : tasks) {
+            BigInteger period = BigInteger.valueOf(task.getPeriod());
+            hyperperiod = hyperperiod.divide(hyperperiod.gcd(period)).multiply(period);
+        }
+        return hyperperiod;
+    }
+
+    /**
+     * Determine the least common multiple of the given values, which must be strictly greater than
+     * 0, saturating at {@link #SATURATED}.
+     * @return The least common multiple, or {@link #SATURATED} if it doesn't fit in a long.
+     */
+    public static long lcm(long a, long b) {
+        if(a == SATURATED || b == SATURATED)
+            return SATURATED;
+        try {
+            return LongMath.lcm(a, b);
+        } catch (ArithmeticException e) {
+            return SATURATED;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package nl.tue.san.analysis;
+
+import java.util.List;
+
+import nl.tue.san.tasks.Task;
+import nl.tue.san.tasks.TaskSet;
+
+/**
+ * Enumerates the releases of the jobs of tasks in time order, lazily. Job k of a task is released
+ * at {@code offset + k * period}. Only the next release of every task is kept, in a binary min-heap
+ * ordered by release time, so each release takes logarithmic time in the number of tasks and
+ * nothing is allocated while enumerating. Releases at the same time are enumerated in the order of
+ * the tasks.
+ *
+ * The enumerator is a cursor rather than an {@link java.util.Iterator}, to avoid allocating an
+ * object per job: {@link #next()} advances to the next release, after which {@link #getTask()},
+ * {@link #getTime()} and {@link #getJob()} describe it.
+ * <pre>
+ * JobReleases releases = JobReleases.untilHyperperiod(taskSet);
+ * while(releases.next())
+ *     handle(releases.getTask(), releases.getTime());
+ * </pre>
+ * Only the releases in a window [from, until) are enumerated, and the start of the window is
+ * found by division rather than by enumerating earlier releases, so a window can lie arbitrarily
+ * far in the future. Releases that don't fit in a long are never enumerated.
+ */
+public class JobReleases {
+
+    private final Task[] tasks;
+    private final long[] offset;
+    private final long[] period;
+    private final long until;
+
+    /**
+     * The release time and job number of the next job of every task.
+     */
+    private final long[] nextTime;
+    private final long[] nextJob;
+
+    /**
+     * Min-heap of the tasks that have a release before the end of the window, by
+     * {@link #nextTime}.
+     */
+    private final int[] heap;
+    private int heapSize;
+
+    private int task = -1;
+    private long time;
+    private long job;
+
+    /**
+     * Create an enumerator of the releases of the given tasks in the window [from, until). The
+     * parameters of the tasks are copied, so later changes of the tasks are not reflected.
+     * @param tasks The tasks whose jobs are enumerated.
+     * @param from The start of the window, inclusive.
+     * @param until The end of the window, exclusive.
+     */
+    public JobReleases(List<Task> tasks, long from, long until) {
+        int size = tasks.size();
+        this.tasks = tasks.toArray(new Task[size]);
+        this.offset = new long[size];
+        this.period = new long[size];
+        this.until = until;
+        this.nextTime = new long[size];
+        this.nextJob = new long[size];
+        this.heap = new int[size];
+
+        for(int i = 0; i < size; ++i) {
+            this.offset[i] = this.tasks[i].getOffset();
+            this.period[i] = this.tasks[i].getPeriod();
+
+            // The first job released at or after the start of the window.
+            long job = from <= this.offset[i] ? 0 : LongMath.ceilDiv(from - this.offset[i], this.period[i]);
+            long time;
+            try {
+                time = LongMath.add(this.offset[i], LongMath.multiply(job, this.period[i]));
+            } catch (ArithmeticException e) {
+                continue;
+            }
+            if(time < until) {
+                this.nextTime[i] = time;
+                this.nextJob[i] = job;
+                this.heap[this.heapSize] = i;
+                this.siftUp(this.heapSize++);
+            }
+        }
+    }
+
+    /**
+     * Create an enumerator of all releases of the given tasks from time 0.
+     */
+    public static JobReleases all(List<Task> tasks) {
+        return new JobReleases(tasks, 0, Long.MAX_VALUE);
+    }
+
+    /**
+     * Create an enumerator of the releases of the tasks of the given TaskSet in the window
+     * [0, hyperperiod). If the hyperperiod saturates, all releases are enumerated.
+     * @see Hyperperiod#of(List)
+     */
+    public static JobReleases untilHyperperiod(TaskSet taskSet) {
+        List<Task> tasks = taskSet.getOrderedTasks();
+        return new JobReleases(tasks, 0, Hyperperiod.of(tasks));
+    }
+
+    /**
+     * Advance to the next release.
+     * @return Whether there is a next release in the window. If not, the enumerator is exhausted
+     * and the getters must not be used anymore.
+     */
+    public boolean next() {
+        if(this.heapSize == 0) {
+            this.task = -1;
+            return false;
+        }
+
+        int i = this.heap[0];
+        this.task = i;
+        this.time = this.nextTime[i];
+        this.job = this.nextJob[i];
+
+        // Schedule the following job of the same task, or drop the task if it is beyond the window.
+        long following = this.time + this.period[i];
+        if(following < this.time || following >= this.until) {
+            this.heap[0] = this.heap[--this.heapSize];
+        } else {
+            this.nextTime[i] = following;
+            this.nextJob[i] = this.job + 1;
+        }
+        if(this.heapSize > 0)
+            this.siftDown(0);
+        return true;
+    }
+
+    /**
+     * Get the time of the next release, without advancing to it.
+     * @return The time of the next release, or {@link Long#MAX_VALUE} if there is none.
+     */
+    public long peekTime() {
+        return this.heapSize == 0 ? Long.MAX_VALUE : this.nextTime[this.heap[0]];
+    }
+
+    /**
+     * Get the index of the task of the current release, in the order of the tasks that were given.
+     */
+    public int getTaskIndex() {
+        this.assertCurrent();
+        return this.task;
+    }
+
+    /**
+     * Get the task of the current release.
+     */
+    public Task getTask() {
+        this.assertCurrent();
+        return this.tasks[this.task];
+    }
+
+    /**
+     * Get the time of the current release.
+     */
+    public long getTime() {
+        this.assertCurrent();
+        return this.time;
+    }
+
+    /**
+     * Get the number of the current job of its task, where the job released at the offset of the
+     * task is job 0.
+     */
+    public long getJob() {
+        this.assertCurrent();
+        return this.job;
+    }
+
+    private void assertCurrent() {
+        if(this.task < 0)
+            throw new IllegalStateException("No current release, call next() first");
+    }
+
+    /**
+     * Whether the task at heap position a is released before the task at heap position b.
+     */
+    private boolean before(int a, int b) {
+        int i = this.heap[a], j = this.heap[b];
+        return this.nextTime[i] < this.nextTime[j] || (this.nextTime[i] == this.nextTime[j] && i < j);
+    }
+
+    private void siftUp(int position) {
+        while(position > 0) {
+            int parent = (position - 1) >>> 1;
+            if(!this.before(position, parent))
+                return;
+            this.swap(position, parent);
+            position = parent;
+        }
+    }
+
+    private void siftDown(int position) {
+        while(true) {
+            int smallest = position, left = 2 * position + 1, right = left + 1;
+            if(left < this.heapSize && this.before(left, smallest))
+                smallest = left;
+            if(right < this.heapSize && this.before(right, smallest))
+                smallest = right;
+            if(smallest == position)
+                return;
+            this.swap(position, smallest);
+            position = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int swapped = this.heap[a];
+        this.heap[a] = this.heap[b];
+        this.heap[b] = swapped;
+    }
+}
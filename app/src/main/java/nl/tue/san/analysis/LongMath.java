@@ -0,0 +1,63 @@
+package nl.tue.san.analysis;
+
+/**
+ * Arithmetic on longs that detects overflow instead of wrapping around, as the exact methods of
+ * {@link Math} are not available on all supported versions of Android.
+ */
+final class LongMath {
+
+    private LongMath() {
+    }
+
+    /**
+     * Add the given values.
+     * @throws ArithmeticException If the sum doesn't fit in a long.
+     */
+    static long add(long a, long b) {
+        long sum = a + b;
+        if(((a ^ sum) & (b ^ sum)) < 0)
+            throw new ArithmeticException("long overflow");
+        return sum;
+    }
+
+    /**
+     * Multiply the given values, which must not be negative.
+     * @throws ArithmeticException If the product doesn't fit in a long.
+     */
+    static long multiply(long a, long b) {
+        if(a != 0 && b > Long.MAX_VALUE / a)
+            throw new ArithmeticException("long overflow");
+        return a * b;
+    }
+
+    /**
+     * Divide the given values, rounding up.
+     * @param a The dividend, at least 0.
+     * @param b The divisor, strictly greater than 0.
+     */
+    static long ceilDiv(long a, long b) {
+        long quotient = a / b;
+        return a % b == 0 ? quotient : quotient + 1;
+    }
+
+    /**
+     * Determine the least common multiple of the given values, which must be strictly greater than
+     * 0.
+     * @throws ArithmeticException If the least common multiple doesn't fit in a long.
+     */
+    static long lcm(long a, long b) {
+        return multiply(a / gcd(a, b), b);
+    }
+
+    /**
+     * Determine the greatest common divisor of the given values, which must not be negative.
+     */
+    static long gcd(long a, long b) {
+        while(b != 0) {
+            long remainder = a % b;
+            a = b;
+            b = remainder;
+        }
+        return a;
+    }
+}
@@ -0,0 +1,61 @@
+package nl.tue.san.analysis;
+
+import java.util.Locale;
+
+/**
+ * The scheduling policies that can be analysed and simulated locally:
+ * <ul>
+ *     <li>FPPS, fixed-priority preemptive scheduling, in which a job is preempted by every job with
+ *     a higher priority. Preemption thresholds are ignored.</li>
+ *     <li>FPTS, fixed-priority scheduling with preemption thresholds, in which a job that has
+ *     started can only be preempted by jobs with at least its minimal preemption priority.</li>
+ *     <li>FPNS, fixed-priority non-preemptive scheduling, in which a job that has started always
+ *     runs to completion.</li>
+ *     <li>EDF, preemptive earliest deadline first scheduling, in which a job is preempted by every
+ *     job with an earlier absolute deadline.</li>
+ * </ul>
+ */
+public enum Policy {
+    FPPS("FP", "RM", "DM"),
+    FPTS("FPT"),
+    FPNS("NP", "NPFP", "FPNP"),
+    EDF("EDFPS");
+
+    /**
+     * Other names by which schedulers with this policy are known.
+     */
+    private final String[] aliases;
+
+    Policy(String... aliases) {
+        this.aliases = aliases;
+    }
+
+    /**
+     * Whether the policy orders jobs by their absolute deadline instead of by the priority of their
+     * task.
+     */
+    public boolean isDeadlineBased() {
+        return this == EDF;
+    }
+
+    /**
+     * Get the policy of the scheduler with the given name, as used by the server. Names are
+     * matched regardless of case.
+     * @param scheduler The name of the scheduler.
+     * @return The policy of the scheduler.
+     * @throws IllegalArgumentException If there is no policy for the scheduler.
+     */
+    public static Policy forScheduler(String scheduler) {
+        if(scheduler != null) {
+            String name = scheduler.trim().toUpperCase(Locale.ROOT);
+            for(Policy policy : values()) {
+                if(policy.name().equals(name))
+                    return policy;
+                for(String alias : policy.aliases)
+                    if(alias.equals(name))
+                        return policy;
+            }
+        }
+        throw new IllegalArgumentException("Unknown scheduler: "+scheduler);
+    }
+}
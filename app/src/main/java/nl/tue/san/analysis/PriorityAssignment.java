@@ -0,0 +1,269 @@
+package nl.tue.san.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import nl.tue.san.tasks.Task;
+import nl.tue.san.tasks.TaskSet;
+
+/**
+ * Assigns unique priorities to tasks with Audsley's optimal priority assignment. From the lowest
+ * priority up, a task is searched that is schedulable at that priority with all tasks that don't
+ * have a priority yet above it, and the first one found gets it. The response time of a task only
+ * depends on which tasks have a higher priority, not on their order, so for preemptive scheduling
+ * this finds an assignment whenever one exists, using at most n(n+1)/2 analyses.
+ *
+ * With preemption thresholds, a task that is tried at a level may also be made non-preemptive,
+ * so that it isn't preempted by any task with a higher priority, but blocks all of them. This is
+ * only done if no task is schedulable at the level preemptively. The thresholds are then raised
+ * as far as possible by a {@link ThresholdAssignment}. This variant is a heuristic: when it fails,
+ * thresholds may still exist with which some priority assignment is schedulable.
+ *
+ * How many tasks are analysed at a level depends on the order in which they are tried. By how much
+ * every task missed its deadline at the last level it was tried is remembered, and at the next
+ * level the tasks that missed it by the least are tried first, as they lost the least to the
+ * tasks above them. Tasks that weren't tried yet come first, with the longest deadline first. All
+ * task data is kept in the primitive arrays of a single {@link ResponseTimeAnalysis}, in which a
+ * task is moved to a level by swapping it with the task there.
+ */
+public class PriorityAssignment {
+
+    private final List<Task> tasks;
+    private final boolean thresholds;
+
+    /**
+     * The data of the tasks, placed from the lowest priority up while the assignment runs.
+     */
+    private final ResponseTimeAnalysis analysis;
+
+    /**
+     * The position of every task in the analysis, by index.
+     */
+    private final int[] positions;
+
+    /**
+     * By how much every task missed its deadline at the last level it was tried, by index. Tasks
+     * that weren't tried yet have their negated deadline.
+     */
+    private final long[] lateness;
+
+    private int[] priorities;
+    private int[] assignedThresholds;
+
+    private boolean assigned;
+    private boolean schedulable;
+    private long analyses;
+    private long elapsedNanos;
+
+    /**
+     * Create an assignment for the tasks that are currently contained in the given TaskSet. Later
+     * changes of the TaskSet or its tasks are not reflected in the assignment.
+     * @param taskSet The TaskSet to assign priorities to.
+     * @param thresholds Whether preemption thresholds may be assigned as well, rather than making
+     *                   every task preemptive.
+     */
+    public PriorityAssignment(TaskSet taskSet, boolean thresholds) {
+        this(taskSet.getOrderedTasks(), thresholds);
+    }
+
+    /**
+     * Create an assignment for the given tasks. Later changes of the tasks are not reflected in the
+     * assignment.
+     * @param tasks The tasks to assign priorities to.
+     * @param thresholds Whether preemption thresholds may be assigned as well, rather than making
+     *                   every task preemptive.
+     */
+    public PriorityAssignment(List<Task> tasks, boolean thresholds) {
+        this.tasks = new ArrayList<>(tasks);
+        this.thresholds = thresholds;
+        this.analysis = new ResponseTimeAnalysis(tasks);
+        this.positions = new int[tasks.size()];
+        this.lateness = new long[tasks.size()];
+        for(int p = 0; p < tasks.size(); ++p) {
+            this.positions[this.analysis.indexAt(p)] = p;
+            this.lateness[this.analysis.indexAt(p)] = -this.analysis.getDeadline(p);
+        }
+    }
+
+    /**
+     * Assign priorities to the tasks that are currently contained in the given TaskSet and, if
+     * that makes them schedulable, write them back to the TaskSet.
+     * @param taskSet The TaskSet to assign priorities to.
+     * @param thresholds Whether preemption thresholds may be assigned as well.
+     * @return Whether the tasks are schedulable with the assigned priorities.
+     */
+    public static boolean assign(TaskSet taskSet, boolean thresholds) {
+        PriorityAssignment assignment = new PriorityAssignment(taskSet, thresholds);
+        if(!assignment.assign())
+            return false;
+        assignment.apply(taskSet);
+        return true;
+    }
+
+    /**
+     * Determine the priorities. This is only done once; later calls return the same result.
+     * @return Whether priorities were found for which all tasks are schedulable. Without
+     * thresholds, none exist otherwise.
+     */
+    public synchronized boolean assign() {
+        if(!this.assigned) {
+            long start = System.nanoTime();
+            this.schedulable = this.assignLevels();
+            if(this.schedulable)
+                this.collect();
+            this.elapsedNanos = System.nanoTime() - start;
+            this.assigned = true;
+        }
+        return this.schedulable;
+    }
+
+    /**
+     * Place a task at every position of the analysis, from the lowest priority up.
+     * @return Whether a schedulable task was found for every level.
+     */
+    private boolean assignLevels() {
+        long blocking = 0;
+        for(int level = this.analysis.size() - 1; level >= 0; --level) {
+            if(this.place(level, blocking, true))
+                continue;
+            if(!this.thresholds || !this.place(level, blocking, false))
+                return false;
+            blocking = Math.max(blocking, this.analysis.getComputation(level));
+        }
+        return true;
+    }
+
+    /**
+     * Find a task that is schedulable at the given level, among the tasks at positions 0 to level,
+     * and place it at that level.
+     * @param blocking The blocking of a task at the level by the tasks below it.
+     * @param preemptive Whether the task is preempted by all tasks above it, rather than by none.
+     * @return Whether a task was found.
+     */
+    private boolean place(int level, long blocking, boolean preemptive) {
+        Integer[] candidates = new Integer[level + 1];
+        for(int p = 0; p <= level; ++p)
+            candidates[p] = this.analysis.indexAt(p);
+        Arrays.sort(candidates, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                long la = lateness[a], lb = lateness[b];
+                return la == lb ? a.compareTo(b) : (la < lb ? -1 : 1);
+            }
+        });
+
+        for(int index : candidates) {
+            int p = this.positions[index];
+            this.move(p, level, preemptive);
+            ++this.analyses;
+            long responseTime = this.analysis.analyseTask(level, blocking, null, false).responseTime;
+            if(responseTime <= this.analysis.getDeadline(level))
+                return true;
+            this.lateness[index] = responseTime == ResponseTimes.UNBOUNDED ? Long.MAX_VALUE : responseTime - this.analysis.getDeadline(level);
+
+            // Swapping back keeps the untried tasks in their positions.
+            this.move(p, level, preemptive);
+        }
+        return false;
+    }
+
+    private void move(int p, int level, boolean preemptive) {
+        this.analysis.placeLowest(p, level, preemptive);
+        this.positions[this.analysis.indexAt(p)] = p;
+        this.positions[this.analysis.indexAt(level)] = level;
+    }
+
+    /**
+     * Read the priorities from the placed tasks, and assign the thresholds if needed.
+     */
+    private void collect() {
+        int size = this.analysis.size();
+        this.priorities = new int[size];
+        this.assignedThresholds = new int[size];
+        for(int p = 0; p < size; ++p)
+            this.priorities[this.analysis.indexAt(p)] = this.analysis.getPriority(p);
+
+        Arrays.fill(this.assignedThresholds, Task.NO_PREEMPTION_THRESHOLD);
+        if(!this.thresholds)
+            return;
+
+        List<Task> prioritised = new ArrayList<>(size);
+        for(int i = 0; i < size; ++i)
+            prioritised.add(copy(this.tasks.get(i), this.priorities[i], Task.NO_PREEMPTION_THRESHOLD));
+        ThresholdAssignment thresholds = new ThresholdAssignment(prioritised);
+        if(!thresholds.assign())
+            throw new IllegalStateException("No thresholds for the assigned priorities");
+        this.analyses += thresholds.getAnalyses();
+        for(int i = 0; i < size; ++i)
+            this.assignedThresholds[i] = thresholds.getThreshold(i);
+    }
+
+    /**
+     * Get the assigned priority of the task at the given index, in the order of the tasks that
+     * were given. The priorities range from 1 to the number of tasks.
+     * @throws IllegalStateException If no schedulable priorities were assigned.
+     */
+    public int getPriority(int index) {
+        this.assertSchedulable();
+        return this.priorities[index];
+    }
+
+    /**
+     * Get the assigned preemption threshold of the task at the given index, in the order of the
+     * tasks that were given. Without thresholds, this is always
+     * {@link Task#NO_PREEMPTION_THRESHOLD}.
+     * @throws IllegalStateException If no schedulable priorities were assigned.
+     */
+    public int getThreshold(int index) {
+        this.assertSchedulable();
+        return this.assignedThresholds[index];
+    }
+
+    /**
+     * Write the assigned priorities and thresholds back to the given TaskSet, which must contain
+     * the tasks they were assigned to. Every task is replaced through {@link TaskSet#put(Task)} by
+     * a copy with its new priority and threshold, in the current order of the TaskSet, so that
+     * order is retained.
+     * @param taskSet The TaskSet to write the priorities to.
+     * @throws IllegalStateException If no schedulable priorities were assigned.
+     */
+    public void apply(TaskSet taskSet) {
+        this.assertSchedulable();
+        List<Task> current = taskSet.getOrderedTasks();
+        if(current.size() != this.tasks.size())
+            throw new IllegalArgumentException("TaskSet doesn't contain the assigned tasks in order");
+        for(int i = 0; i < current.size(); ++i)
+            if(!current.get(i).getName().equals(this.tasks.get(i).getName()))
+                throw new IllegalArgumentException("TaskSet doesn't contain the assigned tasks in order");
+
+        for(int i = 0; i < current.size(); ++i)
+            taskSet.put(copy(current.get(i), this.priorities[i], this.assignedThresholds[i]));
+    }
+
+    private static Task copy(Task task, int priority, int threshold) {
+        return new Task(task.getName(), task.getColor(), task.getOffset(), task.getPeriod(), task.getDeadline(), task.getComputation(), priority, threshold);
+    }
+
+    private void assertSchedulable() {
+        if(!this.assigned)
+            throw new IllegalStateException("No priorities were assigned yet");
+        if(!this.schedulable)
+            throw new IllegalStateException("No schedulable priorities were assigned");
+    }
+
+    /**
+     * Get the number of tasks that were analysed.
+     */
+    public long getAnalyses() {
+        return this.analyses;
+    }
+
+    /**
+     * Get the time the assignment took.
+     */
+    public long getElapsedNanos() {
+        return this.elapsedNanos;
+    }
+}
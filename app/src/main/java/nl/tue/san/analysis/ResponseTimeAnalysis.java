@@ -0,0 +1,553 @@
+package nl.tue.san.analysis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import nl.tue.san.tasks.Task;
+import nl.tue.san.tasks.TaskSet;
+
+/**
+ * Exact worst-case response-time analysis for fixed-priority preemption-threshold scheduling
+ * (FPTS). A job of a task competes for the processor with its priority, but once it has started it
+ * can only be preempted by jobs of tasks whose priority is at least its minimal preemption priority,
+ * see {@link Task#getMinimalPreemptionPriority()}. Fully preemptive scheduling is the special case
+ * in which no task has a threshold, and non-preemptive scheduling the case in which every threshold
+ * exceeds all priorities.
+ *
+ * For every task the analysis determines the longest level-i active period, which starts with
+ * the blocking by a lower priority task that can't be preempted by the task, followed by all work
+ * of tasks with at least the priority of the task. Every job of the task that is released in that
+ * period is analysed, as with thresholds or deadlines beyond the period the first job is not
+ * necessarily the one with the longest response time. For a job the analysis determines when it
+ * starts, considering all jobs of tasks with at least its priority that were released before,
+ * and when it finishes, considering only the jobs of tasks that may preempt it. Offsets are
+ * ignored, so every task is assumed to be released simultaneously, which is the worst case.
+ *
+ * Tasks with equal priorities are assumed to delay each other before they start, but can't preempt
+ * each other. A threshold that doesn't exceed the priority of the task has no effect, as a task can't
+ * be preempted by tasks with the same or a lower priority.
+ *
+ * All arithmetic is done on primitive longs with overflow detection. If the analysis of a task
+ * would overflow, or the utilization of the tasks with at least its priority exceeds 1, its
+ * response time is {@link ResponseTimes#UNBOUNDED}. This is also the case if that utilization is
+ * exactly 1 and the task can be blocked, as the processor then never becomes idle.
+ */
+public class ResponseTimeAnalysis {
+
+    /**
+     * Margin for rounding errors when comparing the utilization with 1.
+     */
+    private static final double UTILIZATION_MARGIN = 1e-9;
+
+    /**
+     * The names of the tasks, in the order of the TaskSet.
+     */
+    private final String[] names;
+
+    /**
+     * For every position in priority order, the index of the task in the order of the TaskSet.
+     */
+    private final int[] order;
+
+    // The properties of the tasks, in order of decreasing priority.
+    private final long[] period;
+    private final long[] deadline;
+    private final long[] computation;
+    private final int[] priority;
+
+    /**
+     * The lowest priority a task must have to preempt the task at this position, which always
+     * exceeds the priority of the task itself.
+     */
+    private final long[] preemption;
+
+    /**
+     * The number of tasks, starting from the highest priority, that have at least the priority of
+     * the task at this position. This includes the task itself.
+     */
+    private final int[] higherOrEqual;
+
+    /**
+     * The number of tasks, starting from the highest priority, that may preempt the task at this
+     * position.
+     */
+    private final int[] preemptors;
+
+    /**
+     * The utilization of the tasks that have at least the priority of the task at this position.
+     */
+    private final double[] utilization;
+
+    /**
+     * The number of fixed point iterations performed by the analysis of the current task.
+     */
+    private long iterations;
+
+    /**
+     * Create an analysis of the tasks that are currently contained in the given TaskSet. Later
+     * changes of the TaskSet or its tasks are not reflected in the analysis.
+     * @param taskSet The TaskSet to analyse.
+     */
+    public ResponseTimeAnalysis(TaskSet taskSet) {
+        this(taskSet.getOrderedTasks());
+    }
+
+    /**
+     * Create an analysis of the given tasks. Later changes of the tasks are not reflected in the
+     * analysis.
+     * @param tasks The tasks to analyse.
+     */
+    public ResponseTimeAnalysis(List<Task> tasks) {
+        int size = tasks.size();
+        this.names = new String[size];
+        this.order = new int[size];
+        this.period = new long[size];
+        this.deadline = new long[size];
+        this.computation = new long[size];
+        this.priority = new int[size];
+        this.preemption = new long[size];
+        this.higherOrEqual = new int[size];
+        this.preemptors = new int[size];
+        this.utilization = new double[size];
+
+        List<Integer> byPriority = new ArrayList<>(size);
+        for(int i = 0; i < size; ++i) {
+            this.names[i] = tasks.get(i).getName();
+            byPriority.add(i);
+        }
+        final List<Task> unsorted = tasks;
+        Collections.sort(byPriority, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int pa = unsorted.get(a).getPriority(), pb = unsorted.get(b).getPriority();
+                return pa == pb ? 0 : (pa > pb ? -1 : 1);
+            }
+        });
+
+        for(int p = 0; p < size; ++p) {
+            Task task = tasks.get(byPriority.get(p));
+            this.order[p] = byPriority.get(p);
+            this.period[p] = task.getPeriod();
+            this.deadline[p] = task.getDeadline();
+            this.computation[p] = task.getComputation();
+            this.priority[p] = task.getPriority();
+            this.preemption[p] = Math.max(task.getMinimalPreemptionPriority(), (long) task.getPriority() + 1);
+        }
+
+        for(int p = 0, q = 0; p < size; ++p) {
+            while(q < size && this.priority[q] >= this.priority[p])
+                ++q;
+            this.higherOrEqual[p] = q;
+            this.preemptors[p] = this.countAtLeast(this.preemption[p]);
+        }
+        this.updateUtilization();
+    }
+
+    /**
+     * Create a copy of the given analysis of which the computation times, periods and preemption
+     * thresholds can be changed without affecting the original, while the order of the tasks is
+     * shared with it.
+     * @param base The analysis to copy.
+     */
+    ResponseTimeAnalysis(ResponseTimeAnalysis base) {
+        this.names = base.names;
+        this.order = base.order;
+        this.period = base.period.clone();
+        this.deadline = base.deadline;
+        this.computation = base.computation.clone();
+        this.priority = base.priority;
+        this.preemption = base.preemption.clone();
+        this.higherOrEqual = base.higherOrEqual;
+        this.preemptors = base.preemptors.clone();
+        this.utilization = base.utilization.clone();
+    }
+
+    /**
+     * Analyse the tasks that are currently contained in the given TaskSet.
+     * @param taskSet The TaskSet to analyse.
+     * @return The response times of the tasks of the TaskSet.
+     */
+    public static ResponseTimes analyse(TaskSet taskSet) {
+        return new ResponseTimeAnalysis(taskSet).analyse();
+    }
+
+    /**
+     * Determine the worst-case response time of every task.
+     * @return The response times, in the order of the tasks that were given.
+     */
+    public ResponseTimes analyse() {
+        long start = System.nanoTime();
+
+        int size = this.names.length;
+        TaskResult[] results = new TaskResult[size];
+        long iterations = 0;
+        for(int p = 0; p < size; ++p) {
+            TaskResult result = this.analyseTask(p, null, false);
+            results[this.order[p]] = result;
+            iterations += result.iterations;
+        }
+
+        return this.collect(results, iterations, System.nanoTime() - start);
+    }
+
+    /**
+     * Get the number of tasks that are analysed.
+     */
+    int size() {
+        return this.names.length;
+    }
+
+    String getName(int index) {
+        return this.names[index];
+    }
+
+    /**
+     * Get the index in the order of the TaskSet of the task at the given position in priority
+     * order.
+     */
+    int indexAt(int p) {
+        return this.order[p];
+    }
+
+    long getPeriod(int p) {
+        return this.period[p];
+    }
+
+    long getComputation(int p) {
+        return this.computation[p];
+    }
+
+    long getDeadline(int p) {
+        return this.deadline[p];
+    }
+
+    /**
+     * Change the computation time of the task at position p. The priority order is unaffected.
+     */
+    void setComputation(int p, long computation) {
+        this.computation[p] = computation;
+        this.updateUtilization();
+    }
+
+    /**
+     * Change the period of the task at position p. The priority order is unaffected.
+     */
+    void setPeriod(int p, long period) {
+        this.period[p] = period;
+        this.updateUtilization();
+    }
+
+    /**
+     * Change the lowest priority a task must have to preempt the task at position p, which must
+     * exceed the priority of the task. The priority order is unaffected.
+     */
+    void setPreemption(int p, long preemption) {
+        this.preemption[p] = preemption;
+        this.preemptors[p] = this.countAtLeast(preemption);
+    }
+
+    /**
+     * Get the longest time the task at position p can be blocked by a task with a lower priority.
+     */
+    long getBlocking(int p) {
+        return this.blocking(p);
+    }
+
+    /**
+     * Set the computation time of every task to the one in the given analysis multiplied by the
+     * given factor, rounded up.
+     */
+    void scaleComputations(ResponseTimeAnalysis base, double factor) {
+        for(int p = 0; p < this.computation.length; ++p) {
+            double scaled = Math.ceil(base.computation[p] * factor);
+            if(scaled >= Long.MAX_VALUE)
+                throw new ArithmeticException("long overflow");
+            this.computation[p] = (long) scaled;
+        }
+        this.updateUtilization();
+    }
+
+    int getPriority(int p) {
+        return this.priority[p];
+    }
+
+    long getPreemption(int p) {
+        return this.preemption[p];
+    }
+
+    /**
+     * Swap the tasks at positions p and q, and give the task that ends up at position q the lowest
+     * priority of the tasks at positions 0 to q. This lets a priority assignment try every task at
+     * a level without building a new analysis. Until every position has been placed this way, only
+     * the task at position q can be analysed, with an explicit blocking time. The order is shared
+     * with copies of this analysis, so it must not have any.
+     * @param preemptive Whether the task can be preempted by all tasks at positions 0 to q, rather
+     *                   than by none of them.
+     */
+    void placeLowest(int p, int q, boolean preemptive) {
+        swap(this.order, p, q);
+        swap(this.period, p, q);
+        swap(this.deadline, p, q);
+        swap(this.computation, p, q);
+
+        this.priority[q] = this.priority.length - q;
+        this.preemption[q] = preemptive ? this.priority[q] + 1 : this.priority.length + 1;
+        this.higherOrEqual[q] = q + 1;
+        this.preemptors[q] = preemptive ? q : 0;
+
+        double utilization = 0;
+        for(int j = 0; j <= q; ++j)
+            utilization += (double) this.computation[j] / this.period[j];
+        this.utilization[q] = utilization;
+    }
+
+    private static void swap(long[] values, int p, int q) {
+        long value = values[p];
+        values[p] = values[q];
+        values[q] = value;
+    }
+
+    private static void swap(int[] values, int p, int q) {
+        int value = values[p];
+        values[p] = values[q];
+        values[q] = value;
+    }
+
+    /**
+     * Combine the results of the individual tasks, given in the order of the TaskSet.
+     */
+    ResponseTimes collect(TaskResult[] results, long iterations, long elapsedNanos) {
+        int size = this.names.length;
+        long[] responseTimes = new long[size];
+        long[] deadlines = new long[size];
+        long[] blocking = new long[size];
+        long[] busyPeriods = new long[size];
+        long[] jobs = new long[size];
+        for(int p = 0; p < size; ++p) {
+            int i = this.order[p];
+            deadlines[i] = this.deadline[p];
+            responseTimes[i] = results[i].responseTime;
+            blocking[i] = results[i].blocking;
+            busyPeriods[i] = results[i].busyPeriod;
+            jobs[i] = results[i].jobs;
+        }
+        return new ResponseTimes(this.names, responseTimes, deadlines, blocking, busyPeriods, jobs, iterations, elapsedNanos);
+    }
+
+    /**
+     * Determine the worst-case response time of the task at position p.
+     * @param warm The result of an earlier analysis of the task, whose busy period and start times
+     *             are lower bounds of the ones of this analysis, or null to start from scratch.
+     *             This holds when the task set only changed in ways that can't decrease them.
+     * @param keepStarts Whether the start times of the jobs should be kept in the result, so that
+     *                   it can be used to warm start a later analysis.
+     */
+    TaskResult analyseTask(int p, TaskResult warm, boolean keepStarts) {
+        return this.analyseTask(p, this.blocking(p), warm, keepStarts);
+    }
+
+    /**
+     * Determine the worst-case response time of the task at position p, as if it could be blocked
+     * for the given time instead of the time determined by the tasks with a lower priority.
+     * @see #analyseTask(int, TaskResult, boolean)
+     */
+    TaskResult analyseTask(int p, long blocking, TaskResult warm, boolean keepStarts) {
+        this.iterations = 0;
+        TaskResult result = new TaskResult();
+        result.blocking = blocking;
+        result.responseTime = this.responseTime(p, result, warm, keepStarts);
+        result.iterations = this.iterations;
+        return result;
+    }
+
+    /**
+     * Determine the utilization of the tasks with at least the priority of every task.
+     */
+    private void updateUtilization() {
+        double utilization = 0;
+        for(int p = 0, q = 0; p < this.priority.length; ++p) {
+            for(; q < this.higherOrEqual[p]; ++q)
+                utilization += (double) this.computation[q] / this.period[q];
+            this.utilization[p] = utilization;
+        }
+    }
+
+    /**
+     * Get the number of tasks, starting from the highest priority, that have at least the given
+     * priority.
+     */
+    private int countAtLeast(long minimum) {
+        int low = 0, high = this.priority.length;
+        while(low < high) {
+            int middle = (low + high) >>> 1;
+            if(this.priority[middle] >= minimum)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * Determine the longest time the task at position p can be blocked by a single job of a task
+     * with a lower priority that it can't preempt.
+     */
+    private long blocking(int p) {
+        long blocking = 0;
+        for(int k = this.higherOrEqual[p]; k < this.priority.length; ++k)
+            if(this.preemption[k] > this.priority[p])
+                blocking = Math.max(blocking, this.computation[k]);
+        return blocking;
+    }
+
+    /**
+     * Determine the worst-case response time of the task at position p.
+     * @param result Receives the length of the level-i active period, the number of jobs of the
+     *               task in it and optionally their start times. These are left at 0 if the
+     *               response time is unbounded.
+     * @return The response time, or {@link ResponseTimes#UNBOUNDED}.
+     */
+    private long responseTime(int p, TaskResult result, TaskResult warm, boolean keepStarts) {
+        if(this.utilization[p] > 1 + UTILIZATION_MARGIN)
+            return ResponseTimes.UNBOUNDED;
+
+        try {
+            long busyPeriod = this.busyPeriod(p, result.blocking, warm == null ? 0 : warm.busyPeriod);
+            if(busyPeriod == ResponseTimes.UNBOUNDED)
+                return ResponseTimes.UNBOUNDED;
+            long jobs = LongMath.ceilDiv(busyPeriod, this.period[p]);
+            long[] starts = keepStarts ? new long[(int) Math.min(jobs, Integer.MAX_VALUE)] : null;
+
+            long worst = 0, start = 0;
+            for(long k = 0; k < jobs; ++k) {
+                if(warm != null && warm.starts != null && k < warm.starts.length)
+                    start = Math.max(start, warm.starts[(int) k]);
+                start = this.startTime(p, result.blocking, k, start);
+                if(starts != null && k < starts.length)
+                    starts[(int) k] = start;
+                long finish = this.finishTime(p, start);
+                worst = Math.max(worst, finish - k * this.period[p]);
+            }
+
+            result.busyPeriod = busyPeriod;
+            result.jobs = jobs;
+            result.starts = starts;
+            return worst;
+        } catch (ArithmeticException e) {
+            return ResponseTimes.UNBOUNDED;
+        }
+    }
+
+    /**
+     * Determine the length of the longest level-i active period of the task at position p: the
+     * smallest t such that t = B + sum over all tasks j with at least its priority of
+     * ceil(t / T_j) * C_j.
+     * @param from A lower bound of the length, such as the length found by an earlier analysis.
+     * @return The length, or {@link ResponseTimes#UNBOUNDED} if the active period never ends.
+     */
+    private long busyPeriod(int p, long blocking, long from) {
+        long t = blocking;
+        for(int j = 0; j < this.higherOrEqual[p]; ++j)
+            t = LongMath.add(t, this.computation[j]);
+        long horizon = this.horizon(p, blocking, t);
+        t = Math.max(t, from);
+
+        while(t <= horizon) {
+            ++this.iterations;
+            long next = blocking;
+            for(int j = 0; j < this.higherOrEqual[p]; ++j)
+                next = LongMath.add(next, LongMath.multiply(LongMath.ceilDiv(t, this.period[j]), this.computation[j]));
+            if(next == t)
+                return t;
+            t = next;
+        }
+        return ResponseTimes.UNBOUNDED;
+    }
+
+    /**
+     * Determine an upper bound of the length of the level-i active period of the task at position
+     * p, beyond which it is known never to end. This keeps the iterations from running (almost)
+     * indefinitely when the utilization is 1 or exceeds it by less than the margin for rounding
+     * errors.
+     * @param initial The work that is released at the start of the active period, including the
+     *                blocking.
+     * @throws ArithmeticException If the bound can't be represented.
+     */
+    private long horizon(int p, long blocking, long initial) {
+        double utilization = this.utilization[p];
+        if(utilization < 1 - UTILIZATION_MARGIN) {
+            // The active period satisfies t <= initial + U * t.
+            double bound = initial / (1 - utilization) * (1 + UTILIZATION_MARGIN) + 1;
+            if(bound >= Long.MAX_VALUE)
+                throw new ArithmeticException("long overflow");
+            return (long) bound;
+        }
+
+        // With a utilization of exactly 1 the processor is busy until the hyperperiod, if it isn't
+        // busy with blocking at its start; otherwise it is never idle again.
+        if(blocking > 0)
+            return 0;
+        long hyperperiod = 1;
+        for(int j = 0; j < this.higherOrEqual[p]; ++j)
+            hyperperiod = LongMath.lcm(hyperperiod, this.period[j]);
+        return hyperperiod;
+    }
+
+    /**
+     * Determine the latest start time of job k of the task at position p, relative to the start
+     * of the active period: the smallest t such that t = B + k * C_i + sum over all other tasks j
+     * with at least its priority of (floor(t / T_j) + 1) * C_j.
+     * @param from A lower bound of the start time, such as the start time of the previous job.
+     */
+    private long startTime(int p, long blocking, long k, long from) {
+        long base = LongMath.add(blocking, LongMath.multiply(k, this.computation[p]));
+        long t = from;
+        while(true) {
+            ++this.iterations;
+            long next = base;
+            for(int j = 0; j < this.higherOrEqual[p]; ++j)
+                if(j != p)
+                    next = LongMath.add(next, LongMath.multiply(t / this.period[j] + 1, this.computation[j]));
+            if(next <= t)
+                return t;
+            t = next;
+        }
+    }
+
+    /**
+     * Determine the latest finish time of a job of the task at position p that starts at the given
+     * time: the smallest t such that t = S + C_i + sum over all tasks j that may preempt it of
+     * (ceil(t / T_j) - floor(S / T_j) - 1) * C_j.
+     */
+    private long finishTime(int p, long start) {
+        long base = LongMath.add(start, this.computation[p]);
+        long t = base;
+        while(true) {
+            ++this.iterations;
+            long next = base;
+            for(int j = 0; j < this.preemptors[p]; ++j)
+                next = LongMath.add(next, LongMath.multiply(LongMath.ceilDiv(t, this.period[j]) - start / this.period[j] - 1, this.computation[j]));
+            if(next == t)
+                return t;
+            t = next;
+        }
+    }
+
+    /**
+     * The result of the analysis of a single task.
+     */
+    static final class TaskResult {
+        long responseTime;
+        long blocking;
+        long busyPeriod;
+        long jobs;
+        long iterations;
+
+        /**
+         * The start times of the jobs in the active period, if they were kept.
+         */
+        long[] starts;
+    }
+}
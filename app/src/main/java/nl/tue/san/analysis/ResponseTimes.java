@@ -0,0 +1,160 @@
+package nl.tue.san.analysis;
+
+/**
+ * The result of a {@link ResponseTimeAnalysis}: the worst-case response time of every task, and how
+ * it was obtained. Tasks are identified by their index in the TaskSet that was analysed, or by
+ * their name.
+ */
+public class ResponseTimes {
+
+    /**
+     * Response time of a task whose jobs may be delayed indefinitely, or whose response time
+     * couldn't be represented.
+     */
+    public static final long UNBOUNDED = Long.MAX_VALUE;
+
+    private final String[] names;
+    private final long[] responseTimes;
+    private final long[] deadlines;
+    private final long[] blocking;
+    private final long[] busyPeriods;
+    private final long[] jobs;
+    private final long iterations;
+    private final long elapsedNanos;
+
+    ResponseTimes(String[] names, long[] responseTimes, long[] deadlines, long[] blocking, long[] busyPeriods, long[] jobs, long iterations, long elapsedNanos) {
+        this.names = names;
+        this.responseTimes = responseTimes;
+        this.deadlines = deadlines;
+        this.blocking = blocking;
+        this.busyPeriods = busyPeriods;
+        this.jobs = jobs;
+        this.iterations = iterations;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Get the number of tasks that were analysed.
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * Get the name of the task at the given index.
+     */
+    public String getName(int index) {
+        return names[index];
+    }
+
+    /**
+     * Get the index of the task with the given name.
+     * @return The index of the task, or -1 if no task with the given name was analysed.
+     */
+    public int indexOf(String name) {
+        for(int i = 0; i < names.length; ++i)
+            if(names[i].equals(name))
+                return i;
+        return -1;
+    }
+
+    /**
+     * Get the worst-case response time of the task at the given index.
+     * @return The response time, or {@link #UNBOUNDED}.
+     */
+    public long getResponseTime(int index) {
+        return responseTimes[index];
+    }
+
+    /**
+     * Get the worst-case response time of the task with the given name.
+     * @return The response time, or {@link #UNBOUNDED}.
+     * @throws IllegalArgumentException If no task with the given name was analysed.
+     */
+    public long getResponseTime(String name) {
+        int index = indexOf(name);
+        if(index < 0)
+            throw new IllegalArgumentException("No task named "+name);
+        return responseTimes[index];
+    }
+
+    /**
+     * Get the relative deadline of the task at the given index.
+     */
+    public long getDeadline(int index) {
+        return deadlines[index];
+    }
+
+    /**
+     * Get the longest time the task at the given index can be blocked by a task with a lower
+     * priority.
+     */
+    public long getBlocking(int index) {
+        return blocking[index];
+    }
+
+    /**
+     * Get the length of the longest level-i active period of the task at the given index, or 0 if
+     * its response time is unbounded.
+     */
+    public long getBusyPeriod(int index) {
+        return busyPeriods[index];
+    }
+
+    /**
+     * Get the number of jobs of the task at the given index that were analysed, which are the jobs
+     * released in its longest level-i active period.
+     */
+    public long getJobs(int index) {
+        return jobs[index];
+    }
+
+    /**
+     * Indicates whether the response time of the task at the given index is bounded.
+     */
+    public boolean isBounded(int index) {
+        return responseTimes[index] != UNBOUNDED;
+    }
+
+    /**
+     * Indicates whether every job of the task at the given index meets its deadline.
+     */
+    public boolean isSchedulable(int index) {
+        return responseTimes[index] <= deadlines[index];
+    }
+
+    /**
+     * Indicates whether every job of every task meets its deadline.
+     */
+    public boolean isSchedulable() {
+        for(int i = 0; i < names.length; ++i)
+            if(!isSchedulable(i))
+                return false;
+        return true;
+    }
+
+    /**
+     * Get the number of fixed point iterations that were needed for the analysis.
+     */
+    public long getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Get the time the analysis took.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("ResponseTimes{");
+        for(int i = 0; i < names.length; ++i) {
+            if(i > 0)
+                builder.append(", ");
+            builder.append(names[i]).append('=').append(isBounded(i) ? String.valueOf(responseTimes[i]) : "unbounded");
+        }
+        return builder.append('}').toString();
+    }
+}
@@ -0,0 +1,69 @@
+package nl.tue.san.analysis;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Binary representation of {@link ResponseTimes}, so that results of an analysis can be stored and
+ * read back without analysing again. Reading back written ResponseTimes results in ResponseTimes
+ * with the same values, including the number of iterations and the time the original analysis
+ * took.
+ */
+public class ResponseTimesIO {
+
+    /**
+     * The version of the format that is written.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Write the given ResponseTimes.
+     * @param responseTimes The ResponseTimes to write.
+     * @param out The output to write to.
+     * @throws IOException If writing failed.
+     */
+    public static void write(ResponseTimes responseTimes, DataOutput out) throws IOException {
+        out.writeByte(VERSION);
+        out.writeInt(responseTimes.size());
+        for(int i = 0; i < responseTimes.size(); ++i) {
+            out.writeUTF(responseTimes.getName(i));
+            out.writeLong(responseTimes.getResponseTime(i));
+            out.writeLong(responseTimes.getDeadline(i));
+            out.writeLong(responseTimes.getBlocking(i));
+            out.writeLong(responseTimes.getBusyPeriod(i));
+            out.writeLong(responseTimes.getJobs(i));
+        }
+        out.writeLong(responseTimes.getIterations());
+        out.writeLong(responseTimes.getElapsedNanos());
+    }
+
+    /**
+     * Read ResponseTimes that were written by {@link #write(ResponseTimes, DataOutput)}.
+     * @param in The input to read from.
+     * @return The ResponseTimes that were read.
+     * @throws IOException If reading failed, or the input doesn't contain ResponseTimes.
+     */
+    public static ResponseTimes read(DataInput in) throws IOException {
+        int version = in.readUnsignedByte();
+        if(version != VERSION)
+            throw new IOException("Unsupported ResponseTimes version "+version);
+
+        int size = in.readInt();
+        if(size < 0)
+            throw new IOException("Negative number of tasks");
+        String[] names = new String[size];
+        long[] responseTimes = new long[size], deadlines = new long[size], blocking = new long[size], busyPeriods = new long[size], jobs = new long[size];
+        for(int i = 0; i < size; ++i) {
+            names[i] = in.readUTF();
+            responseTimes[i] = in.readLong();
+            deadlines[i] = in.readLong();
+            blocking[i] = in.readLong();
+            busyPeriods[i] = in.readLong();
+            jobs[i] = in.readLong();
+        }
+        long iterations = in.readLong();
+        long elapsedNanos = in.readLong();
+        return new ResponseTimes(names, responseTimes, deadlines, blocking, busyPeriods, jobs, iterations, elapsedNanos);
+    }
+}
@@ -0,0 +1,125 @@
+package nl.tue.san.analysis;
+
+/**
+ * The result of a {@link SensitivityAnalysis}: for every task how far its computation time can
+ * grow and its period can shrink while all tasks remain schedulable, and the factor by which all
+ * computation times can be scaled at once. Tasks are identified by their index in the TaskSet that
+ * was analysed.
+ */
+public class Sensitivity {
+
+    /**
+     * The minimal period of a task for which no period results in a schedulable set.
+     */
+    public static final long NONE = -1;
+
+    private final String[] names;
+    private final long[] computations;
+    private final long[] maxComputations;
+    private final long[] periods;
+    private final long[] minPeriods;
+    private final double criticalScalingFactor;
+    private final boolean schedulable;
+    private final long probes;
+    private final long elapsedNanos;
+
+    Sensitivity(String[] names, long[] computations, long[] maxComputations, long[] periods, long[] minPeriods, double criticalScalingFactor, boolean schedulable, long probes, long elapsedNanos) {
+        this.names = names;
+        this.computations = computations;
+        this.maxComputations = maxComputations;
+        this.periods = periods;
+        this.minPeriods = minPeriods;
+        this.criticalScalingFactor = criticalScalingFactor;
+        this.schedulable = schedulable;
+        this.probes = probes;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Get the number of tasks that were analysed.
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * Get the name of the task at the given index.
+     */
+    public String getName(int index) {
+        return names[index];
+    }
+
+    /**
+     * Get the largest computation time of the task at the given index for which all tasks are
+     * schedulable, if nothing else changes.
+     * @return The computation time, or 0 if the tasks aren't schedulable with any computation time
+     * of this task.
+     */
+    public long getMaxComputation(int index) {
+        return maxComputations[index];
+    }
+
+    /**
+     * Get the factor by which the computation time of the task at the given index can be
+     * multiplied while all tasks remain schedulable, if nothing else changes. This is smaller than
+     * 1 if the tasks aren't schedulable.
+     */
+    public double getComputationFactor(int index) {
+        return (double) maxComputations[index] / computations[index];
+    }
+
+    /**
+     * Get the smallest period of the task at the given index for which all tasks are schedulable,
+     * if nothing else changes. This exceeds the current period if the tasks aren't schedulable.
+     * @return The period, or {@link #NONE} if the tasks aren't schedulable with any period of this
+     * task.
+     */
+    public long getMinPeriod(int index) {
+        return minPeriods[index];
+    }
+
+    /**
+     * Get the current period of the task at the given index.
+     */
+    public long getPeriod(int index) {
+        return periods[index];
+    }
+
+    /**
+     * Get the largest factor by which the computation times of all tasks can be multiplied at once,
+     * rounding up, while all tasks remain schedulable. This is smaller than 1 if the tasks aren't
+     * schedulable.
+     */
+    public double getCriticalScalingFactor() {
+        return criticalScalingFactor;
+    }
+
+    /**
+     * Indicates whether the tasks are schedulable as they are.
+     */
+    public boolean isSchedulable() {
+        return schedulable;
+    }
+
+    /**
+     * Get the number of times the schedulability of changed tasks was determined.
+     */
+    public long getProbes() {
+        return probes;
+    }
+
+    /**
+     * Get the time the analysis took.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("Sensitivity{scaling=").append(criticalScalingFactor);
+        for(int i = 0; i < names.length; ++i)
+            builder.append(", ").append(names[i]).append("=C<=").append(maxComputations[i]).append("/T>=").append(minPeriods[i]);
+        return builder.append('}').toString();
+    }
+}
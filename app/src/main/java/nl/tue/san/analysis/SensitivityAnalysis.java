@@ -0,0 +1,284 @@
+package nl.tue.san.analysis;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import nl.tue.san.analysis.ResponseTimeAnalysis.TaskResult;
+import nl.tue.san.tasks.Task;
+import nl.tue.san.tasks.TaskSet;
+import nl.tue.san.util.ParallelJobs;
+
+/**
+ * Sensitivity analysis on top of the exact {@link ResponseTimeAnalysis}. For every task it
+ * determines the largest computation time and the smallest period for which all tasks remain
+ * schedulable, and for the whole set the critical scaling factor of all computation times. Each of
+ * these is a binary search over the analysis, as schedulability can only be lost by increasing a
+ * computation time or decreasing a period.
+ *
+ * The searches are independent of each other and run in parallel as {@link ParallelJobs}. Every
+ * search works on its own copy of the analysis, and reuses results between probes in two ways. Tasks that can't be affected by the changed task keep the result of the unchanged
+ * set, and the other tasks are warm started from the largest known schedulable probe with less
+ * demand, see {@link ResponseTimeAnalysis#analyseTask(int, TaskResult, boolean)}.
+ *
+ * A running analysis can be cancelled from any thread, for example when the user leaves the screen
+ * that shows it.
+ */
+public class SensitivityAnalysis {
+
+    /**
+     * The number of halvings of the interval of the critical scaling factor.
+     */
+    private static final int SCALING_ITERATIONS = 32;
+
+    private final ResponseTimeAnalysis base;
+
+    /**
+     * The results of the unchanged tasks, by position in priority order.
+     */
+    private TaskResult[] baseline;
+    private boolean[] baselineSchedulable;
+
+    private final AtomicLong probes = new AtomicLong();
+    private final ParallelJobs jobs = new ParallelJobs();
+
+    /**
+     * Create a sensitivity analysis of the tasks that are currently contained in the given
+     * TaskSet. Later changes of the TaskSet or its tasks are not reflected in the analysis.
+     * @param taskSet The TaskSet to analyse.
+     */
+    public SensitivityAnalysis(TaskSet taskSet) {
+        this(taskSet.getOrderedTasks());
+    }
+
+    /**
+     * Create a sensitivity analysis of the given tasks. Later changes of the tasks are not
+     * reflected in the analysis.
+     * @param tasks The tasks to analyse.
+     */
+    public SensitivityAnalysis(List<Task> tasks) {
+        this.base = new ResponseTimeAnalysis(tasks);
+    }
+
+    /**
+     * Perform the analysis, blocking until all searches have finished. An analysis can only be
+     * performed once.
+     * @return The margins of the tasks.
+     * @throws CancellationException If the analysis was cancelled.
+     * @throws InterruptedException If the thread was interrupted while waiting, in which case the
+     * analysis is cancelled.
+     */
+    public Sensitivity analyse() throws InterruptedException {
+        long start = System.nanoTime();
+        int size = this.base.size();
+
+        // Analyse the unchanged tasks once, for reuse by all searches.
+        this.baseline = new TaskResult[size];
+        this.baselineSchedulable = new boolean[size];
+        boolean schedulable = true;
+        for(int p = 0; p < size; ++p) {
+            this.baseline[p] = this.base.analyseTask(p, null, true);
+            this.baselineSchedulable[p] = this.baseline[p].responseTime <= this.base.getDeadline(p);
+            schedulable &= this.baselineSchedulable[p];
+        }
+
+        final long[] computations = new long[size], maxComputations = new long[size];
+        final long[] periods = new long[size], minPeriods = new long[size];
+        final double[] scaling = new double[1];
+        final boolean baseSchedulable = schedulable;
+
+        for(int p = 0; p < size; ++p) {
+            final int position = p, index = this.base.indexAt(p);
+            computations[index] = this.base.getComputation(p);
+            periods[index] = this.base.getPeriod(p);
+            this.jobs.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    maxComputations[index] = maxComputation(position, baseSchedulable);
+                    return null;
+                }
+            });
+            this.jobs.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    minPeriods[index] = minPeriod(position, baseSchedulable);
+                    return null;
+                }
+            });
+        }
+        this.jobs.submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                scaling[0] = criticalScalingFactor(baseSchedulable);
+                return null;
+            }
+        });
+        this.jobs.await();
+
+        String[] names = new String[size];
+        for(int i = 0; i < size; ++i)
+            names[i] = this.base.getName(i);
+        return new Sensitivity(names, computations, maxComputations, periods, minPeriods, scaling[0], schedulable, this.probes.get(), System.nanoTime() - start);
+    }
+
+    /**
+     * Cancel the analysis. Searches that haven't started won't start, and running searches stop at
+     * their next probe. {@link #analyse()} then throws a {@link CancellationException}.
+     */
+    public void cancel() {
+        this.jobs.cancel();
+    }
+
+    public boolean isCancelled() {
+        return this.jobs.isCancelled();
+    }
+
+    /**
+     * Determine the largest computation time of the task at position p for which all tasks are
+     * schedulable, or 0 if there is none.
+     */
+    private long maxComputation(int p, boolean schedulable) {
+        ResponseTimeAnalysis analysis = new ResponseTimeAnalysis(this.base);
+        long computation = this.base.getComputation(p);
+
+        // A job can neither take longer than its deadline, nor than its period.
+        long upper = Math.min(this.base.getDeadline(p), this.base.getPeriod(p));
+
+        // The largest computation time known to be schedulable, and the smallest known not to be.
+        long good = schedulable ? computation : 0, bad = schedulable ? upper + 1 : computation;
+        TaskResult[] goodResults = schedulable ? this.baseline : null;
+        TaskResult[] results = new TaskResult[this.base.size()];
+        while(bad - good > 1) {
+            long middle = good + (bad - good) / 2;
+            analysis.setComputation(p, middle);
+            if(this.probe(analysis, p, true, goodResults, results)) {
+                good = middle;
+                goodResults = results;
+                results = new TaskResult[this.base.size()];
+            } else {
+                bad = middle;
+            }
+        }
+        return good;
+    }
+
+    /**
+     * Determine the smallest period of the task at position p for which all tasks are
+     * schedulable, or {@link Sensitivity#NONE} if there is none.
+     */
+    private long minPeriod(int p, boolean schedulable) {
+        ResponseTimeAnalysis analysis = new ResponseTimeAnalysis(this.base);
+
+        // The smallest period known to be schedulable, and the largest known not to be. A period
+        // shorter than the computation time never is.
+        long good, bad;
+        TaskResult[] goodResults;
+        TaskResult[] results = new TaskResult[this.base.size()];
+        if(schedulable) {
+            good = this.base.getPeriod(p);
+            bad = this.base.getComputation(p) - 1;
+            goodResults = this.baseline;
+        } else {
+            good = Integer.MAX_VALUE;
+            bad = this.base.getPeriod(p);
+            analysis.setPeriod(p, good);
+            if(!this.probe(analysis, p, false, null, results))
+                return Sensitivity.NONE;
+            goodResults = results;
+            results = new TaskResult[this.base.size()];
+        }
+
+        while(good - bad > 1) {
+            long middle = bad + (good - bad) / 2;
+            analysis.setPeriod(p, middle);
+            if(this.probe(analysis, p, false, goodResults, results)) {
+                good = middle;
+                goodResults = results;
+                results = new TaskResult[this.base.size()];
+            } else {
+                bad = middle;
+            }
+        }
+        return good;
+    }
+
+    /**
+     * Determine the largest factor by which all computation times can be multiplied, rounding up,
+     * for which all tasks are schedulable.
+     */
+    private double criticalScalingFactor(boolean schedulable) {
+        ResponseTimeAnalysis analysis = new ResponseTimeAnalysis(this.base);
+        int size = this.base.size();
+        if(size == 0)
+            return Double.POSITIVE_INFINITY;
+
+        // Beyond the inverse of the utilization, the utilization exceeds 1.
+        double utilization = 0;
+        for(int p = 0; p < size; ++p)
+            utilization += (double) this.base.getComputation(p) / this.base.getPeriod(p);
+
+        double good = schedulable ? 1 : 0, bad = Math.nextUp(1 / utilization);
+        TaskResult[] goodResults = schedulable ? this.baseline : null;
+        TaskResult[] results = new TaskResult[size];
+        for(int i = 0; i < SCALING_ITERATIONS && good < bad; ++i) {
+            double middle = good + (bad - good) / 2;
+            boolean probed;
+            try {
+                analysis.scaleComputations(this.base, middle);
+                probed = this.probe(analysis, -1, true, goodResults, results);
+            } catch (ArithmeticException e) {
+                probed = false;
+            }
+            if(probed) {
+                good = middle;
+                goodResults = results;
+                results = new TaskResult[size];
+            } else {
+                bad = middle;
+            }
+        }
+        return good;
+    }
+
+    /**
+     * Determine whether all tasks in the given changed analysis are schedulable.
+     * @param changed The position of the only task that was changed, or -1 if all tasks may have
+     *                changed. Tasks that can't be affected by that task are not analysed again.
+     * @param computation Whether the computation time of the changed task was changed, rather
+     *                    than its period. Only a computation time affects the blocking of other
+     *                    tasks.
+     * @param warm The results of a probe with less demand, to warm start from, or null.
+     * @param results Receives the results of all tasks if they are schedulable.
+     * @throws CancellationException If the analysis was cancelled.
+     */
+    private boolean probe(ResponseTimeAnalysis analysis, int changed, boolean computation, TaskResult[] warm, TaskResult[] results) {
+        this.jobs.checkCancelled();
+        this.probes.incrementAndGet();
+
+        for(int q = 0; q < analysis.size(); ++q) {
+            if(changed >= 0 && !this.affects(changed, q, computation)) {
+                if(!this.baselineSchedulable[q])
+                    return false;
+                results[q] = this.baseline[q];
+            } else {
+                results[q] = analysis.analyseTask(q, warm == null ? null : warm[q], true);
+                if(results[q].responseTime > analysis.getDeadline(q))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether a change of the task at position p can affect the response time of the task at
+     * position q. This is the case if p has at least the priority of q, or if p can block q and
+     * its computation time changed.
+     */
+    private boolean affects(int p, int q, boolean computation) {
+        int priority = this.base.getPriority(p), other = this.base.getPriority(q);
+        if(p == q || priority >= other)
+            return true;
+        return computation && this.base.getPreemption(p) > other;
+    }
+}
@@ -0,0 +1,309 @@
+package nl.tue.san.analysis;
+
+import java.util.Arrays;
+import java.util.List;
+
+import nl.tue.san.analysis.ResponseTimeAnalysis.TaskResult;
+import nl.tue.san.tasks.Task;
+import nl.tue.san.tasks.TaskSet;
+
+/**
+ * Assigns preemption thresholds to tasks with given priorities, following the algorithms of Wang
+ * and Saksena. The assignment happens in two phases:
+ * <ol>
+ *     <li>From the lowest to the highest priority, every task gets the lowest threshold for which
+ *     it is schedulable. The response time of a task only depends on the thresholds of tasks with
+ *     a lower priority, which are already assigned, and on its own threshold, which can only
+ *     decrease the response time when it is raised. If no threshold makes a task schedulable,
+ *     no assignment of thresholds does.</li>
+ *     <li>From the highest to the lowest priority, the threshold of every task is raised for as
+ *     long as the tasks it then blocks remain schedulable, so that as few preemptions as possible
+ *     remain.</li>
+ * </ol>
+ * Only the distinct priorities of the tasks are considered as thresholds, as all thresholds
+ * between two consecutive priorities are equivalent.
+ *
+ * Both phases prune the analyses they need. In the first phase, the active period and start times
+ * of a task don't depend on its own threshold, so they are determined once and reused while the
+ * threshold is found by binary search. In the second phase, a task only needs to be analysed again
+ * if its blocking grows beyond the largest blocking for which it is known to be schedulable, and
+ * not if it reaches the smallest blocking for which it is known not to be.
+ */
+public class ThresholdAssignment {
+
+    private final ResponseTimeAnalysis analysis;
+
+    /**
+     * The distinct priorities of the tasks, in increasing order, followed by the preemption value
+     * that makes a task non-preemptive.
+     */
+    private final long[] levels;
+
+    /**
+     * The assigned minimal preemption priority of every task, by position in priority order.
+     */
+    private final long[] preemption;
+
+    private boolean assigned;
+    private boolean schedulable;
+    private long analyses;
+    private long pruned;
+    private long elapsedNanos;
+
+    /**
+     * Create an assignment for the tasks that are currently contained in the given TaskSet. Later
+     * changes of the TaskSet or its tasks are not reflected in the assignment.
+     * @param taskSet The TaskSet to assign thresholds to.
+     */
+    public ThresholdAssignment(TaskSet taskSet) {
+        this(taskSet.getOrderedTasks());
+    }
+
+    /**
+     * Create an assignment for the given tasks. Later changes of the tasks are not reflected in the
+     * assignment.
+     * @param tasks The tasks to assign thresholds to.
+     */
+    public ThresholdAssignment(List<Task> tasks) {
+        this.analysis = new ResponseTimeAnalysis(tasks);
+        int size = this.analysis.size();
+        this.preemption = new long[size];
+
+        long[] levels = new long[size + 1];
+        int count = 0;
+        for(int p = size - 1; p >= 0; --p)
+            if(count == 0 || this.analysis.getPriority(p) != levels[count - 1])
+                levels[count++] = this.analysis.getPriority(p);
+        levels[count] = count == 0 ? 0 : levels[count - 1] + 1;
+        this.levels = Arrays.copyOf(levels, count + 1);
+    }
+
+    /**
+     * Assign thresholds to the tasks that are currently contained in the given TaskSet and, if
+     * that makes them schedulable, write them back to the TaskSet.
+     * @param taskSet The TaskSet to assign thresholds to.
+     * @return Whether the tasks are schedulable with the assigned thresholds.
+     */
+    public static boolean assign(TaskSet taskSet) {
+        ThresholdAssignment assignment = new ThresholdAssignment(taskSet);
+        if(!assignment.assign())
+            return false;
+        assignment.apply(taskSet);
+        return true;
+    }
+
+    /**
+     * Determine the thresholds. This is only done once; later calls return the same result.
+     * @return Whether thresholds were found for which all tasks are schedulable.
+     */
+    public synchronized boolean assign() {
+        if(!this.assigned) {
+            long start = System.nanoTime();
+            this.schedulable = this.assignMinimal();
+            if(this.schedulable)
+                this.maximise();
+            this.elapsedNanos = System.nanoTime() - start;
+            this.assigned = true;
+        }
+        return this.schedulable;
+    }
+
+    /**
+     * Assign the lowest threshold for which it is schedulable to every task, from the lowest to the
+     * highest priority.
+     * @return Whether every task is schedulable.
+     */
+    private boolean assignMinimal() {
+        for(int p = this.analysis.size() - 1; p >= 0; --p) {
+            long deadline = this.analysis.getDeadline(p);
+
+            // The thresholds beyond the priority of the task, of which the highest is tried first:
+            // if the task isn't schedulable when it's non-preemptive, it never is.
+            int low = this.levelAbove(this.analysis.getPriority(p)), high = this.levels.length - 1;
+            this.analysis.setPreemption(p, this.levels[high]);
+            TaskResult warm = this.analyse(p, this.analysis.getBlocking(p), null);
+            if(warm.responseTime > deadline)
+                return false;
+
+            while(low < high) {
+                int middle = (low + high) >>> 1;
+                this.analysis.setPreemption(p, this.levels[middle]);
+                if(this.analyse(p, warm.blocking, warm).responseTime <= deadline)
+                    high = middle;
+                else
+                    low = middle + 1;
+            }
+            this.analysis.setPreemption(p, this.levels[high]);
+            this.preemption[p] = this.levels[high];
+        }
+        return true;
+    }
+
+    /**
+     * Raise the threshold of every task as far as the tasks it then blocks remain schedulable, from
+     * the highest to the lowest priority.
+     */
+    private void maximise() {
+        int size = this.analysis.size();
+
+        // The current blocking of every task, and the largest and smallest blocking for which it is
+        // known to be schedulable and not to be, by position in priority order.
+        long[] blocking = new long[size], good = new long[size], bad = new long[size];
+        TaskResult[] goodResults = new TaskResult[size];
+        for(int p = 0; p < size; ++p) {
+            blocking[p] = good[p] = this.analysis.getBlocking(p);
+            bad[p] = Long.MAX_VALUE;
+        }
+
+        for(int p = 0; p < size; ++p) {
+            long computation = this.analysis.getComputation(p);
+            int level = this.levelAbove(this.preemption[p] - 1);
+
+            // Raising the threshold past a level makes the tasks at that level blocked by this task.
+            while(level < this.levels.length - 1) {
+                long blocked = this.levels[level];
+                int first = this.firstAt(blocked), last = first;
+                boolean schedulable = true;
+                for(; last < size && this.analysis.getPriority(last) == blocked && schedulable; ++last) {
+                    long raised = Math.max(blocking[last], computation);
+                    if(raised <= good[last]) {
+                        ++this.pruned;
+                    } else if(raised >= bad[last]) {
+                        ++this.pruned;
+                        schedulable = false;
+                    } else {
+                        TaskResult result = this.analyse(last, raised, goodResults[last]);
+                        if(result.responseTime <= this.analysis.getDeadline(last)) {
+                            good[last] = raised;
+                            goodResults[last] = result;
+                        } else {
+                            bad[last] = raised;
+                            schedulable = false;
+                        }
+                    }
+                }
+                if(!schedulable)
+                    break;
+
+                for(int q = first; q < last; ++q)
+                    blocking[q] = Math.max(blocking[q], computation);
+                ++level;
+            }
+
+            this.analysis.setPreemption(p, this.levels[level]);
+            this.preemption[p] = this.levels[level];
+        }
+    }
+
+    private TaskResult analyse(int p, long blocking, TaskResult warm) {
+        ++this.analyses;
+        return this.analysis.analyseTask(p, blocking, warm, true);
+    }
+
+    /**
+     * Get the index of the lowest level that exceeds the given priority.
+     */
+    private int levelAbove(long priority) {
+        int low = 0, high = this.levels.length - 1;
+        while(low < high) {
+            int middle = (low + high) >>> 1;
+            if(this.levels[middle] > priority)
+                high = middle;
+            else
+                low = middle + 1;
+        }
+        return low;
+    }
+
+    /**
+     * Get the first position in priority order of the tasks with the given priority.
+     */
+    private int firstAt(long priority) {
+        int low = 0, high = this.analysis.size();
+        while(low < high) {
+            int middle = (low + high) >>> 1;
+            if(this.analysis.getPriority(middle) > priority)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * Get the assigned threshold of the task at the given index, in the order of the tasks that
+     * were given. A threshold beyond the highest priority makes the task non-preemptive.
+     * @throws IllegalStateException If no thresholds were assigned.
+     */
+    public int getThreshold(int index) {
+        this.assertAssigned();
+        for(int p = 0; p < this.analysis.size(); ++p)
+            if(this.analysis.indexAt(p) == index)
+                return (int) Math.min(this.preemption[p], Integer.MAX_VALUE);
+        throw new IndexOutOfBoundsException("No task at index "+index);
+    }
+
+    /**
+     * Write the assigned thresholds back to the given TaskSet, which must contain the tasks the
+     * thresholds were assigned to. Every task of which the threshold changes is replaced through
+     * {@link TaskSet#put(Task)} by a copy with the new threshold. Tasks are replaced in their
+     * current order, so the order of the TaskSet is retained.
+     * @param taskSet The TaskSet to write the thresholds to.
+     * @return The number of tasks of which the threshold changed.
+     * @throws IllegalStateException If no schedulable thresholds were assigned.
+     */
+    public int apply(TaskSet taskSet) {
+        this.assertAssigned();
+        if(!this.schedulable)
+            throw new IllegalStateException("No schedulable thresholds were assigned");
+
+        int[] thresholds = new int[this.analysis.size()];
+        for(int p = 0; p < thresholds.length; ++p)
+            thresholds[this.analysis.indexAt(p)] = (int) Math.min(this.preemption[p], Integer.MAX_VALUE);
+
+        List<Task> tasks = taskSet.getOrderedTasks();
+        boolean changed = false;
+        int count = 0;
+        for(int i = 0; i < tasks.size(); ++i) {
+            Task task = tasks.get(i);
+            int threshold = thresholds[i];
+            if(!task.getName().equals(this.analysis.getName(i)))
+                throw new IllegalArgumentException("TaskSet doesn't contain the assigned tasks in order");
+            changed |= task.getThreshold() != threshold;
+
+            // Once a task is replaced, it moves to the end, so all later tasks must be replaced too.
+            if(changed) {
+                taskSet.put(new Task(task.getName(), task.getColor(), task.getOffset(), task.getPeriod(), task.getDeadline(), task.getComputation(), task.getPriority(), threshold));
+                if(task.getThreshold() != threshold)
+                    ++count;
+            }
+        }
+        return count;
+    }
+
+    private void assertAssigned() {
+        if(!this.assigned)
+            throw new IllegalStateException("No thresholds were assigned yet");
+    }
+
+    /**
+     * Get the number of tasks that were analysed.
+     */
+    public long getAnalyses() {
+        return this.analyses;
+    }
+
+    /**
+     * Get the number of analyses that were skipped, because their outcome was already known.
+     */
+    public long getPruned() {
+        return this.pruned;
+    }
+
+    /**
+     * Get the time the assignment took.
+     */
+    public long getElapsedNanos() {
+        return this.elapsedNanos;
+    }
+}
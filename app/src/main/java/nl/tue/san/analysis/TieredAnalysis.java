@@ -0,0 +1,173 @@
+package nl.tue.san.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import nl.tue.san.analysis.Verdict.Tier;
+import nl.tue.san.tasks.Task;
+import nl.tue.san.tasks.TaskSet;
+
+/**
+ * Decides whether tasks are schedulable with a policy by trying the cheapest tests first, and only
+ * escalating to an exact analysis if none of them is conclusive. The tests are tried in the order
+ * of {@link Tier}:
+ * <ol>
+ *     <li>A utilization above 1 is never schedulable.</li>
+ *     <li>With fixed priorities, if every task is fully preemptive and the priorities are unique
+ *     and ordered by min(D, T), the bound of Liu and Layland and the hyperbolic bound are tried on
+ *     the densities C / min(D, T). A task whose deadline is shorter than its period is no easier
+ *     than one whose period is shortened to its deadline, for which these bounds hold.</li>
+ *     <li>With EDF, a total density of at most 1 is schedulable. If no deadline is shorter than
+ *     its period, the density is the utilization, so this decides.</li>
+ *     <li>Otherwise the {@link ResponseTimeAnalysis} or the {@link DemandAnalysis} decides.</li>
+ * </ol>
+ * The bounds take time linear in the number of tasks, apart from checking the order of the
+ * priorities.
+ */
+public class TieredAnalysis {
+
+    /**
+     * Margin for rounding errors when comparing the utilization with a bound.
+     */
+    private static final double UTILIZATION_MARGIN = 1e-9;
+
+    private final List<Task> tasks;
+    private final Policy policy;
+    private final long[] tierNanos = new long[Tier.values().length];
+
+    /**
+     * Create an analysis of the tasks that are currently contained in the given TaskSet. Later
+     * changes of the TaskSet are not reflected in the analysis.
+     * @param taskSet The TaskSet to analyse.
+     * @param policy The policy with which the tasks are scheduled.
+     */
+    public TieredAnalysis(TaskSet taskSet, Policy policy) {
+        this(taskSet.getOrderedTasks(), policy);
+    }
+
+    /**
+     * Create an analysis of the given tasks.
+     * @param tasks The tasks to analyse.
+     * @param policy The policy with which the tasks are scheduled.
+     */
+    public TieredAnalysis(List<Task> tasks, Policy policy) {
+        this.tasks = new ArrayList<>(tasks);
+        this.policy = policy;
+    }
+
+    /**
+     * Decide whether the tasks that are currently contained in the given TaskSet are schedulable
+     * by the given scheduler.
+     * @param taskSet The TaskSet to analyse.
+     * @param scheduler The name of the scheduler, see {@link Policy#forScheduler(String)}.
+     * @throws IllegalArgumentException If there is no policy for the scheduler.
+     */
+    public static Verdict analyse(TaskSet taskSet, String scheduler) {
+        return new TieredAnalysis(taskSet, Policy.forScheduler(scheduler)).analyse();
+    }
+
+    /**
+     * Decide whether the tasks are schedulable.
+     * @return The verdict, including the test that decided it.
+     */
+    public synchronized Verdict analyse() {
+        Arrays.fill(this.tierNanos, 0);
+        long start = System.nanoTime();
+        int size = this.tasks.size();
+        double utilization = 0;
+        for(Task task : this.tasks)
+            utilization += (double) task.getComputation() / task.getPeriod();
+        start = this.record(Tier.UTILIZATION, start);
+        if(utilization > 1 + UTILIZATION_MARGIN)
+            return this.verdict(false, Tier.UTILIZATION);
+
+        if(this.policy == Policy.EDF) {
+            boolean accepted = this.density() <= 1 + UTILIZATION_MARGIN;
+            start = this.record(Tier.DENSITY, start);
+            if(accepted)
+                return this.verdict(true, Tier.DENSITY);
+
+            boolean schedulable = new DemandAnalysis(this.tasks).analyse();
+            this.record(Tier.PROCESSOR_DEMAND, start);
+            return this.verdict(schedulable, Tier.PROCESSOR_DEMAND);
+        }
+
+        if(this.isDeadlineMonotonicPreemptive()) {
+            boolean accepted = this.density() <= size * (Math.pow(2, 1.0 / size) - 1) - UTILIZATION_MARGIN;
+            start = this.record(Tier.LIU_LAYLAND, start);
+            if(accepted)
+                return this.verdict(true, Tier.LIU_LAYLAND);
+
+            double product = 1;
+            for(Task task : this.tasks)
+                product *= density(task) + 1;
+            accepted = product <= 2 - UTILIZATION_MARGIN;
+            start = this.record(Tier.HYPERBOLIC, start);
+            if(accepted)
+                return this.verdict(true, Tier.HYPERBOLIC);
+        }
+
+        ResponseTimeAnalysis analysis = new ResponseTimeAnalysis(this.tasks);
+        for(int p = 0; p < size; ++p) {
+            if(this.policy == Policy.FPPS)
+                analysis.setPreemption(p, analysis.getPriority(p) + 1L);
+            else if(this.policy == Policy.FPNS)
+                analysis.setPreemption(p, Long.MAX_VALUE);
+        }
+        boolean schedulable = analysis.analyse().isSchedulable();
+        this.record(Tier.RESPONSE_TIME, start);
+        return this.verdict(schedulable, Tier.RESPONSE_TIME);
+    }
+
+    private double density() {
+        double density = 0;
+        for(Task task : this.tasks)
+            density += density(task);
+        return density;
+    }
+
+    private static double density(Task task) {
+        return (double) task.getComputation() / Math.min(task.getDeadline(), task.getPeriod());
+    }
+
+    /**
+     * Indicates whether every task is preempted by all tasks with a higher priority, and the
+     * priorities are unique and don't increase with min(D, T).
+     */
+    private boolean isDeadlineMonotonicPreemptive() {
+        for(Task task : this.tasks)
+            if(this.policy == Policy.FPNS || (this.policy == Policy.FPTS && task.getMinimalPreemptionPriority() > task.getPriority() + 1L))
+                return false;
+
+        List<Task> byPriority = new ArrayList<>(this.tasks);
+        Collections.sort(byPriority, new Comparator<Task>() {
+            @Override
+            public int compare(Task a, Task b) {
+                return a.getPriority() == b.getPriority() ? 0 : (a.getPriority() > b.getPriority() ? -1 : 1);
+            }
+        });
+        for(int i = 1; i < byPriority.size(); ++i) {
+            Task higher = byPriority.get(i - 1), lower = byPriority.get(i);
+            if(higher.getPriority() == lower.getPriority() || Math.min(higher.getDeadline(), higher.getPeriod()) > Math.min(lower.getDeadline(), lower.getPeriod()))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Add the time since the given start to the given test.
+     * @return The current time.
+     */
+    private long record(Tier tier, long start) {
+        long now = System.nanoTime();
+        this.tierNanos[tier.ordinal()] += Math.max(1, now - start);
+        return now;
+    }
+
+    private Verdict verdict(boolean schedulable, Tier tier) {
+        return new Verdict(schedulable, tier, this.tierNanos.clone());
+    }
+}
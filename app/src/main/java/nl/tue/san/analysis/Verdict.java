@@ -0,0 +1,95 @@
+package nl.tue.san.analysis;
+
+/**
+ * The result of a {@link TieredAnalysis}: whether the tasks are schedulable, which test decided
+ * that, and how long every test that was tried took.
+ */
+public class Verdict {
+
+    /**
+     * The tests of a {@link TieredAnalysis}, in the order in which they are tried.
+     */
+    public enum Tier {
+        /**
+         * Rejects tasks of which the utilization exceeds 1.
+         */
+        UTILIZATION,
+
+        /**
+         * Accepts preemptive tasks with deadline-monotonic priorities of which the total density
+         * is at most n(2^(1/n) - 1), by Liu and Layland.
+         */
+        LIU_LAYLAND,
+
+        /**
+         * Accepts preemptive tasks with deadline-monotonic priorities of which the product of the
+         * densities plus 1 is at most 2, by Bini et al.
+         */
+        HYPERBOLIC,
+
+        /**
+         * Accepts tasks scheduled by EDF of which the total density is at most 1.
+         */
+        DENSITY,
+
+        /**
+         * Decides for fixed priorities by the exact {@link ResponseTimeAnalysis}.
+         */
+        RESPONSE_TIME,
+
+        /**
+         * Decides for EDF by the exact {@link DemandAnalysis}.
+         */
+        PROCESSOR_DEMAND
+    }
+
+    private final boolean schedulable;
+    private final Tier tier;
+    private final long[] tierNanos;
+
+    Verdict(boolean schedulable, Tier tier, long[] tierNanos) {
+        this.schedulable = schedulable;
+        this.tier = tier;
+        this.tierNanos = tierNanos;
+    }
+
+    /**
+     * Indicates whether every job of every task meets its deadline.
+     */
+    public boolean isSchedulable() {
+        return schedulable;
+    }
+
+    /**
+     * Get the test that decided whether the tasks are schedulable.
+     */
+    public Tier getTier() {
+        return tier;
+    }
+
+    /**
+     * Get the time the given test took, or 0 if it wasn't tried.
+     */
+    public long getTierNanos(Tier tier) {
+        return tierNanos[tier.ordinal()];
+    }
+
+    /**
+     * Get the time all tests together took.
+     */
+    public long getElapsedNanos() {
+        long elapsed = 0;
+        for(long nanos : tierNanos)
+            elapsed += nanos;
+        return elapsed;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("Verdict{").append(schedulable ? "schedulable" : "not schedulable").append(" by ").append(tier);
+        for(Tier tried : Tier.values())
+            if(tierNanos[tried.ordinal()] > 0)
+                builder.append(", ").append(tried).append('=').append(tierNanos[tried.ordinal()] / 1000).append("us");
+        return builder.append('}').toString();
+    }
+}
@@ -0,0 +1,97 @@
+package nl.tue.san.generation;
+
+import nl.tue.san.analysis.Policy;
+
+/**
+ * The result of an {@link AcceptanceRatioEvaluation}: for every utilization that was evaluated and
+ * every policy, the number of generated sets that were found schedulable.
+ */
+public class AcceptanceRatio {
+
+    private final double[] utilizations;
+    private final Policy[] policies;
+    private final long samples;
+
+    /**
+     * The number of accepted sets, by utilization and then by policy.
+     */
+    private final long[] accepted;
+    private final long elapsedNanos;
+
+    AcceptanceRatio(double[] utilizations, Policy[] policies, long samples, long[] accepted, long elapsedNanos) {
+        this.utilizations = utilizations;
+        this.policies = policies;
+        this.samples = samples;
+        this.accepted = accepted;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Get the number of utilizations that were evaluated.
+     */
+    public int getUtilizationCount() {
+        return utilizations.length;
+    }
+
+    /**
+     * Get the utilization at the given index.
+     */
+    public double getUtilization(int index) {
+        return utilizations[index];
+    }
+
+    /**
+     * Get the number of policies that were evaluated.
+     */
+    public int getPolicyCount() {
+        return policies.length;
+    }
+
+    /**
+     * Get the policy at the given index.
+     */
+    public Policy getPolicy(int index) {
+        return policies[index];
+    }
+
+    /**
+     * Get the number of sets that were generated for every utilization.
+     */
+    public long getSamples() {
+        return samples;
+    }
+
+    /**
+     * Get the number of sets with the utilization at the given index that were found schedulable
+     * with the policy at the given index.
+     */
+    public long getAccepted(int utilization, int policy) {
+        return accepted[utilization * policies.length + policy];
+    }
+
+    /**
+     * Get the fraction of sets with the utilization at the given index that were found schedulable
+     * with the policy at the given index.
+     */
+    public double getRatio(int utilization, int policy) {
+        return samples == 0 ? 0 : (double) getAccepted(utilization, policy) / samples;
+    }
+
+    /**
+     * Get the time the evaluation took.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("AcceptanceRatio{samples=").append(samples);
+        for(int u = 0; u < utilizations.length; ++u) {
+            builder.append(", U=").append(utilizations[u]).append(':');
+            for(int p = 0; p < policies.length; ++p)
+                builder.append(' ').append(policies[p]).append('=').append(getRatio(u, p));
+        }
+        return builder.append('}').toString();
+    }
+}
@@ -0,0 +1,114 @@
+package nl.tue.san.generation;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import nl.tue.san.analysis.Policy;
+import nl.tue.san.analysis.TieredAnalysis;
+import nl.tue.san.tasks.Task;
+import nl.tue.san.util.ParallelJobs;
+
+/**
+ * Determines for a number of utilizations which fraction of the sets of a {@link TaskSetGenerator}
+ * is schedulable with every policy, according to the {@link TieredAnalysis}. The sets are
+ * generated in chunks that run in parallel as {@link ParallelJobs}, and are dropped as soon as
+ * they have been analysed, so the number of sets is only limited by time, not by memory.
+ *
+ * A running evaluation can be cancelled from any thread.
+ */
+public class AcceptanceRatioEvaluation {
+
+    /**
+     * The number of sets that are generated and analysed by a single job on the pool.
+     */
+    private static final int CHUNK = 512;
+
+    private final TaskSetGenerator generator;
+    private final double[] utilizations;
+    private final long samples;
+    private final Policy[] policies;
+
+    private final ParallelJobs jobs = new ParallelJobs();
+
+    /**
+     * Create an evaluation. The generator must not be changed while the evaluation runs.
+     * @param generator The generator of the sets.
+     * @param utilizations The total utilizations for which sets are generated.
+     * @param samples The number of sets that is generated for every utilization.
+     * @param policies The policies with which every set is analysed.
+     * @throws IllegalArgumentException If the number of samples is negative.
+     */
+    public AcceptanceRatioEvaluation(TaskSetGenerator generator, double[] utilizations, long samples, Policy... policies) {
+        if(samples < 0)
+            throw new IllegalArgumentException("Number of samples must not be negative");
+        this.generator = generator;
+        this.utilizations = utilizations.clone();
+        this.samples = samples;
+        this.policies = policies.clone();
+    }
+
+    /**
+     * Perform the evaluation, blocking until all sets have been analysed. An evaluation can only be
+     * performed once.
+     * @return The acceptance ratios.
+     * @throws CancellationException If the evaluation was cancelled.
+     * @throws InterruptedException If the thread was interrupted while waiting, in which case the
+     * evaluation is cancelled.
+     */
+    public AcceptanceRatio evaluate() throws InterruptedException {
+        long start = System.nanoTime();
+        final AtomicLongArray accepted = new AtomicLongArray(this.utilizations.length * this.policies.length);
+
+        for(int u = 0; u < this.utilizations.length; ++u) {
+            for(long from = 0; from < this.samples; from += CHUNK) {
+                final int utilization = u;
+                final long first = from, last = Math.min(this.samples, from + CHUNK);
+                this.jobs.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        evaluate(utilization, first, last, accepted);
+                        return null;
+                    }
+                });
+            }
+        }
+        this.jobs.await();
+
+        long[] counts = new long[accepted.length()];
+        for(int i = 0; i < counts.length; ++i)
+            counts[i] = accepted.get(i);
+        return new AcceptanceRatio(this.utilizations.clone(), this.policies.clone(), this.samples, counts, System.nanoTime() - start);
+    }
+
+    /**
+     * Generate and analyse the sets with indices first up to last for the utilization at the given
+     * index, and add the numbers of accepted sets to the given counts.
+     * @throws CancellationException If the evaluation was cancelled.
+     */
+    private void evaluate(int utilization, long first, long last, AtomicLongArray accepted) {
+        long[] counts = new long[this.policies.length];
+        for(long index = first; index < last; ++index) {
+            this.jobs.checkCancelled();
+            List<Task> tasks = this.generator.generateTasks(this.utilizations[utilization], index);
+            for(int p = 0; p < this.policies.length; ++p)
+                if(new TieredAnalysis(tasks, this.policies[p]).analyse().isSchedulable())
+                    ++counts[p];
+        }
+        for(int p = 0; p < counts.length; ++p)
+            accepted.addAndGet(utilization * this.policies.length + p, counts[p]);
+    }
+
+    /**
+     * Cancel the evaluation. Chunks that haven't started won't start, and running chunks stop at
+     * their next set. {@link #evaluate()} then throws a {@link CancellationException}.
+     */
+    public void cancel() {
+        this.jobs.cancel();
+    }
+
+    public boolean isCancelled() {
+        return this.jobs.isCancelled();
+    }
+}
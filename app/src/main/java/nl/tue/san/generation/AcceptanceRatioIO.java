@@ -0,0 +1,103 @@
+package nl.tue.san.generation;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+import nl.tue.san.analysis.Policy;
+
+/**
+ * Representations of an {@link AcceptanceRatio}: CSV with a row per utilization and a column per
+ * policy for plotting, and a compact binary format from which the same AcceptanceRatio can be read
+ * back.
+ */
+public class AcceptanceRatioIO {
+
+    /**
+     * The version of the binary format that is written.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Write the given AcceptanceRatio as CSV. The first row names the columns: the utilization,
+     * the number of samples and the ratio of every policy.
+     * @param ratio The AcceptanceRatio to write.
+     * @param out The output to write to.
+     * @throws IOException If writing failed.
+     */
+    public static void writeCsv(AcceptanceRatio ratio, Writer out) throws IOException {
+        out.write("utilization,samples");
+        for(int p = 0; p < ratio.getPolicyCount(); ++p)
+            out.write(","+ratio.getPolicy(p).name());
+        out.write("\n");
+
+        for(int u = 0; u < ratio.getUtilizationCount(); ++u) {
+            out.write(String.format(Locale.ROOT, "%.4f,%d", ratio.getUtilization(u), ratio.getSamples()));
+            for(int p = 0; p < ratio.getPolicyCount(); ++p)
+                out.write(String.format(Locale.ROOT, ",%.6f", ratio.getRatio(u, p)));
+            out.write("\n");
+        }
+        out.flush();
+    }
+
+    /**
+     * Write the given AcceptanceRatio in the binary format.
+     * @param ratio The AcceptanceRatio to write.
+     * @param out The output to write to.
+     * @throws IOException If writing failed.
+     */
+    public static void write(AcceptanceRatio ratio, DataOutput out) throws IOException {
+        out.writeByte(VERSION);
+        out.writeInt(ratio.getUtilizationCount());
+        for(int u = 0; u < ratio.getUtilizationCount(); ++u)
+            out.writeDouble(ratio.getUtilization(u));
+        out.writeInt(ratio.getPolicyCount());
+        for(int p = 0; p < ratio.getPolicyCount(); ++p)
+            out.writeUTF(ratio.getPolicy(p).name());
+        out.writeLong(ratio.getSamples());
+        for(int u = 0; u < ratio.getUtilizationCount(); ++u)
+            for(int p = 0; p < ratio.getPolicyCount(); ++p)
+                out.writeLong(ratio.getAccepted(u, p));
+        out.writeLong(ratio.getElapsedNanos());
+    }
+
+    /**
+     * Read an AcceptanceRatio that was written by {@link #write(AcceptanceRatio, DataOutput)}.
+     * @param in The input to read from.
+     * @return The AcceptanceRatio that was read.
+     * @throws IOException If reading failed, or the input doesn't contain an AcceptanceRatio.
+     */
+    public static AcceptanceRatio read(DataInput in) throws IOException {
+        int version = in.readUnsignedByte();
+        if(version != VERSION)
+            throw new IOException("Unsupported AcceptanceRatio version "+version);
+
+        int utilizationCount = in.readInt();
+        if(utilizationCount < 0)
+            throw new IOException("Negative number of utilizations");
+        double[] utilizations = new double[utilizationCount];
+        for(int u = 0; u < utilizationCount; ++u)
+            utilizations[u] = in.readDouble();
+
+        int policyCount = in.readInt();
+        if(policyCount < 0)
+            throw new IOException("Negative number of policies");
+        Policy[] policies = new Policy[policyCount];
+        for(int p = 0; p < policyCount; ++p) {
+            try {
+                policies[p] = Policy.valueOf(in.readUTF());
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Unknown policy", e);
+            }
+        }
+
+        long samples = in.readLong();
+        long[] accepted = new long[utilizationCount * policyCount];
+        for(int i = 0; i < accepted.length; ++i)
+            accepted[i] = in.readLong();
+        long elapsedNanos = in.readLong();
+        return new AcceptanceRatio(utilizations, policies, samples, accepted, elapsedNanos);
+    }
+}
@@ -0,0 +1,288 @@
+package nl.tue.san.generation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import nl.tue.san.tasks.Task;
+import nl.tue.san.tasks.TaskSet;
+import nl.tue.san.util.Hashing;
+
+/**
+ * Generates random tasks for the evaluation of schedulers. Every set is determined by the seed of
+ * the generator, its configuration, the total utilization and an index, so a set can be generated
+ * again without storing it, and sets can be generated in parallel and in any order.
+ *
+ * The utilizations of the tasks are drawn by UUniFast, which is uniform over all utilizations with
+ * the requested total, or by UUniFast-Discard, which draws again as long as a task exceeds the
+ * maximal utilization of a task. Periods are drawn log-uniformly, or as powers of 2 times the
+ * minimal period so that they are harmonic. The computation time of a task is its utilization
+ * times its period, rounded to a whole number of at least 1, so the total utilization of a set
+ * differs slightly from the requested one. Priorities are unique and deadline monotonic, with 1
+ * the lowest.
+ */
+public class TaskSetGenerator {
+
+    /**
+     * How the utilizations of the tasks are drawn.
+     */
+    public enum Utilizations {
+        UUNIFAST, UUNIFAST_DISCARD
+    }
+
+    /**
+     * How the periods of the tasks are drawn.
+     */
+    public enum Periods {
+        /**
+         * Uniformly distributed logarithms between the minimal and maximal period.
+         */
+        LOG_UNIFORM,
+
+        /**
+         * The minimal period times a uniformly drawn power of 2, up to the maximal period.
+         */
+        HARMONIC
+    }
+
+    /**
+     * How the deadlines of the tasks are drawn.
+     */
+    public enum Deadlines {
+        /**
+         * Equal to the period.
+         */
+        IMPLICIT,
+
+        /**
+         * Uniformly distributed between the computation time and the period.
+         */
+        CONSTRAINED,
+
+        /**
+         * Uniformly distributed between the computation time and twice the period.
+         */
+        ARBITRARY
+    }
+
+    /**
+     * How the preemption thresholds of the tasks are drawn.
+     */
+    public enum Thresholds {
+        /**
+         * No thresholds, so every task is fully preemptive.
+         */
+        NONE,
+
+        /**
+         * Uniformly distributed between the priority of the task plus 1 and the number of tasks
+         * plus 1.
+         */
+        RANDOM,
+
+        /**
+         * Exceeding every priority, so no task is ever preempted.
+         */
+        NON_PREEMPTIVE
+    }
+
+    /**
+     * The number of times UUniFast-Discard draws utilizations before it gives up.
+     */
+    private static final int DISCARD_ATTEMPTS = 1000;
+
+    private final long seed;
+    private int size = 10;
+    private Utilizations utilizations = Utilizations.UUNIFAST;
+    private double maxUtilization = 1;
+    private Periods periods = Periods.LOG_UNIFORM;
+    private int minPeriod = 10;
+    private int maxPeriod = 100000;
+    private Deadlines deadlines = Deadlines.IMPLICIT;
+    private Thresholds thresholds = Thresholds.NONE;
+
+    /**
+     * Create a generator of sets of 10 tasks with implicit deadlines and no thresholds, of which
+     * the utilizations are drawn by UUniFast and the periods are log-uniformly distributed between
+     * 10 and 100000.
+     * @param seed The seed from which all sets are drawn.
+     */
+    public TaskSetGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Set the number of tasks in every set.
+     * @throws IllegalArgumentException If the size is smaller than 1.
+     */
+    public void setSize(int size) {
+        if(size < 1)
+            throw new IllegalArgumentException("Size must be at least 1");
+        this.size = size;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Set how the utilizations of the tasks are drawn.
+     * @param utilizations The distribution of the utilizations.
+     * @param maxUtilization The maximal utilization of a single task, which is only used by
+     *                       UUniFast-Discard.
+     * @throws IllegalArgumentException If the maximal utilization isn't positive.
+     */
+    public void setUtilizations(Utilizations utilizations, double maxUtilization) {
+        if(!(maxUtilization > 0))
+            throw new IllegalArgumentException("Maximal utilization must be positive");
+        this.utilizations = utilizations;
+        this.maxUtilization = maxUtilization;
+    }
+
+    /**
+     * Set how the periods of the tasks are drawn.
+     * @param periods The distribution of the periods.
+     * @param minPeriod The minimal period.
+     * @param maxPeriod The maximal period.
+     * @throws IllegalArgumentException If the minimal period is smaller than 1 or exceeds the
+     * maximal period.
+     */
+    public void setPeriods(Periods periods, int minPeriod, int maxPeriod) {
+        if(minPeriod < 1 || minPeriod > maxPeriod)
+            throw new IllegalArgumentException("Periods must satisfy 1 <= minimum <= maximum");
+        this.periods = periods;
+        this.minPeriod = minPeriod;
+        this.maxPeriod = maxPeriod;
+    }
+
+    public void setDeadlines(Deadlines deadlines) {
+        this.deadlines = deadlines;
+    }
+
+    public void setThresholds(Thresholds thresholds) {
+        this.thresholds = thresholds;
+    }
+
+    /**
+     * Generate the set with the given index and total utilization, as a TaskSet.
+     * @see #generateTasks(double, long)
+     */
+    public TaskSet generate(double utilization, long index) {
+        return new TaskSet("Generated "+index, this.generateTasks(utilization, index));
+    }
+
+    /**
+     * Generate the tasks of the set with the given index and total utilization. Generating the same
+     * set again results in equal tasks.
+     * @param utilization The total utilization of the tasks.
+     * @param index The index of the set.
+     * @return The tasks, named T1 to Tn.
+     * @throws IllegalArgumentException If the utilization isn't positive, or UUniFast-Discard can't
+     * draw utilizations that don't exceed the maximum.
+     */
+    public List<Task> generateTasks(double utilization, long index) {
+        if(!(utilization > 0))
+            throw new IllegalArgumentException("Utilization must be positive");
+        Random random = new Random(Hashing.mix(this.seed ^ Hashing.mix(index) ^ Double.doubleToLongBits(utilization)));
+        int size = this.size;
+
+        double[] shares = this.drawUtilizations(random, size, utilization);
+        int[] periods = new int[size], computations = new int[size], deadlines = new int[size];
+        for(int i = 0; i < size; ++i) {
+            periods[i] = this.drawPeriod(random);
+            computations[i] = (int) Math.max(1, Math.min(Integer.MAX_VALUE, Math.round(shares[i] * periods[i])));
+            deadlines[i] = this.drawDeadline(random, computations[i], periods[i]);
+        }
+
+        // Deadline-monotonic priorities, with n for the shortest deadline.
+        Integer[] byDeadline = new Integer[size];
+        for(int i = 0; i < size; ++i)
+            byDeadline[i] = i;
+        final int[] sorted = deadlines;
+        Arrays.sort(byDeadline, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return sorted[a] == sorted[b] ? a.compareTo(b) : (sorted[a] < sorted[b] ? -1 : 1);
+            }
+        });
+        int[] priorities = new int[size];
+        for(int rank = 0; rank < size; ++rank)
+            priorities[byDeadline[rank]] = size - rank;
+
+        List<Task> tasks = new ArrayList<>(size);
+        for(int i = 0; i < size; ++i) {
+            int threshold = Task.NO_PREEMPTION_THRESHOLD;
+            if(this.thresholds == Thresholds.RANDOM)
+                threshold = priorities[i] + 1 + random.nextInt(size - priorities[i] + 1);
+            else if(this.thresholds == Thresholds.NON_PREEMPTIVE)
+                threshold = size + 1;
+            int color = 0xFF000000 | random.nextInt(0x1000000);
+            tasks.add(new Task("T"+(i + 1), color, 0, periods[i], deadlines[i], computations[i], priorities[i], threshold));
+        }
+        return Collections.unmodifiableList(tasks);
+    }
+
+    private double[] drawUtilizations(Random random, int size, double utilization) {
+        if(this.utilizations == Utilizations.UUNIFAST)
+            return uunifast(random, size, utilization);
+
+        if(utilization > size * this.maxUtilization)
+            throw new IllegalArgumentException("Utilization exceeds "+size+" times the maximal utilization");
+        for(int attempt = 0; attempt < DISCARD_ATTEMPTS; ++attempt) {
+            double[] shares = uunifast(random, size, utilization);
+            boolean discard = false;
+            for(double share : shares)
+                discard |= share > this.maxUtilization;
+            if(!discard)
+                return shares;
+        }
+        throw new IllegalArgumentException("No utilizations within the maximum after "+DISCARD_ATTEMPTS+" attempts");
+    }
+
+    /**
+     * Draw utilizations with the given total uniformly, by the UUniFast algorithm of Bini and
+     * Buttazzo.
+     */
+    private static double[] uunifast(Random random, int size, double utilization) {
+        double[] shares = new double[size];
+        double remaining = utilization;
+        for(int i = 0; i < size - 1; ++i) {
+            double next = remaining * Math.pow(random.nextDouble(), 1.0 / (size - 1 - i));
+            shares[i] = remaining - next;
+            remaining = next;
+        }
+        shares[size - 1] = remaining;
+        return shares;
+    }
+
+    private int drawPeriod(Random random) {
+        if(this.periods == Periods.HARMONIC) {
+            int powers = 0;
+            while(((long) this.minPeriod << (powers + 1)) <= this.maxPeriod)
+                ++powers;
+            return this.minPeriod << random.nextInt(powers + 1);
+        }
+        double log = Math.log(this.minPeriod) + random.nextDouble() * (Math.log(this.maxPeriod + 1.0) - Math.log(this.minPeriod));
+        return (int) Math.min(this.maxPeriod, Math.max(this.minPeriod, (long) Math.exp(log)));
+    }
+
+    private int drawDeadline(Random random, int computation, int period) {
+        long maximum;
+        switch (this.deadlines) {
+            case CONSTRAINED:
+                maximum = period;
+                break;
+            case ARBITRARY:
+                maximum = Math.min(Integer.MAX_VALUE, 2L * period);
+                break;
+            default:
+                return period;
+        }
+        if(computation >= maximum)
+            return (int) maximum;
+        return computation + (int) (random.nextDouble() * (maximum - computation + 1));
+    }
+}
@@ -0,0 +1,62 @@
+package nl.tue.san.net;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cancels a group of requests at once, typically all requests made for a screen when it goes away.
+ * Cancelled requests that are waiting are never sent, running requests are aborted, and the
+ * callbacks of cancelled requests are never called.
+ *
+ * A token can only be cancelled once; requests that are made with a cancelled token are cancelled
+ * right away.
+ */
+public class CancellationToken {
+
+    private final List<PendingRequest> requests = new ArrayList<>();
+    private boolean cancelled;
+
+    /**
+     * Cancel all requests made with this token, and all requests that are made with it later.
+     */
+    public void cancel() {
+        List<PendingRequest> requests;
+        synchronized (this.requests) {
+            if(this.cancelled)
+                return;
+            this.cancelled = true;
+            requests = new ArrayList<>(this.requests);
+            this.requests.clear();
+        }
+        for(PendingRequest request : requests)
+            request.cancel();
+    }
+
+    public boolean isCancelled() {
+        synchronized (this.requests) {
+            return cancelled;
+        }
+    }
+
+    /**
+     * Register a request that is made with this token, cancelling it if the token is cancelled.
+     */
+    void register(PendingRequest request) {
+        synchronized (this.requests) {
+            if(!this.cancelled) {
+                this.requests.add(request);
+                return;
+            }
+        }
+        request.cancel();
+    }
+
+    /**
+     * Forget a request that finished.
+     */
+    void unregister(PendingRequest request) {
+        synchronized (this.requests) {
+            this.requests.remove(request);
+        }
+    }
+}
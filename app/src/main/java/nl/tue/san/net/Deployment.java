@@ -0,0 +1,175 @@
+package nl.tue.san.net;
+
+import android.util.Log;
+
+import java.util.Locale;
+
+/**
+ * Deploys a visualization to the server: uploads the task set and the visualization settings, and
+ * restarts the visualization once the server has acknowledged both.
+ *
+ * The task set and settings are uploaded concurrently, so the deployment takes about one round
+ * trip plus the restart.
+ *
+ * The requests are made through {@link Server} with {@link Priority#USER_INITIATED}, so they
+ * overtake waiting synchronization. The time every stage took is measured, and all callbacks are
+ * called on the main thread.
+ */
+public class Deployment {
+
+    /**
+     * The stages of a deployment.
+     */
+    public enum Stage {
+        TASK_SET,
+        SETTINGS,
+        RESTART
+    }
+
+    /**
+     * Receives the progress and outcome of a deployment, on the main thread.
+     */
+    public interface Listener {
+        /**
+         * Called when the server acknowledged the given stage, except for the last stage, which
+         * results in {@link #onSuccess(Deployment)}.
+         */
+        void onProgress(Deployment deployment, Stage stage);
+
+        void onSuccess(Deployment deployment);
+
+        /**
+         * Called when the given stage failed. The stages that haven't started yet are skipped.
+         */
+        void onFailure(Deployment deployment, Stage stage);
+    }
+
+    private final String taskSet;
+    private final String settings;
+    private final Listener listener;
+    private final CancellationToken token;
+
+    private final long[] stageNanos = new long[Stage.values().length];
+    private long start;
+    private long elapsedNanos;
+    private int uploaded;
+    private boolean finished;
+
+    private Deployment(String taskSet, String settings, Listener listener, CancellationToken token) {
+        this.taskSet = taskSet;
+        this.settings = settings;
+        this.listener = listener;
+        this.token = token;
+    }
+
+    /**
+     * Start deploying the given task set and visualization settings.
+     * @param taskSet The task set, as JSON.
+     * @param settings The visualization settings, as JSON.
+     * @param listener The listener that is informed about the progress.
+     * @return The deployment that was started.
+     */
+    public static Deployment deploy(String taskSet, String settings, Listener listener) {
+        return deploy(taskSet, settings, listener, null);
+    }
+
+    /**
+     * Start deploying the given task set and visualization settings.
+     * @param taskSet The task set, as JSON.
+     * @param settings The visualization settings, as JSON.
+     * @param listener The listener that is informed about the progress.
+     * @param token The token that cancels the deployment, in which case the listener isn't called
+     *              anymore, or null if it is never cancelled.
+     * @return The deployment that was started.
+     */
+    public static Deployment deploy(String taskSet, String settings, Listener listener, CancellationToken token) {
+        Deployment deployment = new Deployment(taskSet, settings, listener, token);
+        deployment.start = System.nanoTime();
+        deployment.send(Stage.TASK_SET, RequestTypes.PUT, "taskset", taskSet);
+        deployment.send(Stage.SETTINGS, RequestTypes.PUT, "settings", settings);
+        return deployment;
+    }
+
+    /**
+     * Queue the request of the given stage, and handle its outcome on the main thread.
+     */
+    private void send(final Stage stage, RequestTypes type, String endpoint, String data) {
+        final long started = System.nanoTime();
+        RequestRunner.submit(IRequest.getInstance(type, endpoint, data, new ResponseCallback() {
+            @Override
+            public void onResponse(int code, String body) {
+                onResult(stage, code, System.nanoTime() - started);
+            }
+
+            @Override
+            public void onFailure() {
+                Log.e("Network", "Deployment stage "+stage+" failed");
+                onResult(stage, -1, System.nanoTime() - started);
+            }
+        }), Priority.USER_INITIATED, this.token);
+    }
+
+    /**
+     * Handle the outcome of the request of a stage, on the main thread.
+     * @param code The HTTP status code of the response, or -1 if no response was received.
+     */
+    private void onResult(Stage stage, int code, long nanos) {
+        if(this.finished)
+            return;
+        this.stageNanos[stage.ordinal()] = nanos;
+
+        if(code < 200 || code >= 300) {
+            this.finish(stage);
+            return;
+        }
+
+        switch (stage) {
+            case TASK_SET:
+            case SETTINGS:
+                this.listener.onProgress(this, stage);
+                if(++this.uploaded == 2)
+                    this.send(Stage.RESTART, RequestTypes.PATCH, "restart", "");
+                break;
+            case RESTART:
+                this.finish(null);
+                break;
+        }
+    }
+
+    /**
+     * Finish the deployment, successfully if no failed stage is given.
+     */
+    private void finish(Stage failed) {
+        this.finished = true;
+        this.elapsedNanos = System.nanoTime() - this.start;
+        Log.d("Network", this.toString());
+        if(failed == null)
+            this.listener.onSuccess(this);
+        else
+            this.listener.onFailure(this, failed);
+    }
+
+    /**
+     * Get the time from sending the request of the given stage until its response, or 0 if the
+     * stage wasn't performed.
+     */
+    public long getStageNanos(Stage stage) {
+        return stageNanos[stage.ordinal()];
+    }
+
+    /**
+     * Get the time the complete deployment took, or 0 if it hasn't finished.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("Deployment{");
+        for(Stage stage : Stage.values())
+            if(stageNanos[stage.ordinal()] != 0)
+                builder.append(String.format(Locale.ROOT, "%s=%.1fms, ", stage, stageNanos[stage.ordinal()] / 1e6));
+        return builder.append(String.format(Locale.ROOT, "total=%.1fms}", elapsedNanos / 1e6)).toString();
+    }
+}
@@ -0,0 +1,115 @@
+package nl.tue.san.net;
+
+import okhttp3.Call;
+
+/**
+ * A request to the server that was made through {@link Server}. It can be cancelled, and tells how
+ * long it waited for a free connection slot separately from how long it took on the network, so
+ * the effect of priorities and parallelism can be measured apart from the server.
+ */
+public class PendingRequest {
+
+    private final String endpoint;
+    private final Priority priority;
+    private final CancellationToken token;
+
+    private final long enqueuedAt;
+    private volatile long startedAt;
+    private volatile long finishedAt;
+
+    private volatile boolean cancelled;
+    private volatile Call call;
+
+    PendingRequest(String endpoint, Priority priority, CancellationToken token) {
+        this.endpoint = endpoint;
+        this.priority = priority;
+        this.token = token;
+        this.enqueuedAt = System.nanoTime();
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public Priority getPriority() {
+        return priority;
+    }
+
+    /**
+     * Cancel this request. If it is still waiting it won't be sent, if it is running it is
+     * aborted, and in either case its callback is not called.
+     */
+    public void cancel() {
+        this.cancelled = true;
+        Call call = this.call;
+        if(call != null)
+            call.cancel();
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Whether the request finished, successfully or not.
+     */
+    public boolean isDone() {
+        return finishedAt != 0;
+    }
+
+    /**
+     * Get the time the request waited before it was started, or until now if it is still waiting.
+     */
+    public long getQueueNanos() {
+        long startedAt = this.startedAt;
+        return (startedAt == 0 ? System.nanoTime() : startedAt) - this.enqueuedAt;
+    }
+
+    /**
+     * Get the time the request took from being started until its response was read, or 0 if it
+     * hasn't finished.
+     */
+    public long getNetworkNanos() {
+        long finishedAt = this.finishedAt;
+        return finishedAt == 0 ? 0 : finishedAt - this.startedAt;
+    }
+
+    /**
+     * Register this request with its token, which cancels it right away if the token was
+     * cancelled.
+     */
+    void register() {
+        if(this.token != null)
+            this.token.register(this);
+    }
+
+    /**
+     * Mark the start of the request, which ends its time in the queue.
+     * @return Whether the request should still be sent.
+     */
+    boolean start() {
+        this.startedAt = System.nanoTime();
+        return !this.cancelled;
+    }
+
+    /**
+     * Remember the call that sends the request, so that cancelling aborts it.
+     */
+    void attach(Call call) {
+        this.call = call;
+        if(this.cancelled)
+            call.cancel();
+    }
+
+    /**
+     * Mark the end of the request, and forget it in its token.
+     */
+    void finish() {
+        if(this.startedAt == 0)
+            this.startedAt = System.nanoTime();
+        this.finishedAt = System.nanoTime();
+        this.call = null;
+        if(this.token != null)
+            this.token.unregister(this);
+    }
+}
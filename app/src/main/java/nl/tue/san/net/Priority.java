@@ -0,0 +1,22 @@
+package nl.tue.san.net;
+
+/**
+ * The priority of a request to the server. Waiting requests are started in order of priority, and
+ * in the order in which they were made within a priority.
+ */
+public enum Priority {
+    /**
+     * Synchronization that the user didn't ask for, such as refreshing lights and visualizers.
+     */
+    BACKGROUND,
+
+    /**
+     * Loading what a screen shows.
+     */
+    NORMAL,
+
+    /**
+     * Actions the user is waiting for, such as deploying a visualization.
+     */
+    USER_INITIATED
+}
@@ -0,0 +1,118 @@
+package nl.tue.san.net;
+
+import java.util.Locale;
+
+/**
+ * The latency breakdown of a single request to the server. Phases that didn't happen, such as the
+ * DNS lookup, connect and TLS handshake when a pooled connection was reused, have a duration of 0.
+ */
+public class RequestTimings {
+
+    private final String method;
+    private final String url;
+    private final boolean reused;
+    private final boolean failed;
+    private final String protocol;
+    private final long queueNanos;
+    private final long dnsNanos;
+    private final long connectNanos;
+    private final long tlsNanos;
+    private final long firstByteNanos;
+    private final long totalNanos;
+
+    RequestTimings(String method, String url, boolean reused, boolean failed, String protocol, long queueNanos, long dnsNanos, long connectNanos, long tlsNanos, long firstByteNanos, long totalNanos) {
+        this.method = method;
+        this.url = url;
+        this.reused = reused;
+        this.failed = failed;
+        this.protocol = protocol;
+        this.queueNanos = queueNanos;
+        this.dnsNanos = dnsNanos;
+        this.connectNanos = connectNanos;
+        this.tlsNanos = tlsNanos;
+        this.firstByteNanos = firstByteNanos;
+        this.totalNanos = totalNanos;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Whether the request was sent over a pooled connection, so no connection had to be set up.
+     */
+    public boolean isReused() {
+        return reused;
+    }
+
+    /**
+     * Whether the request failed before the complete response was read.
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * Get the protocol of the connection, such as "h2" or "http/1.1", or null if no connection
+     * was acquired.
+     */
+    public String getProtocol() {
+        return protocol;
+    }
+
+    /**
+     * Get the time the request waited before it was started, or 0 if it wasn't made through
+     * {@link Server}. This is not included in any of the other durations.
+     */
+    public long getQueueNanos() {
+        return queueNanos;
+    }
+
+    /**
+     * Get the time spent resolving the host name.
+     */
+    public long getDnsNanos() {
+        return dnsNanos;
+    }
+
+    /**
+     * Get the time spent setting up the connection, excluding the TLS handshake.
+     */
+    public long getConnectNanos() {
+        return connectNanos;
+    }
+
+    /**
+     * Get the time spent on the TLS handshake.
+     */
+    public long getTlsNanos() {
+        return tlsNanos;
+    }
+
+    /**
+     * Get the time from the start of the request until the first byte of the response, including
+     * the setup of the connection.
+     */
+    public long getFirstByteNanos() {
+        return firstByteNanos;
+    }
+
+    /**
+     * Get the time from the start of the request until the response was read completely.
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%s %s: %s%s queue=%.1fms dns=%.1fms connect=%.1fms tls=%.1fms ttfb=%.1fms total=%.1fms%s",
+                method, url, protocol, reused ? " (reused)" : "",
+                queueNanos / 1e6, dnsNanos / 1e6, connectNanos / 1e6, tlsNanos / 1e6, firstByteNanos / 1e6, totalNanos / 1e6,
+                failed ? " FAILED" : "");
+    }
+}
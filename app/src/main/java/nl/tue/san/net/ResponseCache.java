@@ -0,0 +1,195 @@
+package nl.tue.san.net;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stores the bodies of GET responses together with their validators, the ETag and Last-Modified
+ * headers, in a directory with a file per endpoint. The validators are sent along with the next
+ * request for the same endpoint, so the server can answer with 304 Not Modified instead of the
+ * complete body, and the stored body can be shown while that request is running.
+ *
+ * Entries that were read or written are also kept in memory. The cache may be used from any
+ * thread, but should only be read and written from background threads since it accesses disk.
+ */
+public class ResponseCache {
+
+    /**
+     * A stored response.
+     */
+    public static class Entry {
+        private final String etag;
+        private final String lastModified;
+        private final String body;
+        private final long storedAt;
+
+        Entry(String etag, String lastModified, String body, long storedAt) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.body = body;
+            this.storedAt = storedAt;
+        }
+
+        /**
+         * Get the ETag of the response, or null if it had none.
+         */
+        public String getEtag() {
+            return etag;
+        }
+
+        /**
+         * Get the Last-Modified date of the response, or null if it had none.
+         */
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        public String getBody() {
+            return body;
+        }
+
+        /**
+         * Get the time at which the response was stored, in milliseconds since the epoch.
+         */
+        public long getStoredAt() {
+            return storedAt;
+        }
+    }
+
+    /**
+     * The version of the format of the files that is written.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The suffix of the file to which an entry is written before it replaces the previous one.
+     */
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final File directory;
+    private final ConcurrentHashMap<String, Entry> memory = new ConcurrentHashMap<>();
+
+    /**
+     * Create a cache that stores its entries in the given directory, which is created if needed.
+     */
+    public ResponseCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Get the stored response for the given endpoint.
+     * @return The stored response, or null if there is none or it couldn't be read.
+     */
+    public Entry get(String endpoint) {
+        Entry entry = this.memory.get(endpoint);
+        if(entry != null)
+            return entry;
+
+        File file = this.file(endpoint);
+        if(!file.isFile())
+            return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            int version = in.readUnsignedByte();
+            if(version != VERSION)
+                return null;
+            String etag = in.readBoolean() ? in.readUTF() : null;
+            String lastModified = in.readBoolean() ? in.readUTF() : null;
+            long storedAt = in.readLong();
+            byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+            entry = new Entry(etag, lastModified, new String(body, "UTF-8"), storedAt);
+        } catch (IOException e) {
+            Log.w("Network", "Couldn't read cached response for "+endpoint, e);
+            return null;
+        }
+        this.memory.put(endpoint, entry);
+        return entry;
+    }
+
+    /**
+     * Store a response for the given endpoint, replacing the previous one. Responses without
+     * validators are not stored, since the server can't confirm they are still valid.
+     * @param endpoint The endpoint that was requested.
+     * @param etag The ETag header of the response, or null.
+     * @param lastModified The Last-Modified header of the response, or null.
+     * @param body The body of the response.
+     */
+    public void put(String endpoint, String etag, String lastModified, String body) {
+        if(etag == null && lastModified == null) {
+            this.remove(endpoint);
+            return;
+        }
+        Entry entry = new Entry(etag, lastModified, body, System.currentTimeMillis());
+        this.memory.put(endpoint, entry);
+
+        if(!this.directory.isDirectory() && !this.directory.mkdirs()) {
+            Log.w("Network", "Couldn't create response cache in "+this.directory);
+            return;
+        }
+        // Write to a temporary file first, so a reader never sees a partially written entry.
+        File file = this.file(endpoint);
+        File temporary = new File(file.getPath() + TEMPORARY_SUFFIX);
+        try (FileOutputStream stream = new FileOutputStream(temporary);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream))) {
+            out.writeByte(VERSION);
+            out.writeBoolean(etag != null);
+            if(etag != null)
+                out.writeUTF(etag);
+            out.writeBoolean(lastModified != null);
+            if(lastModified != null)
+                out.writeUTF(lastModified);
+            out.writeLong(entry.getStoredAt());
+            byte[] bytes = body.getBytes("UTF-8");
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            out.flush();
+            stream.getFD().sync();
+        } catch (IOException e) {
+            Log.w("Network", "Couldn't cache response for "+endpoint, e);
+            temporary.delete();
+            return;
+        }
+        if(!temporary.renameTo(file)) {
+            Log.w("Network", "Couldn't replace cached response for "+endpoint);
+            temporary.delete();
+        }
+    }
+
+    /**
+     * Remove the stored response for the given endpoint, if any.
+     */
+    public void remove(String endpoint) {
+        this.memory.remove(endpoint);
+        this.file(endpoint).delete();
+    }
+
+    /**
+     * Remove all stored responses.
+     */
+    public void clear() {
+        this.memory.clear();
+        File[] files = this.directory.listFiles();
+        if(files != null)
+            for(File file : files)
+                file.delete();
+    }
+
+    private File file(String endpoint) {
+        try {
+            return new File(this.directory, URLEncoder.encode(endpoint, "UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
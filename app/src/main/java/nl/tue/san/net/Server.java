@@ -1,8 +1,16 @@
 package nl.tue.san.net;
 
-import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import okhttp3.*;
 
@@ -11,57 +19,120 @@ enum RequestTypes {
 }
 
 public class Server {
-    public static void GET(String uri, Callback cb) {
-        new RequestRunner().execute(nl.tue.san.net.IRequest.getInstance(
+
+    private static volatile ResponseCache cache;
+
+    /**
+     * Set the cache in which the responses to GET requests are stored, or null to not cache them.
+     * With a cache, a GET request first delivers the stored body to its callback, and then
+     * delivers the body from the server only if it changed.
+     */
+    public static void setCache(ResponseCache cache) {
+        Server.cache = cache;
+    }
+
+    public static ResponseCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Set the URL that the endpoints of all requests are relative to.
+     * @param apiBase The URL, ending with a slash.
+     */
+    public static void setApiBase(String apiBase) {
+        RequestRunner.ApiBase = apiBase;
+    }
+
+    public static String getApiBase() {
+        return RequestRunner.ApiBase;
+    }
+
+    public static PendingRequest GET(String uri, Callback cb) {
+        return GET(uri, cb, Priority.NORMAL, null);
+    }
+
+    /**
+     * Request the given endpoint with the given priority.
+     * @param token The token that cancels the request, or null if it is never cancelled.
+     * @return The request, which can be cancelled on its own.
+     */
+    public static PendingRequest GET(String uri, Callback cb, Priority priority, CancellationToken token) {
+        return RequestRunner.submit(nl.tue.san.net.IRequest.getInstance(
                 RequestTypes.GET,
                 uri,
                 "",
                 cb
-        ));
+        ), priority, token);
     }
 
-    public static void POST(String uri, Callback cb, String data) {
-        new RequestRunner().execute(nl.tue.san.net.IRequest.getInstance(
+    public static PendingRequest POST(String uri, Callback cb, String data) {
+        return POST(uri, cb, data, Priority.NORMAL, null);
+    }
+
+    public static PendingRequest POST(String uri, Callback cb, String data, Priority priority, CancellationToken token) {
+        return RequestRunner.submit(nl.tue.san.net.IRequest.getInstance(
                 RequestTypes.POST,
                 uri,
                 data,
                 cb
-        ));
+        ), priority, token);
+    }
+
+    public static PendingRequest DELETE(String uri, Callback cb) {
+        return DELETE(uri, cb, Priority.NORMAL, null);
     }
 
-    public static void DELETE(String uri, Callback cb) {
-        new RequestRunner().execute(nl.tue.san.net.IRequest.getInstance(
+    public static PendingRequest DELETE(String uri, Callback cb, Priority priority, CancellationToken token) {
+        return RequestRunner.submit(nl.tue.san.net.IRequest.getInstance(
                 RequestTypes.DELETE,
                 uri,
                 "",
                 cb
-        ));
+        ), priority, token);
+    }
+
+    public static PendingRequest PATCH(String uri, Callback cb) {
+        return PATCH(uri, cb, Priority.NORMAL, null);
     }
 
-    public static void PATCH(String uri, Callback cb) {
-        new RequestRunner().execute(nl.tue.san.net.IRequest.getInstance(
+    public static PendingRequest PATCH(String uri, Callback cb, Priority priority, CancellationToken token) {
+        return RequestRunner.submit(nl.tue.san.net.IRequest.getInstance(
                 RequestTypes.PATCH,
                 uri,
                 "",
                 cb
-        ));
+        ), priority, token);
+    }
+
+    public static PendingRequest PUT(String uri, Callback cb, String data) {
+        return PUT(uri, cb, data, Priority.NORMAL, null);
     }
 
-    public static void PUT(String uri, Callback cb, String data) {
-        new RequestRunner().execute(nl.tue.san.net.IRequest.getInstance(
+    public static PendingRequest PUT(String uri, Callback cb, String data, Priority priority, CancellationToken token) {
+        return RequestRunner.submit(nl.tue.san.net.IRequest.getInstance(
                 RequestTypes.PUT,
                 uri,
                 data,
                 cb
-        ));
+        ), priority, token);
     }
 }
 
+/**
+ * Receives the status code along with the body of a response, for requests that need to tell
+ * responses apart by their status.
+ */
+interface ResponseCallback {
+    void onResponse(int code, String body);
+    void onFailure();
+}
+
 class IRequest {
     public RequestTypes type;
     public String endpoint;
     public String data;
     public Callback cb;
+    public ResponseCallback responseCb;
 
     public static IRequest getInstance(RequestTypes type, String endpoint, String data, Callback cb) {
         IRequest r = new IRequest();
@@ -73,25 +144,147 @@ class IRequest {
 
         return r;
     }
+
+    public static IRequest getInstance(RequestTypes type, String endpoint, String data, ResponseCallback cb) {
+        IRequest r = getInstance(type, endpoint, data, (Callback) null);
+        r.responseCb = cb;
+        return r;
+    }
 }
 
-class RequestRunner extends AsyncTask<IRequest, Void, String> {
-    public static String ApiBase = "https://seminar.tuupke.nl/";
+/**
+ * Performs a request on a pool with a bounded number of threads, taking waiting requests in order
+ * of priority, and calls the callback of the request on the main thread unless it was cancelled.
+ */
+class RequestRunner implements Runnable, Comparable<RequestRunner> {
+    public static volatile String ApiBase = "https://seminar.tuupke.nl/";
     public static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
-    OkHttpClient client = new OkHttpClient();
 
-    private nl.tue.san.net.IRequest request;
+    /**
+     * The maximal number of requests that run at once.
+     */
+    private static final int MAX_PARALLEL_REQUESTS = 4;
+
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(MAX_PARALLEL_REQUESTS, MAX_PARALLEL_REQUESTS, 30, TimeUnit.SECONDS, new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "RequestRunner-worker");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
 
-    protected String doInBackground(nl.tue.san.net.IRequest... requests) {
-        request = requests[0];
+    static {
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Reads the stored bodies of requests as soon as they are submitted, so they are shown without
+     * waiting for a free thread of the {@link #EXECUTOR}.
+     */
+    private static final ExecutorService CACHE_READER = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "RequestRunner-cache");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
 
-        String endpoint = request.endpoint;
-        RequestTypes type = request.type;
-        String data = request.data;
+    private static final Handler MAIN = new Handler(Looper.getMainLooper());
+
+    /**
+     * Orders requests with equal priorities by the order in which they were made.
+     */
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private final nl.tue.san.net.IRequest request;
+    private final PendingRequest pending;
+    private final ResponseCache cache;
+    private final long sequence = SEQUENCE.getAndIncrement();
+
+    /**
+     * The cached body that was delivered to the callback, in which case the result is only
+     * delivered if it differs, or null if none was delivered.
+     */
+    private String cached;
+
+    /**
+     * Whether the result was delivered, after which the cached body isn't delivered anymore.
+     */
+    private boolean finished;
+
+    private RequestRunner(nl.tue.san.net.IRequest request, PendingRequest pending) {
+        this.request = request;
+        this.pending = pending;
+        this.cache = request.type == RequestTypes.GET && request.cb != null ? Server.getCache() : null;
+    }
+
+    /**
+     * Queue the given request, and deliver its cached body right away if there is one.
+     */
+    static PendingRequest submit(nl.tue.san.net.IRequest request, Priority priority, CancellationToken token) {
+        final RequestRunner runner = new RequestRunner(request, new PendingRequest(request.endpoint, priority, token));
+        runner.pending.register();
+        if (runner.cache != null) {
+            CACHE_READER.execute(new Runnable() {
+                @Override
+                public void run() {
+                    runner.deliverCached();
+                }
+            });
+        }
+        EXECUTOR.execute(runner);
+        return runner.pending;
+    }
+
+    /**
+     * Deliver the stored body to the callback, unless the result was delivered already.
+     */
+    private void deliverCached() {
+        ResponseCache.Entry entry = this.cache.get(this.request.endpoint);
+        if (entry == null)
+            return;
+        synchronized (this) {
+            if (this.finished)
+                return;
+            this.cached = entry.getBody();
+            deliver(this.cached);
+        }
+    }
+
+    @Override
+    public int compareTo(RequestRunner other) {
+        int priority = other.pending.getPriority().compareTo(this.pending.getPriority());
+        if (priority != 0)
+            return priority;
+        return this.sequence < other.sequence ? -1 : (this.sequence == other.sequence ? 0 : 1);
+    }
+
+    @Override
+    public void run() {
+        if (!pending.start()) {
+            pending.finish();
+            return;
+        }
+
+        String endpoint = this.request.endpoint;
+        RequestTypes type = this.request.type;
+        String data = this.request.data;
 
         String url = ApiBase + endpoint;
 
-        Request.Builder request = new Request.Builder().url(url);
+        // The tag lets the Transport report the time this request was queued.
+        Request.Builder request = new Request.Builder().url(url).tag(pending);
+
+        // The stored body was delivered on submission; let the server confirm it is still valid.
+        ResponseCache.Entry entry = this.cache == null ? null : this.cache.get(endpoint);
+        if (entry != null) {
+            if (entry.getEtag() != null)
+                request = request.header("If-None-Match", entry.getEtag());
+            if (entry.getLastModified() != null)
+                request = request.header("If-Modified-Since", entry.getLastModified());
+        }
 
         switch (type) {
             case PUT:
@@ -112,22 +305,77 @@ class RequestRunner extends AsyncTask<IRequest, Void, String> {
                 break;
         }
 
+        int code = -1;
+        String result = null;
         try {
-            Response response = client.newCall(request.build()).execute();
-            return response.body().string();
+            Call call = Transport.getClient().newCall(request.build());
+            pending.attach(call);
+            Response response = call.execute();
+            code = response.code();
+            if (entry != null && code == 304) {
+                response.close();
+                result = entry.getBody();
+            } else {
+                result = response.body().string();
+                if (this.cache != null && code == 200)
+                    this.cache.put(endpoint, response.header("ETag"), response.header("Last-Modified"), result);
+            }
         } catch (java.io.IOException e) {
-            Log.e("Network", "Request error for: " + url + " with data: " + data);
+            if (!pending.isCancelled())
+                Log.e("Network", "Request error for: " + url + " with data: " + data);
+        } finally {
+            pending.finish();
         }
 
-        return null;
-    }
-
-    protected void onPostExecute(String result) {
-        if (result == null) {
-            request.cb.onFailure();
+        if (this.request.responseCb != null) {
+            respond(code, result);
             return;
         }
 
-        request.cb.onSuccess(result);
+        // Only a 2xx response or a confirmed cached body succeeds; on failure a cached body that was
+        // delivered stays in place, so the failure isn't reported.
+        boolean succeeded = (code >= 200 && code < 300) || (entry != null && code == 304);
+        synchronized (this) {
+            this.finished = true;
+            if (succeeded ? result.equals(this.cached) : this.cached != null)
+                return;
+            deliver(succeeded ? result : null);
+        }
+    }
+
+    /**
+     * Deliver the given body to the callback on the main thread, or report the failure if there
+     * is none.
+     */
+    private void deliver(final String result) {
+        MAIN.post(new Runnable() {
+            @Override
+            public void run() {
+                if (pending.isCancelled())
+                    return;
+                if (result == null)
+                    request.cb.onFailure();
+                else
+                    request.cb.onSuccess(result);
+            }
+        });
     }
-}
\ No newline at end of file
+
+    /**
+     * Deliver the given response to the response callback on the main thread.
+     * @param code The status code, or -1 if no response was received.
+     */
+    private void respond(final int code, final String body) {
+        MAIN.post(new Runnable() {
+            @Override
+            public void run() {
+                if (pending.isCancelled())
+                    return;
+                if (code < 0)
+                    request.responseCb.onFailure();
+                else
+                    request.responseCb.onResponse(code, body);
+            }
+        });
+    }
+}
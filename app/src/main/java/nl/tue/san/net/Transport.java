@@ -0,0 +1,303 @@
+package nl.tue.san.net;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+/**
+ * The transport of all requests to the server: a single OkHttpClient that is shared by every
+ * request, so connections to the server are kept alive and reused together with their TLS
+ * sessions, and HTTP/2 can multiplex requests over a single connection.
+ *
+ * Every request is timed: the time it waited in the queue of {@link Server} and the time spent on
+ * the DNS lookup, connect, TLS handshake and until the first byte of the response are logged,
+ * passed to the {@link TimingListener} if one is set, and added to totals over all requests, so
+ * the effect of connection reuse can be measured.
+ */
+public class Transport {
+
+    /**
+     * Receives the timings of every request that completes or fails.
+     */
+    public interface TimingListener {
+        /**
+         * Called on the thread that performed the request.
+         */
+        void onTimings(RequestTimings timings);
+    }
+
+    public static final int DEFAULT_MAX_IDLE_CONNECTIONS = 5;
+    public static final long DEFAULT_KEEP_ALIVE_SECONDS = 300;
+    public static final long DEFAULT_CONNECT_TIMEOUT_SECONDS = 10;
+    public static final long DEFAULT_READ_TIMEOUT_SECONDS = 30;
+
+    /**
+     * The maximal number of requests that the dispatcher runs at once for a single host.
+     */
+    private static final int MAX_REQUESTS_PER_HOST = 8;
+
+    private static OkHttpClient client;
+    private static volatile TimingListener listener;
+
+    private static final AtomicLong requests = new AtomicLong();
+    private static final AtomicLong failures = new AtomicLong();
+    private static final AtomicLong reused = new AtomicLong();
+    private static final AtomicLong queueNanos = new AtomicLong();
+    private static final AtomicLong dnsNanos = new AtomicLong();
+    private static final AtomicLong connectNanos = new AtomicLong();
+    private static final AtomicLong tlsNanos = new AtomicLong();
+    private static final AtomicLong firstByteNanos = new AtomicLong();
+    private static final AtomicLong totalNanos = new AtomicLong();
+
+    /**
+     * Get the shared client, which is created with the default settings if {@link #configure} has
+     * not been called.
+     */
+    public static synchronized OkHttpClient getClient() {
+        if(client == null)
+            client = build(DEFAULT_MAX_IDLE_CONNECTIONS, DEFAULT_KEEP_ALIVE_SECONDS, DEFAULT_CONNECT_TIMEOUT_SECONDS, DEFAULT_READ_TIMEOUT_SECONDS, true);
+        return client;
+    }
+
+    /**
+     * Replace the shared client by one with the given settings. Requests that are running finish
+     * on the previous client.
+     * @param maxIdleConnections The maximal number of idle connections that are kept in the pool.
+     * @param keepAliveSeconds How long an idle connection is kept in the pool.
+     * @param connectTimeoutSeconds The timeout for setting up a connection.
+     * @param readTimeoutSeconds The timeout for reading from and writing to a connection.
+     * @param http2 Whether HTTP/2 is offered to the server, rather than only HTTP/1.1.
+     * @throws IllegalArgumentException If a setting is negative.
+     */
+    public static synchronized void configure(int maxIdleConnections, long keepAliveSeconds, long connectTimeoutSeconds, long readTimeoutSeconds, boolean http2) {
+        if(maxIdleConnections < 0 || keepAliveSeconds < 0 || connectTimeoutSeconds < 0 || readTimeoutSeconds < 0)
+            throw new IllegalArgumentException("Transport settings must not be negative");
+        client = build(maxIdleConnections, keepAliveSeconds, connectTimeoutSeconds, readTimeoutSeconds, http2);
+    }
+
+    private static OkHttpClient build(int maxIdleConnections, long keepAliveSeconds, long connectTimeoutSeconds, long readTimeoutSeconds, boolean http2) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
+
+        List<Protocol> protocols = http2 ? Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1) : Collections.singletonList(Protocol.HTTP_1_1);
+        return new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAliveSeconds, TimeUnit.SECONDS))
+                .dispatcher(dispatcher)
+                .protocols(protocols)
+                .connectTimeout(connectTimeoutSeconds, TimeUnit.SECONDS)
+                .readTimeout(readTimeoutSeconds, TimeUnit.SECONDS)
+                .writeTimeout(readTimeoutSeconds, TimeUnit.SECONDS)
+                .retryOnConnectionFailure(true)
+                .eventListenerFactory(new EventListener.Factory() {
+                    @Override
+                    public EventListener create(Call call) {
+                        return new TimingEventListener();
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Set the listener that receives the timings of every request, or null to remove it.
+     */
+    public static void setTimingListener(TimingListener listener) {
+        Transport.listener = listener;
+    }
+
+    /**
+     * Get the number of requests that completed or failed.
+     */
+    public static long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * Get the number of requests that failed.
+     */
+    public static long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * Get the number of requests that were sent over a pooled connection.
+     */
+    public static long getReused() {
+        return reused.get();
+    }
+
+    /**
+     * Get the total time requests waited before they were started.
+     */
+    public static long getQueueNanos() {
+        return queueNanos.get();
+    }
+
+    /**
+     * Get the total time spent on DNS lookups over all requests.
+     */
+    public static long getDnsNanos() {
+        return dnsNanos.get();
+    }
+
+    /**
+     * Get the total time spent setting up connections over all requests, excluding TLS handshakes.
+     */
+    public static long getConnectNanos() {
+        return connectNanos.get();
+    }
+
+    /**
+     * Get the total time spent on TLS handshakes over all requests.
+     */
+    public static long getTlsNanos() {
+        return tlsNanos.get();
+    }
+
+    /**
+     * Get the total time until the first byte of the response over all requests.
+     */
+    public static long getFirstByteNanos() {
+        return firstByteNanos.get();
+    }
+
+    /**
+     * Get the total duration of all requests.
+     */
+    public static long getTotalNanos() {
+        return totalNanos.get();
+    }
+
+    /**
+     * Reset the totals over all requests to 0.
+     */
+    public static void resetStatistics() {
+        requests.set(0);
+        failures.set(0);
+        reused.set(0);
+        queueNanos.set(0);
+        dnsNanos.set(0);
+        connectNanos.set(0);
+        tlsNanos.set(0);
+        firstByteNanos.set(0);
+        totalNanos.set(0);
+    }
+
+    private static void record(RequestTimings timings) {
+        requests.incrementAndGet();
+        if(timings.isFailed())
+            failures.incrementAndGet();
+        if(timings.isReused())
+            reused.incrementAndGet();
+        queueNanos.addAndGet(timings.getQueueNanos());
+        dnsNanos.addAndGet(timings.getDnsNanos());
+        connectNanos.addAndGet(timings.getConnectNanos());
+        tlsNanos.addAndGet(timings.getTlsNanos());
+        firstByteNanos.addAndGet(timings.getFirstByteNanos());
+        totalNanos.addAndGet(timings.getTotalNanos());
+
+        Log.d("Network", timings.toString());
+        TimingListener listener = Transport.listener;
+        if(listener != null)
+            listener.onTimings(timings);
+    }
+
+    /**
+     * Measures the phases of a single call. OkHttp creates one for every call, and calls it from
+     * the thread that executes the call.
+     */
+    private static class TimingEventListener extends EventListener {
+        private long callStart, dnsStart, connectStart, secureConnectStart;
+        private long dns, connect, tls, firstByte;
+        private boolean connected;
+        private String protocol;
+
+        @Override
+        public void callStart(Call call) {
+            this.callStart = System.nanoTime();
+        }
+
+        @Override
+        public void dnsStart(Call call, String domainName) {
+            this.dnsStart = System.nanoTime();
+        }
+
+        @Override
+        public void dnsEnd(Call call, String domainName, List<InetAddress> addresses) {
+            this.dns += System.nanoTime() - this.dnsStart;
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress address, Proxy proxy) {
+            this.connectStart = System.nanoTime();
+            this.connected = true;
+        }
+
+        @Override
+        public void secureConnectStart(Call call) {
+            this.secureConnectStart = System.nanoTime();
+        }
+
+        @Override
+        public void secureConnectEnd(Call call, Handshake handshake) {
+            this.tls += System.nanoTime() - this.secureConnectStart;
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress address, Proxy proxy, Protocol protocol) {
+            this.connect += System.nanoTime() - this.connectStart;
+        }
+
+        @Override
+        public void connectFailed(Call call, InetSocketAddress address, Proxy proxy, Protocol protocol, IOException e) {
+            this.connect += System.nanoTime() - this.connectStart;
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            this.protocol = connection.protocol().toString();
+        }
+
+        @Override
+        public void responseHeadersStart(Call call) {
+            if(this.firstByte == 0)
+                this.firstByte = System.nanoTime() - this.callStart;
+        }
+
+        @Override
+        public void callEnd(Call call) {
+            this.finish(call, false);
+        }
+
+        @Override
+        public void callFailed(Call call, IOException e) {
+            this.finish(call, true);
+        }
+
+        private void finish(Call call, boolean failed) {
+            // The TLS handshake happens while connecting, so it is only counted once.
+            long connect = Math.max(0, this.connect - this.tls);
+            boolean reused = this.protocol != null && !this.connected;
+            Object tag = call.request().tag();
+            long queue = tag instanceof PendingRequest ? ((PendingRequest) tag).getQueueNanos() : 0;
+            record(new RequestTimings(call.request().method(), String.valueOf(call.request().url()), reused, failed, this.protocol,
+                    queue, this.dns, connect, this.tls, this.firstByte, System.nanoTime() - this.callStart));
+        }
+    }
+}
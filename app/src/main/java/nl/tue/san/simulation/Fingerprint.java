@@ -0,0 +1,140 @@
+package nl.tue.san.simulation;
+
+import java.util.List;
+
+import nl.tue.san.analysis.Policy;
+import nl.tue.san.tasks.Task;
+import nl.tue.san.util.Hashing;
+
+/**
+ * A 128 bit fingerprint of everything that determines the result of a simulation or an analysis:
+ * the name, offset, period, deadline, computation time, priority and threshold of every task, in
+ * order, and for a simulation the policy and the horizon. The color of a task doesn't affect any
+ * result, so it isn't part of the fingerprint. Equal inputs always have equal fingerprints, and
+ * different inputs have different fingerprints with overwhelming probability, so fingerprints
+ * can be used as the key of cached results.
+ *
+ * The fingerprint consists of two 64 bit hashes over the same input, each with its own seed and
+ * multiplier, which are both finished with {@link Hashing#mix(long)}.
+ */
+public final class Fingerprint {
+
+    private static final long SEED_HIGH = 0x9E3779B97F4A7C15L;
+    private static final long SEED_LOW = 0xC2B2AE3D27D4EB4FL;
+    private static final long MULTIPLIER_HIGH = 0x100000001B3L;
+    private static final long MULTIPLIER_LOW = 0x87C37B91114253D5L;
+
+    /*
+     * Distinguishes the kinds of results, so that they never share a fingerprint.
+     */
+    private static final long SCHEDULE = 1;
+    private static final long ANALYSIS = 2;
+
+    private final long high;
+    private final long low;
+
+    Fingerprint(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    /**
+     * Determine the fingerprint of a simulation of the given tasks.
+     * @param tasks The tasks, in the order in which they are simulated.
+     * @param policy The scheduling policy.
+     * @param horizon The end of the simulation.
+     * @return The fingerprint.
+     */
+    public static Fingerprint ofSchedule(List<Task> tasks, Policy policy, long horizon) {
+        Hasher hasher = new Hasher();
+        hasher.add(SCHEDULE);
+        hasher.add(policy.ordinal());
+        hasher.add(horizon);
+        hasher.add(tasks);
+        return hasher.finish();
+    }
+
+    /**
+     * Determine the fingerprint of a response-time analysis of the given tasks.
+     * @param tasks The tasks, in the order in which they are analysed.
+     * @return The fingerprint.
+     */
+    public static Fingerprint ofAnalysis(List<Task> tasks) {
+        Hasher hasher = new Hasher();
+        hasher.add(ANALYSIS);
+        hasher.add(tasks);
+        return hasher.finish();
+    }
+
+    long getHigh() {
+        return this.high;
+    }
+
+    long getLow() {
+        return this.low;
+    }
+
+    /**
+     * Get the fingerprint as 32 hexadecimal digits, which can be used as a file name.
+     */
+    public String toHex() {
+        return String.format("%016x%016x", this.high, this.low);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        Fingerprint that = (Fingerprint) o;
+        return this.high == that.high && this.low == that.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (this.low ^ (this.low >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return this.toHex();
+    }
+
+    /**
+     * Hashes a sequence of values in both halves of a fingerprint at once.
+     */
+    private static final class Hasher {
+        private long high = SEED_HIGH;
+        private long low = SEED_LOW;
+        private long length;
+
+        private void add(long value) {
+            this.high = (this.high ^ value) * MULTIPLIER_HIGH;
+            this.low = Long.rotateLeft(this.low ^ (value * MULTIPLIER_LOW), 31) * 5 + 0x52DCE729;
+            ++this.length;
+        }
+
+        private void add(String value) {
+            this.add(value.length());
+            for(int i = 0; i < value.length(); ++i)
+                this.add(value.charAt(i));
+        }
+
+        private void add(List<Task> tasks) {
+            this.add(tasks.size());
+            for(Task task : tasks) {
+                this.add(task.getName());
+                this.add(task.getOffset());
+                this.add(task.getPeriod());
+                this.add(task.getDeadline());
+                this.add(task.getComputation());
+                this.add(task.getPriority());
+                this.add(task.getThreshold());
+            }
+        }
+
+        private Fingerprint finish() {
+            return new Fingerprint(Hashing.mix(this.high ^ this.length), Hashing.mix(this.low ^ this.length));
+        }
+    }
+}
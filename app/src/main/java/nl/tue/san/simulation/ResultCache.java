@@ -0,0 +1,392 @@
+package nl.tue.san.simulation;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import nl.tue.san.analysis.Policy;
+import nl.tue.san.analysis.ResponseTimeAnalysis;
+import nl.tue.san.analysis.ResponseTimes;
+import nl.tue.san.analysis.ResponseTimesIO;
+import nl.tue.san.tasks.Task;
+import nl.tue.san.tasks.TaskSet;
+
+/**
+ * Cache of simulated schedules and analysis results, keyed by the {@link Fingerprint} of their
+ * input rather than by the TaskSet they were determined for. Previewing or analysing the same
+ * tasks with the same scheduler again therefore only costs a fingerprint of the tasks, even when
+ * the TaskSet was edited back and forth or another TaskSet has the same tasks.
+ *
+ * Results are kept in memory in least recently used order, up to a total estimated size in bytes.
+ * Optionally, results are also written to a directory, which is bounded in size as well by
+ * removing the files that were least recently used. A result that dropped out of memory is read
+ * back from its file when it is requested again.
+ *
+ * Results are determined and files are accessed without holding the lock of the cache, so the
+ * cache shouldn't be used on the main thread. Two threads that request the same missing result at
+ * the same time may both determine it.
+ */
+public class ResultCache {
+
+    /**
+     * The name of the directory under the files directory that contains the stored results.
+     */
+    private static final String RESULTS_DIRECTORY = "results";
+
+    /**
+     * The default maximum size of the results in memory and on disk.
+     */
+    private static final long DEFAULT_MEMORY_BYTES = 4 * 1024 * 1024;
+    private static final long DEFAULT_DISK_BYTES = 16 * 1024 * 1024;
+
+    /*
+     * Extensions of the stored results.
+     */
+    private static final String SCHEDULE_EXTENSION = ".schedule";
+    private static final String ANALYSIS_EXTENSION = ".analysis";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private static ResultCache instance;
+
+    /**
+     * A result in memory, with its estimated size.
+     */
+    private static final class Entry {
+        private final Object result;
+        private final long bytes;
+
+        private Entry(Object result, long bytes) {
+            this.result = result;
+            this.bytes = bytes;
+        }
+    }
+
+    private final long maxBytes;
+    private final File directory;
+    private final long maxDiskBytes;
+
+    /**
+     * The results in memory, in access order.
+     */
+    private final LinkedHashMap<Fingerprint, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    /**
+     * The total size of the stored results, or -1 if the directory hasn't been inspected yet.
+     */
+    private long diskBytes = -1;
+
+    private long hits;
+    private long diskHits;
+    private long misses;
+    private long evictions;
+    private long diskEvictions;
+
+    /**
+     * Create a cache that keeps results in memory and, optionally, in a directory.
+     * @param maxBytes The maximum estimated size of the results in memory.
+     * @param directory The directory to store results in, or null to keep results in memory only.
+     * @param maxDiskBytes The maximum size of the stored results.
+     */
+    public ResultCache(long maxBytes, File directory, long maxDiskBytes) {
+        this.maxBytes = maxBytes;
+        this.directory = directory;
+        this.maxDiskBytes = maxDiskBytes;
+    }
+
+    /**
+     * Obtain the cache that is shared by the whole application, which stores results in the files
+     * directory of the application.
+     * @param context The context in which the cache is used.
+     * @return The only instance of the shared cache.
+     */
+    public static synchronized ResultCache getInstance(Context context) {
+        if(instance == null)
+            instance = new ResultCache(DEFAULT_MEMORY_BYTES, new File(context.getFilesDir(), RESULTS_DIRECTORY), DEFAULT_DISK_BYTES);
+        return instance;
+    }
+
+    /**
+     * Get the schedule of the tasks that are currently contained in the given TaskSet, simulating
+     * it if it isn't cached.
+     * @param taskSet The TaskSet to simulate.
+     * @param scheduler The name of the scheduler, see {@link Policy#forScheduler(String)}.
+     * @param horizon The end of the simulation, exclusive.
+     * @return The simulated schedule.
+     * @throws IllegalArgumentException If there is no policy for the scheduler.
+     */
+    public Schedule getSchedule(TaskSet taskSet, String scheduler, long horizon) {
+        Policy policy = Policy.forScheduler(scheduler);
+        List<Task> tasks = taskSet.getOrderedTasks();
+        Fingerprint fingerprint = Fingerprint.ofSchedule(tasks, policy, horizon);
+
+        Schedule schedule = (Schedule) this.lookup(fingerprint, SCHEDULE_EXTENSION);
+        if(schedule == null) {
+            schedule = new Simulator(tasks, policy).simulate(horizon);
+            schedule.trim();
+            this.insert(fingerprint, SCHEDULE_EXTENSION, schedule);
+        }
+        return schedule;
+    }
+
+    /**
+     * Get the response times of the tasks that are currently contained in the given TaskSet,
+     * analysing them if they aren't cached.
+     * @param taskSet The TaskSet to analyse.
+     * @return The response times.
+     * @see ResponseTimeAnalysis
+     */
+    public ResponseTimes getResponseTimes(TaskSet taskSet) {
+        List<Task> tasks = taskSet.getOrderedTasks();
+        Fingerprint fingerprint = Fingerprint.ofAnalysis(tasks);
+
+        ResponseTimes responseTimes = (ResponseTimes) this.lookup(fingerprint, ANALYSIS_EXTENSION);
+        if(responseTimes == null) {
+            responseTimes = new ResponseTimeAnalysis(tasks).analyse();
+            this.insert(fingerprint, ANALYSIS_EXTENSION, responseTimes);
+        }
+        return responseTimes;
+    }
+
+    /**
+     * Find a result in memory, or otherwise in its file.
+     * @return The result, or null if it isn't cached.
+     */
+    private Object lookup(Fingerprint fingerprint, String extension) {
+        synchronized (this) {
+            Entry entry = this.entries.get(fingerprint);
+            if(entry != null) {
+                ++this.hits;
+                return entry.result;
+            }
+        }
+
+        Object result = this.readResult(fingerprint, extension);
+        synchronized (this) {
+            if(result == null) {
+                ++this.misses;
+            } else {
+                ++this.diskHits;
+                this.remember(fingerprint, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Keep a result that was just determined in memory and in its file.
+     */
+    private void insert(Fingerprint fingerprint, String extension, Object result) {
+        synchronized (this) {
+            this.remember(fingerprint, result);
+        }
+        this.writeResult(fingerprint, extension, result);
+    }
+
+    /**
+     * Keep the given result in memory, and drop the least recently used results until the results
+     * fit in memory again. A result that doesn't fit by itself is not kept.
+     */
+    private void remember(Fingerprint fingerprint, Object result) {
+        long bytes = estimateBytes(result);
+        if(bytes > this.maxBytes)
+            return;
+
+        Entry previous = this.entries.put(fingerprint, new Entry(result, bytes));
+        this.bytes += bytes - (previous == null ? 0 : previous.bytes);
+
+        Iterator<Entry> eldest = this.entries.values().iterator();
+        while(this.bytes > this.maxBytes) {
+            this.bytes -= eldest.next().bytes;
+            eldest.remove();
+            ++this.evictions;
+        }
+    }
+
+    /**
+     * Estimate the number of bytes of memory the given result takes.
+     */
+    private static long estimateBytes(Object result) {
+        if(result instanceof Schedule)
+            return ((Schedule) result).estimateBytes();
+        return 64 + 88L * ((ResponseTimes) result).size();
+    }
+
+    private Object readResult(Fingerprint fingerprint, String extension) {
+        if(this.directory == null)
+            return null;
+
+        File file = new File(this.directory, fingerprint.toHex() + extension);
+        if(!file.exists())
+            return null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if(in.readLong() != fingerprint.getHigh() || in.readLong() != fingerprint.getLow())
+                throw new IOException("Fingerprint doesn't match the file name");
+            Object result = extension.equals(SCHEDULE_EXTENSION) ? ScheduleIO.read(in) : ResponseTimesIO.read(in);
+
+            // Mark the file as recently used, so that it is the last to be removed.
+            file.setLastModified(System.currentTimeMillis());
+            return result;
+        } catch (IOException e) {
+            Log.e("ResultCache", "Couldn't read result "+file.getName()+", removing it", e);
+            this.delete(file);
+            return null;
+        }
+    }
+
+    private void writeResult(Fingerprint fingerprint, String extension, Object result) {
+        if(this.directory == null || (!this.directory.isDirectory() && !this.directory.mkdirs()))
+            return;
+
+        File file = new File(this.directory, fingerprint.toHex() + extension);
+        File temporary = new File(this.directory, fingerprint.toHex() + extension + TEMPORARY_SUFFIX);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+            out.writeLong(fingerprint.getHigh());
+            out.writeLong(fingerprint.getLow());
+            if(result instanceof Schedule)
+                ScheduleIO.write((Schedule) result, out);
+            else
+                ResponseTimesIO.write((ResponseTimes) result, out);
+        } catch (IOException e) {
+            Log.e("ResultCache", "Couldn't write result "+file.getName(), e);
+            temporary.delete();
+            return;
+        }
+
+        long replaced = file.length();
+        if(!temporary.renameTo(file)) {
+            Log.e("ResultCache", "Couldn't replace result "+file.getName());
+            temporary.delete();
+            return;
+        }
+        this.stored(file.length() - replaced);
+    }
+
+    /**
+     * Account for a change of the size of the stored results, and remove the least recently used
+     * files while they don't fit.
+     */
+    private synchronized void stored(long change) {
+        if(this.diskBytes < 0) {
+            this.diskBytes = 0;
+            for(File file : this.files())
+                this.diskBytes += file.length();
+        } else {
+            this.diskBytes += change;
+        }
+        if(this.diskBytes <= this.maxDiskBytes)
+            return;
+
+        File[] files = this.files();
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long difference = a.lastModified() - b.lastModified();
+                return difference < 0 ? -1 : difference > 0 ? 1 : 0;
+            }
+        });
+        for(int i = 0; i < files.length && this.diskBytes > this.maxDiskBytes; ++i) {
+            long length = files[i].length();
+            if(this.delete(files[i])) {
+                this.diskBytes -= length;
+                ++this.diskEvictions;
+            }
+        }
+    }
+
+    private File[] files() {
+        File[] files = this.directory.listFiles();
+        return files == null ? new File[0] : files;
+    }
+
+    private boolean delete(File file) {
+        boolean deleted = file.delete();
+        if(!deleted)
+            Log.e("ResultCache", "Couldn't remove result "+file.getName());
+        return deleted;
+    }
+
+    /**
+     * Remove all results from memory. Stored results are kept.
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+        this.bytes = 0;
+    }
+
+    /**
+     * Get the number of requests that were answered from memory.
+     */
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * Get the number of requests that were answered by reading a stored result.
+     */
+    public synchronized long getDiskHits() {
+        return this.diskHits;
+    }
+
+    /**
+     * Get the number of requests for which the result had to be determined.
+     */
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * Get the number of results that were dropped from memory because they didn't fit.
+     */
+    public synchronized long getEvictions() {
+        return this.evictions;
+    }
+
+    /**
+     * Get the number of stored results that were removed because they didn't fit.
+     */
+    public synchronized long getDiskEvictions() {
+        return this.diskEvictions;
+    }
+
+    /**
+     * Get the number of results in memory.
+     */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Get the estimated size of the results in memory.
+     */
+    public synchronized long getBytes() {
+        return this.bytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ResultCache{" +
+                "entries=" + this.entries.size() +
+                ", bytes=" + this.bytes +
+                ", hits=" + this.hits +
+                ", diskHits=" + this.diskHits +
+                ", misses=" + this.misses +
+                ", evictions=" + this.evictions +
+                ", diskEvictions=" + this.diskEvictions +
+                '}';
+    }
+}
@@ -0,0 +1,302 @@
+package nl.tue.san.simulation;
+
+import java.util.Arrays;
+
+import nl.tue.san.analysis.Policy;
+
+/**
+ * The result of a simulation: the intervals in which jobs ran and the preemptions, in order of
+ * time, and the deadline misses, in the order in which they were detected. Tasks are identified
+ * by their index in the order of the simulated TaskSet, and jobs by their number within their
+ * task, where job 0 is released at the offset of the task.
+ *
+ * All results are kept in primitive arrays, so a schedule of many jobs doesn't consist of many
+ * objects.
+ */
+public class Schedule {
+
+    /**
+     * The finish time of a job that missed its deadline and didn't finish before the horizon.
+     */
+    public static final long UNFINISHED = -1;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Policy policy;
+    private final String[] names;
+    private final long horizon;
+
+    private int intervals;
+    private int[] intervalTask = new int[INITIAL_CAPACITY];
+    private long[] intervalJob = new long[INITIAL_CAPACITY];
+    private long[] intervalStart = new long[INITIAL_CAPACITY];
+    private long[] intervalEnd = new long[INITIAL_CAPACITY];
+
+    private int preemptions;
+    private long[] preemptionTime = new long[INITIAL_CAPACITY];
+    private int[] preemptedTask = new int[INITIAL_CAPACITY];
+    private int[] preemptingTask = new int[INITIAL_CAPACITY];
+
+    private int misses;
+    private int[] missTask = new int[INITIAL_CAPACITY];
+    private long[] missJob = new long[INITIAL_CAPACITY];
+    private long[] missDeadline = new long[INITIAL_CAPACITY];
+    private long[] missFinish = new long[INITIAL_CAPACITY];
+
+    private final long[] completed;
+    private final long[] worstResponseTime;
+    private long events;
+
+    Schedule(Policy policy, String[] names, long horizon) {
+        this(policy, names, horizon, new long[names.length], new long[names.length]);
+    }
+
+    Schedule(Policy policy, String[] names, long horizon, long[] completed, long[] worstResponseTime) {
+        this.policy = policy;
+        this.names = names;
+        this.horizon = horizon;
+        this.completed = completed;
+        this.worstResponseTime = worstResponseTime;
+    }
+
+    /**
+     * Shrink the arrays to the number of elements they contain, once the schedule is complete.
+     */
+    void trim() {
+        this.intervalTask = Arrays.copyOf(this.intervalTask, this.intervals);
+        this.intervalJob = Arrays.copyOf(this.intervalJob, this.intervals);
+        this.intervalStart = Arrays.copyOf(this.intervalStart, this.intervals);
+        this.intervalEnd = Arrays.copyOf(this.intervalEnd, this.intervals);
+        this.preemptionTime = Arrays.copyOf(this.preemptionTime, this.preemptions);
+        this.preemptedTask = Arrays.copyOf(this.preemptedTask, this.preemptions);
+        this.preemptingTask = Arrays.copyOf(this.preemptingTask, this.preemptions);
+        this.missTask = Arrays.copyOf(this.missTask, this.misses);
+        this.missJob = Arrays.copyOf(this.missJob, this.misses);
+        this.missDeadline = Arrays.copyOf(this.missDeadline, this.misses);
+        this.missFinish = Arrays.copyOf(this.missFinish, this.misses);
+    }
+
+    /**
+     * Estimate the number of bytes of memory the schedule takes.
+     */
+    long estimateBytes() {
+        long bytes = 128 + 64L * this.names.length;
+        bytes += 28L * this.intervalTask.length;
+        bytes += 16L * this.preemptionTime.length;
+        bytes += 28L * this.missTask.length;
+        return bytes;
+    }
+
+    void addInterval(int task, long job, long start, long end) {
+        // Continue the previous interval if the job ran without interruption.
+        int last = this.intervals - 1;
+        if(last >= 0 && this.intervalTask[last] == task && this.intervalJob[last] == job && this.intervalEnd[last] == start) {
+            this.intervalEnd[last] = end;
+            return;
+        }
+
+        if(this.intervals == this.intervalTask.length) {
+            int capacity = Math.max(INITIAL_CAPACITY, this.intervals * 2);
+            this.intervalTask = Arrays.copyOf(this.intervalTask, capacity);
+            this.intervalJob = Arrays.copyOf(this.intervalJob, capacity);
+            this.intervalStart = Arrays.copyOf(this.intervalStart, capacity);
+            this.intervalEnd = Arrays.copyOf(this.intervalEnd, capacity);
+        }
+        this.intervalTask[this.intervals] = task;
+        this.intervalJob[this.intervals] = job;
+        this.intervalStart[this.intervals] = start;
+        this.intervalEnd[this.intervals] = end;
+        ++this.intervals;
+    }
+
+    void addPreemption(long time, int preempted, int preempting) {
+        if(this.preemptions == this.preemptionTime.length) {
+            int capacity = Math.max(INITIAL_CAPACITY, this.preemptions * 2);
+            this.preemptionTime = Arrays.copyOf(this.preemptionTime, capacity);
+            this.preemptedTask = Arrays.copyOf(this.preemptedTask, capacity);
+            this.preemptingTask = Arrays.copyOf(this.preemptingTask, capacity);
+        }
+        this.preemptionTime[this.preemptions] = time;
+        this.preemptedTask[this.preemptions] = preempted;
+        this.preemptingTask[this.preemptions] = preempting;
+        ++this.preemptions;
+    }
+
+    void addCompletion(int task, long job, long release, long deadline, long finish) {
+        ++this.completed[task];
+        this.worstResponseTime[task] = Math.max(this.worstResponseTime[task], finish - release);
+        if(finish > deadline)
+            this.addMiss(task, job, deadline, finish);
+    }
+
+    void addMiss(int task, long job, long deadline, long finish) {
+        if(this.misses == this.missTask.length) {
+            int capacity = Math.max(INITIAL_CAPACITY, this.misses * 2);
+            this.missTask = Arrays.copyOf(this.missTask, capacity);
+            this.missJob = Arrays.copyOf(this.missJob, capacity);
+            this.missDeadline = Arrays.copyOf(this.missDeadline, capacity);
+            this.missFinish = Arrays.copyOf(this.missFinish, capacity);
+        }
+        this.missTask[this.misses] = task;
+        this.missJob[this.misses] = job;
+        this.missDeadline[this.misses] = deadline;
+        this.missFinish[this.misses] = finish;
+        ++this.misses;
+    }
+
+    void setEvents(long events) {
+        this.events = events;
+    }
+
+    /**
+     * Get the policy with which the schedule was simulated.
+     */
+    public Policy getPolicy() {
+        return this.policy;
+    }
+
+    /**
+     * Get the end of the simulation, exclusive.
+     */
+    public long getHorizon() {
+        return this.horizon;
+    }
+
+    /**
+     * Get the number of simulated tasks.
+     */
+    public int size() {
+        return this.names.length;
+    }
+
+    /**
+     * Get the name of the task with the given index.
+     */
+    public String getName(int task) {
+        return this.names[task];
+    }
+
+    /**
+     * Get the number of intervals in which a job ran. Consecutive intervals are of different jobs,
+     * or of the same job with a preemption in between.
+     */
+    public int getIntervalCount() {
+        return this.intervals;
+    }
+
+    public int getIntervalTask(int interval) {
+        return this.intervalTask[interval];
+    }
+
+    public long getIntervalJob(int interval) {
+        return this.intervalJob[interval];
+    }
+
+    public long getIntervalStart(int interval) {
+        return this.intervalStart[interval];
+    }
+
+    /**
+     * Get the end of the interval, exclusive.
+     */
+    public long getIntervalEnd(int interval) {
+        return this.intervalEnd[interval];
+    }
+
+    /**
+     * Get the number of times a job was preempted.
+     */
+    public int getPreemptionCount() {
+        return this.preemptions;
+    }
+
+    public long getPreemptionTime(int preemption) {
+        return this.preemptionTime[preemption];
+    }
+
+    /**
+     * Get the task of the job that was preempted.
+     */
+    public int getPreemptedTask(int preemption) {
+        return this.preemptedTask[preemption];
+    }
+
+    /**
+     * Get the task of the job that preempted it.
+     */
+    public int getPreemptingTask(int preemption) {
+        return this.preemptingTask[preemption];
+    }
+
+    /**
+     * Get the number of jobs that finished after their deadline, or that didn't finish by the
+     * horizon although their deadline wasn't after it.
+     */
+    public int getDeadlineMissCount() {
+        return this.misses;
+    }
+
+    public int getMissTask(int miss) {
+        return this.missTask[miss];
+    }
+
+    public long getMissJob(int miss) {
+        return this.missJob[miss];
+    }
+
+    /**
+     * Get the absolute deadline that was missed.
+     */
+    public long getMissDeadline(int miss) {
+        return this.missDeadline[miss];
+    }
+
+    /**
+     * Get the time at which the job that missed its deadline finished.
+     * @return The finish time, or {@link #UNFINISHED} if the job didn't finish before the horizon.
+     */
+    public long getMissFinish(int miss) {
+        return this.missFinish[miss];
+    }
+
+    /**
+     * Whether no job missed its deadline before the horizon.
+     */
+    public boolean isSchedulable() {
+        return this.misses == 0;
+    }
+
+    /**
+     * Get the number of jobs of the given task that finished before the horizon.
+     */
+    public long getCompletedJobs(int task) {
+        return this.completed[task];
+    }
+
+    /**
+     * Get the longest response time of the jobs of the given task that finished before the horizon.
+     * @return The longest response time, or 0 if no job of the task finished.
+     */
+    public long getWorstResponseTime(int task) {
+        return this.worstResponseTime[task];
+    }
+
+    /**
+     * Get the number of events that were processed, which determines the cost of the simulation.
+     */
+    public long getEvents() {
+        return this.events;
+    }
+
+    @Override
+    public String toString() {
+        return "Schedule{" +
+                "policy=" + this.policy +
+                ", horizon=" + this.horizon +
+                ", intervals=" + this.intervals +
+                ", preemptions=" + this.preemptions +
+                ", misses=" + this.misses +
+                ", events=" + this.events +
+                '}';
+    }
+}
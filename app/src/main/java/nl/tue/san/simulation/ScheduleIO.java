@@ -0,0 +1,124 @@
+package nl.tue.san.simulation;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import nl.tue.san.analysis.Policy;
+
+/**
+ * Binary representation of a {@link Schedule}, so that simulated schedules can be stored and read
+ * back without simulating again. Reading back a written Schedule results in a Schedule with the
+ * same intervals, preemptions, deadline misses and statistics.
+ */
+public class ScheduleIO {
+
+    /**
+     * The version of the format that is written.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Write the given Schedule.
+     * @param schedule The Schedule to write.
+     * @param out The output to write to.
+     * @throws IOException If writing failed.
+     */
+    public static void write(Schedule schedule, DataOutput out) throws IOException {
+        out.writeByte(VERSION);
+        out.writeUTF(schedule.getPolicy().name());
+        out.writeLong(schedule.getHorizon());
+
+        out.writeInt(schedule.size());
+        for(int i = 0; i < schedule.size(); ++i) {
+            out.writeUTF(schedule.getName(i));
+            out.writeLong(schedule.getCompletedJobs(i));
+            out.writeLong(schedule.getWorstResponseTime(i));
+        }
+
+        out.writeInt(schedule.getIntervalCount());
+        for(int i = 0; i < schedule.getIntervalCount(); ++i) {
+            out.writeInt(schedule.getIntervalTask(i));
+            out.writeLong(schedule.getIntervalJob(i));
+            out.writeLong(schedule.getIntervalStart(i));
+            out.writeLong(schedule.getIntervalEnd(i));
+        }
+
+        out.writeInt(schedule.getPreemptionCount());
+        for(int i = 0; i < schedule.getPreemptionCount(); ++i) {
+            out.writeLong(schedule.getPreemptionTime(i));
+            out.writeInt(schedule.getPreemptedTask(i));
+            out.writeInt(schedule.getPreemptingTask(i));
+        }
+
+        out.writeInt(schedule.getDeadlineMissCount());
+        for(int i = 0; i < schedule.getDeadlineMissCount(); ++i) {
+            out.writeInt(schedule.getMissTask(i));
+            out.writeLong(schedule.getMissJob(i));
+            out.writeLong(schedule.getMissDeadline(i));
+            out.writeLong(schedule.getMissFinish(i));
+        }
+
+        out.writeLong(schedule.getEvents());
+    }
+
+    /**
+     * Read a Schedule that was written by {@link #write(Schedule, DataOutput)}.
+     * @param in The input to read from.
+     * @return The Schedule that was read.
+     * @throws IOException If reading failed, or the input doesn't contain a Schedule.
+     */
+    public static Schedule read(DataInput in) throws IOException {
+        int version = in.readUnsignedByte();
+        if(version != VERSION)
+            throw new IOException("Unsupported Schedule version "+version);
+
+        Policy policy;
+        try {
+            policy = Policy.valueOf(in.readUTF());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unknown policy", e);
+        }
+        long horizon = in.readLong();
+
+        int size = count(in);
+        String[] names = new String[size];
+        long[] completed = new long[size], worstResponseTime = new long[size];
+        for(int i = 0; i < size; ++i) {
+            names[i] = in.readUTF();
+            completed[i] = in.readLong();
+            worstResponseTime[i] = in.readLong();
+        }
+        Schedule schedule = new Schedule(policy, names, horizon, completed, worstResponseTime);
+
+        int intervals = count(in);
+        for(int i = 0; i < intervals; ++i)
+            schedule.addInterval(task(in, size), in.readLong(), in.readLong(), in.readLong());
+
+        int preemptions = count(in);
+        for(int i = 0; i < preemptions; ++i)
+            schedule.addPreemption(in.readLong(), task(in, size), task(in, size));
+
+        int misses = count(in);
+        for(int i = 0; i < misses; ++i)
+            schedule.addMiss(task(in, size), in.readLong(), in.readLong(), in.readLong());
+
+        schedule.setEvents(in.readLong());
+        schedule.trim();
+        return schedule;
+    }
+
+    private static int count(DataInput in) throws IOException {
+        int count = in.readInt();
+        if(count < 0)
+            throw new IOException("Negative count "+count);
+        return count;
+    }
+
+    private static int task(DataInput in, int size) throws IOException {
+        int task = in.readInt();
+        if(task < 0 || task >= size)
+            throw new IOException("Task index "+task+" out of bounds");
+        return task;
+    }
+}
@@ -0,0 +1,291 @@
+package nl.tue.san.simulation;
+
+import java.util.Arrays;
+import java.util.List;
+
+import nl.tue.san.analysis.JobReleases;
+import nl.tue.san.analysis.Policy;
+import nl.tue.san.tasks.Task;
+import nl.tue.san.tasks.TaskSet;
+
+/**
+ * Discrete-event simulator of the schedule of tasks on a single processor. Instead of advancing
+ * time one unit at a time, the simulation jumps from event to event: the release of a job, which
+ * may cause a preemption, and the completion of the running job. The cost of a simulation is
+ * therefore determined by the number of jobs released before the horizon, and not by the size of
+ * the periods or the horizon.
+ *
+ * Ready jobs are kept in a binary heap ordered by the policy, and the jobs themselves in primitive
+ * arrays that are reused, so no objects are allocated per job. Ties between jobs are broken by
+ * their release, then by the order of the tasks. A job that misses its deadline is not aborted,
+ * but continues until it finishes. The miss is reported when the job finishes, or at the horizon
+ * if it hasn't finished by then.
+ */
+public class Simulator {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final List<Task> tasks;
+    private final Policy policy;
+    private final String[] names;
+
+    // The properties of the tasks, in the order in which they were given.
+    private final long[] computation;
+    private final long[] deadline;
+    private final int[] priority;
+
+    /**
+     * The lowest priority a job must have to preempt a job of this task once it has started.
+     */
+    private final long[] preemption;
+
+    // The jobs that have been released and haven't finished, by slot.
+    private int[] jobTask = new int[INITIAL_CAPACITY];
+    private long[] jobNumber = new long[INITIAL_CAPACITY];
+    private long[] jobRelease = new long[INITIAL_CAPACITY];
+    private long[] jobDeadline = new long[INITIAL_CAPACITY];
+    private long[] jobRemaining = new long[INITIAL_CAPACITY];
+
+    /**
+     * The priority with which a job competes for the processor. With preemption thresholds, this is
+     * raised once the job has started, so it then only gives way to jobs that may preempt it.
+     */
+    private long[] jobPriority = new long[INITIAL_CAPACITY];
+
+    /**
+     * The slots that are not in use, and the number of slots that were ever used.
+     */
+    private int[] free = new int[INITIAL_CAPACITY];
+    private int freeSize;
+    private int used;
+
+    /**
+     * Heap of the slots of the ready jobs, with the job that should run first at the root.
+     */
+    private int[] ready = new int[INITIAL_CAPACITY];
+    private int readySize;
+
+    /**
+     * Create a simulator of the given tasks. The tasks must not be changed while the simulator is
+     * in use.
+     * @param tasks The tasks to simulate.
+     * @param policy The scheduling policy.
+     */
+    public Simulator(List<Task> tasks, Policy policy) {
+        int size = tasks.size();
+        this.tasks = tasks;
+        this.policy = policy;
+        this.names = new String[size];
+        this.computation = new long[size];
+        this.deadline = new long[size];
+        this.priority = new int[size];
+        this.preemption = new long[size];
+
+        for(int i = 0; i < size; ++i) {
+            Task task = tasks.get(i);
+            this.names[i] = task.getName();
+            this.computation[i] = task.getComputation();
+            this.deadline[i] = task.getDeadline();
+            this.priority[i] = task.getPriority();
+            switch (policy) {
+                case FPTS:
+                    this.preemption[i] = Math.max((long) task.getMinimalPreemptionPriority(), task.getPriority() + 1L);
+                    break;
+                case FPNS:
+                    this.preemption[i] = Long.MAX_VALUE;
+                    break;
+                default:
+                    this.preemption[i] = task.getPriority() + 1L;
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Simulate the tasks that are currently contained in the given TaskSet.
+     * @param taskSet The TaskSet to simulate.
+     * @param scheduler The name of the scheduler, see {@link Policy#forScheduler(String)}.
+     * @param horizon The end of the simulation, exclusive.
+     * @return The simulated schedule.
+     * @throws IllegalArgumentException If there is no policy for the scheduler.
+     */
+    public static Schedule simulate(TaskSet taskSet, String scheduler, long horizon) {
+        return new Simulator(taskSet.getOrderedTasks(), Policy.forScheduler(scheduler)).simulate(horizon);
+    }
+
+    /**
+     * Simulate the schedule from time 0 until the given horizon.
+     * @param horizon The end of the simulation, exclusive.
+     * @return The simulated schedule.
+     */
+    public synchronized Schedule simulate(long horizon) {
+        this.freeSize = 0;
+        this.used = 0;
+        this.readySize = 0;
+
+        Schedule schedule = new Schedule(this.policy, this.names, horizon);
+        JobReleases releases = new JobReleases(this.tasks, 0, horizon);
+        long now = 0, events = 0;
+        int running = -1;
+
+        while(true) {
+            if(running < 0) {
+                // Idle, so jump to the next release.
+                if(releases.peekTime() == Long.MAX_VALUE)
+                    break;
+                now = releases.peekTime();
+            } else {
+                long completion = now + this.jobRemaining[running];
+                if(completion < now)
+                    completion = Long.MAX_VALUE;
+                long next = Math.min(Math.min(releases.peekTime(), completion), horizon);
+
+                if(next > now)
+                    schedule.addInterval(this.jobTask[running], this.jobNumber[running], now, next);
+                this.jobRemaining[running] -= next - now;
+                now = next;
+
+                if(now == completion) {
+                    schedule.addCompletion(this.jobTask[running], this.jobNumber[running], this.jobRelease[running], this.jobDeadline[running], now);
+                    this.release(running);
+                    running = -1;
+                    ++events;
+                }
+                if(now >= horizon)
+                    break;
+            }
+
+            while(releases.peekTime() == now) {
+                releases.next();
+                this.push(this.allocate(releases.getTaskIndex(), releases.getJob(), now));
+                ++events;
+            }
+
+            if(this.readySize > 0) {
+                if(running < 0) {
+                    running = this.start(this.pop());
+                } else if(this.preempts(this.ready[0], running)) {
+                    schedule.addPreemption(now, this.jobTask[running], this.jobTask[this.ready[0]]);
+                    int preempted = running;
+                    running = this.start(this.pop());
+                    this.push(preempted);
+                }
+            }
+        }
+
+        // Jobs that didn't finish, although their deadline wasn't after the horizon.
+        if(running >= 0)
+            this.push(running);
+        for(int i = 0; i < this.readySize; ++i) {
+            int job = this.ready[i];
+            if(this.jobDeadline[job] <= horizon)
+                schedule.addMiss(this.jobTask[job], this.jobNumber[job], this.jobDeadline[job], Schedule.UNFINISHED);
+        }
+
+        schedule.setEvents(events);
+        return schedule;
+    }
+
+    /**
+     * Whether the first job may preempt the second job, which has started.
+     */
+    private boolean preempts(int job, int running) {
+        if(this.policy.isDeadlineBased())
+            return this.jobDeadline[job] < this.jobDeadline[running];
+        return this.priority[this.jobTask[job]] >= this.preemption[this.jobTask[running]];
+    }
+
+    /**
+     * Raise the priority of the given job to the priority it keeps once it has started.
+     * @return The job.
+     */
+    private int start(int job) {
+        this.jobPriority[job] = this.preemption[this.jobTask[job]] - 1;
+        return job;
+    }
+
+    /**
+     * Whether the first job should run before the second job if neither is running.
+     */
+    private boolean before(int a, int b) {
+        if(this.policy.isDeadlineBased()) {
+            if(this.jobDeadline[a] != this.jobDeadline[b])
+                return this.jobDeadline[a] < this.jobDeadline[b];
+        } else if(this.jobPriority[a] != this.jobPriority[b]) {
+            return this.jobPriority[a] > this.jobPriority[b];
+        }
+        if(this.jobRelease[a] != this.jobRelease[b])
+            return this.jobRelease[a] < this.jobRelease[b];
+        return this.jobTask[a] < this.jobTask[b];
+    }
+
+    private int allocate(int task, long number, long release) {
+        int job;
+        if(this.freeSize > 0) {
+            job = this.free[--this.freeSize];
+        } else {
+            if(this.used == this.jobTask.length) {
+                int capacity = this.used * 2;
+                this.jobTask = Arrays.copyOf(this.jobTask, capacity);
+                this.jobNumber = Arrays.copyOf(this.jobNumber, capacity);
+                this.jobRelease = Arrays.copyOf(this.jobRelease, capacity);
+                this.jobDeadline = Arrays.copyOf(this.jobDeadline, capacity);
+                this.jobRemaining = Arrays.copyOf(this.jobRemaining, capacity);
+                this.jobPriority = Arrays.copyOf(this.jobPriority, capacity);
+                this.free = Arrays.copyOf(this.free, capacity);
+                this.ready = Arrays.copyOf(this.ready, capacity);
+            }
+            job = this.used++;
+        }
+
+        long deadline = release + this.deadline[task];
+        this.jobTask[job] = task;
+        this.jobNumber[job] = number;
+        this.jobRelease[job] = release;
+        this.jobDeadline[job] = deadline < release ? Long.MAX_VALUE : deadline;
+        this.jobRemaining[job] = this.computation[task];
+        this.jobPriority[job] = this.priority[task];
+        return job;
+    }
+
+    private void release(int job) {
+        this.free[this.freeSize++] = job;
+    }
+
+    private void push(int job) {
+        int position = this.readySize++;
+        this.ready[position] = job;
+        while(position > 0) {
+            int parent = (position - 1) >>> 1;
+            if(!this.before(this.ready[position], this.ready[parent]))
+                break;
+            this.swap(position, parent);
+            position = parent;
+        }
+    }
+
+    private int pop() {
+        int job = this.ready[0];
+        this.ready[0] = this.ready[--this.readySize];
+
+        int position = 0;
+        while(true) {
+            int first = position, left = 2 * position + 1, right = left + 1;
+            if(left < this.readySize && this.before(this.ready[left], this.ready[first]))
+                first = left;
+            if(right < this.readySize && this.before(this.ready[right], this.ready[first]))
+                first = right;
+            if(first == position)
+                break;
+            this.swap(position, first);
+            position = first;
+        }
+        return job;
+    }
+
+    private void swap(int a, int b) {
+        int swapped = this.ready[a];
+        this.ready[a] = this.ready[b];
+        this.ready[b] = swapped;
+    }
+}
@@ -1,8 +1,12 @@
 package nl.tue.san.tasks;
 
+import android.util.JsonReader;
+
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+
 /**
  * Created by Maurice on 5-1-2017.
  */
@@ -78,6 +82,73 @@ public class TaskIO {
         return new Task(name, color,offset,period,deadline,computation,priority,threshold);
     }
 
+    /**
+     * Reads a Task from the given JsonReader, without building a JSONObject first. The next value
+     * in the reader must be an object with the same properties as required by
+     * {@link #fromJSON(JSONObject)}, and the same defaults apply. Unknown properties are skipped.
+     *
+     * @param reader The reader positioned at the start of the object representing the Task.
+     * @return The Task that was read.
+     * @throws IOException If reading failed or the content isn't valid JSON.
+     * @throws JSONException If any of the required properties is missing.
+     * @see #fromJSON(JSONObject)
+     */
+    public static Task fromJSON(JsonReader reader) throws IOException, JSONException {
+        String name = null;
+        Integer period = null, deadline = null, computation = null, priority = null, color = null;
+        int offset = 0;
+        int threshold = Task.NO_PREEMPTION_THRESHOLD;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case NAME: name = reader.nextString(); break;
+                case PERIOD: period = reader.nextInt(); break;
+                case DEADLINE: deadline = reader.nextInt(); break;
+                case COMPUTATION: computation = reader.nextInt(); break;
+                case PRIORITY: priority = reader.nextInt(); break;
+                case COLOR: color = Integer.valueOf(reader.nextString().substring(1), 16); break;
+                case OFFSET: offset = reader.nextInt(); break;
+                case THRESHOLD: threshold = reader.nextInt(); break;
+                default: reader.skipValue(); break;
+            }
+        }
+        reader.endObject();
+
+        return new Task(
+                required(name, NAME),
+                color == null ? missing(COLOR) : color,
+                offset,
+                period == null ? missing(PERIOD) : period,
+                deadline == null ? missing(DEADLINE) : deadline,
+                computation == null ? missing(COMPUTATION) : computation,
+                priority == null ? missing(PRIORITY) : priority,
+                threshold);
+    }
+
+    /**
+     * Asserts that the given required property was read.
+     * @param value The value that was read, or null if the property was absent.
+     * @param property The name of the property.
+     * @return The given value.
+     * @throws JSONException If the value is null.
+     */
+    static String required(String value, String property) throws JSONException {
+        if(value == null)
+            throw new JSONException("No value for "+property);
+        return value;
+    }
+
+    /**
+     * Signals that the given required property was absent.
+     * @param property The name of the property.
+     * @return Never returns normally.
+     * @throws JSONException Always.
+     */
+    private static int missing(String property) throws JSONException {
+        throw new JSONException("No value for "+property);
+    }
+
     /**
      * Converts a Task to a JSONObject. The returned JSONObject contains the following properties,
      * in no particular order:
@@ -4,26 +4,51 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
 
+import nl.tue.san.analysis.AnalysisCache;
+import nl.tue.san.util.LockStatistics;
 import nl.tue.san.util.ReadWriteSafeObject;
 
 /**
  * Created by Maurice on 5-1-2017.
  *
  * Contains Tasks such that the tasks are obtainable by name and by index. It is thread safe in the
- * sense that no other operations can occur while new elements are being added to the TaskSet. For
- * more information, see {@link nl.tue.san.util.ReadWriteSafeObject}.
+ * sense that every operation sees the TaskSet either entirely before or entirely after any
+ * concurrent modification.
+ *
+ * The contents are kept in an immutable {@link State} behind an atomic reference. Reads only
+ * dereference the current state, so they never block nor allocate, and are not slowed down by
+ * other readers. Modifications copy the current state, apply the change to the copy and swap it in
+ * with a compare-and-set, which is retried on a copy of the new state if another modification
+ * swapped in its state first. This favours reads, which far outnumber modifications of a TaskSet.
+ *
+ * Several operations can still be combined through {@link #readOp(ReadWriteSafeObject.Operation)}
+ * and {@link #writeOp(ReadWriteSafeObject.Operation)}, which take the lock of the TaskSet: the
+ * modifications in a writeOp happen while no readOp is performed. Single modifications outside of
+ * a writeOp don't take the lock, so a readOp that must not see those should be a writeOp. Reads
+ * outside of those never wait, so they may see the modifications of a writeOp that is in progress.
  * @see nl.tue.san.util.ReadWriteSafeObject
  */
 
-public class TaskSet extends ReadWriteSafeObject {
+public class TaskSet {
 
     private final String name;
-    private final ArrayList<String> order;
-    private final HashMap<String, Task> tasks;
+    private final AtomicReference<State> state;
+
+    /**
+     * The lock that the operations of {@link #readOp} and {@link #writeOp} are performed under.
+     */
+    private final ReadWriteSafeObject lock = new ReadWriteSafeObject();
+
+    /**
+     * The analysis of this TaskSet, created on first use.
+     */
+    private volatile AnalysisCache analysis;
 
     /**
      * Creates a new TaskSet with the given name, containing the given tasks. The tasks are inserted in the order that they are given in.
@@ -40,25 +65,28 @@ public class TaskSet extends ReadWriteSafeObject {
      * @param tasks
      */
     public TaskSet(String name, List<Task> tasks) {
-        this(name, tasks.size());
+        this.name = name;
 
-        // Now write all tasks. It is safe to call insert directly as there can be only one call
-        // occurring on this object right now, and that is the call to this constructor.
-        for(Task task : tasks)
-            this.unsafeInsert(task);
+        // Insert all tasks at once rather than swapping in a new state for each task. A task with a
+        // name that was already given replaces that task, and moves to the end of the order, just
+        // like put does.
+        LinkedHashMap<String, Task> inserted = new LinkedHashMap<>();
+        for(Task task : tasks) {
+            inserted.remove(task.getName());
+            inserted.put(task.getName(), task);
+        }
+        this.state = new AtomicReference<>(new State(inserted.values().toArray(new Task[inserted.size()])));
     }
 
     /**
-     * Creates a new TaskSet that has the given name. It contains no tasks, but expects to contain
-     * the given number of tasks. A correct size estimation allows for a more efficient storage
-     * usage.
+     * Creates a new TaskSet that has the given name. It contains no tasks. The expected number of
+     * tasks is no longer used, as the storage of a TaskSet is always exactly as large as needed.
      * @param name The name of the TaskSet.
      * @param size The expected number of tasks in this taskset.
      */
     public TaskSet(String name, int size){
         this.name = name;
-        this.tasks = new HashMap<>();
-        this.order = new ArrayList<>(size);
+        this.state = new AtomicReference<>(State.EMPTY);
     }
 
     /**
@@ -78,18 +106,34 @@ public class TaskSet extends ReadWriteSafeObject {
         return name;
     }
 
+    /**
+     * Get the response-time analysis of this TaskSet. The analysis is kept with the TaskSet, so
+     * that analysing the TaskSet again after some of its tasks changed only analyses the tasks that
+     * are affected by those changes.
+     * @return The analysis of this TaskSet. It is the same object on every call.
+     */
+    public AnalysisCache getAnalysis() {
+        AnalysisCache analysis = this.analysis;
+        if(analysis == null) {
+            synchronized (this) {
+                analysis = this.analysis;
+                if(analysis == null)
+                    this.analysis = analysis = new AnalysisCache(this);
+            }
+        }
+        return analysis;
+    }
+
     /**
      * Get the task at the given index.
      * @param index
      * @return
      */
     public Task get(final int index){
-        return this.readOp(new Operation<Task>() {
-            @Override
-            public Task perform() {
-                return TaskSet.this.get(order.get(index));
-            }
-        });
+        Task[] tasks = this.state.get().tasks;
+        if(index < 0 || index >= tasks.length)
+            throw new IndexOutOfBoundsException("Index: "+index+", Size: "+tasks.length);
+        return tasks[index];
     }
 
     /**
@@ -98,12 +142,7 @@ public class TaskSet extends ReadWriteSafeObject {
      * @return
      */
     public Task get(final String name){
-        return this.readOp(new Operation<Task>() {
-            @Override
-            public Task perform() {
-                return TaskSet.this.tasks.get(name);
-            }
-        });
+        return this.state.get().get(name);
     }
 
     /**
@@ -112,13 +151,7 @@ public class TaskSet extends ReadWriteSafeObject {
      * @return
      */
     public boolean contains(final String name){
-
-        return readOp(new Operation<Boolean>() {
-            @Override
-            public Boolean perform() {
-                return name != null && TaskSet.this.tasks.containsKey(name);
-            }
-        });
+        return name != null && this.state.get().positions.containsKey(name);
     }
 
     /**
@@ -127,13 +160,10 @@ public class TaskSet extends ReadWriteSafeObject {
      * @return
      */
     public boolean contains(final Task task) {
-
-        return readOp(new Operation<Boolean>() {
-            @Override
-            public Boolean perform() {
-                return task != null && TaskSet.this.contains(task.getName()) && TaskSet.this.get(task.getName()).equals(task);
-            }
-        });
+        if(task == null)
+            return false;
+        Task contained = this.state.get().get(task.getName());
+        return contained != null && contained.equals(task);
     }
 
     /**
@@ -141,12 +171,7 @@ public class TaskSet extends ReadWriteSafeObject {
      * @return
      */
     public int size(){
-        return readOp(new Operation<Integer>() {
-            @Override
-            public Integer perform() {
-                return TaskSet.this.tasks.size();
-            }
-        });
+        return this.state.get().tasks.length;
     }
 
 
@@ -157,12 +182,7 @@ public class TaskSet extends ReadWriteSafeObject {
      * @return A set of the names of all tasks contained in this TaskSet.
      */
     public Set<String> getTaskNames(){
-        return readOp(new Operation<Set<String>>() {
-            @Override
-            public Set<String> perform() {
-                return new HashSet<>(TaskSet.this.tasks.keySet());
-            }
-        });
+        return new HashSet<>(this.state.get().positions.keySet());
     }
 
     /**
@@ -172,12 +192,7 @@ public class TaskSet extends ReadWriteSafeObject {
      * @return A set of the names of all tasks contained in this TaskSet.
      */
     public Set<Task> getTasks(){
-        return readOp(new Operation<HashSet<Task>>() {
-            @Override
-            public HashSet<Task> perform() {
-                return new HashSet<>(TaskSet.this.tasks.values());
-            }
-        });
+        return new HashSet<>(Arrays.asList(this.state.get().tasks));
     }
 
     /**
@@ -187,16 +202,7 @@ public class TaskSet extends ReadWriteSafeObject {
      * @return A set of the names of all tasks contained in this TaskSet.
      */
     public List<Task> getOrderedTasks(){
-        return readOp(new Operation<List<Task>>() {
-            @Override
-            public List<Task> perform() {
-
-                List<Task> tasksInOrder = new LinkedList<>();
-                for(String name : TaskSet.this.order)
-                    tasksInOrder.add(TaskSet.this.tasks.get(name));
-                return tasksInOrder;
-            }
-        });
+        return new ArrayList<>(Arrays.asList(this.state.get().tasks));
     }
 
     /**
@@ -207,12 +213,11 @@ public class TaskSet extends ReadWriteSafeObject {
      *          is returned.
      */
     public Task put(final Task task){
-        return this.writeOp(new Operation<Task>() {
-            @Override
-            public Task perform() {
-                return TaskSet.this.unsafeInsert(task);
-            }
-        });
+        while(true) {
+            State current = this.state.get();
+            if(this.state.compareAndSet(current, current.with(task)))
+                return current.get(task.getName());
+        }
     }
 
     /**
@@ -221,41 +226,71 @@ public class TaskSet extends ReadWriteSafeObject {
      * @return whether or not the given task was contained.
      */
     public boolean remove(final Task task){
-        return this.writeOp(new Operation<Boolean>() {
-            @Override
-            public Boolean perform() {
-                return TaskSet.this.unsafeRemove(task) != null;
-            }
-        });
+        while(true) {
+            State current = this.state.get();
+            if(!current.positions.containsKey(task.getName()))
+                return false;
+            if(this.state.compareAndSet(current, current.without(task.getName())))
+                return true;
+        }
     }
 
     /**
-     * Insert the given task into the TaskSet. This method performs no synchronization. Therefore it
-     * should <strong>not</strong> be publicly available. Furthermore, it should not be called
-     * without external synchronization.
-     * @param task The task to insert
-     * @return The Task that was evicted by adding the given task. If no task is evicted then null
-     *          is returned.
+     * Perform the given operation while no modifications within a {@link #writeOp} of this TaskSet
+     * happen, see {@link ReadWriteSafeObject#readOp(ReadWriteSafeObject.Operation)}. It must not
+     * modify this TaskSet.
+     * @param operation The operation to perform.
+     * @param <T> The return type of the operation.
+     * @return The result of performing the operation.
+     */
+    public <T> T readOp(ReadWriteSafeObject.Operation<T> operation) {
+        return this.lock.readOp(operation);
+    }
+
+    /**
+     * Perform the given operation, which may modify this TaskSet, while no other modifications and
+     * no operations given to {@link #readOp} happen, see
+     * {@link ReadWriteSafeObject#writeOp(ReadWriteSafeObject.Operation)}.
+     * @param operation The operation to perform.
+     * @param <T> The return type of the operation.
+     * @return The result of performing the operation.
+     */
+    public <T> T writeOp(ReadWriteSafeObject.Operation<T> operation) {
+        return this.lock.writeOp(operation);
+    }
+
+    /**
+     * Perform the given operation under the given lock, see
+     * {@link ReadWriteSafeObject#lockOp(ReadWriteSafeObject.Operation, Lock)}.
+     */
+    public <T> T lockOp(ReadWriteSafeObject.Operation<T> operation, Lock lock) {
+        return this.lock.lockOp(operation, lock);
+    }
+
+    /**
+     * Perform the given operation like {@link #readOp}, without boxing its result, see
+     * {@link ReadWriteSafeObject#readBooleanOp(ReadWriteSafeObject.BooleanOperation, Object)}.
      */
-    private Task unsafeInsert(Task task){
-        // Ensure that the taskname only occurs at the end of the order
-        order.remove(task.getName());
-        order.add(task.getName());
+    public <C> boolean readBooleanOp(ReadWriteSafeObject.BooleanOperation<C> operation, C context) {
+        return this.lock.readBooleanOp(operation, context);
+    }
 
-        // Then insert it into mapping
-        return tasks.put(task.getName(), task);
+    /**
+     * Get the statistics that the operations of {@link #readOp} and {@link #writeOp} are recorded
+     * in, see {@link ReadWriteSafeObject#getStatistics()}.
+     * @return The statistics, or null if there are none.
+     */
+    public LockStatistics getStatistics() {
+        return this.lock.getStatistics();
     }
+
     /**
-     * Remove the given task from the TaskSet. This method performs no synchronization. Therefore it
-     * should <strong>not</strong> be publicly available. Furthermore, it should not be called
-     * without external synchronization.
-     * @param task The task to remove
-     * @return The Task that was removed. The returned task will always be equal to the given task
-     *          or null if the given task was not contained.
+     * Set the statistics that the operations of {@link #readOp} and {@link #writeOp} are recorded
+     * in, see {@link ReadWriteSafeObject#setStatistics(LockStatistics)}.
+     * @param statistics The statistics, or null to stop recording operations altogether.
      */
-    private Task unsafeRemove(Task task){
-        order.remove(task.getName());
-        return tasks.remove(task.getName());
+    public void setStatistics(LockStatistics statistics) {
+        this.lock.setStatistics(statistics);
     }
 
     @Override
@@ -266,16 +301,69 @@ public class TaskSet extends ReadWriteSafeObject {
         TaskSet taskSet = (TaskSet) o;
 
         if (!name.equals(taskSet.name)) return false;
-        if (!order.equals(taskSet.order)) return false;
-        return tasks.equals(taskSet.tasks);
+        return Arrays.equals(state.get().tasks, taskSet.state.get().tasks);
 
     }
 
     @Override
     public int hashCode() {
         int result = name.hashCode();
-        result = 31 * result + order.hashCode();
-        result = 31 * result + tasks.hashCode();
+        result = 31 * result + Arrays.hashCode(state.get().tasks);
         return result;
     }
+
+    /**
+     * The contents of a TaskSet at some point in time: the tasks in order, and the position of each
+     * task by its name. A State is never modified once it has been published; modifications create
+     * a new State instead.
+     */
+    private static final class State {
+
+        private static final State EMPTY = new State(new Task[0]);
+
+        private final Task[] tasks;
+        private final HashMap<String, Integer> positions;
+
+        private State(Task[] tasks) {
+            this.tasks = tasks;
+            this.positions = new HashMap<>(tasks.length * 4 / 3 + 1);
+            for(int i = 0; i < tasks.length; ++i)
+                this.positions.put(tasks[i].getName(), i);
+        }
+
+        private Task get(String name) {
+            Integer position = this.positions.get(name);
+            return position == null ? null : this.tasks[position];
+        }
+
+        /**
+         * Create the State that results from inserting the given task at the end of the order,
+         * replacing the task with the same name if there is one.
+         */
+        private State with(Task task) {
+            Integer position = this.positions.get(task.getName());
+            Task[] tasks;
+            if(position == null) {
+                tasks = Arrays.copyOf(this.tasks, this.tasks.length + 1);
+            } else {
+                tasks = new Task[this.tasks.length];
+                System.arraycopy(this.tasks, 0, tasks, 0, position);
+                System.arraycopy(this.tasks, position + 1, tasks, position, this.tasks.length - position - 1);
+            }
+            tasks[tasks.length - 1] = task;
+            return new State(tasks);
+        }
+
+        /**
+         * Create the State that results from removing the task with the given name, which must be
+         * contained.
+         */
+        private State without(String name) {
+            int position = this.positions.get(name);
+            Task[] tasks = new Task[this.tasks.length - 1];
+            System.arraycopy(this.tasks, 0, tasks, 0, position);
+            System.arraycopy(this.tasks, position + 1, tasks, position, tasks.length - position);
+            return new State(tasks);
+        }
+    }
 }
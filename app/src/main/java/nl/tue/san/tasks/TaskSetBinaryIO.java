@@ -0,0 +1,337 @@
+package nl.tue.san.tasks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Compact binary representation of TaskSets, as an alternative to the JSON representation of
+ * {@link TaskSetIO}. Reading back a written TaskSet results in a TaskSet that is equal to the
+ * written one, including the order of its tasks and flag values for the threshold.
+ *
+ * The layout of the format is as follows:
+ * <ul>
+ *     <li><strong>Header</strong>: the four magic bytes {@code 'T' 'S' 'B' 0x00}, followed by a
+ *     single byte containing the version of the format.</li>
+ *     <li><strong>String table</strong>: the number of strings, followed by each string as its
+ *     length in bytes and its UTF-8 bytes. Every distinct name of a TaskSet or Task is stored
+ *     exactly once, and is referred to by its index in the table.</li>
+ *     <li><strong>TaskSets</strong>: the number of TaskSets, followed by each TaskSet as the
+ *     index of its name and the number of tasks, followed by its tasks in order.</li>
+ *     <li><strong>Task</strong>: the index of its name, then its offset, period, deadline,
+ *     computation time and priority, then its threshold in zigzag encoding so that
+ *     {@link Task#NO_PREEMPTION_THRESHOLD} takes a single byte, and finally the red, green and
+ *     blue channel of its color as three plain bytes, as the alpha channel is always 255.</li>
+ * </ul>
+ * All counts, lengths, indices and task properties other than the color are stored as unsigned
+ * variable length integers, using 7 bits per byte with the high bit indicating that more bytes
+ * follow.
+ */
+public class TaskSetBinaryIO {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * The bytes every binary representation starts with.
+     */
+    private static final byte[] MAGIC = {'T', 'S', 'B', 0};
+
+    /**
+     * The version of the format that is written.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Indicates whether the given bytes start with the header of the binary format. This can be
+     * used to tell the binary format apart from JSON, which never starts with these bytes.
+     * @param header The first bytes of a representation. May be shorter than the header.
+     * @param length The number of valid bytes in {@code header}.
+     * @return Whether the bytes start with the magic bytes of the binary format.
+     */
+    public static boolean isBinary(byte[] header, int length) {
+        if(length < MAGIC.length)
+            return false;
+        for(int i = 0; i < MAGIC.length; ++i)
+            if(header[i] != MAGIC[i])
+                return false;
+        return true;
+    }
+
+    /**
+     * Indicates whether the given stream starts with the header of the binary format, without
+     * consuming any bytes from it.
+     * @param in The stream to inspect. It must support {@link InputStream#mark(int)}.
+     * @return Whether the stream contains the binary format.
+     * @throws IOException If reading from the stream failed.
+     */
+    public static boolean isBinary(InputStream in) throws IOException {
+        if(!in.markSupported())
+            throw new IllegalArgumentException("Stream must support mark");
+
+        byte[] header = new byte[MAGIC.length];
+        in.mark(header.length);
+        int length = 0, read;
+        while(length < header.length && (read = in.read(header, length, header.length - length)) != -1)
+            length += read;
+        in.reset();
+        return isBinary(header, length);
+    }
+
+    /**
+     * Write a single TaskSet to the given stream.
+     * @param taskSet The TaskSet to write.
+     * @param out The stream to write to. It is not closed.
+     * @throws IOException If writing to the stream failed.
+     */
+    public static void write(TaskSet taskSet, OutputStream out) throws IOException {
+        write(Collections.singletonList(taskSet), out);
+    }
+
+    /**
+     * Write the given TaskSets, in order, to the given stream.
+     * @param taskSets The TaskSets to write.
+     * @param out The stream to write to. It is not closed.
+     * @throws IOException If writing to the stream failed.
+     */
+    public static void write(Collection<TaskSet> taskSets, OutputStream out) throws IOException {
+
+        // Take a consistent view of every TaskSet first, and collect all names.
+        List<List<Task>> tasks = new ArrayList<>(taskSets.size());
+        List<String> strings = new ArrayList<>();
+        HashMap<String, Integer> indices = new HashMap<>();
+        for(TaskSet taskSet : taskSets) {
+            List<Task> ordered = taskSet.getOrderedTasks();
+            tasks.add(ordered);
+            index(taskSet.getName(), strings, indices);
+            for(Task task : ordered)
+                index(task.getName(), strings, indices);
+        }
+
+        Encoder encoder = new Encoder();
+        encoder.bytes(MAGIC);
+        encoder.raw(VERSION);
+
+        encoder.unsigned(strings.size());
+        for(String string : strings) {
+            byte[] bytes = string.getBytes(UTF_8);
+            encoder.unsigned(bytes.length);
+            encoder.bytes(bytes);
+        }
+
+        encoder.unsigned(taskSets.size());
+        int i = 0;
+        for(TaskSet taskSet : taskSets) {
+            List<Task> ordered = tasks.get(i++);
+            encoder.unsigned(indices.get(taskSet.getName()));
+            encoder.unsigned(ordered.size());
+            for(Task task : ordered) {
+                encoder.unsigned(indices.get(task.getName()));
+                encoder.unsigned(task.getOffset());
+                encoder.unsigned(task.getPeriod());
+                encoder.unsigned(task.getDeadline());
+                encoder.unsigned(task.getComputation());
+                encoder.unsigned(task.getPriority());
+                encoder.unsigned((task.getThreshold() << 1) ^ (task.getThreshold() >> 31));
+                encoder.raw(task.getColor() >> 16);
+                encoder.raw(task.getColor() >> 8);
+                encoder.raw(task.getColor());
+            }
+        }
+
+        encoder.writeTo(out);
+    }
+
+    /**
+     * Read a single TaskSet from the given stream. The stream must contain exactly one TaskSet.
+     * @param in The stream to read from. It is read until its end, but not closed.
+     * @return The TaskSet that was read.
+     * @throws IOException If reading failed, or the stream doesn't contain exactly one TaskSet in
+     * the binary format.
+     */
+    public static TaskSet read(InputStream in) throws IOException {
+        List<TaskSet> taskSets = readAll(in);
+        if(taskSets.size() != 1)
+            throw new IOException("Expected a single TaskSet, but found "+taskSets.size());
+        return taskSets.get(0);
+    }
+
+    /**
+     * Read all TaskSets from the given stream.
+     * @param in The stream to read from. It is read until its end, but not closed.
+     * @return The TaskSets that were read, in the order in which they were written.
+     * @throws IOException If reading failed, or the stream isn't in the binary format.
+     */
+    public static List<TaskSet> readAll(InputStream in) throws IOException {
+        Decoder decoder = new Decoder(readFully(in));
+
+        for(byte b : MAGIC)
+            if(decoder.raw() != (b & 0xFF))
+                throw new IOException("Not a binary TaskSet representation");
+        int version = decoder.raw();
+        if(version != VERSION)
+            throw new IOException("Unsupported binary TaskSet version "+version);
+
+        String[] strings = new String[decoder.count()];
+        for(int i = 0; i < strings.length; ++i)
+            strings[i] = decoder.string();
+
+        int taskSetCount = decoder.count();
+        List<TaskSet> taskSets = new ArrayList<>(taskSetCount);
+        for(int i = 0; i < taskSetCount; ++i) {
+            String name = decoder.string(strings);
+            int taskCount = decoder.count();
+            List<Task> tasks = new ArrayList<>(taskCount);
+            for(int j = 0; j < taskCount; ++j) {
+                String taskName = decoder.string(strings);
+                int offset = decoder.unsigned();
+                int period = decoder.unsigned();
+                int deadline = decoder.unsigned();
+                int computation = decoder.unsigned();
+                int priority = decoder.unsigned();
+                int zigzag = decoder.unsigned();
+                int threshold = (zigzag >>> 1) ^ -(zigzag & 1);
+                int color = (decoder.raw() << 16) | (decoder.raw() << 8) | decoder.raw();
+                try {
+                    tasks.add(new Task(taskName, color, offset, period, deadline, computation, priority, threshold));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Invalid task "+taskName+": "+e.getMessage());
+                }
+            }
+            taskSets.add(new TaskSet(name, tasks));
+        }
+
+        if(decoder.remaining() != 0)
+            throw new IOException("Unexpected trailing data");
+
+        return taskSets;
+    }
+
+    /**
+     * Add the given string to the string table, if it isn't contained yet.
+     */
+    private static void index(String string, List<String> strings, HashMap<String, Integer> indices) {
+        if(!indices.containsKey(string)) {
+            indices.put(string, strings.size());
+            strings.add(string);
+        }
+    }
+
+    /**
+     * Read all remaining bytes of the given stream.
+     */
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(in.available(), 256));
+        byte[] buffer = new byte[8192];
+        int read;
+        while((read = in.read(buffer)) != -1)
+            out.write(buffer, 0, read);
+        return out.toByteArray();
+    }
+
+    /**
+     * Growable byte buffer to which the representation is encoded, so that it can be handed to the
+     * stream in a single write.
+     */
+    private static final class Encoder {
+        private byte[] buffer = new byte[1024];
+        private int length;
+
+        private void ensure(int extra) {
+            if(length + extra > buffer.length) {
+                byte[] grown = new byte[Math.max(buffer.length * 2, length + extra)];
+                System.arraycopy(buffer, 0, grown, 0, length);
+                buffer = grown;
+            }
+        }
+
+        private void raw(int value) {
+            ensure(1);
+            buffer[length++] = (byte) value;
+        }
+
+        private void bytes(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, length, bytes.length);
+            length += bytes.length;
+        }
+
+        private void unsigned(int value) {
+            ensure(5);
+            while((value & ~0x7F) != 0) {
+                buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[length++] = (byte) value;
+        }
+
+        private void writeTo(OutputStream out) throws IOException {
+            out.write(buffer, 0, length);
+        }
+    }
+
+    /**
+     * Reads values from an encoded representation, failing on truncated or malformed input.
+     */
+    private static final class Decoder {
+        private final byte[] buffer;
+        private int position;
+
+        private Decoder(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        private int remaining() {
+            return buffer.length - position;
+        }
+
+        private int raw() throws IOException {
+            if(position >= buffer.length)
+                throw new EOFException("Binary TaskSet representation is truncated");
+            return buffer[position++] & 0xFF;
+        }
+
+        private int unsigned() throws IOException {
+            int value = 0;
+            for(int shift = 0; shift < 35; shift += 7) {
+                int b = raw();
+                value |= (b & 0x7F) << shift;
+                if((b & 0x80) == 0)
+                    return value;
+            }
+            throw new IOException("Malformed variable length integer");
+        }
+
+        /**
+         * Read a count, which can't exceed the number of remaining bytes, so that malformed input
+         * can't cause huge allocations.
+         */
+        private int count() throws IOException {
+            int count = unsigned();
+            if(count < 0 || count > remaining())
+                throw new IOException("Invalid count "+count);
+            return count;
+        }
+
+        private String string() throws IOException {
+            int length = count();
+            String string = new String(buffer, position, length, UTF_8);
+            position += length;
+            return string;
+        }
+
+        private String string(String[] strings) throws IOException {
+            int index = unsigned();
+            if(index < 0 || index >= strings.length)
+                throw new IOException("Invalid string index "+index);
+            return strings[index];
+        }
+    }
+}
@@ -1,9 +1,13 @@
 package nl.tue.san.tasks;
 
+import android.util.JsonReader;
+
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -73,6 +77,45 @@ public class TaskSetIO {
         return new TaskSet(name, tasks);
     }
 
+    /**
+     * Reads a TaskSet from the given JsonReader, without building a JSONObject first. The next
+     * value in the reader must be an object with the same properties as required by
+     * {@link #fromJSON(JSONObject)}. Unknown properties are skipped.
+     *
+     * @param reader The reader positioned at the start of the object representing the TaskSet.
+     * @return The TaskSet that was read.
+     * @throws IOException If reading failed or the content isn't valid JSON.
+     * @throws JSONException If any of the required properties is missing.
+     * @see TaskIO#fromJSON(JsonReader)
+     */
+    public static TaskSet fromJSON(JsonReader reader) throws IOException, JSONException {
+        String name = null;
+        List<Task> tasks = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case NAME:
+                    name = reader.nextString();
+                    break;
+                case TASKS:
+                    tasks = new ArrayList<>();
+                    reader.beginArray();
+                    while (reader.hasNext())
+                        tasks.add(TaskIO.fromJSON(reader));
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        if(tasks == null)
+            throw new JSONException("No value for "+TASKS);
+        return new TaskSet(TaskIO.required(name, NAME), tasks);
+    }
 
     /**
      * Converts a TaskSet to a JSONObject. The returned JSONObject contains the following properties,
@@ -0,0 +1,676 @@
+package nl.tue.san.tasks;
+
+import android.util.JsonReader;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.ref.WeakReference;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.zip.CRC32;
+
+import nl.tue.san.tasks.TaskSetManager.StorageFormat;
+
+/**
+ * The object managed by the {@link TaskSetManager}. Every TaskSet is stored in its own shard file,
+ * and the index only contains the name, the shard file and the checksum of each TaskSet, in order.
+ * A TaskSet is only read from its shard when it is requested for the first time, so the cost of
+ * loading the index depends on the number of TaskSets rather than on their size.
+ *
+ * Materialised TaskSets are kept in a small cache of recently used TaskSets. TaskSets that drop
+ * out of that cache remain available through a weak reference for as long as something else
+ * holds on to them, so that the same name always results in the same TaskSet object. TaskSets that
+ * may have been changed without being written are held strongly until {@link #prepareShards()}
+ * has collected them for writing. Only those TaskSets are written, so a TaskSet that is changed in
+ * place must be reported through {@link #changed(TaskSet)}.
+ *
+ * All methods are synchronized on the index itself, as TaskSets are materialised by readers that
+ * only hold the read lock of the manager. The only exception is {@link #snapshot()}, which
+ * gives lock-free access to the names and positions of all TaskSets.
+ */
+class TaskSetIndex {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * The number of recently used TaskSets that are kept in memory.
+     */
+    private static final int CACHE_CAPACITY = 8;
+
+    /**
+     * Extension of shard files.
+     */
+    private static final String SHARD_EXTENSION = ".taskset";
+
+    /**
+     * Suffix of the temporary file to which a shard is written before it replaces the shard.
+     */
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    /**
+     * Checksum of an entry whose shard has not been written yet. CRC32 values are never negative.
+     */
+    private static final long NOT_WRITTEN = -1;
+
+    /*
+     * Keys used in the index.
+     */
+    private static final String VERSION = "Version";
+    private static final String FORMAT = "Format";
+    private static final String TASK_SETS = "TaskSets";
+    private static final String NAME = "Name";
+    private static final String SHARD = "Shard";
+    private static final String CHECKSUM = "Checksum";
+
+    private static final int CURRENT_VERSION = 1;
+
+    /**
+     * Describes where a single TaskSet is stored.
+     */
+    private static final class Entry {
+        private final String shard;
+        private long checksum;
+
+        private Entry(String shard, long checksum) {
+            this.shard = shard;
+            this.checksum = checksum;
+        }
+    }
+
+    /**
+     * Immutable view of the names of all TaskSets, in order. A new snapshot is published whenever
+     * a TaskSet is added or removed, so that positions can be looked up without locking or
+     * allocating.
+     */
+    static final class Snapshot {
+        private final String[] names;
+        private final HashMap<String, Integer> positions;
+
+        private Snapshot(String[] names) {
+            this.names = names;
+            this.positions = new HashMap<>(names.length * 2);
+            for(int i = 0; i < names.length; ++i)
+                this.positions.put(names[i], i);
+        }
+
+        int size() {
+            return this.names.length;
+        }
+
+        /**
+         * Get the name of the TaskSet at the given position.
+         * @param index The position of the TaskSet.
+         * @return The name of the TaskSet.
+         * @throws IndexOutOfBoundsException If the given index is out of bounds.
+         */
+        String name(int index) {
+            return this.names[index];
+        }
+
+        /**
+         * Get the position of the TaskSet with the given name.
+         * @param name The name of the TaskSet.
+         * @return The position of the TaskSet, or -1 if there is no TaskSet with the given name.
+         */
+        int indexOf(String name) {
+            Integer index = this.positions.get(name);
+            return index == null ? -1 : index;
+        }
+
+        /**
+         * Get the names of all TaskSets, in order.
+         * @return An unmodifiable list containing all names.
+         */
+        List<String> names() {
+            return Collections.unmodifiableList(Arrays.asList(this.names));
+        }
+    }
+
+    private final File directory;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+    private volatile Snapshot snapshot = new Snapshot(new String[0]);
+    private StorageFormat format;
+    private int nextShard;
+
+    /**
+     * The most recently used TaskSets, in access order.
+     */
+    private final LinkedHashMap<String, TaskSet> recent = new LinkedHashMap<String, TaskSet>(CACHE_CAPACITY, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, TaskSet> eldest) {
+            if(this.size() <= CACHE_CAPACITY)
+                return false;
+            evict(eldest.getKey(), eldest.getValue());
+            return true;
+        }
+    };
+
+    /**
+     * Every TaskSet that was materialised and may still be in use.
+     */
+    private final HashMap<String, WeakReference<TaskSet>> materialised = new HashMap<>();
+
+    /**
+     * TaskSets that may differ from their shard, and may therefore not be dropped.
+     */
+    private final HashMap<String, TaskSet> unwritten = new HashMap<>();
+
+    /**
+     * Whether a TaskSet was changed while it dropped out of the cache, so that it must be written.
+     */
+    private boolean evictedChanges;
+
+    /**
+     * The shards of TaskSets that were removed, which are deleted once an index that no longer
+     * refers to them is written.
+     */
+    private final List<String> dropped = new ArrayList<>();
+
+    /**
+     * Create an empty index.
+     * @param directory The directory in which the shards are stored.
+     * @param format The format in which shards are written.
+     */
+    TaskSetIndex(File directory, StorageFormat format) {
+        this.directory = directory;
+        this.format = format;
+    }
+
+    /**
+     * Read an index that was written by {@link #toJSON()}. None of the shards are read.
+     * @param directory The directory in which the shards are stored.
+     * @param reader The reader, positioned at the start of the index.
+     * @return The index that was read.
+     * @throws IOException If reading failed or the index is malformed.
+     */
+    static TaskSetIndex fromJSON(File directory, JsonReader reader) throws IOException {
+        TaskSetIndex index = new TaskSetIndex(directory, StorageFormat.JSON);
+
+        reader.beginObject();
+        while(reader.hasNext()) {
+            String key = reader.nextName();
+            switch (key) {
+                case VERSION:
+                    int version = reader.nextInt();
+                    if(version != CURRENT_VERSION)
+                        throw new IOException("Unsupported index version "+version);
+                    break;
+                case FORMAT:
+                    try {
+                        index.format = StorageFormat.valueOf(reader.nextString());
+                    } catch (IllegalArgumentException e) {
+                        index.format = StorageFormat.JSON;
+                    }
+                    break;
+                case TASK_SETS:
+                    reader.beginArray();
+                    while(reader.hasNext())
+                        index.readEntry(reader);
+                    reader.endArray();
+                    index.publish();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return index;
+    }
+
+    private void readEntry(JsonReader reader) throws IOException {
+        String name = null, shard = null;
+        long checksum = NOT_WRITTEN;
+
+        reader.beginObject();
+        while(reader.hasNext()) {
+            String key = reader.nextName();
+            switch (key) {
+                case NAME:
+                    name = reader.nextString();
+                    break;
+                case SHARD:
+                    shard = reader.nextString();
+                    break;
+                case CHECKSUM:
+                    checksum = reader.nextLong();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if(name == null || shard == null)
+            throw new IOException("Index entry without "+(name == null ? NAME : SHARD));
+
+        this.entries.put(name, new Entry(shard, checksum));
+        this.nextShard = Math.max(this.nextShard, shardNumber(shard) + 1);
+    }
+
+    /**
+     * Convert the index to JSON. This contains the names, shards and checksums of all TaskSets, but
+     * not the TaskSets themselves.
+     * @return The JSON representation of the index.
+     * @throws JSONException If the conversion failed.
+     */
+    synchronized JSONObject toJSON() throws JSONException {
+        JSONArray array = new JSONArray();
+        for(Map.Entry<String, Entry> entry : this.entries.entrySet())
+            array.put(new JSONObject()
+                    .put(NAME, entry.getKey())
+                    .put(SHARD, entry.getValue().shard)
+                    .put(CHECKSUM, entry.getValue().checksum));
+
+        return new JSONObject()
+                .put(VERSION, CURRENT_VERSION)
+                .put(FORMAT, this.format.name())
+                .put(TASK_SETS, array);
+    }
+
+    synchronized StorageFormat getFormat() {
+        return this.format;
+    }
+
+    /**
+     * Set the format in which shards are written. TaskSets that are already stored in a different
+     * format are rewritten in the new format once they are changed and written again.
+     * @param format The format in which shards are written.
+     */
+    synchronized void setFormat(StorageFormat format) {
+        this.format = format;
+    }
+
+    synchronized boolean contains(String name) {
+        return this.entries.containsKey(name);
+    }
+
+    /**
+     * Get the current snapshot of the names of all TaskSets. This doesn't lock.
+     * @return The current snapshot.
+     */
+    Snapshot snapshot() {
+        return this.snapshot;
+    }
+
+    /**
+     * Publish a new snapshot reflecting the current entries.
+     */
+    private void publish() {
+        this.snapshot = new Snapshot(this.entries.keySet().toArray(new String[this.entries.size()]));
+    }
+
+    /**
+     * Get the TaskSet with the given name, reading it from its shard if it isn't materialised yet.
+     * @param name The name of the TaskSet.
+     * @return The TaskSet, or null if there is no such TaskSet or its shard couldn't be read.
+     */
+    synchronized TaskSet get(String name) {
+        Entry entry = this.entries.get(name);
+        if(entry == null)
+            return null;
+
+        TaskSet taskSet = this.materialised(name);
+        if(taskSet == null) {
+            try {
+                taskSet = this.readShard(name, entry);
+            } catch (IOException | JSONException e) {
+                Log.e("TaskSetIndex", "Couldn't read TaskSet "+name+" from "+entry.shard, e);
+                return null;
+            }
+            this.materialised.put(name, new WeakReference<>(taskSet));
+        }
+        this.recent.put(name, taskSet);
+        return taskSet;
+    }
+
+    /**
+     * Get the TaskSet with the given name if it is in memory, without ever reading its shard.
+     * @param name The name of the TaskSet.
+     * @return The TaskSet, or null if there is no such TaskSet or it isn't in memory.
+     */
+    synchronized TaskSet peek(String name) {
+        return this.entries.containsKey(name) ? this.materialised(name) : null;
+    }
+
+    /**
+     * Insert the given TaskSet at the end of the index, replacing any TaskSet with the same name.
+     * The TaskSet is written by the next call to {@link #prepareShards()}.
+     * @param taskSet The TaskSet to insert.
+     */
+    synchronized void put(TaskSet taskSet) {
+        String name = taskSet.getName();
+        Entry entry = this.entries.remove(name);
+        if(entry == null)
+            entry = new Entry((this.nextShard++) + SHARD_EXTENSION, NOT_WRITTEN);
+        this.entries.put(name, entry);
+        this.publish();
+
+        this.materialised.put(name, new WeakReference<>(taskSet));
+        this.unwritten.put(name, taskSet);
+        this.recent.put(name, taskSet);
+    }
+
+    /**
+     * Indicate that the given TaskSet, or one of its tasks, was changed in place, so that it is
+     * written by the next call to {@link #prepareShards()}. TaskSets that are no longer in the
+     * index are ignored.
+     * @param taskSet The TaskSet that was changed.
+     */
+    synchronized void changed(TaskSet taskSet) {
+        String name = taskSet.getName();
+        if(this.entries.containsKey(name) && this.materialised(name) == taskSet)
+            this.unwritten.put(name, taskSet);
+    }
+
+    /**
+     * Remove the TaskSet with the given name from the index. Its shard is deleted once the index
+     * without it is written.
+     * @param name The name of the TaskSet to remove.
+     */
+    synchronized void remove(String name) {
+        Entry entry = this.entries.remove(name);
+        if(entry != null) {
+            this.dropped.add(entry.shard);
+            this.publish();
+        }
+        this.forget(name);
+    }
+
+    /**
+     * Remove all TaskSets from the index. Their shards are deleted once the empty index is written.
+     */
+    synchronized void clear() {
+        for(Map.Entry<String, Entry> entry : this.entries.entrySet()) {
+            this.dropped.add(entry.getValue().shard);
+            this.forget(entry.getKey());
+        }
+        this.entries.clear();
+        this.publish();
+    }
+
+    /**
+     * Indicates whether there are TaskSets that may not have been written yet.
+     * @return Whether {@link #prepareShards()} must be called.
+     */
+    synchronized boolean hasUnwritten() {
+        return !this.unwritten.isEmpty();
+    }
+
+    /**
+     * Indicates whether a changed TaskSet dropped out of the cache since the last call, and resets
+     * this indication.
+     * @return Whether a TaskSet must be written because of an eviction.
+     */
+    synchronized boolean takeEvictedChanges() {
+        boolean evicted = this.evictedChanges;
+        this.evictedChanges = false;
+        return evicted;
+    }
+
+    /**
+     * Collect every unwritten TaskSet of which the content differs from its shard, and update the
+     * checksums as if they were written. TaskSets that weren't put or reported as changed since
+     * they were last written aren't converted at all. The returned work writes the collected
+     * shards, and must be performed before the index that refers to them is written. It doesn't
+     * synchronize on the index, so TaskSets can be used and changed while the shards are written.
+     * Shards are replaced atomically. If writing fails, the TaskSets that weren't written are
+     * marked as unwritten again.
+     * @return The work that writes the shards, and afterwards deletes the shards that were dropped.
+     * @throws IOException If converting a TaskSet failed.
+     * @throws JSONException If converting a TaskSet failed.
+     */
+    synchronized ShardWrite prepareShards() throws IOException, JSONException {
+        List<PendingShard> pending = new ArrayList<>();
+        for(Map.Entry<String, TaskSet> unwritten : this.unwritten.entrySet()) {
+            Entry entry = this.entries.get(unwritten.getKey());
+            byte[] content = this.encode(unwritten.getValue());
+            long checksum = checksum(content);
+            if(checksum != entry.checksum) {
+                pending.add(new PendingShard(unwritten.getKey(), entry, unwritten.getValue(), content, checksum));
+                entry.checksum = checksum;
+            }
+        }
+        this.unwritten.clear();
+
+        ShardWrite write = new ShardWrite(pending, new ArrayList<>(this.dropped));
+        this.dropped.clear();
+        return write;
+    }
+
+    /**
+     * The shards that were collected by {@link #prepareShards()}. Calling it writes the changed
+     * shards; the dropped shards are only deleted by {@link #deleteDropped()}, once the index that
+     * no longer refers to them is written. If that doesn't happen, they are deleted by
+     * {@link #deleteUnreferencedShards()} instead.
+     */
+    final class ShardWrite implements Callable<Void> {
+        private final List<PendingShard> pending;
+        private final List<String> dropped;
+
+        private ShardWrite(List<PendingShard> pending, List<String> dropped) {
+            this.pending = pending;
+            this.dropped = dropped;
+        }
+
+        @Override
+        public Void call() throws IOException {
+            writeShards(this.pending);
+            return null;
+        }
+
+        /**
+         * Delete the shards of the TaskSets that were removed before the shards were collected.
+         */
+        void deleteDropped() {
+            for(String shard : this.dropped) {
+                File file = new File(directory, shard);
+                if(!file.delete() && file.exists())
+                    Log.w("TaskSetIndex", "Couldn't delete dropped shard "+file.getAbsolutePath());
+            }
+        }
+    }
+
+    /**
+     * Write the given shards, which were collected by {@link #prepareShards()}.
+     * @throws IOException If writing a shard failed.
+     */
+    private void writeShards(List<PendingShard> pending) throws IOException {
+        int written = 0;
+        try {
+            if(!this.directory.isDirectory() && !this.directory.mkdirs())
+                throw new IOException("Couldn't create "+this.directory.getAbsolutePath());
+            for(PendingShard shard : pending) {
+                this.writeShard(shard.entry.shard, shard.content);
+                ++written;
+            }
+        } finally {
+            if(written < pending.size())
+                this.unwritten(pending.subList(written, pending.size()));
+        }
+    }
+
+    /**
+     * Mark the given shards as not written, so that they are written by the next write.
+     */
+    private synchronized void unwritten(List<PendingShard> shards) {
+        for(PendingShard shard : shards) {
+            // The TaskSet may have been removed or replaced in the meantime.
+            if(this.entries.get(shard.name) != shard.entry || shard.entry.checksum != shard.checksum)
+                continue;
+            shard.entry.checksum = NOT_WRITTEN;
+            if(!this.unwritten.containsKey(shard.name))
+                this.unwritten.put(shard.name, shard.taskSet);
+        }
+    }
+
+    /**
+     * The content of a shard that is about to be written.
+     */
+    private static final class PendingShard {
+        private final String name;
+        private final Entry entry;
+        private final TaskSet taskSet;
+        private final byte[] content;
+        private final long checksum;
+
+        private PendingShard(String name, Entry entry, TaskSet taskSet, byte[] content, long checksum) {
+            this.name = name;
+            this.entry = entry;
+            this.taskSet = taskSet;
+            this.content = content;
+            this.checksum = checksum;
+        }
+    }
+
+    /**
+     * Delete every file in the shard directory that is not referred to by the index. These are
+     * shards of removed TaskSets, and temporary files that were left behind by a crash.
+     */
+    synchronized void deleteUnreferencedShards() {
+        File[] files = this.directory.listFiles();
+        if(files == null)
+            return;
+
+        Set<String> referenced = new HashSet<>();
+        for(Entry entry : this.entries.values())
+            referenced.add(entry.shard);
+
+        for(File file : files)
+            if(!referenced.contains(file.getName()) && !file.delete())
+                Log.w("TaskSetIndex", "Couldn't delete unreferenced shard "+file.getAbsolutePath());
+    }
+
+    /**
+     * Get the TaskSet with the given name if it is in memory.
+     */
+    private TaskSet materialised(String name) {
+        TaskSet taskSet = this.unwritten.get(name);
+        if(taskSet != null)
+            return taskSet;
+        WeakReference<TaskSet> reference = this.materialised.get(name);
+        if(reference == null)
+            return null;
+        taskSet = reference.get();
+        if(taskSet == null)
+            this.materialised.remove(name);
+        return taskSet;
+    }
+
+    /**
+     * Drop all references to the TaskSet with the given name.
+     */
+    private void forget(String name) {
+        this.recent.remove(name);
+        this.materialised.remove(name);
+        this.unwritten.remove(name);
+    }
+
+    /**
+     * Called when a TaskSet drops out of the cache. If its content no longer matches its shard, it
+     * is held on to until it is written.
+     */
+    private void evict(String name, TaskSet taskSet) {
+        Entry entry = this.entries.get(name);
+        if(entry == null || this.unwritten.containsKey(name))
+            return;
+
+        boolean changed;
+        try {
+            changed = checksum(this.encode(taskSet)) != entry.checksum;
+        } catch (IOException | JSONException e) {
+            changed = true;
+        }
+        if(changed) {
+            this.unwritten.put(name, taskSet);
+            this.evictedChanges = true;
+        }
+    }
+
+    private TaskSet readShard(String name, Entry entry) throws IOException, JSONException {
+        byte[] content = readFully(new File(this.directory, entry.shard));
+        if(checksum(content) != entry.checksum)
+            // The shard is replaced before the index, so a crash in between leaves a newer shard.
+            Log.w("TaskSetIndex", "Checksum of "+entry.shard+" doesn't match the index, reading it anyway");
+
+        TaskSet taskSet;
+        if(TaskSetBinaryIO.isBinary(content, content.length))
+            taskSet = TaskSetBinaryIO.read(new ByteArrayInputStream(content));
+        else
+            taskSet = TaskSetIO.fromJSON(new JsonReader(new InputStreamReader(new ByteArrayInputStream(content), UTF_8)));
+
+        if(!name.equals(taskSet.getName()))
+            throw new IOException("Shard "+entry.shard+" contains "+taskSet.getName()+" rather than "+name);
+        return taskSet;
+    }
+
+    private void writeShard(String shard, byte[] content) throws IOException {
+        File file = new File(this.directory, shard);
+        File temporary = new File(this.directory, shard + TEMPORARY_SUFFIX);
+        try (FileOutputStream out = new FileOutputStream(temporary)) {
+            out.write(content);
+            out.getFD().sync();
+        }
+        if(!temporary.renameTo(file))
+            throw new IOException("Couldn't replace "+file.getAbsolutePath());
+    }
+
+    private byte[] encode(TaskSet taskSet) throws IOException, JSONException {
+        if(this.format == StorageFormat.BINARY) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            TaskSetBinaryIO.write(taskSet, out);
+            return out.toByteArray();
+        }
+        return TaskSetIO.toJSON(taskSet).toString().getBytes(UTF_8);
+    }
+
+    private static long checksum(byte[] content) {
+        CRC32 crc = new CRC32();
+        crc.update(content, 0, content.length);
+        return crc.getValue();
+    }
+
+    /**
+     * Get the number of a shard that was named by {@link #put(TaskSet)}, or -1 if it isn't a
+     * number.
+     */
+    private static int shardNumber(String shard) {
+        if(!shard.endsWith(SHARD_EXTENSION))
+            return -1;
+        try {
+            return Integer.parseInt(shard.substring(0, shard.length() - SHARD_EXTENSION.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static byte[] readFully(File file) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while((read = in.read(buffer)) != -1)
+                out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
@@ -1,19 +1,24 @@
 package nl.tue.san.tasks;
 
 import android.content.Context;
+import android.util.JsonReader;
 import android.util.Log;
 
-import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONTokener;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.LinkedHashMap;
-import java.util.LinkedList;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import nl.tue.san.net.Callback;
 import nl.tue.san.net.Server;
@@ -24,7 +29,7 @@ import nl.tue.san.util.ReadWriteSafeObject.Operation;
  * Created by Maurice on 6-1-2017.
  */
 
-public class TaskSetManager extends Manager<LinkedHashMap<String, TaskSet>> {
+public class TaskSetManager extends Manager<TaskSetIndex> {
 
     /**
      * By default there is no instance. On the first call to getInstance the instance will be created.
@@ -36,8 +41,34 @@ public class TaskSetManager extends Manager<LinkedHashMap<String, TaskSet>> {
      */
     private static final String TASK_SETS_FILENAME = "root.tasksets";
 
+    /**
+     * Name of the directory, next to the index, in which every TaskSet is stored in its own file.
+     */
+    private static final String SHARD_DIRECTORY = "tasksets";
+
+    /**
+     * The maximal number of whitespace characters that are skipped to determine whether a
+     * snapshot is an index.
+     */
+    private static final int FIRST_CHARACTER_LIMIT = 1024;
+
     private final Set<OnTaskSetsChangedListener> listeners = new HashSet<>();
 
+    /**
+     * The formats in which the TaskSets can be stored on disk. Either format is recognized
+     * automatically when a TaskSet is loaded, so the format can be changed at any time.
+     */
+    public enum StorageFormat {
+        /**
+         * The JSON representation of {@link TaskSetIO}.
+         */
+        JSON,
+        /**
+         * The compact binary representation of {@link TaskSetBinaryIO}.
+         */
+        BINARY
+    }
+
     /**
      * Add the given {@link OnTaskSetsChangedListener} as a listener on this manager.
      * @param listener The Listener to add
@@ -56,7 +87,8 @@ public class TaskSetManager extends Manager<LinkedHashMap<String, TaskSet>> {
 
     /**
      * Obtain an instance of the TaskSetManager. On the first call to this method the manager is
-     * created. Therefore that first call may take more time than subsequent calls.
+     * created, and starts loading in the background. Operations on the manager block until it is
+     * loaded, so the main thread should wait for {@link #whenReady(Runnable)} first.
      *
      * @param context The context in which the manager is used. This is required to be able to write
      *                files to the internal storage.
@@ -71,26 +103,31 @@ public class TaskSetManager extends Manager<LinkedHashMap<String, TaskSet>> {
 
     /**
      * Create a new TaskSetManager that uses the given File as a directory to store TaskSets in.
+     * The index is loaded in the background; see {@link #whenReady(Runnable)}.
      *
      * @param context The Context in which the Manager operates.
      */
     private TaskSetManager(Context context) {
         super(new File(context.getFilesDir(), TASK_SETS_FILENAME));
+        this.loadAsync();
     }
 
     /**
-     * Get the TaskSet with the given name.
+     * Get the TaskSet with the given name. If the TaskSet wasn't used recently, it is read from its
+     * shard.
      *
      * @param name The name of the TaskSet.
      * @return The TaskSet with the given name, or null if there is no such TaskSet.
      */
     public TaskSet get(final String name) {
-        return this.readOp(new Operation<TaskSet>() {
+        TaskSet taskSet = this.readOp(new Operation<TaskSet>() {
             @Override
             public TaskSet perform() {
                 return managed().get(name);
             }
         });
+        this.writeEvictedChanges();
+        return taskSet;
     }
 
     /**
@@ -101,27 +138,29 @@ public class TaskSetManager extends Manager<LinkedHashMap<String, TaskSet>> {
      * @throws IndexOutOfBoundsException If the given index is out of bounds.
      */
     public TaskSet get(final int index) {
+        return this.get(this.getName(index));
+    }
 
-        return this.readOp(new Operation<TaskSet>() {
-            @Override
-            public TaskSet perform() {
-                return new ArrayList<>(managed().values()).get(index);
-            }
-        });
+    /**
+     * Get the name of the TaskSet located at the given index. Unlike {@link #get(int)} this never
+     * reads the TaskSet itself, so this should be used wherever only the name is needed. This
+     * doesn't lock and doesn't allocate.
+     *
+     * @param index The index of the TaskSet.
+     * @return The name of the TaskSet that was located at the given index.
+     * @throws IndexOutOfBoundsException If the given index is out of bounds.
+     */
+    public String getName(final int index) {
+        return this.managed().snapshot().name(index);
     }
 
     /**
-     * Get the number of TaskSets managed by this TaskSetManager.
+     * Get the number of TaskSets managed by this TaskSetManager. This doesn't lock.
      *
      * @return The number of TaskSets managed by this TaskSetManager. The returned value is never negative.
      */
     public int size() {
-        return this.readOp(new Operation<Integer>() {
-            @Override
-            public Integer perform() {
-                return managed().size();
-            }
-        });
+        return this.managed().snapshot().size();
     }
 
     /**
@@ -131,84 +170,248 @@ public class TaskSetManager extends Manager<LinkedHashMap<String, TaskSet>> {
      * elements but is never {@code null}.
      */
     public Set<String> stored() {
-        return this.readOp(new Operation<Set<String>>() {
+        return new LinkedHashSet<>(this.managed().snapshot().names());
+    }
+
+    /**
+     * Get the format in which TaskSets are stored on disk. After loading, this is the format that
+     * was recorded in the index.
+     * @return The current storage format.
+     */
+    public StorageFormat getStorageFormat() {
+        return this.readOp(new Operation<StorageFormat>() {
             @Override
-            public Set<String> perform() {
-                return new HashSet<>(managed().keySet());
+            public StorageFormat perform() {
+                return managed().getFormat();
             }
         });
+    }
 
+    /**
+     * Set the format in which TaskSets are stored on disk. TaskSets that are already stored keep
+     * their format until they are written again.
+     * @param format The format to store the TaskSets in.
+     */
+    public void setStorageFormat(final StorageFormat format) {
+        if(format == null)
+            throw new IllegalArgumentException("Storage format can't be null");
+        this.writeOp(new Operation<Void>() {
+            @Override
+            public Void perform() {
+                if(format != managed().getFormat()) {
+                    managed().setFormat(format);
+                    asyncWrite();
+                }
+                return null;
+            }
+        });
     }
 
+    /**
+     * Reload the index. TaskSets themselves are only read once they are requested. Afterwards all
+     * shards that are no longer referred to are deleted, and TaskSets that were only found in an
+     * unsharded snapshot are written to their shards.
+     */
+    @Override
+    public void reload() throws Exception {
+        super.reload();
+
+        boolean unwritten = this.readOp(new Operation<Boolean>() {
+            @Override
+            public Boolean perform() {
+                managed().deleteUnreferencedShards();
+                return managed().hasUnwritten();
+            }
+        });
+        if(unwritten)
+            this.asyncWrite();
+    }
 
     /**
-     * Convert the managed object to a String. This method and {@link #unmarshall(String)} must be
-     * defined in such a way that {@code unmarshall(marshall(managed)).equals(managed)}. If this
-     * does not hold, the marshalling is useless.
+     * Convert the index to a String. The TaskSets themselves are stored in their shards, which
+     * are written by the work returned from {@link #prepareSnapshot(TaskSetIndex)}.
      *
      * @param managed The managed object to marshall.
-     * @return A marshalling of the managed object that can be unmarshalled to recreate the managed
-     * object.
+     * @return A marshalling of the index that can be unmarshalled to recreate the index.
      * @throws Exception If anything went wrong during marshalling.
      */
     @Override
-    protected String marshall(LinkedHashMap<String, TaskSet> managed) throws Exception {
-        JSONArray array = new JSONArray();
-        for (TaskSet taskSet : managed.values())
-            array.put(TaskSetIO.toJSON(taskSet));
-        return array.toString();
+    protected String marshall(TaskSetIndex managed) throws Exception {
+        return managed.toJSON().toString();
+    }
+
+    /**
+     * Collect every TaskSet that changed while the lock is held, so that they are written to
+     * their shards after it is released, and before the index that refers to them.
+     *
+     * @param managed The managed object that is about to be marshalled.
+     * @return The work that writes the shards.
+     * @throws Exception If converting a TaskSet failed.
+     */
+    @Override
+    protected Callable<Void> prepareSnapshot(TaskSetIndex managed) throws Exception {
+        return managed.prepareShards();
+    }
+
+    /**
+     * Delete the shards of the TaskSets that were removed, now that the index that was written no
+     * longer refers to them.
+     *
+     * @param prepared The shards that were written before the index.
+     */
+    @Override
+    protected void snapshotWritten(Callable<Void> prepared) {
+        ((TaskSetIndex.ShardWrite) prepared).deleteDropped();
     }
 
     /**
-     * Convert a String back to the managed object. This method and {@link #marshall(Object)} must
-     * be defined in such a way that {@code unmarshall(marshall(managed)).equals(managed)}. If this
-     * does not hold, the unmarshalling is useless.
+     * Convert a String back to the managed object. This accepts the index as well as the
+     * unsharded JSON array in which all TaskSets used to be stored.
      *
      * @param content A String that was the result of calling marshall on the managed object.
      * @return The object that was described by the given string, which should be managed.
      * @throws Exception If anything went wrong during unmarshalling.
      */
     @Override
-    protected LinkedHashMap<String, TaskSet> unmarshall(String content) throws Exception {
-        LinkedHashMap<String, TaskSet> map = new LinkedHashMap<>();
-        JSONArray array = new JSONArray(new JSONTokener(content));
-        for (int i = 0; i < array.length(); ++i){
-            TaskSet taskSet = TaskSetIO.fromJSON(array.getJSONObject(i));
-            map.put(taskSet.getName(), taskSet);
+    protected TaskSetIndex unmarshall(String content) throws Exception {
+        JsonReader reader = new JsonReader(new StringReader(content));
+        if(content.trim().startsWith("{"))
+            return TaskSetIndex.fromJSON(this.shardDirectory(), reader);
+        return this.unsharded(this.unmarshall(reader), StorageFormat.JSON);
+    }
+
+    /**
+     * Read the index straight from the stream. If instead the stream contains an unsharded
+     * snapshot of all TaskSets, in either storage format, all TaskSets are read and are written to
+     * their own shards on the next write.
+     *
+     * @param in The stream to read from.
+     * @return The index of all TaskSets.
+     * @throws Exception If anything went wrong during reading or unmarshalling.
+     */
+    @Override
+    protected TaskSetIndex unmarshall(InputStream in) throws Exception {
+        if(TaskSetBinaryIO.isBinary(in))
+            return this.unsharded(TaskSetBinaryIO.readAll(in), StorageFormat.BINARY);
+
+        boolean index = firstCharacter(in) == '{';
+        JsonReader reader = new JsonReader(new InputStreamReader(in, "UTF-8"));
+        if(index)
+            return TaskSetIndex.fromJSON(this.shardDirectory(), reader);
+        return this.unsharded(this.unmarshall(reader), StorageFormat.JSON);
+    }
+
+    /**
+     * Read all TaskSets from the given reader, which must be positioned at the start of the array
+     * in which all TaskSets used to be stored.
+     * @param reader The reader to read from.
+     * @return All TaskSets in the array, in order.
+     */
+    private List<TaskSet> unmarshall(JsonReader reader) throws Exception {
+        List<TaskSet> taskSets = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext())
+            taskSets.add(TaskSetIO.fromJSON(reader));
+        reader.endArray();
+        return taskSets;
+    }
+
+    /**
+     * Create an index for TaskSets that were not stored in shards yet.
+     * @param taskSets The TaskSets, in order.
+     * @param format The format in which they were stored.
+     * @return An index containing all given TaskSets, none of which have been written.
+     */
+    private TaskSetIndex unsharded(List<TaskSet> taskSets, StorageFormat format) {
+        TaskSetIndex index = new TaskSetIndex(this.shardDirectory(), format);
+        for(TaskSet taskSet : taskSets)
+            index.put(taskSet);
+        return index;
+    }
+
+    /**
+     * Get the first character of the stream that isn't whitespace, without consuming it.
+     * @param in The stream to inspect, which must support {@link InputStream#mark(int)}.
+     * @return The first character that isn't whitespace, or -1 if there is none.
+     */
+    private static int firstCharacter(InputStream in) throws IOException {
+        in.mark(FIRST_CHARACTER_LIMIT);
+        try {
+            for(int i = 0; i < FIRST_CHARACTER_LIMIT; ++i) {
+                int read = in.read();
+                if(read == -1 || !Character.isWhitespace(read))
+                    return read;
+            }
+            return -1;
+        } finally {
+            in.reset();
         }
+    }
 
-        return map;
+    private File shardDirectory() {
+        return new File(this.getFile().getParentFile(), SHARD_DIRECTORY);
     }
 
     @Override
-    protected LinkedHashMap<String, TaskSet> initialObject() {
+    protected TaskSetIndex initialObject() {
 
 
-        LinkedHashMap<String, TaskSet> initial = new LinkedHashMap<>();
-        TaskSet defaultTaskSet = defaultTaskSet();
-        initial.put(defaultTaskSet.getName(), defaultTaskSet);
+        TaskSetIndex initial = new TaskSetIndex(this.shardDirectory(), StorageFormat.JSON);
+        initial.put(defaultTaskSet());
         return initial;
     }
 
+    /**
+     * Request a write if a TaskSet that was changed dropped out of the cache of the index.
+     */
+    private void writeEvictedChanges() {
+        if(this.managed().takeEvictedChanges())
+            this.asyncWrite();
+    }
+
+    /**
+     * Indicate that the given TaskSet, or one of its tasks, was changed in place, and write it in
+     * the background. Only TaskSets that were registered or reported as changed are written, so
+     * this must be called after every such change.
+     *
+     * @param taskSet The TaskSet that was changed.
+     */
+    public void changed(final TaskSet taskSet) {
+        this.readOp(new Operation<Void>() {
+            @Override
+            public Void perform() {
+                managed().changed(taskSet);
+                return null;
+            }
+        });
+        this.asyncWrite();
+    }
+
     /**
      * Register the given TaskSet under this manager.
      *
      * @param taskSet
      */
     public void register(final TaskSet taskSet) {
+        // Reading the TaskSet that is replaced may read its shard, which mustn't happen while the
+        // write lock is held. Once read, it is kept with the recently used TaskSets.
+        this.get(taskSet.getName());
         this.writeOp(new Operation<Void>() {
             @Override
             public Void perform() {
-                TaskSet contained = managed().get(taskSet.getName());
+                TaskSet contained = managed().peek(taskSet.getName());
+                if(contained == null && managed().contains(taskSet.getName()))
+                    // It dropped out of memory again in the meantime.
+                    contained = managed().get(taskSet.getName());
 
                 if(taskSet.equals(contained))
                     return null;
 
                 if(contained != null)
-                    remove(managed().get(taskSet.getName()));
+                    remove(contained);
 
 
-                managed().put(taskSet.getName(), taskSet);
+                managed().put(taskSet);
                 asyncWrite();
                 for(OnTaskSetsChangedListener listener : listeners)
                     listener.onTaskSetAdded(taskSet);
@@ -228,11 +431,11 @@ public class TaskSetManager extends Manager<LinkedHashMap<String, TaskSet>> {
         return this.writeOp(new Operation<Boolean>() {
             @Override
             public Boolean perform() {
-                if (managed().containsKey(taskSet.getName()) && managed().get(taskSet.getName()).equals(taskSet)) {
+                if (managed().contains(taskSet.getName()) && taskSet.equals(managed().get(taskSet.getName()))) {
                     managed().remove(taskSet.getName());
                     asyncWrite();
                     for(OnTaskSetsChangedListener listener : listeners)
-                        listener.onTaskSetRemoved(taskSet);
+                        listener.onTaskSetRemoved(taskSet.getName());
                     return true;
                 } else
                     return false;
@@ -241,18 +444,18 @@ public class TaskSetManager extends Manager<LinkedHashMap<String, TaskSet>> {
     }
 
     /**
-     * Remove all TaskSets.
+     * Remove all TaskSets. The listeners are informed by name, so no TaskSet is read for this.
      */
     public void removeAll() {
         this.writeOp(new Operation<Void>() {
             @Override
             public Void perform() {
-                LinkedList<TaskSet> values = new LinkedList<>(managed().values());
+                List<String> names = managed().snapshot().names();
                 managed().clear();
                 asyncWrite();
-                for(TaskSet removed : values)
+                for(String name : names)
                     for(OnTaskSetsChangedListener listener : listeners)
-                        listener.onTaskSetRemoved(removed);
+                        listener.onTaskSetRemoved(name);
                 return null;
             }
         });
@@ -291,16 +494,25 @@ public class TaskSetManager extends Manager<LinkedHashMap<String, TaskSet>> {
      * Indicates the position at which the given taskset is stored.
      *
      * @param taskSet
-     * @return
+     * @return The position of the TaskSet, or -1 if the TaskSet with the same name differs from it.
      */
     public int indexOf(TaskSet taskSet) {
-        return new LinkedList<>(this.managed().values()).indexOf(taskSet);
+        int index = this.managed().snapshot().indexOf(taskSet.getName());
+        if(index >= 0) {
+            TaskSet contained = this.managed().get(taskSet.getName());
+            if(contained != taskSet && !taskSet.equals(contained))
+                return -1;
+        }
+        return index;
     }
 
     public interface OnTaskSetsChangedListener {
         void onTaskSetAdded(TaskSet taskSet);
 
-        void onTaskSetRemoved(TaskSet taskSet);
+        /**
+         * Called when the TaskSet with the given name was removed.
+         */
+        void onTaskSetRemoved(String name);
     }
 
     /**
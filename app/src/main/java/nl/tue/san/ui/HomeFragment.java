@@ -1,5 +1,6 @@
 package nl.tue.san.ui;
 
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.v4.app.Fragment;
 import android.view.LayoutInflater;
@@ -16,10 +17,20 @@ import org.json.JSONException;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 
+import nl.tue.san.analysis.Hyperperiod;
+import nl.tue.san.analysis.Policy;
+import nl.tue.san.analysis.ResponseTimes;
 import nl.tue.san.net.Callback;
+import nl.tue.san.net.Deployment;
+import nl.tue.san.net.Priority;
 import nl.tue.san.net.Server;
 import nl.tue.san.sanseminar.R;
+import nl.tue.san.simulation.ResultCache;
+import nl.tue.san.simulation.Schedule;
+import nl.tue.san.tasks.Task;
+import nl.tue.san.tasks.TaskSet;
 import nl.tue.san.tasks.TaskSetIO;
 import nl.tue.san.tasks.TaskSetManager;
 import nl.tue.san.visualization.VisualizationIO;
@@ -33,11 +44,21 @@ import nl.tue.san.visualization.VisualizationManager;
  */
 public class HomeFragment extends ProgressableFragment implements Navigatable {
 
+    /**
+     * The latest time up to which a task set is simulated before it is visualized.
+     */
+    private static final long SIMULATION_HORIZON_LIMIT = 1000000;
+
     private VisualizationManager manager;
     private TaskSetManager taskSetManager;
 
     private Spinner scheduler, taskSet;
 
+    /**
+     * The view that is currently created, or null if it is destroyed.
+     */
+    private View content;
+
 
     public HomeFragment() {
         // Required empty public constructor
@@ -55,7 +76,7 @@ public class HomeFragment extends ProgressableFragment implements Navigatable {
         this.manager = VisualizationManager.getInstance(this.getContext());
         this.taskSetManager = TaskSetManager.getInstance(this.getContext());
 
-        View inflated = inflater.inflate(R.layout.fragment_home, container, false);
+        final View inflated = inflater.inflate(R.layout.fragment_home, container, false);
 
         this.scheduler = (Spinner)inflated.findViewById(R.id.scheduler_spinner);
         this.taskSet = (Spinner)inflated.findViewById(R.id.task_set_spinner);
@@ -75,11 +96,37 @@ public class HomeFragment extends ProgressableFragment implements Navigatable {
             }
         });
 
-        display();
+        // The managers load in the background. Show that we're loading until both are done,
+        // rather than blocking the main thread on them.
+        this.content = inflated;
+        this.scheduler.setEnabled(false);
+        this.taskSet.setEnabled(false);
+        this.showIndeterminate();
+        this.manager.whenReady(new Runnable() {
+            @Override
+            public void run() {
+                taskSetManager.whenReady(new Runnable() {
+                    @Override
+                    public void run() {
+                        // The view may have been destroyed while loading.
+                        if(content != inflated)
+                            return;
+                        progressCompleted();
+                        display();
+                    }
+                });
+            }
+        });
 
         return inflated;
     }
 
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        this.content = null;
+    }
+
     private void display(){
 
         /*
@@ -118,7 +165,9 @@ public class HomeFragment extends ProgressableFragment implements Navigatable {
                 public void onSuccess(String data) {
 
                     try {
+                        // A cached list may be delivered before the one from the server.
                         JSONArray array = new JSONArray(data);
+                        schedulers.clear();
                         for(int i = 0; i < array.length(); ++i)
                             schedulers.add(array.getString(i));
                         Collections.sort(schedulers);
@@ -144,7 +193,7 @@ public class HomeFragment extends ProgressableFragment implements Navigatable {
                     scheduler.setEnabled(false);
                     HomeFragment.super.showMessage("Failed to load schedulers from server");
                 }
-            });
+            }, Priority.NORMAL, this.getRequestToken());
         }
     }
 
@@ -156,7 +205,9 @@ public class HomeFragment extends ProgressableFragment implements Navigatable {
 
         final int steps = 5;
 
-        if(this.taskSet.getSelectedItem() == null) {
+        if(!this.manager.isReady() || !this.taskSetManager.isReady()) {
+            super.showMessage("Still loading, please try again");
+        } else if(this.taskSet.getSelectedItem() == null) {
             super.showMessage("No task set selected");
         } else if(this.taskSetManager.get((String) this.taskSet.getSelectedItem()) == null) {
             super.showMessage("Selected task set no longer exists");
@@ -167,51 +218,45 @@ public class HomeFragment extends ProgressableFragment implements Navigatable {
 
             try {
                 this.showProgress(0, steps);
-                final String taskSet = TaskSetIO.toJSON(this.taskSetManager.get((String) this.taskSet.getSelectedItem()), false).toString();
+                TaskSet selected = this.taskSetManager.get((String) this.taskSet.getSelectedItem());
+                this.checkSchedulability(selected, (String) this.scheduler.getSelectedItem());
+                final String taskSet = TaskSetIO.toJSON(selected, false).toString();
                 this.showProgress(1, steps);
                 final String visualization = VisualizationIO.toJSON(this.manager.getVisualization()).toString();
                 this.showProgress(2, steps);
-                // This is a nest of 3 requests. Due to the async nature of these requests, I could
-                // either try to sync them, or just only send the next of the previous reaches
-                // "onSuccess". The latter is easier, but looks uglier. Did that anyway.
-                Server.PUT("taskset", new Callback() {
+                // The task set and settings are uploaded concurrently, and the visualization is
+                // restarted once both arrived.
+                Deployment.deploy(taskSet, visualization, new Deployment.Listener() {
+                    private int acknowledged = 2;
+
                     @Override
-                    public void onSuccess(String data) {
-                        showProgress(3, steps);
-                        Server.PUT("settings", new Callback() {
-                            @Override
-                            public void onSuccess(String data) {
-                                showProgress(4, steps);
-                                Server.PATCH("restart", new Callback() {
-                                    @Override
-                                    public void onSuccess(String data) {
-                                        showProgress(steps, steps);
-                                        progressCompleted();
-                                        HomeFragment.super.showMessage("Visualization was started");
-                                    }
-
-                                    @Override
-                                    public void onFailure() {
-                                        progressCompleted();
-                                        HomeFragment.super.showMessage("Couldn't get server to start visualization");
-                                    }
-                                });
-                            }
-
-                            @Override
-                            public void onFailure() {
-                                progressCompleted();
-                                HomeFragment.super.showMessage("Couldn't communicate visualization settings to server");
-                            }
-                        }, visualization);
+                    public void onProgress(Deployment deployment, Deployment.Stage stage) {
+                        showProgress(++acknowledged, steps);
                     }
 
                     @Override
-                    public void onFailure() {
+                    public void onSuccess(Deployment deployment) {
+                        showProgress(steps, steps);
                         progressCompleted();
-                        HomeFragment.super.showMessage("Couldn't communicate task set to server");
+                        HomeFragment.super.showMessage("Visualization was started");
                     }
-                }, taskSet);
+
+                    @Override
+                    public void onFailure(Deployment deployment, Deployment.Stage stage) {
+                        progressCompleted();
+                        switch (stage) {
+                            case TASK_SET:
+                                HomeFragment.super.showMessage("Couldn't communicate task set to server");
+                                break;
+                            case SETTINGS:
+                                HomeFragment.super.showMessage("Couldn't communicate visualization settings to server");
+                                break;
+                            default:
+                                HomeFragment.super.showMessage("Couldn't get server to start visualization");
+                                break;
+                        }
+                    }
+                }, this.getRequestToken());
 
             } catch (JSONException e) {
                 HomeFragment.super.showMessage("Couldn't translate objects");
@@ -221,6 +266,66 @@ public class HomeFragment extends ProgressableFragment implements Navigatable {
         }
     }
 
+    /**
+     * Check in the background whether the given task set meets its deadlines under the given
+     * scheduler, while it is being deployed, and tell the user if it doesn't. The task set is
+     * simulated if the scheduler can be simulated locally, and analysed if the scheduler uses
+     * preemption thresholds. Both results are kept in the {@link ResultCache}, so deploying the
+     * same tasks again doesn't repeat them.
+     * @param taskSet The task set that is deployed.
+     * @param scheduler The name of the selected scheduler.
+     */
+    private void checkSchedulability(final TaskSet taskSet, final String scheduler) {
+        final Policy policy;
+        try {
+            policy = Policy.forScheduler(scheduler);
+        } catch (IllegalArgumentException e) {
+            // The server has schedulers that can't be simulated locally.
+            return;
+        }
+
+        final ResultCache cache = ResultCache.getInstance(this.getContext());
+        final View view = this.content;
+        new AsyncTask<Void, Void, String>() {
+            @Override
+            protected String doInBackground(Void... params) {
+                if(policy == Policy.FPTS) {
+                    ResponseTimes responseTimes = cache.getResponseTimes(taskSet);
+                    for(int i = 0; i < responseTimes.size(); ++i)
+                        if(!responseTimes.isSchedulable(i))
+                            return "Task \""+responseTimes.getName(i)+"\" may miss its deadline";
+                }
+
+                long horizon = horizon(taskSet);
+                Schedule schedule = cache.getSchedule(taskSet, scheduler, horizon);
+                if(!schedule.isSchedulable())
+                    return String.format(Locale.getDefault(), "%d deadlines are missed in the first %d time units", schedule.getDeadlineMissCount(), horizon);
+                return null;
+            }
+
+            @Override
+            protected void onPostExecute(String warning) {
+                // The view may have been destroyed while checking.
+                if(warning != null && content == view)
+                    HomeFragment.super.showMessage(warning);
+            }
+        }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
+    /**
+     * Determine up to when the given task set is simulated: one hyperperiod after the last task
+     * was released for the first time, or {@link #SIMULATION_HORIZON_LIMIT} if that is earlier.
+     */
+    private static long horizon(TaskSet taskSet) {
+        long offset = 0;
+        for(Task task : taskSet.getOrderedTasks())
+            offset = Math.max(offset, task.getOffset());
+        long hyperperiod = Hyperperiod.of(taskSet);
+        if(hyperperiod >= SIMULATION_HORIZON_LIMIT - offset)
+            return SIMULATION_HORIZON_LIMIT;
+        return offset + hyperperiod;
+    }
+
     /**
      * Gets the properties for navigation purposes.
      */
@@ -1,6 +1,7 @@
 package nl.tue.san.ui;
 
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.support.design.widget.FloatingActionButton;
 import android.support.design.widget.NavigationView;
 import android.support.v4.app.Fragment;
@@ -10,11 +11,16 @@ import android.support.v7.app.ActionBar;
 import android.support.v7.app.ActionBarDrawerToggle;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.Toolbar;
+import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.Toast;
 
+import java.io.File;
+
+import nl.tue.san.net.ResponseCache;
+import nl.tue.san.net.Server;
 import nl.tue.san.sanseminar.R;
 import nl.tue.san.tasks.TaskSetManager;
 import nl.tue.san.visualization.VisualizationManager;
@@ -22,6 +28,11 @@ import nl.tue.san.visualization.VisualizationManager;
 public class MainActivity extends AppCompatActivity
         implements NavigationView.OnNavigationItemSelectedListener {
 
+    /**
+     * The directory within the cache directory in which the responses of the server are cached.
+     */
+    private static final String RESPONSE_CACHE_DIRECTORY = "responses";
+
     private NavigationView navigationView;
 
     /**
@@ -35,6 +46,7 @@ public class MainActivity extends AppCompatActivity
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        final long start = SystemClock.elapsedRealtime();
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
         Toolbar toolbar = (Toolbar) findViewById(R.id.toolbar);
@@ -46,6 +58,10 @@ public class MainActivity extends AppCompatActivity
         drawer.setDrawerListener(toggle);
         toggle.syncState();
 
+        // Cache the responses of the server, so screens can be filled before the server answered.
+        if(Server.getCache() == null)
+            Server.setCache(new ResponseCache(new File(this.getCacheDir(), RESPONSE_CACHE_DIRECTORY)));
+
         this.taskSetManager = TaskSetManager.getInstance(this);
         this.visualizationManager = VisualizationManager.getInstance(this);
 
@@ -54,6 +70,21 @@ public class MainActivity extends AppCompatActivity
 
         // Set the default item to be selected
         this.setContentType(DEFAULT_CONTENT_TYPE);
+
+        // The managers load in the background, so onCreate itself should no longer depend on the
+        // size of the stored data. Report both durations to be able to verify this.
+        Log.i("MainActivity", "onCreate took "+(SystemClock.elapsedRealtime() - start)+" ms");
+        this.taskSetManager.whenReady(new Runnable() {
+            @Override
+            public void run() {
+                visualizationManager.whenReady(new Runnable() {
+                    @Override
+                    public void run() {
+                        Log.i("MainActivity", "Managers ready "+(SystemClock.elapsedRealtime() - start)+" ms after onCreate started");
+                    }
+                });
+            }
+        });
     }
 
     @Override
@@ -3,6 +3,8 @@ package nl.tue.san.ui;
 import android.view.View;
 import android.widget.ProgressBar;
 
+import nl.tue.san.net.CancellationToken;
+
 /**
  * Created by Maurice on 20-1-2017.
  */
@@ -12,10 +14,30 @@ public class ProgressableFragment extends ToastFragment {
 
     private ProgressBar progressBar;
 
+    /**
+     * Cancels the requests made for the current view when it is destroyed.
+     */
+    private CancellationToken requests = new CancellationToken();
+
     protected final void setProgressBar(ProgressBar progressBar){
         this.progressBar = progressBar;
     }
 
+    /**
+     * Get the token with which requests for the current view should be made, so they are
+     * cancelled and their callbacks aren't called once the view is destroyed.
+     */
+    protected final CancellationToken getRequestToken() {
+        return this.requests;
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        this.requests.cancel();
+        this.requests = new CancellationToken();
+    }
+
     /**
      * Show the given amount of process
      * @param step The progress
@@ -2,6 +2,7 @@ package nl.tue.san.ui;
 
 import android.database.DataSetObserver;
 import android.graphics.Color;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
@@ -20,6 +21,7 @@ import android.widget.TextView;
 
 import java.util.Locale;
 
+import nl.tue.san.analysis.ResponseTimes;
 import nl.tue.san.sanseminar.R;
 import nl.tue.san.tasks.Task;
 import nl.tue.san.tasks.TaskSet;
@@ -183,10 +185,40 @@ public class TaskActivity extends AppCompatActivity {
             // Don't show the task name, as it can't be modified.
             this.taskNameContainer.setVisibility(GONE);
 
+            this.showResponseTime();
         }
 
     }
 
+    /**
+     * Show the worst-case response time of the task below the title. The TaskSet is analysed in
+     * the background by its {@link nl.tue.san.analysis.AnalysisCache}, which only analyses the
+     * tasks that changed since the TaskSet was analysed before.
+     */
+    private void showResponseTime() {
+        final Task task = this.task;
+        final TaskSet taskSet = this.taskSet;
+        new AsyncTask<Void, Void, ResponseTimes>() {
+            @Override
+            protected ResponseTimes doInBackground(Void... params) {
+                return taskSet.getAnalysis().analyse();
+            }
+
+            @Override
+            protected void onPostExecute(ResponseTimes responseTimes) {
+                int index = responseTimes.indexOf(task.getName());
+                if(isFinishing() || index < 0)
+                    return;
+                String subtitle;
+                if(!responseTimes.isBounded(index))
+                    subtitle = "Response time is unbounded";
+                else
+                    subtitle = String.format(Locale.getDefault(), "Response time %d, deadline %d", responseTimes.getResponseTime(index), responseTimes.getDeadline(index));
+                getSupportActionBar().setSubtitle(subtitle);
+            }
+        }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
 
     /**
      * Fills an integer property as the text for the given EditText. This will format the integer value following the default locale.
@@ -245,25 +277,28 @@ public class TaskActivity extends AppCompatActivity {
     /**
      * If a Task is being modified the modified task will be removed from its TaskSet. This change is then committed to the manager, after which the activity is terminated.
      * If we're currently in the process of creating a new task, the progress is discarded.
+     * The change is written in the background, so this doesn't wait for the disk.
      * @throws Exception
      */
     private void delete() throws Exception {
-        if(this.task != null)
+        if(this.task != null) {
             this.taskSet.remove(task);
-        this.manager.write();
+            this.manager.changed(this.taskSet);
+        }
+        this.manager.flush();
         this.finish();
     }
 
     /**
-     * Save the current state. This will validate the input fields. If the input is not valid, or the changes couldn't be made persistent, an exception is thrown.
-     *
+     * Save the current state. This will validate the input fields. If the input is not valid, an exception is thrown.
+     * The change is written in the background, so this doesn't wait for the disk.
      */
     private void save() throws Exception {
 
 
         this.validateInput();
         this.writeToTask();
-        this.manager.write();
+        this.manager.flush();
         this.finish();
     }
 
@@ -333,6 +368,7 @@ public class TaskActivity extends AppCompatActivity {
             final String name = taskNameEditor.getText().toString();
             task = new Task(name, color, offset, period, deadline, computation, priority, priorityThreshold);
             taskSet.put(task);
+            this.manager.changed(taskSet);
             return true;
         }
         else
@@ -345,12 +381,14 @@ public class TaskActivity extends AppCompatActivity {
             this.task.setComputation(computation);
             this.task.setDeadline(deadline);
             this.task.setColor(color);
+            this.manager.changed(this.taskSet);
 
             // If the owning taskset change, unregister the current taskset, and register the new one
             if(this.taskSet != taskSet){
                 this.taskSet.remove(task);
                 taskSet.put(task);
                 this.taskSet = taskSet;
+                this.manager.changed(taskSet);
             }
 
             return false;
@@ -454,7 +492,7 @@ public class TaskActivity extends AppCompatActivity {
          */
         @Override
         public long getItemId(int position) {
-            return ((TaskSet)this.getItem(position)).getName().hashCode();
+            return TaskActivity.this.manager.getName(position).hashCode();
         }
 
         /**
@@ -492,7 +530,7 @@ public class TaskActivity extends AppCompatActivity {
             if(view == null)
                 view = new TextView(TaskActivity.this);
 
-            view.setText(((TaskSet)this.getItem(position)).getName());
+            view.setText(TaskActivity.this.manager.getName(position));
             view.setTextSize(18);
             view.setTextColor(Color.BLACK);
             view.setPadding(20,20,20,20);
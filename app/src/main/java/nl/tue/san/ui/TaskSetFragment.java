@@ -55,16 +55,31 @@ public class TaskSetFragment extends ProgressableFragment implements Navigatable
 
         View inflated = inflater.inflate(R.layout.fragment_task_set, container, false);
 
-        this.viewPager = (ViewPager) inflated.findViewById(R.id.pager);
+        final ViewPager viewPager = (ViewPager) inflated.findViewById(R.id.pager);
+        this.viewPager = viewPager;
         this.noTasksetsMessage = inflated.findViewById(R.id.message_no_task_sets);
 
-        this.adapter = new TaskSetAdapter();
-        this.viewPager.setAdapter(this.adapter);
-        this.taskSetManager.addOnTaskSetsChangedListener(this);
-
         this.setProgressBar((ProgressBar) inflated.findViewById(R.id.progress));
 
-        this.display();
+        // The TaskSets load in the background. Until then show neither the pager nor the message
+        // that there are no TaskSets, but only that we're loading.
+        this.viewPager.setVisibility(View.GONE);
+        this.noTasksetsMessage.setVisibility(View.GONE);
+        this.showIndeterminate();
+        this.taskSetManager.whenReady(new Runnable() {
+            @Override
+            public void run() {
+                // The view may have been destroyed while loading.
+                if(TaskSetFragment.this.viewPager != viewPager)
+                    return;
+
+                adapter = new TaskSetAdapter();
+                viewPager.setAdapter(adapter);
+                taskSetManager.addOnTaskSetsChangedListener(TaskSetFragment.this);
+                progressCompleted();
+                display();
+            }
+        });
 
         return inflated;
     }
@@ -153,6 +168,8 @@ public class TaskSetFragment extends ProgressableFragment implements Navigatable
      * Creates a new Task in the currently displaying TaskSet.
      */
     private void createNewTask() {
+        if(!assertReady())
+            return;
         if(taskSetManager.size() > 0) {
             this.createOrModify(current(), null);
         }
@@ -169,9 +186,28 @@ public class TaskSetFragment extends ProgressableFragment implements Navigatable
         startActivity(intent);
     }
 
+    /**
+     * Indicates whether the TaskSets are loaded. If not, this is shown to the user.
+     * @return Whether the TaskSets can be used without blocking.
+     */
+    private boolean assertReady(){
+        if(taskSetManager.isReady())
+            return true;
+        super.showMessage("Task sets are still loading");
+        return false;
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
 
+        switch(item.getItemId()){
+            case R.id.menu_task_set_create:
+            case R.id.menu_task_set_delete:
+            case R.id.menu_task_set_download:
+                if(!assertReady())
+                    return true;
+        }
+
         switch(item.getItemId()){
             case R.id.menu_task_set_create:
                 requestCreateNewTaskSet(); return true;
@@ -205,7 +241,7 @@ public class TaskSetFragment extends ProgressableFragment implements Navigatable
     }
 
     @Override
-    public void onTaskSetRemoved(TaskSet taskSet) {
+    public void onTaskSetRemoved(String name) {
         if(this.adapter != null)
             this.adapter.recount();
         display();
@@ -231,7 +267,7 @@ public class TaskSetFragment extends ProgressableFragment implements Navigatable
 
         @Override
         public CharSequence getPageTitle(int position) {
-            return taskSetManager.get(position).getName();
+            return taskSetManager.getName(position);
         }
 
         @Override
@@ -35,6 +35,16 @@ public class VisualizationFragment extends Fragment implements Navigatable, Visu
 
     private View noLightsMessage;
 
+    /**
+     * The view that is currently created, or null if it is destroyed.
+     */
+    private View content;
+
+    /**
+     * Whether the inputs show the loaded visualization, and thus whether they may be saved.
+     */
+    private boolean displayed;
+
     private List<LightVisualizationView> lightVisualizationViews = new LinkedList<>();
 
     /**
@@ -59,7 +69,7 @@ public class VisualizationFragment extends Fragment implements Navigatable, Visu
 
         this.manager = VisualizationManager.getInstance(this.getContext());
 
-        View inflated = inflater.inflate(R.layout.fragment_visualization, container, false);
+        final View inflated = inflater.inflate(R.layout.fragment_visualization, container, false);
 
         this.lightsContainer = (LinearLayout)inflated.findViewById(R.id.lights_container);
         this.timeScale = (EditText)inflated.findViewById(R.id.time_scale);
@@ -67,14 +77,27 @@ public class VisualizationFragment extends Fragment implements Navigatable, Visu
         this.animationDuration = (EditText)inflated.findViewById(R.id.animation_duration);
         this.noLightsMessage = inflated.findViewById(R.id.message_no_lights);
 
-        display();
-
-        this.manager.addListener(this);
+        // Keep the inputs hidden until the visualization is loaded, so that the user can't edit
+        // values that are about to be replaced.
+        this.content = inflated;
+        inflated.setVisibility(View.INVISIBLE);
+        this.manager.whenReady(new Runnable() {
+            @Override
+            public void run() {
+                // The view may have been destroyed while loading.
+                if(content != inflated)
+                    return;
+                display();
+                manager.addListener(VisualizationFragment.this);
+                inflated.setVisibility(View.VISIBLE);
+            }
+        });
 
         return inflated;
     }
 
     private void display(){
+        this.displayed = true;
 
         final Visualization visualization = manager.getVisualization();
 
@@ -164,6 +187,8 @@ public class VisualizationFragment extends Fragment implements Navigatable, Visu
     public void onDestroyView(){
         super.onDestroyView();
         this.manager.removeListener(this);
+        this.content = null;
+        this.displayed = false;
     }
 
     /**
@@ -171,6 +196,10 @@ public class VisualizationFragment extends Fragment implements Navigatable, Visu
      * @throws Exception
      */
     private void save() throws Exception {
+        // Don't overwrite the visualization with inputs that never showed it.
+        if(!this.displayed)
+            return;
+
         // update visualization
         Visualization visualization = this.manager.getVisualization();
 
@@ -181,8 +210,9 @@ public class VisualizationFragment extends Fragment implements Navigatable, Visu
         for(LightVisualizationView view : lightVisualizationViews)
             visualization.set(view.getLight(), view.getSelectedVisualization());
 
-        // Finally save everything
-        this.manager.write();
+        // Finally save everything, without blocking the UI thread on the disk.
+        this.manager.asyncWrite();
+        this.manager.flush();
     }
 
 
@@ -0,0 +1,25 @@
+package nl.tue.san.util;
+
+/**
+ * Hash functions on primitive values.
+ */
+public final class Hashing {
+
+    private Hashing() {
+    }
+
+    /**
+     * Scramble the bits of the given value with the finalization function of MurmurHash3, so that
+     * values that differ in a single bit result in unrelated values.
+     * @param value The value to scramble.
+     * @return The scrambled value.
+     */
+    public static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
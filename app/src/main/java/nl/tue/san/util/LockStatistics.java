@@ -0,0 +1,437 @@
+package nl.tue.san.util;
+
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import nl.tue.san.tasks.TaskSet;
+
+/**
+ * Collects how long threads wait for and hold the lock of one or more
+ * {@link ReadWriteSafeObject}s. For both read and write operations it keeps a histogram of the
+ * time spent waiting for the lock and of the time the lock was held. It also keeps a histogram of
+ * the waits of the main thread, the number of threads that were queued when the lock was requested,
+ * and the operations that held the lock longest together with the place they were called from.
+ *
+ * Statistics are identified by a name, and all objects that were created with that name share
+ * them, such that for instance all Managers of the same class can be inspected together. They are
+ * disabled until {@link #setEnabled(boolean)} is called. While they are disabled, a
+ * ReadWriteSafeObject only pays for a single volatile read per operation.
+ */
+public final class LockStatistics {
+
+    /**
+     * The number of operations that is kept by {@link #getLongestHeld()}.
+     */
+    private static final int LONGEST_HELD_CAPACITY = 10;
+
+    private static final LinkedHashMap<String, LockStatistics> named = new LinkedHashMap<>();
+
+    /**
+     * The classes that only pass operations on to a lock, and therefore never are the place an
+     * operation was called from. Their inner and anonymous classes are skipped as well.
+     */
+    private static final String[] FORWARDING_CLASSES = {
+            LockStatistics.class.getName(),
+            ReadWriteSafeObject.class.getName(),
+            Manager.class.getName(),
+            TaskSet.class.getName()
+    };
+
+    private final String name;
+    private volatile boolean enabled;
+
+    private final Histogram readWait = new Histogram();
+    private final Histogram readHold = new Histogram();
+    private final Histogram writeWait = new Histogram();
+    private final Histogram writeHold = new Histogram();
+    private final Histogram mainThreadWait = new Histogram();
+
+    private final AtomicLong queuedTotal = new AtomicLong();
+    private final AtomicLong queuedMax = new AtomicLong();
+
+    /**
+     * The operations that held the lock longest, from longest to shortest.
+     */
+    private final List<HeldOperation> longestHeld = new ArrayList<>(LONGEST_HELD_CAPACITY + 1);
+
+    /**
+     * The hold time an operation has to exceed to be added to {@link #longestHeld}. This allows
+     * the common case to skip both the synchronization and capturing the call site.
+     */
+    private volatile long longestHeldThreshold;
+
+    /**
+     * Get the statistics with the given name, creating them if they don't exist yet.
+     * @param name The name of the statistics, for instance the name of the class that owns the
+     *             lock.
+     * @return The statistics with the given name. New statistics are disabled.
+     */
+    public static LockStatistics named(String name) {
+        synchronized (named) {
+            LockStatistics statistics = named.get(name);
+            if(statistics == null) {
+                statistics = new LockStatistics(name);
+                named.put(name, statistics);
+            }
+            return statistics;
+        }
+    }
+
+    /**
+     * Get all statistics that were created through {@link #named(String)}.
+     * @return The statistics, in the order in which they were created.
+     */
+    public static List<LockStatistics> all() {
+        synchronized (named) {
+            return new ArrayList<>(named.values());
+        }
+    }
+
+    /**
+     * Describe all enabled statistics, as returned by {@link #dump()}.
+     * @return A human readable description of all enabled statistics.
+     */
+    public static String dumpAll() {
+        StringBuilder builder = new StringBuilder();
+        for(LockStatistics statistics : all())
+            if(statistics.isEnabled())
+                builder.append(statistics.dump());
+        return builder.toString();
+    }
+
+    /**
+     * Create statistics that are not shared by name. They can be attached to a single object with
+     * {@link ReadWriteSafeObject#setStatistics(LockStatistics)}.
+     * @param name The name that is used when the statistics are dumped.
+     */
+    public LockStatistics(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Indicates whether operations are currently recorded.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Start or stop recording operations. Statistics that were already recorded are kept.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Histogram getReadWait() {
+        return readWait;
+    }
+
+    public Histogram getReadHold() {
+        return readHold;
+    }
+
+    public Histogram getWriteWait() {
+        return writeWait;
+    }
+
+    public Histogram getWriteHold() {
+        return writeHold;
+    }
+
+    /**
+     * Get the histogram of the time the main thread waited for the lock, for both read and write
+     * operations. These waits are also contained in {@link #getReadWait()} and
+     * {@link #getWriteWait()}.
+     */
+    public Histogram getMainThreadWait() {
+        return mainThreadWait;
+    }
+
+    /**
+     * Get the largest number of threads that were queued for the lock when an operation requested
+     * it.
+     */
+    public long getMaxQueued() {
+        return queuedMax.get();
+    }
+
+    /**
+     * Get the average number of threads that were queued for the lock when an operation requested
+     * it.
+     */
+    public double getAverageQueued() {
+        long operations = readWait.getCount() + writeWait.getCount();
+        return operations == 0 ? 0 : (double) queuedTotal.get() / operations;
+    }
+
+    /**
+     * Get the operations that held the lock longest since the statistics were last reset.
+     * @return At most ten operations, from longest to shortest.
+     */
+    public List<HeldOperation> getLongestHeld() {
+        synchronized (longestHeld) {
+            return new ArrayList<>(longestHeld);
+        }
+    }
+
+    /**
+     * Forget everything that was recorded so far.
+     */
+    public void reset() {
+        readWait.reset();
+        readHold.reset();
+        writeWait.reset();
+        writeHold.reset();
+        mainThreadWait.reset();
+        queuedTotal.set(0);
+        queuedMax.set(0);
+        synchronized (longestHeld) {
+            longestHeld.clear();
+            longestHeldThreshold = 0;
+        }
+    }
+
+    /**
+     * Describe the recorded statistics in a human readable form, for instance to write them to the
+     * log.
+     * @return A description of the statistics, spanning multiple lines.
+     */
+    public String dump() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("Lock statistics of ").append(name).append('\n');
+        builder.append("  read wait:  ").append(readWait).append('\n');
+        builder.append("  read hold:  ").append(readHold).append('\n');
+        builder.append("  write wait: ").append(writeWait).append('\n');
+        builder.append("  write hold: ").append(writeHold).append('\n');
+        builder.append("  main thread wait: ").append(mainThreadWait).append('\n');
+        builder.append("  queued: max ").append(getMaxQueued())
+                .append(", average ").append(String.format("%.2f", getAverageQueued())).append('\n');
+        for(HeldOperation operation : getLongestHeld())
+            builder.append("  held: ").append(operation).append('\n');
+        return builder.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "LockStatistics{" + name + (enabled ? "" : ", disabled") + "}";
+    }
+
+    /**
+     * Record a single operation.
+     * @param write Whether the operation held the write lock.
+     * @param queued The number of threads that were queued for the lock when it was requested.
+     * @param waitNanos The time between requesting and obtaining the lock.
+     * @param holdNanos The time the lock was held.
+     * @param operation The operation that was performed.
+     */
+    void record(boolean write, int queued, long waitNanos, long holdNanos, Object operation) {
+        (write ? writeWait : readWait).record(waitNanos);
+        (write ? writeHold : readHold).record(holdNanos);
+
+        Looper main = Looper.getMainLooper();
+        if(main != null && main.getThread() == Thread.currentThread())
+            mainThreadWait.record(waitNanos);
+
+        queuedTotal.addAndGet(queued);
+        Histogram.raise(queuedMax, queued);
+
+        if(holdNanos > longestHeldThreshold)
+            recordLongestHeld(new HeldOperation(write, holdNanos, operation.getClass().getName(), callSite(), Thread.currentThread().getName()));
+    }
+
+    private void recordLongestHeld(HeldOperation operation) {
+        synchronized (longestHeld) {
+            int position = 0;
+            while(position < longestHeld.size() && longestHeld.get(position).getHoldNanos() >= operation.getHoldNanos())
+                ++position;
+            longestHeld.add(position, operation);
+            if(longestHeld.size() > LONGEST_HELD_CAPACITY)
+                longestHeld.remove(LONGEST_HELD_CAPACITY);
+            if(longestHeld.size() == LONGEST_HELD_CAPACITY)
+                longestHeldThreshold = longestHeld.get(LONGEST_HELD_CAPACITY - 1).getHoldNanos();
+        }
+    }
+
+    /**
+     * Find the frame from which the lock was requested, skipping the frames of the
+     * {@link #FORWARDING_CLASSES}. Methods of other classes are call sites whatever their name.
+     */
+    private static String callSite() {
+        for(StackTraceElement element : new Throwable().getStackTrace())
+            if(!forwards(element.getClassName()))
+                return element.toString();
+        return "unknown";
+    }
+
+    /**
+     * Indicates whether the class with the given name is one of the {@link #FORWARDING_CLASSES},
+     * or one of their inner or anonymous classes.
+     */
+    private static boolean forwards(String className) {
+        for(String forwarding : FORWARDING_CLASSES)
+            if(className.startsWith(forwarding) && (className.length() == forwarding.length() || className.charAt(forwarding.length()) == '$'))
+                return true;
+        return false;
+    }
+
+    /**
+     * An operation that held a lock, as kept by {@link #getLongestHeld()}.
+     */
+    public static final class HeldOperation {
+        private final boolean write;
+        private final long holdNanos;
+        private final String operation;
+        private final String callSite;
+        private final String thread;
+
+        private HeldOperation(boolean write, long holdNanos, String operation, String callSite, String thread) {
+            this.write = write;
+            this.holdNanos = holdNanos;
+            this.operation = operation;
+            this.callSite = callSite;
+            this.thread = thread;
+        }
+
+        /**
+         * Indicates whether the operation held the write lock.
+         */
+        public boolean isWrite() {
+            return write;
+        }
+
+        public long getHoldNanos() {
+            return holdNanos;
+        }
+
+        /**
+         * Get the name of the class of the operation that was performed.
+         */
+        public String getOperation() {
+            return operation;
+        }
+
+        /**
+         * Get the stack frame from which the operation was performed.
+         */
+        public String getCallSite() {
+            return callSite;
+        }
+
+        /**
+         * Get the name of the thread that performed the operation.
+         */
+        public String getThread() {
+            return thread;
+        }
+
+        @Override
+        public String toString() {
+            return (write ? "write " : "read ") + holdNanos / 1000 + " us by " + operation + " at " + callSite + " on " + thread;
+        }
+    }
+
+    /**
+     * Histogram of durations. Bucket {@code i} counts the durations of at least {@code 2^i}
+     * nanoseconds and less than {@code 2^(i+1)} nanoseconds, except for the first bucket which
+     * also contains durations of zero. Recording is lock free.
+     */
+    public static final class Histogram {
+
+        private static final int BUCKETS = 40;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong total = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        private Histogram() {
+        }
+
+        void record(long nanos) {
+            if(nanos < 0)
+                nanos = 0;
+            int bucket = Math.min(BUCKETS - 1, Math.max(0, 63 - Long.numberOfLeadingZeros(nanos)));
+            buckets.incrementAndGet(bucket);
+            count.incrementAndGet();
+            total.addAndGet(nanos);
+            raise(max, nanos);
+        }
+
+        private static void raise(AtomicLong maximum, long value) {
+            long current;
+            while(value > (current = maximum.get()))
+                if(maximum.compareAndSet(current, value))
+                    return;
+        }
+
+        private void reset() {
+            for(int i = 0; i < BUCKETS; ++i)
+                buckets.set(i, 0);
+            count.set(0);
+            total.set(0);
+            max.set(0);
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public long getTotalNanos() {
+            return total.get();
+        }
+
+        public long getMaxNanos() {
+            return max.get();
+        }
+
+        /**
+         * Get the number of recorded durations in the given bucket.
+         * @param bucket The bucket, between 0 and {@link #getBucketCount()}.
+         */
+        public long getBucket(int bucket) {
+            return buckets.get(bucket);
+        }
+
+        public int getBucketCount() {
+            return BUCKETS;
+        }
+
+        /**
+         * Get an upper bound of the given percentile of the recorded durations. The bound is the
+         * upper end of the bucket that contains the percentile, limited by the maximum.
+         * @param percentile The percentile, between 0 and 100.
+         * @return The upper bound in nanoseconds, or 0 if nothing was recorded.
+         */
+        public long getPercentileNanos(double percentile) {
+            long count = this.count.get();
+            if(count == 0)
+                return 0;
+            long rank = (long) Math.ceil(count * percentile / 100);
+            long seen = 0;
+            for(int i = 0; i < BUCKETS; ++i) {
+                seen += buckets.get(i);
+                if(seen >= rank)
+                    return Math.min((2L << i) - 1, max.get());
+            }
+            return max.get();
+        }
+
+        @Override
+        public String toString() {
+            long count = getCount();
+            if(count == 0)
+                return "none";
+            return count + " ops, mean " + getTotalNanos() / count / 1000 + " us, p50 " + getPercentileNanos(50) / 1000
+                    + " us, p99 " + getPercentileNanos(99) / 1000 + " us, max " + getMaxNanos() / 1000 + " us";
+        }
+    }
+}
@@ -1,14 +1,35 @@
 package nl.tue.san.util;
 
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 
-import java.io.BufferedWriter;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by Maurice on 13-1-2017.
@@ -16,23 +37,149 @@ import java.io.Reader;
 
 public abstract class Manager<T>  {
 
-    private final ReadWriteSafeObject rwSemaphore = new ReadWriteSafeObject();
+    /**
+     * Lock guarding the managed object. Its operations are recorded in the {@link LockStatistics}
+     * named after the simple name of the class of the manager, once those are enabled.
+     */
+    private final ReadWriteSafeObject rwSemaphore = new ReadWriteSafeObject(this.getClass().getSimpleName());
     private File file;
 
     /**
-     * Creates a new Manager that doesn't have a File to read from/to write to yet.
+     * Suffix of the temporary file to which a snapshot is written before it replaces the snapshot.
+     */
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    /**
+     * Size in bytes of the buffer that is used while reading a snapshot.
+     */
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * The amount of time in milliseconds the writer waits for more changes before writing.
+     */
+    private static final long WRITE_DELAY = 250;
+
+    /**
+     * The amount of time in milliseconds after which a failed write is retried.
+     */
+    private static final long WRITE_RETRY_DELAY = 5000;
+
+    /**
+     * The single thread that performs all writes of this Manager. Because there is only one
+     * writer, writes are never reordered and a stale snapshot can't overwrite a newer one.
+     */
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, Manager.this.getClass().getSimpleName() + "-writer");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * Monitor guarding the state of the writer: the generations and the next scheduled run.
+     */
+    private final Object writeState = new Object();
+
+    /**
+     * Generation of the most recent change. Increased for every change that must be written.
+     */
+    private long generation;
+
+    /**
+     * Generation up to which all changes are written to disk.
+     */
+    private long durableGeneration;
+
+    /**
+     * The next scheduled run of the writer, or null if none is scheduled.
+     */
+    private ScheduledFuture<?> writeScheduled;
+
+    /**
+     * Executor on which managers are loaded, so that loading never blocks the thread that creates
+     * the manager, which usually is the main thread.
+     */
+    private static final ExecutorService LOADER = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Manager-loader");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * Released once the managed object is loaded. Until then, {@link #readOp} and {@link #writeOp}
+     * block.
+     */
+    private final CountDownLatch ready = new CountDownLatch(1);
+
+    /**
+     * Callbacks that must run on the main thread once the managed object is loaded. Guarded by
+     * itself, and set to null once they have been posted.
+     */
+    private List<Runnable> readyCallbacks = new ArrayList<>();
+
+    /**
+     * The thread that is loading the managed object, which may access it before it is ready.
+     */
+    private volatile Thread loadingThread;
+
+    /**
+     * The moment at which this Manager was created, as given by {@link SystemClock#elapsedRealtime()}.
+     */
+    private final long createdAt = SystemClock.elapsedRealtime();
+
+    /**
+     * Creates a new Manager that doesn't have a File to read from/to write to yet. The Manager
+     * becomes ready once {@link #load()} or {@link #loadAsync()} is called.
      */
     protected Manager(){
     }
 
     /**
-     * Creates a new Manager from the given file
+     * Creates a new Manager for the given file. Nothing is read yet: the subclass must call
+     * {@link #loadAsync()} or {@link #load()} at the end of its constructor, once all of its own
+     * fields are initialized.
      * @param file
      */
     protected Manager(File file){
         this();
         this.setFile(file);
+    }
+
+    /**
+     * Load the managed object on a background thread. Until it is loaded, {@link #isReady()}
+     * returns false, and all operations on the managed object block. Use
+     * {@link #whenReady(Runnable)} to be notified once it is loaded.
+     */
+    protected void loadAsync() {
+        LOADER.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    load();
+                } catch (RuntimeException e) {
+                    Log.e(Manager.this.getClass().getName(), "Couldn't load "+file.getAbsolutePath(), e);
+                }
+            }
+        });
+    }
 
+    /**
+     * Load the managed object on the calling thread, and mark this Manager as ready afterwards,
+     * even if loading failed. If the file can't be read, the initial object is used and written
+     * instead.
+     * @throws RuntimeException If the file couldn't be read, and the initial object couldn't be
+     * written either.
+     */
+    protected void load() {
+        long start = SystemClock.elapsedRealtime();
+        this.loadingThread = Thread.currentThread();
         try {
             this.reload();
         } catch (Exception e) {
@@ -55,12 +202,92 @@ public abstract class Manager<T>  {
                 throw new RuntimeException(e1);
             }
 
+        } finally {
+            this.loadingThread = null;
+            long end = SystemClock.elapsedRealtime();
+            Log.i(this.getClass().getSimpleName(), "Loaded "+this.file.getName()+" in "+(end - start)+" ms, ready "+(end - this.createdAt)+" ms after creation");
+            this.markReady();
         }
 
     }
 
+    /**
+     * Release everyone that is waiting for the managed object, and post all callbacks.
+     */
+    private void markReady() {
+        List<Runnable> callbacks;
+        synchronized (this.ready) {
+            this.ready.countDown();
+            callbacks = this.readyCallbacks;
+            this.readyCallbacks = null;
+        }
+        if(callbacks != null && !callbacks.isEmpty()) {
+            Handler main = new Handler(Looper.getMainLooper());
+            for(Runnable callback : callbacks)
+                main.post(callback);
+        }
+    }
+
+    /**
+     * Indicates whether the managed object is loaded. Only once this is the case, the manager can
+     * be used on the main thread without blocking on the disk.
+     * @return Whether the managed object is loaded.
+     */
+    public boolean isReady() {
+        return this.ready.getCount() == 0;
+    }
+
+    /**
+     * Run the given callback on the main thread once the managed object is loaded. If it already
+     * is loaded and this is called on the main thread, the callback is run immediately.
+     * @param callback The callback to run.
+     */
+    public void whenReady(Runnable callback) {
+        synchronized (this.ready) {
+            if(this.readyCallbacks != null) {
+                this.readyCallbacks.add(callback);
+                return;
+            }
+        }
+        if(Looper.myLooper() == Looper.getMainLooper())
+            callback.run();
+        else
+            new Handler(Looper.getMainLooper()).post(callback);
+    }
+
+    /**
+     * Block until the managed object is loaded. This returns immediately on the thread that is
+     * loading it.
+     */
+    public void awaitReady() {
+        if(Thread.currentThread() == this.loadingThread)
+            return;
+
+        boolean interrupted = false;
+        while(true) {
+            try {
+                this.ready.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if(interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Block until the managed object is loaded, or until the timeout expires.
+     * @param timeout The maximal time to wait in milliseconds.
+     * @return Whether the managed object is loaded.
+     * @throws InterruptedException If the thread was interrupted while waiting.
+     */
+    public boolean awaitReady(long timeout) throws InterruptedException {
+        return Thread.currentThread() == this.loadingThread || this.ready.await(timeout, TimeUnit.MILLISECONDS);
+    }
+
     protected void setFile(final File file){
-        this.writeOp(new ReadWriteSafeObject.Operation<Void>() {
+        this.rwSemaphore.writeOp(new ReadWriteSafeObject.Operation<Void>() {
             @Override
             public Void perform() {
                 Manager.this.file = file;
@@ -69,6 +296,14 @@ public abstract class Manager<T>  {
         });
     }
 
+    /**
+     * Get the file in which the managed object is stored.
+     * @return The file, or null if no file is set.
+     */
+    protected File getFile() {
+        return this.file;
+    }
+
     private T managed;
 
     /**
@@ -92,8 +327,65 @@ public abstract class Manager<T>  {
      */
     protected abstract T unmarshall(String content) throws Exception;
 
+    /**
+     * Write the managed object to the given stream, which becomes the content of the snapshot. By
+     * default the result of {@link #marshall(Object)} is written encoded as UTF-8. Subclasses can
+     * override this to store the managed object in a different format, as long as
+     * {@link #unmarshall(InputStream)} can read it back.
+     * @param managed The managed object to marshall.
+     * @param out The stream to write to. It is flushed and closed by the caller.
+     * @throws Exception If anything went wrong during marshalling or writing.
+     */
+    protected void marshall(T managed, OutputStream out) throws Exception {
+        Writer writer = new OutputStreamWriter(out, UTF_8);
+        writer.write(marshall(managed));
+        writer.flush();
+    }
+
+    /**
+     * Read the managed object from the given stream, which contains what was written by
+     * {@link #marshall(Object, OutputStream)}. By default the stream is read into a String that
+     * is passed to {@link #unmarshall(String)}. Subclasses can override this to parse the stream
+     * directly, without building the entire content in memory first.
+     * @param in The stream to read from. It is buffered, and closed by the caller.
+     * @return The object that was described by the stream, which should be managed.
+     * @throws Exception If anything went wrong during reading or unmarshalling.
+     */
+    protected T unmarshall(InputStream in) throws Exception {
+        StringBuilder builder = new StringBuilder();
+        Reader reader = new InputStreamReader(in, UTF_8);
+        char[] buffer = new char[READ_BUFFER_SIZE];
+        int read;
+        while ((read = reader.read(buffer)) != -1)
+            builder.append(buffer, 0, read);
+        return unmarshall(builder.toString());
+    }
+
     protected abstract T initialObject();
 
+    /**
+     * Called by the writer while it holds the read lock, right before the managed object is
+     * marshalled for a snapshot. Subclasses that store parts of the managed object outside of the
+     * snapshot can collect what must be written here, and return the work that writes it. That
+     * work runs after the lock is released and before the snapshot is written, so it doesn't keep
+     * other threads from changing the managed object. If it fails, the snapshot isn't written.
+     * @param managed The managed object that is about to be marshalled.
+     * @return The work to perform before the snapshot is written, or null if there is none.
+     * @throws Exception If collecting what must be written failed.
+     */
+    protected Callable<Void> prepareSnapshot(T managed) throws Exception {
+        return null;
+    }
+
+    /**
+     * Called by the writer once a snapshot was written, with the work that was returned by
+     * {@link #prepareSnapshot(Object)} for it. Subclasses can delete here what only the previous
+     * snapshot referred to. Nothing is called if writing failed.
+     * @param prepared The work that was performed before the snapshot was written, or null.
+     */
+    protected void snapshotWritten(Callable<Void> prepared) {
+    }
+
     /**
      * Asserts that the file to which we want to write is set, and thus we have write access. If
      * access was not given, an {@link IllegalStateException} is thrown. If the assertion is met,
@@ -122,15 +414,20 @@ public abstract class Manager<T>  {
     public void reload() throws Exception{
         assertReadAccess();
 
-        // Convert the root file into a String
-        StringBuilder builder = new StringBuilder();
-        try (Reader reader = new InputStreamReader(new FileInputStream(this.file))) {
-            while (reader.ready())
-                builder.append((char)reader.read());
+        // Unmarshall straight from the file. This happens outside of the lock, as only the
+        // result has to be swapped in.
+        final T loaded;
+        try (InputStream in = new BufferedInputStream(new FileInputStream(this.file), READ_BUFFER_SIZE)) {
+            loaded = unmarshall(in);
         }
 
-        // Then reload using that String
-        this.reload(builder.toString());
+        rwSemaphore.writeOp(new ReadWriteSafeObject.Operation<Void>() {
+            @Override
+            public Void perform() {
+                Manager.this.managed = loaded;
+                return null;
+            }
+        });
     }
 
     /**
@@ -159,75 +456,246 @@ public abstract class Manager<T>  {
 
 
     /**
-     * Writes all TaskSets as a JSONArray to the root file. This does not provide any
-     * synchronization. When calling, this should use external synchronization allowing it to read.
-     * This method does not change any properties on the TaskSetManager.
+     * Performs a single run of the writer. Everything that became dirty before this run started is
+     * made durable by writing a new snapshot. This must only be called on the writer thread.
+     * @param force Whether a snapshot must be written, even if no change was made since the last
+     *              one.
+     * @throws Exception If anything went wrong while marshalling or writing. In that case the
+     * writer runs again after a delay.
      */
-    private String writeAsReturn() throws Exception {
-
+    private void performWrite(boolean force) throws Exception {
+        assertWriteAccess();
 
-        // We do marshalling of the managed object. For that we need to read it.
-        // We either return the managed object marshalled in a String, or we return an Exception
+        // Changes are made while holding the write lock, so while we hold the read lock the
+        // managed object and the generation are consistent with each other.
+        final long[] generation = new long[1];
+        synchronized (this.writeState) {
+            if(!force && this.generation <= this.durableGeneration)
+                return;
+        }
         Object returned = rwSemaphore.readOp(new ReadWriteSafeObject.Operation<Object>() {
             @Override
             public Object perform() {
+                synchronized (writeState) {
+                    generation[0] = Manager.this.generation;
+                }
                 try {
-                    return marshall(managed);
+                    Callable<Void> prepared = prepareSnapshot(managed);
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    marshall(managed, out);
+                    return new Object[] { prepared, out.toByteArray() };
                 } catch (Exception e) {
                     return e;
                 }
             }
         });
 
-        // If we returned a non-null value that is an Exception, then something must have gone wrong
-        // while marshalling.
-        if(returned != null && returned instanceof Exception)
-            throw (Exception)returned;
+        try {
+            // If we returned a non-null value that is an Exception, then something must have gone
+            // wrong while marshalling.
+            if(returned instanceof Exception)
+                throw (Exception)returned;
+
+            Object[] marshalled = (Object[]) returned;
+            // Whatever the snapshot refers to must be durable before the snapshot itself.
+            @SuppressWarnings("unchecked")
+            Callable<Void> prepared = (Callable<Void>) marshalled[0];
+            if(prepared != null)
+                prepared.call();
+            this.writeSnapshot((byte[]) marshalled[1]);
+            this.snapshotWritten(prepared);
+        } catch (Exception e) {
+            this.schedule(WRITE_RETRY_DELAY);
+            throw e;
+        }
 
-        return (String)returned;
+        synchronized (this.writeState) {
+            if(generation[0] > this.durableGeneration)
+                this.durableGeneration = generation[0];
+            this.writeState.notifyAll();
+        }
     }
 
     /**
-     * Write all TaskSets. This provides synchronization.
+     * Write the given snapshot to a temporary file, and then atomically replace the current
+     * snapshot with it. A crash halfway through writing therefore never leaves a partially
+     * written snapshot behind.
+     * @param snapshot The marshalled managed object.
+     * @throws IOException If writing or replacing failed.
+     */
+    private void writeSnapshot(byte[] snapshot) throws IOException {
+        File temporary = new File(this.file.getPath() + TEMPORARY_SUFFIX);
+        try (FileOutputStream out = new FileOutputStream(temporary)) {
+            out.write(snapshot);
+            out.getFD().sync();
+        }
+        if(!temporary.renameTo(this.file))
+            throw new IOException("Couldn't replace "+this.file.getAbsolutePath());
+    }
+
+    /**
+     * Make sure the writer runs within the given delay. If it is already scheduled to run sooner,
+     * nothing changes. This is what coalesces a burst of changes into a single write.
+     * @param delay The maximal delay in milliseconds after which the writer should run.
+     */
+    private void schedule(long delay) {
+        synchronized (this.writeState) {
+            if(this.writeScheduled != null) {
+                if(this.writeScheduled.getDelay(TimeUnit.MILLISECONDS) <= delay)
+                    return;
+                if(!this.writeScheduled.cancel(false))
+                    return;
+            }
+            this.writeScheduled = this.writer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    // Clear this before draining, so that every change made from now on schedules
+                    // a new run.
+                    synchronized (writeState) {
+                        writeScheduled = null;
+                    }
+                    try {
+                        performWrite(false);
+                    } catch (Exception e) {
+                        Log.e(Manager.this.getClass().getName(), "Couldn't write "+file.getAbsolutePath(), e);
+                    }
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Write all TaskSets. This provides synchronization. This blocks until the snapshot is
+     * written, so it should not be called on the UI thread; use {@link #asyncWrite()} and
+     * {@link #flush()} instead.
      */
     public void write() throws Exception{
         assertWriteAccess();
+        synchronized (this.writeState) {
+            ++this.generation;
+        }
+
+        Future<Void> done = this.writer.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                performWrite(true);
+                return null;
+            }
+        });
 
-        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(this.file)))) {
-            writer.write(this.writeAsReturn());
+        try {
+            done.get();
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof Exception)
+                throw (Exception) e.getCause();
+            throw e;
         }
     }
 
     /**
-     * Write the managed object asynchronously. This provides synchronization.
+     * Mark the managed object as changed, such that a snapshot of it is written asynchronously.
+     * Changes that are marked in quick succession are coalesced into a single write. Call
+     * {@link #flush()} to write without waiting for more changes.
+     * @return The generation of this change, which can be passed to {@link #awaitDurable(long)}.
      */
-    public void asyncWrite() {
-        new Thread(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    write();
-                } catch (Exception e) {
-                    e.printStackTrace();
+    public long asyncWrite() {
+        long generation;
+        synchronized (this.writeState) {
+            generation = ++this.generation;
+        }
+        this.schedule(WRITE_DELAY);
+        return generation;
+    }
+
+    /**
+     * Request that all pending changes are written as soon as possible, rather than after the
+     * usual delay. This does not block.
+     */
+    public void flush() {
+        this.schedule(0);
+    }
+
+    /**
+     * Get the generation of the most recent change. Each call to {@link #asyncWrite()} increases the
+     * generation.
+     * @return The generation of the most recent change.
+     */
+    public long getGeneration() {
+        synchronized (this.writeState) {
+            return this.generation;
+        }
+    }
+
+    /**
+     * Block until all changes up to and including the given generation are written to disk.
+     * @param generation The generation to wait for, as returned by {@link #asyncWrite()}.
+     * @throws InterruptedException If the thread was interrupted while waiting.
+     */
+    public void awaitDurable(long generation) throws InterruptedException {
+        this.awaitDurable(generation, 0);
+    }
+
+    /**
+     * Block until all changes up to and including the given generation are written to disk, or
+     * until the timeout expires.
+     * @param generation The generation to wait for, as returned by {@link #asyncWrite()}.
+     * @param timeout The maximal time to wait in milliseconds, or 0 to wait indefinitely.
+     * @return Whether the given generation is durable.
+     * @throws InterruptedException If the thread was interrupted while waiting.
+     */
+    public boolean awaitDurable(long generation, long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        synchronized (this.writeState) {
+            while(this.durableGeneration < generation) {
+                if(timeout == 0) {
+                    this.writeState.wait();
+                } else {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if(remaining <= 0)
+                        return false;
+                    this.writeState.wait(remaining);
                 }
             }
-        }).start();
+            return true;
+        }
     }
 
 
+    /**
+     * Perform the given operation while holding the read lock. This blocks until the managed
+     * object is loaded.
+     */
     protected <ReturnType> ReturnType readOp(ReadWriteSafeObject.Operation<ReturnType> operation){
+        this.awaitReady();
         return this.rwSemaphore.readOp(operation);
     }
 
+    /**
+     * Perform the given operation while holding the write lock. This blocks until the managed
+     * object is loaded.
+     */
     protected <ReturnType> ReturnType writeOp(ReadWriteSafeObject.Operation<ReturnType> operation){
+        this.awaitReady();
         return this.rwSemaphore.writeOp(operation);
     }
 
     /**
-     * Get a direct reference to the managed object
+     * Perform the given operation with the given context while holding the read lock, without
+     * boxing its result. This blocks until the managed object is loaded.
+     * @see ReadWriteSafeObject#readBooleanOp(ReadWriteSafeObject.BooleanOperation, Object)
+     */
+    protected <C> boolean readBooleanOp(ReadWriteSafeObject.BooleanOperation<C> operation, C context){
+        this.awaitReady();
+        return this.rwSemaphore.readBooleanOp(operation, context);
+    }
+
+    /**
+     * Get a direct reference to the managed object. This blocks until the managed object is
+     * loaded.
      * @return The Managed object
      */
     protected T managed(){
+        this.awaitReady();
         return managed;
     }
 }
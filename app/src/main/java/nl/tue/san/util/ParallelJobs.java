@@ -0,0 +1,102 @@
+package nl.tue.san.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A group of jobs that run in parallel on a shared pool with a thread per core, and that can be
+ * awaited and cancelled together. Long computations split their work into jobs, submit them with
+ * {@link #submit(Callable)}, and wait for all of them with {@link #await()}. A group can be
+ * cancelled from any thread; jobs that haven't started then won't start, and running jobs are
+ * interrupted and should stop at their next call to {@link #checkCancelled()}.
+ */
+public class ParallelJobs {
+
+    /**
+     * Pool on which the jobs of all groups run, with a thread per core.
+     */
+    private static final ExecutorService POOL = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors()), new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "ParallelJobs-worker");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final List<Future<?>> futures = new ArrayList<>();
+    private volatile boolean cancelled;
+
+    /**
+     * Submit a job to the pool.
+     * @param job The job.
+     * @throws CancellationException If the group was cancelled.
+     */
+    public void submit(Callable<?> job) {
+        synchronized (this.futures) {
+            if(this.cancelled)
+                throw new CancellationException();
+            this.futures.add(POOL.submit(job));
+        }
+    }
+
+    /**
+     * Wait until all submitted jobs have finished.
+     * @throws CancellationException If the group was cancelled.
+     * @throws RuntimeException If a job threw it.
+     * @throws InterruptedException If the thread was interrupted while waiting, in which case the
+     * group is cancelled.
+     */
+    public void await() throws InterruptedException {
+        List<Future<?>> futures;
+        synchronized (this.futures) {
+            futures = new ArrayList<>(this.futures);
+        }
+
+        try {
+            for(Future<?> future : futures)
+                future.get();
+        } catch (InterruptedException e) {
+            this.cancel();
+            throw e;
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof CancellationException)
+                throw (CancellationException) e.getCause();
+            if(e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Cancel the group. Jobs that haven't started won't start, and running jobs are interrupted.
+     * {@link #await()} then throws a {@link CancellationException}.
+     */
+    public void cancel() {
+        this.cancelled = true;
+        synchronized (this.futures) {
+            for(Future<?> future : this.futures)
+                future.cancel(true);
+        }
+    }
+
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    /**
+     * Stop a running job if the group was cancelled.
+     * @throws CancellationException If the group was cancelled or the thread was interrupted.
+     */
+    public void checkCancelled() {
+        if(this.cancelled || Thread.currentThread().isInterrupted())
+            throw new CancellationException();
+    }
+}
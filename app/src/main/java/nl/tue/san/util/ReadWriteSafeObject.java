@@ -11,10 +11,50 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * {@link nl.tue.san.util.ReadWriteSafeObject#writeOp(Operation)}, providing an
  * Operation that should be executed when the lock is obtained. Not that multiple reads may occur
  * simultaneously, but a combination of reads and writes, or multiple writes, may not.
+ *
+ * How long operations wait for and hold the lock can be recorded by attaching
+ * {@link LockStatistics}, see {@link #setStatistics(LockStatistics)}.
  */
 public class ReadWriteSafeObject {
 
-    private final java.util.concurrent.locks.ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * The statistics operations are recorded in when they are enabled, or null.
+     */
+    private volatile LockStatistics statistics;
+
+    /**
+     * Creates a ReadWriteSafeObject without statistics.
+     */
+    public ReadWriteSafeObject() {
+    }
+
+    /**
+     * Creates a ReadWriteSafeObject that records its operations in the statistics with the given
+     * name, whenever those are enabled.
+     * @param name The name of the statistics, see {@link LockStatistics#named(String)}.
+     */
+    public ReadWriteSafeObject(String name) {
+        this.statistics = LockStatistics.named(name);
+    }
+
+    /**
+     * Get the statistics that operations are recorded in when they are enabled.
+     * @return The statistics, or null if there are none.
+     */
+    public LockStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Set the statistics that operations are recorded in when they are enabled.
+     * @param statistics The statistics, or null to stop recording operations altogether.
+     */
+    public void setStatistics(LockStatistics statistics) {
+        this.statistics = statistics;
+    }
+
     /**
      * Runs the given operation using a read lock in the current thread. This means that before the
      * operation is performed, the read lock is acquired. Then when the operation is performed the
@@ -49,6 +89,10 @@ public class ReadWriteSafeObject {
      * @return
      */
     public <T> T lockOp(Operation<T> operation, Lock lock){
+        LockStatistics statistics = this.statistics;
+        if(statistics != null && statistics.isEnabled())
+            return this.recordedLockOp(operation, lock, statistics, operation);
+
         try {
             lock.lock();
             return operation.perform();
@@ -57,6 +101,61 @@ public class ReadWriteSafeObject {
         }
 
     }
+
+    /**
+     * Runs the given operation with the given context using a read lock in the current thread, like
+     * {@link #readOp(Operation)}. Unlike readOp this doesn't box the result, so a hot caller that
+     * keeps its operation in a field and passes what it needs as the context doesn't allocate.
+     * @param operation The operation to execute
+     * @param context The value that is passed to the operation.
+     * @param <C> The type of the context.
+     * @return The result of running the operation.
+     */
+    public <C> boolean readBooleanOp(BooleanOperation<C> operation, C context){
+        return this.booleanLockOp(operation, context, this.lock.readLock());
+    }
+
+    /**
+     * Perform the given operation under the given lock, like {@link #lockOp(Operation, Lock)}.
+     */
+    private <C> boolean booleanLockOp(final BooleanOperation<C> operation, final C context, Lock lock){
+        LockStatistics statistics = this.statistics;
+        if(statistics != null && statistics.isEnabled())
+            return this.recordedLockOp(new Operation<Boolean>() {
+                @Override
+                public Boolean perform() {
+                    return operation.perform(context);
+                }
+            }, lock, statistics, operation);
+
+        try {
+            lock.lock();
+            return operation.perform(context);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Perform the given operation under the given lock, like
+     * {@link #lockOp(Operation, Lock)}, and record it in the given statistics. Recording may
+     * allocate, so primitive operations are simply wrapped in an Operation here.
+     * @param recordedAs The operation the caller passed, which is recorded as the operation that
+     *                   held the lock.
+     */
+    private <T> T recordedLockOp(Operation<T> operation, Lock lock, LockStatistics statistics, Object recordedAs){
+        int queued = this.lock.getQueueLength();
+        long requested = System.nanoTime();
+        lock.lock();
+        long acquired = System.nanoTime();
+        try {
+            return operation.perform();
+        } finally {
+            lock.unlock();
+            statistics.record(lock == this.lock.writeLock(), queued, acquired - requested, System.nanoTime() - acquired, recordedAs);
+        }
+    }
+
     /**
      * Simple interface to allow for the definition of arbitrary operations, while being Java 7 compliant.
      * @param <T> The return type of the operation.
@@ -64,4 +163,13 @@ public class ReadWriteSafeObject {
     public interface Operation<T> {
         T perform();
     }
+
+    /**
+     * Operation that results in a boolean, which is given a context so that it doesn't need to
+     * capture anything and can be allocated once.
+     * @param <C> The type of the context.
+     */
+    public interface BooleanOperation<C> {
+        boolean perform(C context);
+    }
 }
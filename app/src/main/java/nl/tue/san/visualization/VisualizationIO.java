@@ -1,9 +1,13 @@
 package nl.tue.san.visualization;
 
+import android.util.JsonReader;
+import android.util.JsonToken;
+
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
 import java.util.Map;
 
 /**
@@ -33,6 +37,91 @@ public class VisualizationIO {
         return visualization;
     }
 
+    /**
+     * Reads a Visualization from the given JsonReader, without building a JSONObject first. The
+     * next value in the reader must be an object as written by {@link #toJSON(Visualization)}.
+     * The time scale and cycle rate are required. A missing scheduler, or a light without a value,
+     * is read as null, as that is how {@link #toJSON(Visualization)} writes them.
+     * @param reader The reader positioned at the start of the object.
+     * @return The Visualization that was read.
+     * @throws IOException If reading failed or the content isn't valid JSON.
+     * @throws JSONException If a required property is missing.
+     */
+    public static Visualization fromJSON(JsonReader reader) throws IOException, JSONException {
+
+        Visualization visualization = new Visualization();
+        boolean hasTimeScale = false, hasCycleRate = false;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case TIME_SCALE:
+                    visualization.setTimeScale(reader.nextLong());
+                    hasTimeScale = true;
+                    break;
+                case CYCLE_RATE:
+                    visualization.setCycleRate(reader.nextLong());
+                    hasCycleRate = true;
+                    break;
+                case SCHEDULER:
+                    visualization.setScheduler(nextStringOrNull(reader));
+                    break;
+                case ANIMATION_DURATION:
+                    visualization.setAnimationDuration(reader.nextLong());
+                    break;
+                case LIGHTS:
+                    reader.beginArray();
+                    while (reader.hasNext())
+                        readLight(reader, visualization);
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        if(!hasTimeScale)
+            throw new JSONException("No value for "+TIME_SCALE);
+        if(!hasCycleRate)
+            throw new JSONException("No value for "+CYCLE_RATE);
+
+        // Done
+        return visualization;
+    }
+
+    /**
+     * Read a single light mapping and apply it to the given visualization.
+     */
+    private static void readLight(JsonReader reader, Visualization visualization) throws IOException, JSONException {
+        String name = null, value = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case NAME: name = nextStringOrNull(reader); break;
+                case VALUE: value = nextStringOrNull(reader); break;
+                default: reader.skipValue(); break;
+            }
+        }
+        reader.endObject();
+
+        if(name == null)
+            throw new JSONException("No value for "+NAME);
+        visualization.set(name, value);
+    }
+
+    /**
+     * Read the next String, or null if the next value is a JSON null.
+     */
+    private static String nextStringOrNull(JsonReader reader) throws IOException {
+        if(reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+
 
     public static JSONObject toJSON(Visualization visualization) throws JSONException {
         JSONObject object = new JSONObject();
@@ -1,6 +1,7 @@
 package nl.tue.san.visualization;
 
 import android.content.Context;
+import android.util.JsonReader;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -8,6 +9,8 @@ import org.json.JSONObject;
 import org.json.JSONTokener;
 
 import java.io.File;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -15,8 +18,10 @@ import java.util.Map;
 import java.util.Set;
 
 import nl.tue.san.net.Callback;
+import nl.tue.san.net.Priority;
 import nl.tue.san.net.Server;
 import nl.tue.san.util.Manager;
+import nl.tue.san.util.ReadWriteSafeObject.BooleanOperation;
 import nl.tue.san.util.ReadWriteSafeObject.Operation;
 
 
@@ -67,6 +72,23 @@ public class VisualizationManager extends Manager<Visualization> {
      */
     private Map<String, Integer> mappingOfRecentIdentification;
 
+    /**
+     * Operations that check whether the light or visualization that is given as the context is
+     * known. These are allocated once, so that checking doesn't allocate.
+     */
+    private static final BooleanOperation<String> HAS_LIGHT = new BooleanOperation<String>() {
+        @Override
+        public boolean perform(String light) {
+            return VisualizationManager.instance.lights.contains(light);
+        }
+    };
+    private static final BooleanOperation<String> HAS_VISUALIZATION = new BooleanOperation<String>() {
+        @Override
+        public boolean perform(String visualization) {
+            return VisualizationManager.instance.visualizations.contains(visualization);
+        }
+    };
+
     public Set<String> getLights() {
         return this.readOp(new Operation<Set<String>>() {
             @Override
@@ -87,33 +109,31 @@ public class VisualizationManager extends Manager<Visualization> {
     }
 
     public boolean hasLight(final String light){
-        return this.readOp(new Operation<Boolean>() {
-            @Override
-            public Boolean perform() {
-                return VisualizationManager.instance.lights.contains(light);
-            }
-        });
-
+        return this.readBooleanOp(HAS_LIGHT, light);
     }
 
     public boolean hasVisualization(final String visualization){
-        return this.readOp(new Operation<Boolean>() {
-            @Override
-            public Boolean perform() {
-                return VisualizationManager.instance.visualizations.contains(visualization);
-            }
-        });
-
+        return this.readBooleanOp(HAS_VISUALIZATION, visualization);
     }
 
 
     /**
      * Create a new TaskSetManager that uses the given File as a directory to store TaskSets in.
+     * The visualization is loaded in the background, and is synchronized with the server once it
+     * is loaded.
      * @param context The Context in which the Manager operates.
      */
     private VisualizationManager(Context context) {
         super(new File(context.getFilesDir(), VISUALIZATION_FILENAME));
-        this.synchronize();
+        this.loadAsync();
+        // The callbacks of the requests need the loaded manager, so there is no use in sending
+        // them any sooner.
+        this.whenReady(new Runnable() {
+            @Override
+            public void run() {
+                synchronize();
+            }
+        });
     }
 
     /**
@@ -132,6 +152,8 @@ public class VisualizationManager extends Manager<Visualization> {
      */
     public void synchronizeLights(){
 
+        // No token is passed: the result is kept by this manager, which outlives every screen, so
+        // the sync mustn't be cancelled when the screen that started it goes away.
         Server.GET("lamps", new Callback() {
             @Override
             public void onSuccess(final String data) {
@@ -157,13 +179,14 @@ public class VisualizationManager extends Manager<Visualization> {
             @Override
             public void onFailure() {
             }
-        });
+        }, Priority.BACKGROUND, null);
     }
     /**
      * Synchronize the visualizations with the server. This makes sure that we locally know what
      * visualizations are available on the server.
      */
     public void synchronizeVisualizations(){
+        // Like the lights, this outlives the screen that started it, so it isn't given a token.
         Server.GET("settings/visualizers", new Callback() {
             @Override
             public void onSuccess(final String data) {
@@ -188,7 +211,7 @@ public class VisualizationManager extends Manager<Visualization> {
             @Override
             public void onFailure() {
             }
-        });
+        }, Priority.BACKGROUND, null);
     }
 
     /**
@@ -247,6 +270,15 @@ public class VisualizationManager extends Manager<Visualization> {
         return VisualizationIO.fromJSON(new JSONObject(new JSONTokener(content)));
     }
 
+    /**
+     * Read the visualization straight from the stream, without building a String and a JSONObject
+     * first.
+     */
+    @Override
+    protected Visualization unmarshall(InputStream in) throws Exception {
+        return VisualizationIO.fromJSON(new JsonReader(new InputStreamReader(in, "UTF-8")));
+    }
+
     @Override
     protected Visualization initialObject() {
         return new Visualization();
@@ -334,6 +366,6 @@ public class VisualizationManager extends Manager<Visualization> {
             public void onFailure() {
 
             }
-        },"");
+        }, "", Priority.USER_INITIATED, null);
     }
 }